@@ -28,6 +28,7 @@ import java.awt.*;
 import java.awt.font.TextAttribute;
 import java.awt.geom.*;
 import java.awt.image.*;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
@@ -70,6 +71,15 @@ public class PGraphicsJava2D extends PGraphics {
   // path for contours so gpath can be closed
   GeneralPath auxPath;
 
+  // the array behind the image, also used as pixels[] when not null
+  protected int[] sharedPixels;
+
+  // counts for imageCacheHits() and friends
+  protected long imageCacheHits;
+  protected long imageCacheMisses;
+  protected long imageCacheUpdates;
+  protected long imageCachePixels;
+
   boolean openContour;
 
   /// break the shape at the next vertex (next vertex() call is a moveto())
@@ -337,11 +347,43 @@ public class PGraphicsJava2D extends PGraphics {
       //
       // image = gc.createCompatibleImage(wide, high, Transparency.TRANSLUCENT);
       image = new BufferedImage(wide, high, BufferedImage.TYPE_INT_ARGB);
+      sharedPixels = null;
     }
+    checkSharedPixels();
     return (Graphics2D) image.getGraphics();
   }
 
 
+  /**
+   * Unless hint(DISABLE_SHARED_PIXELS) is set, pixels[] is the int array
+   * that backs the image, so loadPixels() and updatePixels() don't need to
+   * copy anything. Taking the array from the raster means Java2D can no
+   * longer keep a copy of the image in video memory, so the hint trades
+   * the free pixel access for faster drawing of the image itself.
+   */
+  protected void checkSharedPixels() {
+    boolean share = !hints[DISABLE_SHARED_PIXELS];
+    if (share && sharedPixels == null) {
+      DataBuffer buffer = ((BufferedImage) image).getRaster().getDataBuffer();
+      if (buffer instanceof DataBufferInt) {
+        sharedPixels = ((DataBufferInt) buffer).getData();
+        pixels = sharedPixels;
+      }
+
+    } else if (!share && sharedPixels != null) {
+      // swap in an image that Java2D is free to accelerate again
+      int wide = pixelWidth;
+      int high = pixelHeight;
+      BufferedImage fresh =
+        new BufferedImage(wide, high, BufferedImage.TYPE_INT_ARGB);
+      fresh.getRaster().setDataElements(0, 0, wide, high, sharedPixels);
+      image = fresh;
+      sharedPixels = null;
+      pixels = null;
+    }
+  }
+
+
   @Override
   public void beginDraw() {
     g2 = checkImage();
@@ -1202,6 +1244,42 @@ public class PGraphicsJava2D extends PGraphics {
   }
 
 
+  /**
+   * All the points go into one path that is stroked once, rather than
+   * stroking a separate line for each. Where points overlap, a translucent
+   * stroke is only blended once.
+   */
+  @Override
+  public void points(PVectorArray points) {
+    if (stroke) {
+      int count = points.size();
+      float[] x = points.x, y = points.y;
+      Path2D.Float path = new Path2D.Float(Path2D.WIND_NON_ZERO, count * 2);
+      for (int i = 0; i < count; i++) {
+        path.moveTo(x[i], y[i]);
+        path.lineTo(x[i] + EPSILON, y[i] + EPSILON);
+      }
+      strokeShape(path);
+    }
+  }
+
+
+  /**
+   * Like points(), the lines are stroked together as a single path.
+   */
+  @Override
+  public void lines(PVectorArray lines) {
+    int count = lines.size() & ~1;
+    float[] x = lines.x, y = lines.y;
+    Path2D.Float path = new Path2D.Float(Path2D.WIND_NON_ZERO, count);
+    for (int i = 0; i < count; i += 2) {
+      path.moveTo(x[i], y[i]);
+      path.lineTo(x[i+1], y[i+1]);
+    }
+    strokeShape(path);
+  }
+
+
   @Override
   public void triangle(float x1, float y1, float x2, float y2,
                        float x3, float y3) {
@@ -1580,46 +1658,54 @@ public class PGraphicsJava2D extends PGraphics {
 
     // Nuke the cache if the image was resized
     if (cash != null) {
-      if (who.pixelWidth != cash.image.getWidth() ||
-          who.pixelHeight != cash.image.getHeight()) {
+      if (who.pixelWidth != cash.width ||
+          who.pixelHeight != cash.height) {
         cash = null;
       }
     }
 
     if (cash == null) {
       //System.out.println("making new image cache");
-      cash = new ImageCache(); //who);
+      cash = new ImageCache(who.pixelWidth, who.pixelHeight);
       setCache(who, cash);
       who.updatePixels();  // mark the whole thing for update
       who.setModified();
     }
 
-    // If image previously was tinted, or the color changed
-    // or the image was tinted, and tint is now disabled
-    if ((tint && !cash.tinted) ||
-        (tint && (cash.tintedColor != tintColor)) ||
-        (!tint && cash.tinted)) {
-      // For tint change, mark all pixels as needing update.
-      who.updatePixels();
-    }
-
     if (who.isModified()) {
-      if (who.pixels == null) {
+      if (who.pixels == null && who.format != GRAY8) {
         // This might be a PGraphics that hasn't been drawn to yet.
         // Can't just bail because the cache has been created above.
         // https://github.com/processing/processing/issues/2208
         who.pixels = new int[who.pixelWidth * who.pixelHeight];
       }
-      cash.update(who, tint, tintColor);
+      // Only the modified area has to be redone, for every tint color
+      cash.invalidate(who.getModifiedX1(), who.getModifiedY1(),
+                      who.getModifiedX2(), who.getModifiedY2());
       who.setModified(false);
     }
 
+    // A separate copy is kept for each of the last few tint colors, so
+    // switching between them doesn't mean tinting the whole image again.
+    ImageCache.Variant variant = cash.find(tint, tintColor);
+    if (variant == null) {
+      variant = cash.add(tint, tintColor);
+      imageCacheMisses++;
+    } else if (variant.isDirty()) {
+      imageCacheUpdates++;
+    } else {
+      imageCacheHits++;
+    }
+    if (variant.isDirty()) {
+      imageCachePixels += cash.update(who, variant);
+    }
+
     u1 *= who.pixelDensity;
     v1 *= who.pixelDensity;
     u2 *= who.pixelDensity;
     v2 *= who.pixelDensity;
 
-    g2.drawImage(((ImageCache) getCache(who)).image,
+    g2.drawImage(variant.image,
                  (int) x1, (int) y1, (int) x2, (int) y2,
                  u1, v1, u2, v2, null);
 
@@ -1647,170 +1733,255 @@ public class PGraphicsJava2D extends PGraphics {
   }
 
 
+  /** Number of times image() found its cached copy up to date */
+  public long imageCacheHits() {
+    return imageCacheHits;
+  }
+
+
+  /** Number of times image() had to build a cached copy from scratch */
+  public long imageCacheMisses() {
+    return imageCacheMisses;
+  }
+
+
+  /** Number of times image() only had to redo the modified area */
+  public long imageCacheUpdates() {
+    return imageCacheUpdates;
+  }
+
+
+  /** Number of pixels copied (and tinted) into cached images */
+  public long imageCachePixels() {
+    return imageCachePixels;
+  }
+
+
+  public void resetImageCacheCounts() {
+    imageCacheHits = 0;
+    imageCacheMisses = 0;
+    imageCacheUpdates = 0;
+    imageCachePixels = 0;
+  }
+
+
   static class ImageCache {
-    boolean tinted;
-    int tintedColor;
+    /** How many tint colors to keep a copy of the image for */
+    static final int VARIANTS = 4;
+
+    final int width, height;
+    // most recently used first
+    final ArrayList<Variant> variants = new ArrayList<>(VARIANTS);
     int[] tintedTemp;  // one row of tinted pixels
-    BufferedImage image;
-//    BufferedImage compat;
-
-//    public ImageCache(PImage source) {
-////      this.source = source;
-//      // even if RGB, set the image type to ARGB, because the
-//      // image may have an alpha value for its tint().
-////      int type = BufferedImage.TYPE_INT_ARGB;
-//      //System.out.println("making new buffered image");
-////      image = new BufferedImage(source.width, source.height, type);
-//    }
+
 
     /**
-     * Update the pixels of the cache image. Already determined that the tint
-     * has changed, or the pixels have changed, so should just go through
-     * with the update without further checks.
+     * The image as drawn with one tint color (or without a tint), along
+     * with the area of the source that has changed since it was made.
      */
-    public void update(PImage source, boolean tint, int tintColor) {
-      //int bufferType = BufferedImage.TYPE_INT_ARGB;
-      int targetType = ARGB;
-      boolean opaque = (tintColor & 0xFF000000) == 0xFF000000;
-      if (source.format == RGB) {
-        if (!tint || (tint && opaque)) {
-          //bufferType = BufferedImage.TYPE_INT_RGB;
-          targetType = RGB;
+    static class Variant {
+      boolean tinted;
+      int tintedColor;
+      BufferedImage image;
+      int dirtyX1, dirtyY1, dirtyX2, dirtyY2;
+
+      boolean isDirty() {
+        return dirtyX1 < dirtyX2 && dirtyY1 < dirtyY2;
+      }
+    }
+
+
+    ImageCache(int width, int height) {
+      this.width = width;
+      this.height = height;
+    }
+
+
+    Variant find(boolean tint, int tintColor) {
+      for (int i = 0; i < variants.size(); i++) {
+        Variant variant = variants.get(i);
+        if (variant.tinted == tint &&
+            (!tint || variant.tintedColor == tintColor)) {
+          if (i != 0) {
+            variants.remove(i);
+            variants.add(0, variant);
+          }
+          return variant;
         }
       }
-//      boolean wrongType = (image != null) && (image.getType() != bufferType);
-//      if ((image == null) || wrongType) {
-//        image = new BufferedImage(source.width, source.height, bufferType);
-//      }
-      // Must always use an ARGB image, otherwise will write zeros
-      // in the alpha channel when drawn to the screen.
-      // https://github.com/processing/processing/issues/2030
-      if (image == null) {
-        image = new BufferedImage(source.pixelWidth, source.pixelHeight,
-                                  BufferedImage.TYPE_INT_ARGB);
+      return null;
+    }
+
+
+    /** Add a variant that needs a full update, reusing the oldest image. */
+    Variant add(boolean tint, int tintColor) {
+      Variant variant;
+      if (variants.size() == VARIANTS) {
+        variant = variants.remove(VARIANTS - 1);
+      } else {
+        variant = new Variant();
+        // Must always use an ARGB image, otherwise will write zeros
+        // in the alpha channel when drawn to the screen.
+        // https://github.com/processing/processing/issues/2030
+        variant.image =
+          new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+      }
+      variant.tinted = tint;
+      variant.tintedColor = tintColor;
+      variant.dirtyX1 = 0;
+      variant.dirtyY1 = 0;
+      variant.dirtyX2 = width;
+      variant.dirtyY2 = height;
+      variants.add(0, variant);
+      return variant;
+    }
+
+
+    /** Mark an area of the source as changed, for all the variants. */
+    void invalidate(int x1, int y1, int x2, int y2) {
+      x1 = Math.max(0, x1);
+      y1 = Math.max(0, y1);
+      x2 = Math.min(width, x2);
+      y2 = Math.min(height, y2);
+      if (x1 >= x2 || y1 >= y2) return;
+
+      for (Variant variant : variants) {
+        if (variant.isDirty()) {
+          variant.dirtyX1 = Math.min(variant.dirtyX1, x1);
+          variant.dirtyY1 = Math.min(variant.dirtyY1, y1);
+          variant.dirtyX2 = Math.max(variant.dirtyX2, x2);
+          variant.dirtyY2 = Math.max(variant.dirtyY2, y2);
+        } else {
+          variant.dirtyX1 = x1;
+          variant.dirtyY1 = y1;
+          variant.dirtyX2 = x2;
+          variant.dirtyY2 = y2;
+        }
+      }
+    }
+
+
+    /**
+     * Update the changed area of a variant from the source pixels,
+     * and return the number of pixels that were redone.
+     */
+    int update(PImage source, Variant variant) {
+      int x1 = variant.dirtyX1;
+      int y1 = variant.dirtyY1;
+      int count = variant.dirtyX2 - x1;
+      int rows = variant.dirtyY2 - y1;
+      boolean tint = variant.tinted;
+      int tintColor = variant.tintedColor;
+      WritableRaster wr = variant.image.getRaster();
+
+      if (source.format != GRAY8 && !tint && source.format == RGB &&
+          (source.pixels[0] >> 24 == 0)) {
+        // If it's an RGB image and the high bits aren't set, need to set
+        // the high bits to opaque because we're drawing ARGB images.
+        source.filter(OPAQUE);
+        // Opting to just manipulate the image here, since it shouldn't
+        // affect anything else (and alpha(get(x, y)) should return 0xff).
+        // Wel also make no guarantees about the values of the pixels array
+        // in a PImage and how the high bits will be set.
+        source.setModified(false);
       }
 
-      WritableRaster wr = image.getRaster();
-      if (tint) {
-        if (tintedTemp == null || tintedTemp.length != source.pixelWidth) {
-          tintedTemp = new int[source.pixelWidth];
+      if (source.format != GRAY8 && !tint &&
+          count == width && rows == height) {
+        // If no tint, just shove the pixels on in there verbatim
+        wr.setDataElements(0, 0, width, height, source.pixels);
+
+      } else {
+        if (tintedTemp == null || tintedTemp.length < width) {
+          tintedTemp = new int[width];
         }
-        int a2 = (tintColor >> 24) & 0xff;
-//        System.out.println("tint color is " + a2);
-//        System.out.println("source.pixels[0] alpha is " + (source.pixels[0] >>> 24));
-        int r2 = (tintColor >> 16) & 0xff;
-        int g2 = (tintColor >> 8) & 0xff;
-        int b2 = (tintColor) & 0xff;
-
-        //if (bufferType == BufferedImage.TYPE_INT_RGB) {
-        if (targetType == RGB) {
-          // The target image is opaque, meaning that the source image has no
-          // alpha (is not ARGB), and the tint has no alpha.
-          int index = 0;
-          for (int y = 0; y < source.pixelHeight; y++) {
-            for (int x = 0; x < source.pixelWidth; x++) {
-              int argb1 = source.pixels[index++];
-              int r1 = (argb1 >> 16) & 0xff;
-              int g1 = (argb1 >> 8) & 0xff;
-              int b1 = (argb1) & 0xff;
-
-              // Prior to 2.1, the alpha channel was commented out here,
-              // but can't remember why (just thought unnecessary b/c of RGB?)
-              // https://github.com/processing/processing/issues/2030
-              tintedTemp[x] = 0xFF000000 |
-                  (((r2 * r1) & 0xff00) << 8) |
-                  ((g2 * g1) & 0xff00) |
-                  (((b2 * b1) & 0xff00) >> 8);
-            }
-            wr.setDataElements(0, y, source.pixelWidth, 1, tintedTemp);
-          }
-          // could this be any slower?
-//          float[] scales = { tintR, tintG, tintB };
-//          float[] offsets = new float[3];
-//          RescaleOp op = new RescaleOp(scales, offsets, null);
-//          op.filter(image, image);
-
-        //} else if (bufferType == BufferedImage.TYPE_INT_ARGB) {
-        } else if (targetType == ARGB) {
-          if (source.format == RGB &&
-              (tintColor & 0xffffff) == 0xffffff) {
-            int hi = tintColor & 0xff000000;
-            int index = 0;
-            for (int y = 0; y < source.pixelHeight; y++) {
-              for (int x = 0; x < source.pixelWidth; x++) {
-                tintedTemp[x] = hi | (source.pixels[index++] & 0xFFFFFF);
-              }
-              wr.setDataElements(0, y, source.pixelWidth, 1, tintedTemp);
-            }
+        for (int y = y1; y < y1 + rows; y++) {
+          tintRow(source, y*width + x1, count, tint, tintColor);
+          wr.setDataElements(x1, y, count, 1, tintedTemp);
+        }
+      }
+      variant.dirtyX2 = variant.dirtyX1;  // clean again
+      variant.dirtyY2 = variant.dirtyY1;
+      return count * rows;
+    }
+
+
+    /**
+     * Fill tintedTemp with count source pixels starting at index, tinted
+     * the same way as the rest of the renderer. GRAY8 images are read
+     * straight from their bytePixels[] and tinted like an RGB image.
+     */
+    private void tintRow(PImage source, int index, int count,
+                         boolean tint, int tintColor) {
+      int[] out = tintedTemp;
+      int a2 = (tintColor >> 24) & 0xff;
+      int r2 = (tintColor >> 16) & 0xff;
+      int g2 = (tintColor >> 8) & 0xff;
+      int b2 = (tintColor) & 0xff;
+
+      if (source.format == GRAY8) {
+        byte[] gray = source.bytePixels;
+        int alpha = tint ? (tintColor & 0xFF000000) : 0xFF000000;
+        for (int x = 0; x < count; x++) {
+          int v = gray[index++] & 0xff;
+          if (tint) {
+            out[x] = alpha |
+                (((r2 * v) & 0xff00) << 8) |
+                ((g2 * v) & 0xff00) |
+                (((b2 * v) & 0xff00) >> 8);
           } else {
-            int index = 0;
-            for (int y = 0; y < source.pixelHeight; y++) {
-              if (source.format == RGB) {
-                int alpha = tintColor & 0xFF000000;
-                for (int x = 0; x < source.pixelWidth; x++) {
-                  int argb1 = source.pixels[index++];
-                  int r1 = (argb1 >> 16) & 0xff;
-                  int g1 = (argb1 >> 8) & 0xff;
-                  int b1 = (argb1) & 0xff;
-                  tintedTemp[x] = alpha |
-                      (((r2 * r1) & 0xff00) << 8) |
-                      ((g2 * g1) & 0xff00) |
-                      (((b2 * b1) & 0xff00) >> 8);
-                }
-              } else if (source.format == ARGB) {
-                for (int x = 0; x < source.pixelWidth; x++) {
-                  int argb1 = source.pixels[index++];
-                  int a1 = (argb1 >> 24) & 0xff;
-                  int r1 = (argb1 >> 16) & 0xff;
-                  int g1 = (argb1 >> 8) & 0xff;
-                  int b1 = (argb1) & 0xff;
-                  tintedTemp[x] =
-                      (((a2 * a1) & 0xff00) << 16) |
-                      (((r2 * r1) & 0xff00) << 8) |
-                      ((g2 * g1) & 0xff00) |
-                      (((b2 * b1) & 0xff00) >> 8);
-                }
-              } else if (source.format == ALPHA) {
-                int lower = tintColor & 0xFFFFFF;
-                for (int x = 0; x < source.pixelWidth; x++) {
-                  int a1 = source.pixels[index++];
-                  tintedTemp[x] =
-                      (((a2 * a1) & 0xff00) << 16) | lower;
-                }
-              }
-              wr.setDataElements(0, y, source.pixelWidth, 1, tintedTemp);
-            }
+            out[x] = alpha | (v << 16) | (v << 8) | v;
           }
-          // Not sure why ARGB images take the scales in this order...
-//          float[] scales = { tintR, tintG, tintB, tintA };
-//          float[] offsets = new float[4];
-//          RescaleOp op = new RescaleOp(scales, offsets, null);
-//          op.filter(image, image);
         }
-      } else {  // !tint
-        if (targetType == RGB && (source.pixels[0] >> 24 == 0)) {
-          // If it's an RGB image and the high bits aren't set, need to set
-          // the high bits to opaque because we're drawing ARGB images.
-          source.filter(OPAQUE);
-          // Opting to just manipulate the image here, since it shouldn't
-          // affect anything else (and alpha(get(x, y)) should return 0xff).
-          // Wel also make no guarantees about the values of the pixels array
-          // in a PImage and how the high bits will be set.
+
+      } else if (!tint) {
+        System.arraycopy(source.pixels, index, out, 0, count);
+
+      } else if (source.format == RGB) {
+        if (a2 != 0xff && (tintColor & 0xffffff) == 0xffffff) {
+          // only the alpha of the tint matters
+          int hi = tintColor & 0xff000000;
+          for (int x = 0; x < count; x++) {
+            out[x] = hi | (source.pixels[index++] & 0xFFFFFF);
+          }
+        } else {
+          // Prior to 2.1, the alpha channel was commented out here,
+          // but can't remember why (just thought unnecessary b/c of RGB?)
+          // https://github.com/processing/processing/issues/2030
+          int alpha = tintColor & 0xFF000000;
+          for (int x = 0; x < count; x++) {
+            int argb1 = source.pixels[index++];
+            int r1 = (argb1 >> 16) & 0xff;
+            int g1 = (argb1 >> 8) & 0xff;
+            int b1 = (argb1) & 0xff;
+            out[x] = alpha |
+                (((r2 * r1) & 0xff00) << 8) |
+                ((g2 * g1) & 0xff00) |
+                (((b2 * b1) & 0xff00) >> 8);
+          }
         }
-        // If no tint, just shove the pixels on in there verbatim
-        wr.setDataElements(0, 0, source.pixelWidth, source.pixelHeight, source.pixels);
-      }
-      this.tinted = tint;
-      this.tintedColor = tintColor;
 
-//      GraphicsConfiguration gc = parent.getGraphicsConfiguration();
-//      compat = gc.createCompatibleImage(image.getWidth(),
-//                                        image.getHeight(),
-//                                        Transparency.TRANSLUCENT);
-//
-//      Graphics2D g = compat.createGraphics();
-//      g.drawImage(image, 0, 0, null);
-//      g.dispose();
+      } else if (source.format == ALPHA) {
+        int lower = tintColor & 0xFFFFFF;
+        for (int x = 0; x < count; x++) {
+          int a1 = source.pixels[index++];
+          out[x] = (((a2 * a1) & 0xff00) << 16) | lower;
+        }
+
+      } else {  // ARGB
+        for (int x = 0; x < count; x++) {
+          int argb1 = source.pixels[index++];
+          int a1 = (argb1 >> 24) & 0xff;
+          int r1 = (argb1 >> 16) & 0xff;
+          int g1 = (argb1 >> 8) & 0xff;
+          int b1 = (argb1) & 0xff;
+          out[x] =
+              (((a2 * a1) & 0xff00) << 16) |
+              (((r2 * r1) & 0xff00) << 8) |
+              ((g2 * g1) & 0xff00) |
+              (((b2 * b1) & 0xff00) >> 8);
+        }
+      }
     }
   }
 
@@ -2375,6 +2546,21 @@ public class PGraphicsJava2D extends PGraphics {
   }
 
 
+  @Override
+  public float[] screenXY(float[] xy, float[] out) {
+    if (out == null) {
+      out = new float[xy.length];
+    }
+    int count = checkScreenArrays(xy, out, 2);
+    g2.getTransform().getMatrix(transform);
+    PMatrix2D matrix =
+      new PMatrix2D((float) transform[0], (float) transform[2], (float) transform[4],
+                    (float) transform[1], (float) transform[3], (float) transform[5]);
+    matrix.multArray(xy, 0, out, 0, count, 2);
+    return out;
+  }
+
+
   @Override
   public float screenX(float x, float y, float z) {
     showDepthWarningXYZ("screenX");
@@ -2396,6 +2582,13 @@ public class PGraphicsJava2D extends PGraphics {
   }
 
 
+  @Override
+  public float[] screenXYZ(float[] xyz, float[] out) {
+    showDepthWarningXYZ("screenXYZ");
+    return (out == null) ? new float[xyz.length] : out;
+  }
+
+
   //public float modelX(float x, float y, float z)
 
 
@@ -2753,6 +2946,12 @@ public class PGraphicsJava2D extends PGraphics {
 
   @Override
   public void loadPixels() {
+    if (sharedPixels != null) {
+      // already up to date, drawing goes straight into this array
+      pixels = sharedPixels;
+      return;
+    }
+
     if (pixels == null || (pixels.length != pixelWidth*pixelHeight)) {
       pixels = new int[pixelWidth * pixelHeight];
     }
@@ -2803,7 +3002,7 @@ public class PGraphicsJava2D extends PGraphics {
 //      new Exception().printStackTrace(System.out);
     }
 //    updatePixels();
-    if (pixels != null) {
+    if (pixels != null && pixels != sharedPixels) {
       getRaster().setDataElements(0, 0, pixelWidth, pixelHeight, pixels);
     }
     modified = true;
@@ -2913,7 +3112,18 @@ public class PGraphicsJava2D extends PGraphics {
     WritableRaster raster = getRaster();
 //      ((BufferedImage) (useOffscreen && primarySurface ? offscreen : image)).getRaster();
 
-    if ((sourceX == 0) && (sourceY == 0) &&
+    if (sourceImage.format == GRAY8) {
+      // pixels[] of a GRAY8 image may not exist, so expand the bytes
+      int[] row = new int[sourceWidth];
+      byte[] gray = sourceImage.bytePixels;
+      for (int y = 0; y < sourceHeight; y++) {
+        int offset = (sourceY + y) * sourceImage.pixelWidth + sourceX;
+        for (int x = 0; x < sourceWidth; x++) {
+          row[x] = 0xff000000 | (gray[offset + x] & 0xff) * 0x010101;
+        }
+        raster.setDataElements(targetX, targetY + y, sourceWidth, 1, row);
+      }
+    } else if ((sourceX == 0) && (sourceY == 0) &&
         (sourceWidth == sourceImage.pixelWidth) &&
         (sourceHeight == sourceImage.pixelHeight)) {
 //      System.out.format("%d %d  %dx%d  %d%n", targetX, targetY,
@@ -73,10 +73,12 @@ import java.nio.charset.StandardCharsets;
 import java.text.*;
 import java.util.*;
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.PriorityBlockingQueue;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.*;
 import java.util.zip.*;
 
@@ -2488,6 +2490,7 @@ public class PApplet implements PConstants {
       // be before, since a call to background() would wipe
       // out anything that had been drawn so far.
       dequeueEvents();
+      dequeueImageRequests();
 
       handleMethods("draw");
 
@@ -5103,6 +5106,11 @@ public class PApplet implements PConstants {
 
   Random internalRandom;
 
+  // seed for randomStream(), set by randomSeed() or picked on first use
+  long randomStreamSeed;
+  boolean randomStreamSeeded;
+  private final Object randomStreamLock = new Object[0];
+
   /**
    *
    */
@@ -5205,6 +5213,91 @@ public class PApplet implements PConstants {
       internalRandom = new Random();
     }
     internalRandom.setSeed(seed);
+    synchronized (randomStreamLock) {
+      randomStreamSeed = seed;
+      randomStreamSeeded = true;
+    }
+  }
+
+
+  /**
+   * Fill an array with random numbers from low up to (but not including)
+   * high, the same as calling random(low, high) for each element. Much
+   * faster when the generator is a PRandom.
+   *
+   * @param out array to fill
+   * @param low lower limit
+   * @param high upper limit
+   * @see PApplet#random(float, float)
+   */
+  public final void random(float[] out, float low, float high) {
+    if (internalRandom == null) {
+      internalRandom = new Random();
+    }
+    if (internalRandom instanceof PRandom) {
+      ((PRandom) internalRandom).fill(out, low, high);
+    } else {
+      for (int i = 0; i < out.length; i++) {
+        out[i] = random(low, high);
+      }
+    }
+  }
+
+
+  /**
+   * Fill an array with numbers from randomGaussian().
+   *
+   * @param out array to fill
+   * @see PApplet#randomGaussian()
+   */
+  public final void randomGaussian(float[] out) {
+    if (internalRandom == null) {
+      internalRandom = new Random();
+    }
+    if (internalRandom instanceof PRandom) {
+      ((PRandom) internalRandom).fillGaussian(out);
+    } else {
+      for (int i = 0; i < out.length; i++) {
+        out[i] = (float) internalRandom.nextGaussian();
+      }
+    }
+  }
+
+
+  /**
+   * Set the generator used by random() and randomGaussian(). The default
+   * is a java.util.Random, which can be shared between threads but is
+   * slower. A PRandom is much faster, but should only be used from the
+   * animation thread; other threads can get their own with randomStream().
+   * Call randomSeed() afterwards to seed the new generator.
+   *
+   * @param generator the generator to use from now on
+   */
+  public final void randomGenerator(Random generator) {
+    if (generator == null) {
+      throw new IllegalArgumentException("randomGenerator() cannot be null");
+    }
+    internalRandom = generator;
+  }
+
+
+  /**
+   * A separate PRandom for use on another thread, e.g. one per band of
+   * particles being set up in parallel. After randomSeed(), the same index
+   * always gives the same numbers, regardless of which thread uses it or
+   * in which order the streams are made.
+   *
+   * @param index which stream, usually the number of the thread or band
+   */
+  public PRandom randomStream(long index) {
+    synchronized (randomStreamLock) {
+      if (!randomStreamSeeded) {
+        // unseeded, so a different set of streams each run
+        randomStreamSeed = new Random().nextLong();
+        randomStreamSeeded = true;
+      }
+      return new PRandom(randomStreamSeed, index);
+    }
   }
 
 
@@ -5224,22 +5317,16 @@ public class PApplet implements PConstants {
   // implementation by the german demo group farbrausch
   // as used in their demo "art": http://www.farb-rausch.de/fr010src.zip
 
-  static final int PERLIN_YWRAPB = 4;
-  static final int PERLIN_YWRAP = 1<<PERLIN_YWRAPB;
-  static final int PERLIN_ZWRAPB = 8;
-  static final int PERLIN_ZWRAP = 1<<PERLIN_ZWRAPB;
-  static final int PERLIN_SIZE = 4095;
+  // The noise itself lives in PNoise, so that it can be shared with other
+  // threads. This holds on to the current one, replaced whenever
+  // noiseSeed() or noiseDetail() change it.
 
   int perlin_octaves = 4; // default to medium smooth
   float perlin_amp_falloff = 0.5f; // 50% reduction/octave
 
-  // [toxi 031112]
-  // new vars needed due to recent change of cos table in PGraphics
-  int perlin_TWOPI, perlin_PI;
-  float[] perlin_cosTable;
-  float[] perlin;
-
+  PNoise perlinNoise;
   Random perlinRandom;
+  private final Object perlinLock = new Object[0];
 
 
   /**
@@ -5295,79 +5382,52 @@ public class PApplet implements PConstants {
    * @see PApplet#random(float,float)
    */
   public float noise(float x, float y, float z) {
-    if (perlin == null) {
-      if (perlinRandom == null) {
-        perlinRandom = new Random();
-      }
-      perlin = new float[PERLIN_SIZE + 1];
-      for (int i = 0; i < PERLIN_SIZE + 1; i++) {
-        perlin[i] = perlinRandom.nextFloat(); //(float)Math.random();
-      }
-      // [toxi 031112]
-      // noise broke due to recent change of cos table in PGraphics
-      // this will take care of it
-      perlin_cosTable = PGraphics.cosLUT;
-      perlin_TWOPI = perlin_PI = PGraphics.SINCOS_LENGTH;
-      perlin_PI >>= 1;
-    }
-
-    if (x<0) x=-x;
-    if (y<0) y=-y;
-    if (z<0) z=-z;
-
-    int xi=(int)x, yi=(int)y, zi=(int)z;
-    float xf = x - xi;
-    float yf = y - yi;
-    float zf = z - zi;
-    float rxf, ryf;
-
-    float r=0;
-    float ampl=0.5f;
-
-    float n1,n2,n3;
-
-    for (int i=0; i<perlin_octaves; i++) {
-      int of=xi+(yi<<PERLIN_YWRAPB)+(zi<<PERLIN_ZWRAPB);
-
-      rxf=noise_fsc(xf);
-      ryf=noise_fsc(yf);
-
-      n1  = perlin[of&PERLIN_SIZE];
-      n1 += rxf*(perlin[(of+1)&PERLIN_SIZE]-n1);
-      n2  = perlin[(of+PERLIN_YWRAP)&PERLIN_SIZE];
-      n2 += rxf*(perlin[(of+PERLIN_YWRAP+1)&PERLIN_SIZE]-n2);
-      n1 += ryf*(n2-n1);
+    return getNoise().noise(x, y, z);
+  }
 
-      of += PERLIN_ZWRAP;
-      n2  = perlin[of&PERLIN_SIZE];
-      n2 += rxf*(perlin[(of+1)&PERLIN_SIZE]-n2);
-      n3  = perlin[(of+PERLIN_YWRAP)&PERLIN_SIZE];
-      n3 += rxf*(perlin[(of+PERLIN_YWRAP+1)&PERLIN_SIZE]-n3);
-      n2 += ryf*(n3-n2);
 
-      n1 += noise_fsc(zf)*(n2-n1);
+  /**
+   * The noise behind noise(), with the current seed and detail. The PNoise
+   * doesn't change afterwards, so it can be used from other threads.
+   */
+  public PNoise getNoise() {
+    PNoise noise = perlinNoise;
+    if (noise == null) {
+      noise = createNoise();
+    }
+    return noise;
+  }
 
-      r += n1*ampl;
-      ampl *= perlin_amp_falloff;
-      xi<<=1; xf*=2;
-      yi<<=1; yf*=2;
-      zi<<=1; zf*=2;
 
-      if (xf>=1.0f) { xi++; xf--; }
-      if (yf>=1.0f) { yi++; yf--; }
-      if (zf>=1.0f) { zi++; zf--; }
+  private PNoise createNoise() {
+    synchronized (perlinLock) {
+      if (perlinNoise == null) {
+        if (perlinRandom == null) {
+          perlinRandom = new Random();
+        }
+        perlinNoise =
+          new PNoise(perlinRandom).detail(perlin_octaves, perlin_amp_falloff);
+      }
+      return perlinNoise;
     }
-    return r;
   }
 
-  // [toxi 031112]
-  // now adjusts to the size of the cosLUT used via
-  // the new variables, defined above
-  private float noise_fsc(float i) {
-    // using bagel's cosine table instead
-    return 0.5f*(1.0f-perlin_cosTable[(int)(i*perlin_PI)%perlin_TWOPI]);
+
+  /**
+   * Fill out with a w by h grid of noise values, one row after another,
+   * much faster than calling noise() for each. The value at column i and
+   * row j is the same as noise(x0 + i*step, y0 + j*step, z).
+   *
+   * @param out array of at least w * h values
+   * @param step distance in noise space between neighboring values
+   * @see PNoise#noiseGrid(float[], int, int, float, float, float, float, float)
+   */
+  public void noiseGrid(float[] out, int w, int h,
+                        float x0, float y0, float step, float z) {
+    getNoise().noiseGrid(out, w, h, x0, y0, step, z);
   }
 
+
   // [toxi 040903]
   // make perlin noise quality user controlled to allow
   // for different levels of detail. lower values will produce
@@ -5398,6 +5458,7 @@ public class PApplet implements PConstants {
    */
   public void noiseDetail(int lod) {
     if (lod>0) perlin_octaves=lod;
+    updateNoiseDetail();
   }
 
   /**
@@ -5407,6 +5468,17 @@ public class PApplet implements PConstants {
   public void noiseDetail(int lod, float falloff) {
     if (lod>0) perlin_octaves=lod;
     if (falloff>0) perlin_amp_falloff=falloff;
+    updateNoiseDetail();
+  }
+
+
+  private void updateNoiseDetail() {
+    synchronized (perlinLock) {
+      if (perlinNoise != null) {
+        // same table, so the noise doesn't change other than its detail
+        perlinNoise = perlinNoise.detail(perlin_octaves, perlin_amp_falloff);
+      }
+    }
   }
 
   /**
@@ -5426,10 +5498,12 @@ public class PApplet implements PConstants {
    * @see PApplet#randomSeed(long)
    */
   public void noiseSeed(long seed) {
-    if (perlinRandom == null) perlinRandom = new Random();
-    perlinRandom.setSeed(seed);
-    // force table reset after changing the random number seed [0122]
-    perlin = null;
+    synchronized (perlinLock) {
+      if (perlinRandom == null) perlinRandom = new Random();
+      perlinRandom.setSeed(seed);
+      // force table reset after changing the random number seed [0122]
+      perlinNoise = null;
+    }
   }
 
 
@@ -5510,6 +5584,29 @@ public class PApplet implements PConstants {
       g.awaitAsyncSaveCompletion(filename);
     }
 
+    PImageCache cache = imageCache;
+    if (cache != null) {
+      File file = imageCacheFile(filename);
+      String key = imageCacheKey(file, filename, extension);
+      long modified = (file == null) ? 0 : file.lastModified();
+      PImage image = cache.get(key, modified);
+      if (image == null) {
+        image = decodeImage(filename, extension);
+        if (image != null) {
+          image = cache.put(key, modified, image);
+        }
+      }
+      return image;
+    }
+    return decodeImage(filename, extension);
+  }
+
+
+  /**
+   * The part of loadImage() that reads and decodes the file,
+   * without going through the image cache.
+   */
+  protected PImage decodeImage(String filename, String extension) {
     if (extension == null) {
       String lower = filename.toLowerCase();
       int dot = filename.lastIndexOf('.');
@@ -5634,9 +5731,97 @@ public class PApplet implements PConstants {
   }
 
 
+  /** Decoded images for loadImage(), null unless turned on with imageCache() */
+  protected volatile PImageCache imageCache;
+
+
+  /**
+   * Keep the images decoded by loadImage() and requestImage() in memory,
+   * so loading the same file again is just a copy. Images are dropped,
+   * least recently used first, once their pixels take more than maxBytes.
+   * Use 0 to turn the cache off again. Returns the cache, which can be
+   * asked for its number of hits() and misses().
+   *
+   * @param maxBytes memory budget for the cached images, in bytes
+   */
+  public PImageCache imageCache(long maxBytes) {
+    return imageCache(maxBytes, false);
+  }
+
+
+  /**
+   * @param shared return the cached PImage itself rather than a copy;
+   *               faster, but changes to it show up everywhere it's used
+   */
+  public PImageCache imageCache(long maxBytes, boolean shared) {
+    if (maxBytes <= 0) {
+      imageCache = null;
+    } else if (imageCache == null || imageCache.shared != shared) {
+      imageCache = new PImageCache(maxBytes, shared);
+    } else {
+      imageCache.maxBytes(maxBytes);
+    }
+    return imageCache;
+  }
+
+
+  /**
+   * The local file that loadImage() would read, or null for URLs and
+   * anything else that isn't a file. Same order as createInputRaw().
+   */
+  private File imageCacheFile(String filename) {
+    try {
+      File file = new File(dataPath(filename));
+      if (!file.exists()) {
+        file = sketchFile(filename);
+      }
+      if (file.isFile()) {
+        return file;
+      }
+    } catch (SecurityException se) { }  // not a file we can use
+    return null;
+  }
+
+
+  static private String imageCacheKey(File file, String filename, String extension) {
+    String key = (file == null) ? filename : file.getAbsolutePath();
+    return (extension == null) ? key : key + "#" + extension;
+  }
+
+
   static private final String REQUEST_IMAGE_THREAD_PREFIX = "requestImage";
-  // fixed-size thread pool used by requestImage()
-  ExecutorService requestImagePool;
+  // thread pool used by requestImage(), sorted by priority
+  ThreadPoolExecutor requestImagePool;
+  int requestImageThreads = 4;
+
+  // finished requests whose callbacks should run after the next draw()
+  private final Queue<PImageRequest> imageRequestQueue =
+    new ConcurrentLinkedQueue<>();
+
+
+  /**
+   * Set the number of threads used to load images for requestImage() and
+   * requestImageAsync(). The default is 4. Loading from disk works best
+   * with about as many threads as cores, loading from a server with more.
+   */
+  public void requestImageThreads(int count) {
+    if (count < 1) {
+      throw new IllegalArgumentException("requestImageThreads() needs at least one thread");
+    }
+    synchronized (imageRequestQueue) {
+      if (requestImagePool != null) {
+        // keep core <= max at every step
+        if (count > requestImagePool.getMaximumPoolSize()) {
+          requestImagePool.setMaximumPoolSize(count);
+          requestImagePool.setCorePoolSize(count);
+        } else {
+          requestImagePool.setCorePoolSize(count);
+          requestImagePool.setMaximumPoolSize(count);
+        }
+      }
+      requestImageThreads = count;
+    }
+  }
 
 
   public PImage requestImage(String filename) {
@@ -5667,42 +5852,101 @@ public class PApplet implements PConstants {
    * @see PApplet#loadImage(String, String)
    */
   public PImage requestImage(String filename, String extension) {
+    return requestImageAsync(filename, extension).image();
+  }
+
+
+  public PImageRequest requestImageAsync(String filename) {
+    return requestImageAsync(filename, null);
+  }
+
+
+  /**
+   * Like requestImage(), but returns a PImageRequest to keep track of the
+   * image while it loads. Use its image() method to get the PImage, which
+   * has a width and height of 0 until it's ready. The request can be
+   * cancelled if the image is no longer needed, given a priority so that
+   * images needed sooner are loaded first, and given a callback with
+   * onLoad() that runs after draw() once the image is done.
+   *
+   * @param filename name of the file to load
+   * @param extension the type of image to load, for example "png"
+   * @see PApplet#requestImage(String, String)
+   */
+  public PImageRequest requestImageAsync(String filename, String extension) {
     // Make sure saving to this file completes before trying to load it
     // Has to be called on main thread, because P2D and P3D need GL functions
     if (g != null) {
       g.awaitAsyncSaveCompletion(filename);
     }
-    PImage vessel = createImage(0, 0, ARGB);
 
-    // if the image loading thread pool hasn't been created, create it
-    if (requestImagePool == null) {
-      ThreadFactory factory = new ThreadFactory() {
-        public Thread newThread(Runnable r) {
-          return new Thread(r, REQUEST_IMAGE_THREAD_PREFIX);
-        }
-      };
-      requestImagePool = Executors.newFixedThreadPool(4, factory);
+    PImage vessel = createImage(0, 0, ARGB);
+    PImageRequest request =
+      new PImageRequest(this, filename, extension, vessel);
+
+    // no need for another thread when the image has already been decoded
+    PImageCache cache = imageCache;
+    if (cache != null) {
+      File file = imageCacheFile(filename);
+      PImage image = cache.get(imageCacheKey(file, filename, extension),
+                               (file == null) ? 0 : file.lastModified());
+      if (image != null) {
+        request.finish(image);
+        return request;
+      }
     }
-    requestImagePool.execute(() -> {
-      PImage actual = loadImage(filename, extension);
 
-      // An error message should have already printed
-      if (actual == null) {
-        vessel.width = -1;
-        vessel.height = -1;
+    request.submit(requestImagePool());
+    return request;
+  }
 
-      } else {
-        vessel.width = actual.width;
-        vessel.height = actual.height;
-        vessel.format = actual.format;
-        vessel.pixels = actual.pixels;
 
-        vessel.pixelWidth = actual.width;
-        vessel.pixelHeight = actual.height;
-        vessel.pixelDensity = 1;
+  ThreadPoolExecutor requestImagePool() {
+    synchronized (imageRequestQueue) {
+      // if the image loading thread pool hasn't been created, create it
+      if (requestImagePool == null) {
+        ThreadFactory factory = new ThreadFactory() {
+          public Thread newThread(Runnable r) {
+            return new Thread(r, REQUEST_IMAGE_THREAD_PREFIX);
+          }
+        };
+        // only PImageRequest objects go in here, so they can be sorted
+        requestImagePool =
+          new ThreadPoolExecutor(requestImageThreads, requestImageThreads,
+                                 0L, TimeUnit.MILLISECONDS,
+                                 new PriorityBlockingQueue<Runnable>(), factory);
       }
-    });
-    return vessel;
+      return requestImagePool;
+    }
+  }
+
+
+  /**
+   * Queue a finished request so its callback runs on the animation thread.
+   * Follow with runImageRequests() once the request is settled.
+   */
+  void postImageRequest(PImageRequest request) {
+    imageRequestQueue.add(request);
+  }
+
+
+  /**
+   * Make sure the queued callbacks get run. They're only ever run on the
+   * animation thread, so if the sketch is not currently looping, ask for
+   * a redraw() to have draw() come along and run them.
+   */
+  void runImageRequests() {
+    if (!looping) {
+      redraw();
+    }
+  }
+
+
+  protected void dequeueImageRequests() {
+    PImageRequest request;
+    while ((request = imageRequestQueue.poll()) != null) {
+      request.deliver();
+    }
   }
 
 
@@ -9076,13 +9320,21 @@ public class PApplet implements PConstants {
     if (array == null) {
       return null;
     }
-    String[] outgoing = new String[array.length];
+    return trim(array, new String[array.length]);
+  }
+
+
+  /**
+   * Trim each String in the array, writing the results to out, which can
+   * be the same array to trim in place.
+   * @param out array for the results, at least as long as array
+   * @return out
+   */
+  static public String[] trim(String[] array, String[] out) {
     for (int i = 0; i < array.length; i++) {
-      if (array[i] != null) {
-        outgoing[i] = trim(array[i]);
-      }
+      out[i] = trim(array[i]);
     }
-    return outgoing;
+    return out;
   }
 
 
@@ -9145,12 +9397,79 @@ public class PApplet implements PConstants {
    * @see PApplet#trim(String)
    */
   static public String[] splitTokens(String value, String delim) {
-    StringTokenizer toker = new StringTokenizer(value, delim);
-    String pieces[] = new String[toker.countTokens()];
+    return substrings(value, splitTokenRanges(value, delim, new IntList()));
+  }
+
 
-    int index = 0;
-    while (toker.hasMoreTokens()) {
-      pieces[index++] = toker.nextToken();
+  /**
+   * Same as splitTokens(), but the pieces are added to a list (after
+   * clearing it) instead of a new array, so the list can be used again
+   * for each line that's read.
+   * @param out list for the pieces, or null to create a new one
+   * @return out, or the new list
+   */
+  static public StringList splitTokens(CharSequence value, String delim,
+                                       StringList out) {
+    if (out == null) {
+      out = new StringList();
+    } else {
+      out.clear();
+    }
+    int start = -1;
+    int length = value.length();
+    for (int i = 0; i <= length; i++) {
+      if (i == length || delim.indexOf(value.charAt(i)) != -1) {
+        if (start != -1) {
+          out.append(value.subSequence(start, i).toString());
+          start = -1;
+        }
+      } else if (start == -1) {
+        start = i;
+      }
+    }
+    return out;
+  }
+
+
+  /**
+   * Like splitTokens(), but instead of making a String for each piece,
+   * adds where it starts and ends to the list (after clearing it): the
+   * start of the first piece, the end of the first piece, the start of
+   * the second, and so on. Use parseInt() and parseFloat() with the start
+   * and end to read numbers without creating any objects.
+   * @param out list for the start and end of each piece, or null to
+   *   create a new one
+   * @return out, or the new list
+   */
+  static public IntList splitTokenRanges(CharSequence value, String delim,
+                                         IntList out) {
+    if (out == null) {
+      out = new IntList();
+    } else {
+      out.clear();
+    }
+    int start = -1;
+    int length = value.length();
+    for (int i = 0; i <= length; i++) {
+      if (i == length || delim.indexOf(value.charAt(i)) != -1) {
+        if (start != -1) {
+          out.append(start);
+          out.append(i);
+          start = -1;
+        }
+      } else if (start == -1) {
+        start = i;
+      }
+    }
+    return out;
+  }
+
+
+  /** The pieces of value for each start and end in the list. */
+  static private String[] substrings(String value, IntList ranges) {
+    String[] pieces = new String[ranges.size() / 2];
+    for (int i = 0; i < pieces.length; i++) {
+      pieces[i] = value.substring(ranges.get(i*2), ranges.get(i*2 + 1));
     }
     return pieces;
   }
@@ -9194,40 +9513,73 @@ public class PApplet implements PConstants {
     // do this so that the exception occurs inside the user's
     // program, rather than appearing to be a bug inside split()
     if (value == null) return null;
-    //return split(what, String.valueOf(delim));  // huh
-
-    char chars[] = value.toCharArray();
-    int splitCount = 0; //1;
-    for (int i = 0; i < chars.length; i++) {
-      if (chars[i] == delim) splitCount++;
-    }
-    // make sure that there is something in the input string
-    //if (chars.length > 0) {
-      // if the last char is a delimeter, get rid of it..
-      //if (chars[chars.length-1] == delim) splitCount--;
-      // on second thought, i don't agree with this, will disable
-    //}
-    if (splitCount == 0) {
-      String splits[] = new String[1];
-      splits[0] = value;
-      return splits;
-    }
-    //int pieceCount = splitCount + 1;
-    String splits[] = new String[splitCount + 1];
-    int splitIndex = 0;
-    int startIndex = 0;
-    for (int i = 0; i < chars.length; i++) {
-      if (chars[i] == delim) {
-        splits[splitIndex++] =
-          new String(chars, startIndex, i-startIndex);
-        startIndex = i + 1;
-      }
-    }
-    //if (startIndex != chars.length) {
-      splits[splitIndex] =
-        new String(chars, startIndex, chars.length-startIndex);
-    //}
-    return splits;
+
+    return substrings(value, splitRanges(value, delim, new IntList()));
+  }
+
+
+  /**
+   * Same as split(), but the pieces are added to a list (after clearing
+   * it) instead of a new array, so the list can be used again for each
+   * line that's read.
+   * @param out list for the pieces, or null to create a new one
+   * @return out, or the new list
+   */
+  static public StringList split(CharSequence value, char delim,
+                                 StringList out) {
+    if (out == null) {
+      out = new StringList();
+    } else {
+      out.clear();
+    }
+    int start = 0;
+    int length = value.length();
+    for (int i = 0; i < length; i++) {
+      if (value.charAt(i) == delim) {
+        out.append(value.subSequence(start, i).toString());
+        start = i + 1;
+      }
+    }
+    out.append(value.subSequence(start, length).toString());
+    return out;
+  }
+
+
+  /**
+   * Like split(), but instead of making a String for each piece, adds
+   * where it starts and ends to the list (after clearing it), the same
+   * way as splitTokenRanges().
+   * <pre>
+   * IntList ranges = new IntList();
+   * ...
+   * splitRanges(line, ',', ranges);
+   * for (int i = 0; i < ranges.size(); i += 2) {
+   *   total += parseFloat(line, ranges.get(i), ranges.get(i+1), 0);
+   * }
+   * </pre>
+   * @param out list for the start and end of each piece, or null to
+   *   create a new one
+   * @return out, or the new list
+   */
+  static public IntList splitRanges(CharSequence value, char delim,
+                                    IntList out) {
+    if (out == null) {
+      out = new IntList();
+    } else {
+      out.clear();
+    }
+    int start = 0;
+    int length = value.length();
+    for (int i = 0; i < length; i++) {
+      if (value.charAt(i) == delim) {
+        out.append(start);
+        out.append(i);
+        start = i + 1;
+      }
+    }
+    out.append(start);
+    out.append(length);
+    return out;
   }
 
 
@@ -9663,15 +10015,73 @@ public class PApplet implements PConstants {
    * should be used when the number is invalid.
    */
   static final public int parseInt(String what, int otherwise) {
-    try {
-      int offset = what.indexOf('.');
-      if (offset == -1) {
-        return Integer.parseInt(what);
-      } else {
-        return Integer.parseInt(what.substring(0, offset));
+    return parseInt(what, 0, what.length(), otherwise);
+  }
+
+  /**
+   * Parse the characters from start up to end as an int, without creating
+   * a String for them. Returns 0 if the value is bad.
+   */
+  static final public int parseInt(CharSequence what, int start, int end) {
+    return parseInt(what, start, end, 0);
+  }
+
+  /**
+   * Same as parseInt(String, int) for the characters from start up to
+   * end: anything after a decimal point is dropped, and otherwise is
+   * returned if the rest isn't a whole number that fits in an int.
+   */
+  static final public int parseInt(CharSequence what, int start, int end,
+                                   int otherwise) {
+    for (int i = start; i < end; i++) {
+      if (what.charAt(i) == '.') {
+        end = i;
+        break;
       }
-    } catch (NumberFormatException e) { }
-    return otherwise;
+    }
+    return parseIntDigits(what, start, end, otherwise);
+  }
+
+  /**
+   * The same rules as Integer.parseInt(), but reading straight from the
+   * characters, and with no exception for bad values.
+   */
+  static private int parseIntDigits(CharSequence what, int start, int end,
+                                    int otherwise) {
+    if (start >= end) {
+      return otherwise;
+    }
+    int i = start;
+    boolean negative = false;
+    // the result is added up as a negative number, since that has the
+    // larger range
+    int limit = -Integer.MAX_VALUE;
+    char first = what.charAt(i);
+    if (first < '0') {
+      if (first == '-') {
+        negative = true;
+        limit = Integer.MIN_VALUE;
+      } else if (first != '+') {
+        return otherwise;
+      }
+      if (++i == end) {
+        return otherwise;
+      }
+    }
+    int multmin = limit / 10;
+    int result = 0;
+    while (i < end) {
+      int digit = Character.digit(what.charAt(i++), 10);
+      if (digit < 0 || result < multmin) {
+        return otherwise;
+      }
+      result *= 10;
+      if (result < limit + digit) {
+        return otherwise;
+      }
+      result -= digit;
+    }
+    return negative ? result : -result;
   }
 
   // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
@@ -9734,11 +10144,9 @@ public class PApplet implements PConstants {
   static public int[] parseInt(String what[], int missing) {
     int output[] = new int[what.length];
     for (int i = 0; i < what.length; i++) {
-      try {
-        output[i] = Integer.parseInt(what[i]);
-      } catch (NumberFormatException e) {
-        output[i] = missing;
-      }
+      // unlike parseInt(String), values with a decimal point are missing
+      output[i] = (what[i] == null) ? missing :
+        parseIntDigits(what[i], 0, what[i].length(), missing);
     }
     return output;
   }
@@ -9764,13 +10172,124 @@ public class PApplet implements PConstants {
   }
 
   static final public float parseFloat(String what, float otherwise) {
+    return parseFloat(what, 0, what.length(), otherwise);
+  }
+
+  /**
+   * Parse the characters from start up to end as a float, without
+   * creating a String for them. Returns NaN if the value is bad.
+   */
+  static final public float parseFloat(CharSequence what, int start, int end) {
+    return parseFloat(what, start, end, Float.NaN);
+  }
+
+  /**
+   * Same as parseFloat(String, float) for the characters from start up to
+   * end, and with the same result down to the last bit. Plain decimal
+   * numbers (like 12.5, -0.003, or 6.02e23) are read directly from the
+   * characters. Anything else, like very long numbers, hexadecimal, or
+   * NaN, goes to Float.parseFloat().
+   */
+  static final public float parseFloat(CharSequence what, int start, int end,
+                                       float otherwise) {
+    // whitespace is ignored at either end, as with String.trim()
+    while (start < end && what.charAt(start) <= ' ') start++;
+    while (end > start && what.charAt(end - 1) <= ' ') end--;
+    if (start == end) {
+      return otherwise;
+    }
+
+    int i = start;
+    boolean negative = false;
+    char c = what.charAt(i);
+    if (c == '-' || c == '+') {
+      negative = (c == '-');
+      i++;
+    }
+    long mantissa = 0;
+    int digits = 0;  // significant digits in the mantissa
+    int exponent = 0;
+    boolean anyDigits = false;
+    boolean point = false;
+    for (; i < end; i++) {
+      c = what.charAt(i);
+      if (c >= '0' && c <= '9') {
+        anyDigits = true;
+        if (mantissa != 0 || c != '0') {
+          if (++digits > 18) break;  // too long to add up in a long
+          mantissa = mantissa*10 + (c - '0');
+        }
+        if (point) exponent--;
+      } else if (c == '.' && !point) {
+        point = true;
+      } else {
+        break;
+      }
+    }
+    if (i < end && anyDigits && digits <= 18 && (c == 'e' || c == 'E')) {
+      int stop = findExponentEnd(what, i + 1, end);
+      int e = parseIntDigits(what, i + 1, stop, Integer.MIN_VALUE);
+      if (e != Integer.MIN_VALUE) {
+        // otherwise i stays put, and parseFloat() sorts it out below
+        exponent += e;
+        i = stop;
+      }
+    }
+    if (i < end && anyDigits && digits <= 18) {
+      // a type suffix, the same as Java source code
+      c = what.charAt(i);
+      if (c == 'f' || c == 'F' || c == 'd' || c == 'D') i++;
+    }
+
+    if (i == end && anyDigits && digits <= 18) {
+      float value = fastFloat(mantissa, exponent);
+      if (value == value) {  // not NaN, which means it couldn't be done
+        return negative ? -value : value;
+      }
+    }
     try {
-      return Float.parseFloat(what);
+      return Float.parseFloat(what.subSequence(start, end).toString());
     } catch (NumberFormatException e) { }
-
     return otherwise;
   }
 
+  /** The end of the digits (and sign) of an exponent. */
+  static private int findExponentEnd(CharSequence what, int i, int end) {
+    if (i < end && (what.charAt(i) == '-' || what.charAt(i) == '+')) i++;
+    while (i < end && what.charAt(i) >= '0' && what.charAt(i) <= '9') i++;
+    return i;
+  }
+
+  static private final double[] POWERS_OF_TEN = {
+    1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+    1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+  };
+
+  /**
+   * mantissa * 10^exponent as a float, rounded the same way as
+   * Float.parseFloat(), or NaN when that can't be done quickly.
+   */
+  static private float fastFloat(long mantissa, int exponent) {
+    if (mantissa == 0) {
+      return 0;
+    }
+    // both are exact as doubles, so a single multiply or divide gives the
+    // double closest to the real value
+    if (mantissa >= (1L << 53) || exponent < -22 || exponent > 22) {
+      return Float.NaN;
+    }
+    double d = (exponent < 0) ?
+      mantissa / POWERS_OF_TEN[-exponent] : mantissa * POWERS_OF_TEN[exponent];
+    // Rounding that double to a float gives the same float as rounding the
+    // real value, unless the double landed exactly halfway between two
+    // floats. Very large and very small values are left to parseFloat().
+    if (d < Float.MIN_NORMAL || d > Float.MAX_VALUE ||
+        (Double.doubleToRawLongBits(d) & 0x1FFFFFFFL) == 0x10000000L) {
+      return Float.NaN;
+    }
+    return (float) d;
+  }
+
   // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
 
   /*
@@ -9814,11 +10333,7 @@ public class PApplet implements PConstants {
   static final public float[] parseFloat(String what[], float missing) {
     float output[] = new float[what.length];
     for (int i = 0; i < what.length; i++) {
-      try {
-        output[i] = Float.parseFloat(what[i]);
-      } catch (NumberFormatException e) {
-        output[i] = missing;
-      }
+      output[i] = parseFloat(what[i], 0, what[i].length(), missing);
     }
     return output;
   }
@@ -12035,6 +12550,33 @@ public class PApplet implements PConstants {
   }
 
 
+  /**
+   * Draws a point at each vector in the list, the same as point() for
+   * each, but as a single shape. With a 2D renderer, z is ignored.
+   *
+   * @param points the positions of the points
+   * @see PGraphics#point(float, float)
+   */
+  public void points(PVectorArray points) {
+    if (recorder != null) recorder.points(points);
+    g.points(points);
+  }
+
+
+  /**
+   * Draws a line between each pair of vectors in the list: from the first
+   * to the second, the third to the fourth, and so on. If the list has an
+   * odd number of vectors, the last one is left out.
+   *
+   * @param lines the end points of the lines
+   * @see PGraphics#line(float, float, float, float)
+   */
+  public void lines(PVectorArray lines) {
+    if (recorder != null) recorder.lines(lines);
+    g.lines(lines);
+  }
+
+
   /**
    * ( begin auto-generated from triangle.xml )
    *
@@ -14253,6 +14795,36 @@ public class PApplet implements PConstants {
   }
 
 
+  /**
+   * Screen positions for many 2D points at once, the same as screenX(x, y)
+   * and screenY(x, y) for each, but without a call per point.
+   *
+   * @param xy x and y of each point, one after another
+   * @param out array for the screen x and y of each point, or null to
+   *   create a new one (can be the same array as xy)
+   * @return out, or the new array
+   */
+  public float[] screenXY(float[] xy, float[] out) {
+    return g.screenXY(xy, out);
+  }
+
+
+  /**
+   * Screen positions for many 3D points at once, the same as screenX(),
+   * screenY(), and screenZ() with x, y, z for each. Renderers with a
+   * perspective multiply by a single combined matrix, so the results may
+   * differ from screenX() and the others in the last bits.
+   *
+   * @param xyz x, y, and z of each point, one after another
+   * @param out array for the screen x, y, and z of each point, or null to
+   *   create a new one (can be the same array as xyz)
+   * @return out, or the new array
+   */
+  public float[] screenXYZ(float[] xyz, float[] out) {
+    return g.screenXYZ(xyz, out);
+  }
+
+
   /**
    * ( begin auto-generated from modelX.xml )
    *
@@ -15810,6 +16382,9 @@ public class PApplet implements PConstants {
    * extent of the blurring. If no level parameter is used, the blur is
    * equivalent to Guassian blur of radius 1<br />
    * <br />
+   * FAST_BLUR - similar to BLUR, but takes the same time for any level,
+   * so it's much faster for large amounts of blurring<br />
+   * <br />
    * OPAQUE - sets the alpha channel to entirely opaque<br />
    * <br />
    * ERODE - reduces the light areas with the amount defined by the level
@@ -15824,6 +16399,8 @@ public class PApplet implements PConstants {
    * <P>
    * <UL>
    * <LI>filter(BLUR) provides a basic blur.
+   * <LI>filter(FAST_BLUR) approximates BLUR with three box blurs, with a cost
+   * that doesn't depend on the radius.
    * <LI>filter(GRAY) converts the image to grayscale based on luminance.
    * <LI>filter(INVERT) will invert the color components in the image.
    * <LI>filter(OPAQUE) set all the high bits in the image to opaque
@@ -15840,7 +16417,7 @@ public class PApplet implements PConstants {
    * @webref image:pixels
    * @brief Converts the image to grayscale or black and white
    * @usage web_application
-   * @param kind Either THRESHOLD, GRAY, OPAQUE, INVERT, POSTERIZE, BLUR, ERODE, or DILATE
+   * @param kind Either THRESHOLD, GRAY, OPAQUE, INVERT, POSTERIZE, BLUR, FAST_BLUR, ERODE, or DILATE
    * @param param unique for each, see above
    */
   public void filter(int kind, float param) {
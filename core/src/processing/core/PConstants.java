@@ -229,6 +229,7 @@ public interface PConstants {
   static final int HSB   = 3;  // color
   static final int ALPHA = 4;  // image
 //  static final int CMYK  = 5;  // image & color (someday)
+  static final int GRAY8 = 6;  // image, one byte per pixel
 
 
   // image file types
@@ -249,6 +250,16 @@ public interface PConstants {
   static final int THRESHOLD = 16;
   static final int ERODE     = 17;
   static final int DILATE    = 18;
+  static final int FAST_BLUR = 19;
+
+
+  // resize() filters, named so they can't be mistaken for the texture
+  // sampling modes (Texture.BILINEAR and so on)
+
+  static final int RESIZE_NEAREST  = 0;
+  static final int RESIZE_BILINEAR = 1;
+  static final int RESIZE_AREA     = 2;
+  static final int RESIZE_LANCZOS  = 3;
 
 
   // blend mode keyword definitions
@@ -523,5 +534,8 @@ public interface PConstants {
   static final int DISABLE_ASYNC_SAVEFRAME    =  12;
   static final int ENABLE_ASYNC_SAVEFRAME     = -12;
 
-  static final int HINT_COUNT                 =  13;
+  static final int DISABLE_SHARED_PIXELS      =  13;
+  static final int ENABLE_SHARED_PIXELS       = -13;
+
+  static final int HINT_COUNT                 =  14;
 }
@@ -503,7 +503,7 @@ public class PGraphics extends PImage implements PConstants {
   static final protected String ERROR_BACKGROUND_IMAGE_SIZE =
     "background image must be the same size as your application";
   static final protected String ERROR_BACKGROUND_IMAGE_FORMAT =
-    "background images should be RGB or ARGB";
+    "background images should be RGB, ARGB or GRAY8";
 
 
   /** The current blending mode. */
@@ -2472,6 +2472,47 @@ public class PGraphics extends PImage implements PConstants {
     endShape();
   }
 
+  /**
+   * Draws a point at each vector in the list, the same as point() for
+   * each, but as a single shape. With a 2D renderer, z is ignored.
+   *
+   * @param points the positions of the points
+   * @see PGraphics#point(float, float)
+   */
+  public void points(PVectorArray points) {
+    beginShape(POINTS);
+    shapeVertices(points);
+    endShape();
+  }
+
+  /**
+   * Draws a line between each pair of vectors in the list: from the first
+   * to the second, the third to the fourth, and so on. If the list has an
+   * odd number of vectors, the last one is left out.
+   *
+   * @param lines the end points of the lines
+   * @see PGraphics#line(float, float, float, float)
+   */
+  public void lines(PVectorArray lines) {
+    beginShape(LINES);
+    shapeVertices(lines);
+    endShape();
+  }
+
+  protected void shapeVertices(PVectorArray list) {
+    int count = list.size();
+    float[] x = list.x, y = list.y, z = list.z;
+    if (is3D()) {
+      for (int i = 0; i < count; i++) {
+        vertex(x[i], y[i], z[i]);
+      }
+    } else {
+      for (int i = 0; i < count; i++) {
+        vertex(x[i], y[i]);
+      }
+    }
+  }
+
   /**
    * ( begin auto-generated from triangle.xml )
    *
@@ -3814,16 +3855,16 @@ public class PGraphics extends PImage implements PConstants {
     if (img.width == -1 || img.height == -1) return;
 
     if (imageMode == CORNER || imageMode == CORNERS) {
-      imageImpl(img,
-                a, b, a+img.width, b+img.height,
-                0, 0, img.width, img.height);
+      imageRegion(img,
+                  a, b, a+img.width, b+img.height,
+                  0, 0, img.width, img.height);
 
     } else if (imageMode == CENTER) {
       float x1 = a - img.width/2;
       float y1 = b - img.height/2;
-      imageImpl(img,
-                x1, y1, x1+img.width, y1+img.height,
-                0, 0, img.width, img.height);
+      imageRegion(img,
+                  x1, y1, x1+img.width, y1+img.height,
+                  0, 0, img.width, img.height);
     }
   }
 
@@ -3858,9 +3899,9 @@ public class PGraphics extends PImage implements PConstants {
         b += d; d = -d;
       }
 
-      imageImpl(img,
-                a, b, a + c, b + d,
-                u1, v1, u2, v2);
+      imageRegion(img,
+                  a, b, a + c, b + d,
+                  u1, v1, u2, v2);
 
     } else if (imageMode == CORNERS) {
       if (c < a) {  // reverse because x2 < x1
@@ -3870,9 +3911,9 @@ public class PGraphics extends PImage implements PConstants {
         float temp = b; b = d; d = temp;
       }
 
-      imageImpl(img,
-                a, b, c, d,
-                u1, v1, u2, v2);
+      imageRegion(img,
+                  a, b, c, d,
+                  u1, v1, u2, v2);
 
     } else if (imageMode == CENTER) {
       // c and d are width/height
@@ -3881,9 +3922,24 @@ public class PGraphics extends PImage implements PConstants {
       float x1 = a - c/2;
       float y1 = b - d/2;
 
-      imageImpl(img,
-                x1, y1, x1 + c, y1 + d,
-                u1, v1, u2, v2);
+      imageRegion(img,
+                  x1, y1, x1 + c, y1 + d,
+                  u1, v1, u2, v2);
+    }
+  }
+
+
+  /**
+   * A PTiledImage has no pixels[] array of its own, so it draws the
+   * tiles in the region one by one. Everything else goes to imageImpl().
+   */
+  private void imageRegion(PImage img,
+                           float x1, float y1, float x2, float y2,
+                           int u1, int v1, int u2, int v2) {
+    if (img instanceof PTiledImage) {
+      ((PTiledImage) img).drawTiles(this, x1, y1, x2, y2, u1, v1, u2, v2);
+    } else {
+      imageImpl(img, x1, y1, x2, y2, u1, v1, u2, v2);
     }
   }
 
@@ -6107,6 +6163,66 @@ public class PGraphics extends PImage implements PConstants {
   }
 
 
+  /**
+   * Screen positions for many 2D points at once, the same as screenX(x, y)
+   * and screenY(x, y) for each, but without a call per point.
+   *
+   * @param xy x and y of each point, one after another
+   * @param out array for the screen x and y of each point, or null to
+   *   create a new one (can be the same array as xy)
+   * @return out, or the new array
+   */
+  public float[] screenXY(float[] xy, float[] out) {
+    if (out == null) {
+      out = new float[xy.length];
+    }
+    int count = checkScreenArrays(xy, out, 2);
+    for (int i = 0; i < count*2; i += 2) {
+      float x = xy[i], y = xy[i+1];
+      out[i] = screenX(x, y);
+      out[i+1] = screenY(x, y);
+    }
+    return out;
+  }
+
+
+  /**
+   * Screen positions for many 3D points at once, the same as screenX(),
+   * screenY(), and screenZ() with x, y, z for each. Renderers with a
+   * perspective multiply by a single combined matrix, so the results may
+   * differ from screenX() and the others in the last bits.
+   *
+   * @param xyz x, y, and z of each point, one after another
+   * @param out array for the screen x, y, and z of each point, or null to
+   *   create a new one (can be the same array as xyz)
+   * @return out, or the new array
+   */
+  public float[] screenXYZ(float[] xyz, float[] out) {
+    if (out == null) {
+      out = new float[xyz.length];
+    }
+    int count = checkScreenArrays(xyz, out, 3);
+    for (int i = 0; i < count*3; i += 3) {
+      float x = xyz[i], y = xyz[i+1], z = xyz[i+2];
+      out[i] = screenX(x, y, z);
+      out[i+1] = screenY(x, y, z);
+      out[i+2] = screenZ(x, y, z);
+    }
+    return out;
+  }
+
+
+  /** Returns the number of points, after checking that out is long enough. */
+  protected int checkScreenArrays(float[] points, float[] out, int size) {
+    int count = points.length / size;
+    if (out.length < count * size) {
+      throw new IllegalArgumentException("The output array needs room for " +
+                                         count * size + " values");
+    }
+    return count;
+  }
+
+
   /**
    * ( begin auto-generated from modelX.xml )
    *
@@ -7465,7 +7581,8 @@ public class PGraphics extends PImage implements PConstants {
     if ((image.pixelWidth != pixelWidth) || (image.pixelHeight != pixelHeight)) {
       throw new RuntimeException(ERROR_BACKGROUND_IMAGE_SIZE);
     }
-    if ((image.format != RGB) && (image.format != ARGB)) {
+    if ((image.format != RGB) && (image.format != ARGB) &&
+        (image.format != GRAY8)) {
       throw new RuntimeException(ERROR_BACKGROUND_IMAGE_FORMAT);
     }
     backgroundColor = 0;  // just zero it out for images
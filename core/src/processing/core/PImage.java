@@ -27,7 +27,10 @@ package processing.core;
 import java.awt.*;
 import java.awt.image.*;
 import java.io.*;
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import javax.imageio.*;
 import javax.imageio.metadata.*;
@@ -73,12 +76,20 @@ public class PImage implements PConstants, Cloneable {
   private static final String TIFF_ERROR = "Error: Processing can only read its own TIFF files.";
 
   /**
-   * Format for this image, one of RGB, ARGB or ALPHA.
+   * Format for this image, one of RGB, ARGB, ALPHA or GRAY8.
    * note that RGB images still require 0xff in the high byte
    * because of how they'll be manipulated by other functions
    */
   public int format;
 
+  /**
+   * Pixel data for GRAY8 images, one byte (0 to 255) per pixel, and null
+   * for the other formats. For a GRAY8 image, pixels[] is only a copy:
+   * loadPixels() fills it in from this array (and creates it if needed),
+   * and updatePixels() copies the brightness of each pixel back.
+   */
+  public byte[] bytePixels;
+
   /**
    * ( begin auto-generated from pixels.xml )
    *
@@ -156,13 +167,6 @@ public class PImage implements PConstants, Cloneable {
   // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
 
 
-  // private fields
-  private int fracU, ifU, fracV, ifV, u1, u2, v1, v2, sX, sY, iw, iw1, ih1;
-  private int ul, ll, ur, lr, cUL, cLL, cUR, cLR;
-  private int srcXOffset, srcYOffset;
-  private int r, g, b, a;
-  private int[] srcBuffer;
-
   // fixed point precision is limited to 15 bits!!
   static final int PRECISIONB = 15;
   static final int PRECISIONF = 1 << PRECISIONB;
@@ -176,6 +180,19 @@ public class PImage implements PConstants, Cloneable {
   private int[] blurKernel;
   private int[][] blurMult;
 
+  // scratch space for FAST_BLUR, kept so that it isn't allocated each frame
+  private int[] blurBuffer;
+
+  /**
+   * Filters on images with at least this many pixels are split into bands
+   * of rows that run on separate threads. The results are the same either
+   * way, this only avoids the overhead for smaller images.
+   */
+  static final int FILTER_PARALLEL_PIXELS = 256 * 256;
+
+  // pool used for the bands, package-private so that tests can replace it
+  static ForkJoinPool filterPool = ForkJoinPool.commonPool();
+
   // colour component bitmasks (moved from PConstants in 2.0b7)
   public static final int ALPHA_MASK = 0xff000000;
   public static final int RED_MASK   = 0x00ff0000;
@@ -239,7 +256,8 @@ public class PImage implements PConstants, Cloneable {
 
   /**
    * @nowebref
-   * @param format Either RGB, ARGB, ALPHA (grayscale alpha channel)
+   * @param format Either RGB, ARGB, ALPHA (grayscale alpha channel),
+   * or GRAY8 (grayscale, stored in bytePixels[])
    */
   public PImage(int width, int height, int format) {
     init(width, height, format, 1);
@@ -274,7 +292,14 @@ public class PImage implements PConstants, Cloneable {
 
     pixelWidth = width * pixelDensity;
     pixelHeight = height * pixelDensity;
-    this.pixels = new int[pixelWidth * pixelHeight];
+    if (format == GRAY8) {
+      // pixels[] is only created if loadPixels() is called
+      this.bytePixels = new byte[pixelWidth * pixelHeight];
+      this.pixels = null;
+    } else {
+      this.bytePixels = null;
+      this.pixels = new int[pixelWidth * pixelHeight];
+    }
   }
 
 
@@ -397,10 +422,34 @@ public class PImage implements PConstants, Cloneable {
   }
 
 
+  static private IndexColorModel grayPalette;
+
+
+  static private IndexColorModel grayColorModel() {
+    if (grayPalette == null) {
+      byte[] ramp = new byte[256];
+      for (int i = 0; i < 256; i++) {
+        ramp[i] = (byte) i;
+      }
+      grayPalette = new IndexColorModel(8, 256, ramp, ramp, ramp);
+    }
+    return grayPalette;
+  }
+
+
   /**
    * Returns a native BufferedImage from this PImage.
    */
   public Object getNative() {  // ignore
+    if (format == GRAY8) {
+      // An indexed image with a gray palette, because TYPE_BYTE_GRAY uses
+      // a linear color space, and getRGB() would return brighter values.
+      BufferedImage image =
+        new BufferedImage(pixelWidth, pixelHeight,
+                          BufferedImage.TYPE_BYTE_INDEXED, grayColorModel());
+      image.getRaster().setDataElements(0, 0, pixelWidth, pixelHeight, bytePixels);
+      return image;
+    }
     loadPixels();
     int type = (format == RGB) ?
       BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB;
@@ -484,6 +533,11 @@ public class PImage implements PConstants, Cloneable {
     if (pixels == null || pixels.length != pixelWidth*pixelHeight) {
       pixels = new int[pixelWidth*pixelHeight];
     }
+    if (format == GRAY8) {
+      for (int i = 0; i < pixels.length; i++) {
+        pixels[i] = grayColor(bytePixels[i]);
+      }
+    }
     setLoaded();
   }
 
@@ -528,6 +582,17 @@ public class PImage implements PConstants, Cloneable {
     int x2 = x + w;
     int y2 = y + h;
 
+    if (format == GRAY8 && pixels != null) {
+      if (bytePixels == null || bytePixels.length != pixels.length) {
+        // resized, so the whole image has to be copied back
+        bytePixels = new byte[pixels.length];
+        packGray(0, 0, pixelWidth, pixelHeight);
+      } else {
+        packGray(PApplet.max(0, x), PApplet.max(0, y),
+                 PApplet.min(pixelWidth, x2), PApplet.min(pixelHeight, y2));
+      }
+    }
+
     if (!modified) {
       mx1 = PApplet.max(0, x);
       mx2 = PApplet.min(pixelWidth, x2);
@@ -549,6 +614,32 @@ public class PImage implements PConstants, Cloneable {
   }
 
 
+  /** Opaque gray color for one of the values in bytePixels[]. */
+  static private int grayColor(byte value) {
+    return 0xff000000 | (value & 0xff) * 0x010101;
+  }
+
+
+  /**
+   * Luminance of a color, with the same weights as filter(GRAY):
+   * 0.30 * 256 = 77, 0.59 * 256 = 151, and 0.11 * 256 = 28.
+   */
+  static int luminance(int c) {
+    return (77*(c>>16&0xff) + 151*(c>>8&0xff) + 28*(c&0xff)) >> 8;
+  }
+
+
+  /** Copy a region of pixels[] back into bytePixels[] of a GRAY8 image. */
+  private void packGray(int x1, int y1, int x2, int y2) {
+    for (int y = y1; y < y2; y++) {
+      int index = y*pixelWidth;
+      for (int x = x1; x < x2; x++) {
+        bytePixels[index + x] = (byte) luminance(pixels[index + x]);
+      }
+    }
+  }
+
+
   //////////////////////////////////////////////////////////////
 
   // COPYING IMAGE DATA
@@ -604,6 +695,7 @@ public class PImage implements PConstants, Cloneable {
       h = (int) (height * diff);
     }
 
+    boolean temporary = (format == GRAY8 && pixels == null);
     BufferedImage img =
       shrinkImage((BufferedImage) getNative(), w*pixelDensity, h*pixelDensity);
 
@@ -619,6 +711,9 @@ public class PImage implements PConstants, Cloneable {
 
     // Mark the pixels array as altered
     updatePixels();
+    if (temporary) {
+      pixels = null;  // GRAY8 data was copied back to bytePixels
+    }
   }
 
 
@@ -693,6 +788,314 @@ public class PImage implements PConstants, Cloneable {
   }
 
 
+  /**
+   * Resize the image using one of several filters, working directly on the
+   * pixels[] array rather than going through Java2D. Use RESIZE_NEAREST for
+   * speed or to keep hard pixel edges, RESIZE_BILINEAR for a smooth result,
+   * RESIZE_AREA to average all of the pixels that land in each new pixel
+   * (best for shrinking photos a lot), or RESIZE_LANCZOS for the sharpest
+   * result. As with resize(w, h), use 0 for either dimension to keep the
+   * proportions.
+   * <p/>
+   * Large images are resized using several threads.
+   *
+   * @param filter RESIZE_NEAREST, RESIZE_BILINEAR, RESIZE_AREA,
+   *   or RESIZE_LANCZOS
+   */
+  public void resize(int w, int h, int filter) {  // ignore
+    if (w <= 0 && h <= 0) {
+      throw new IllegalArgumentException("width or height must be > 0 for resize");
+    }
+    if (filter != RESIZE_NEAREST && filter != RESIZE_BILINEAR &&
+        filter != RESIZE_AREA && filter != RESIZE_LANCZOS) {
+      throw new IllegalArgumentException("Use RESIZE_NEAREST, RESIZE_BILINEAR, " +
+                                         "RESIZE_AREA, or RESIZE_LANCZOS " +
+                                         "with resize()");
+    }
+
+    if (w == 0) {  // Use height to determine relative size
+      float diff = (float) h / (float) height;
+      w = (int) (width * diff);
+    } else if (h == 0) {  // Use the width to determine relative size
+      float diff = (float) w / (float) width;
+      h = (int) (height * diff);
+    }
+    final int targetWidth = Math.max(1, w * pixelDensity);
+    final int targetHeight = Math.max(1, h * pixelDensity);
+
+    boolean temporary = (format == GRAY8 && pixels == null);
+    loadPixels();
+    final int[] source;
+    if (format == ARGB) {
+      // work with premultiplied colors, otherwise the color of transparent
+      // pixels (usually black) bleeds into the edges of opaque ones
+      source = new int[pixels.length];
+      premultiply(pixels, source);
+    } else {
+      source = pixels;
+    }
+
+    final int[] target = new int[targetWidth * targetHeight];
+    if (filter == RESIZE_NEAREST) {
+      final int[] columns = nearestIndices(pixelWidth, targetWidth);
+      final int[] rows = nearestIndices(pixelHeight, targetHeight);
+      filterRows(targetHeight, new RowFilter() {
+        void filter(int start, int stop) {
+          for (int y = start; y < stop; y++) {
+            int in = rows[y] * pixelWidth;
+            int out = y * targetWidth;
+            for (int x = 0; x < targetWidth; x++) {
+              target[out + x] = source[in + columns[x]];
+            }
+          }
+        }
+      });
+
+    } else {
+      // horizontal pass into a scratch image that's only as wide as the
+      // target, then a vertical pass from that into the target
+      final ResampleWeights across =
+        new ResampleWeights(pixelWidth, targetWidth, filter);
+      final ResampleWeights down =
+        new ResampleWeights(pixelHeight, targetHeight, filter);
+      final int[] middle = new int[targetWidth * pixelHeight];
+      filterRows(pixelHeight, new RowFilter() {
+        void filter(int start, int stop) {
+          for (int y = start; y < stop; y++) {
+            across.resampleRow(source, y * pixelWidth, middle, y * targetWidth);
+          }
+        }
+      });
+      filterRows(targetHeight, new RowFilter() {
+        void filter(int start, int stop) {
+          for (int y = start; y < stop; y++) {
+            down.resampleColumns(middle, targetWidth, y, target);
+          }
+        }
+      });
+    }
+
+    if (format == ARGB) {
+      unpremultiply(target);
+    }
+    pixelWidth = targetWidth;
+    pixelHeight = targetHeight;
+    pixels = target;
+    width = pixelWidth / pixelDensity;
+    height = pixelHeight / pixelDensity;
+    updatePixels();
+    if (temporary) {
+      pixels = null;  // GRAY8 data was copied back to bytePixels
+    }
+  }
+
+
+  /** For each target index, the source index whose center is nearest. */
+  static private int[] nearestIndices(int sourceSize, int targetSize) {
+    int[] indices = new int[targetSize];
+    for (int i = 0; i < targetSize; i++) {
+      // long math, so that huge images don't overflow
+      indices[i] = (int) (((2L*i + 1) * sourceSize) / (2L * targetSize));
+    }
+    return indices;
+  }
+
+
+  static private void premultiply(int[] src, int[] dst) {
+    for (int i = 0; i < src.length; i++) {
+      int c = src[i];
+      int a = c >>> 24;
+      if (a == 0xff) {
+        dst[i] = c;
+      } else if (a == 0) {
+        dst[i] = 0;
+      } else {
+        int r = ((c >> 16) & 0xff) * a + 127;
+        int g = ((c >> 8) & 0xff) * a + 127;
+        int b = (c & 0xff) * a + 127;
+        // x/255 for x in 0..65152, without a divide
+        dst[i] = (a << 24) |
+          (((r + (r >> 8)) >> 8) << 16) |
+          (((g + (g >> 8)) >> 8) << 8) |
+          ((b + (b >> 8)) >> 8);
+      }
+    }
+  }
+
+
+  static private void unpremultiply(int[] pixels) {
+    for (int i = 0; i < pixels.length; i++) {
+      int c = pixels[i];
+      int a = c >>> 24;
+      if (a != 0xff && a != 0) {
+        int half = a >> 1;
+        int r = Math.min(255, (((c >> 16) & 0xff) * 255 + half) / a);
+        int g = Math.min(255, (((c >> 8) & 0xff) * 255 + half) / a);
+        int b = Math.min(255, ((c & 0xff) * 255 + half) / a);
+        pixels[i] = (a << 24) | (r << 16) | (g << 8) | b;
+      }
+    }
+  }
+
+
+  /**
+   * Precomputed weights for resampling along one axis. For each target
+   * pixel, the weights of the source pixels that contribute to it, in
+   * fixed point so that they add up to exactly 1 &lt;&lt; WEIGHT_BITS.
+   * When shrinking, the filter is stretched to cover all of the source
+   * pixels that land in each target pixel.
+   */
+  static private class ResampleWeights {
+    static final int WEIGHT_BITS = 14;
+    static final int ONE = 1 << WEIGHT_BITS;
+
+    final int[] first;    // first source index for each target index
+    final int[] count;    // number of source pixels for each target index
+    final int[] weights;  // 'stride' entries for each target index
+    final int stride;
+
+
+    ResampleWeights(int sourceSize, int targetSize, int filter) {
+      double scale = (double) targetSize / sourceSize;
+      double stretch = Math.max(1, 1 / scale);
+      double support = (filter == RESIZE_LANCZOS) ? 3 : 1;
+      if (filter == RESIZE_AREA) {
+        // one target pixel covers this many source pixels
+        support = 0.5 / Math.min(1, scale) + 1;
+      } else {
+        support *= stretch;
+      }
+      stride = (int) Math.ceil(support) * 2 + 2;
+      first = new int[targetSize];
+      count = new int[targetSize];
+      weights = new int[targetSize * stride];
+      double[] w = new double[stride];
+
+      for (int i = 0; i < targetSize; i++) {
+        double center = (i + 0.5) / scale;
+        int left = Math.max(0, (int) Math.floor(center - support));
+        int right = Math.min(sourceSize, (int) Math.ceil(center + support));
+        int n = right - left;
+        double total = 0;
+        for (int j = 0; j < n; j++) {
+          int src = left + j;
+          if (filter == RESIZE_AREA) {
+            // overlap of [src, src + 1] with this target pixel
+            double lo = Math.max(src, i / scale);
+            double hi = Math.min(src + 1, (i + 1) / scale);
+            w[j] = Math.max(0, hi - lo);
+          } else {
+            double x = (src + 0.5 - center) / stretch;
+            w[j] = (filter == RESIZE_LANCZOS) ? lanczos3(x) : Math.max(0, 1 - Math.abs(x));
+          }
+          total += w[j];
+        }
+        // skip source pixels at either end that don't contribute
+        while (n > 1 && w[n-1] == 0) {
+          n--;
+        }
+        int skip = 0;
+        while (skip < n - 1 && w[skip] == 0) {
+          skip++;
+        }
+        left += skip;
+        n -= skip;
+        if (skip != 0) {
+          System.arraycopy(w, skip, w, 0, n);
+        }
+        // convert to fixed point, and give any rounding error to the
+        // largest weight, so that flat areas stay exactly the same color
+        int sum = 0;
+        int biggest = 0;
+        int offset = i * stride;
+        for (int j = 0; j < n; j++) {
+          int weight = (int) Math.round(w[j] / total * ONE);
+          weights[offset + j] = weight;
+          sum += weight;
+          if (weight > weights[offset + biggest]) {
+            biggest = j;
+          }
+        }
+        weights[offset + biggest] += ONE - sum;
+        first[i] = left;
+        count[i] = n;
+      }
+    }
+
+
+    static double lanczos3(double x) {
+      if (x == 0) return 1;
+      if (x <= -3 || x >= 3) return 0;
+      double px = Math.PI * x;
+      return 3 * Math.sin(px) * Math.sin(px / 3) / (px * px);
+    }
+
+
+    /**
+     * Resample one row, reading from src starting at srcOffset, and writing
+     * to dst starting at dstOffset.
+     */
+    void resampleRow(int[] src, int srcOffset, int[] dst, int dstOffset) {
+      int half = ONE >> 1;
+      for (int i = 0; i < first.length; i++) {
+        int a = half, r = half, g = half, b = half;
+        int index = srcOffset + first[i];
+        int offset = i * stride;
+        int n = count[i];
+        for (int j = 0; j < n; j++) {
+          int c = src[index + j];
+          int weight = weights[offset + j];
+          a += (c >>> 24) * weight;
+          r += ((c >> 16) & 0xff) * weight;
+          g += ((c >> 8) & 0xff) * weight;
+          b += (c & 0xff) * weight;
+        }
+        dst[dstOffset + i] = pack(a, r, g, b);
+      }
+    }
+
+
+    /**
+     * Resample vertically to produce row i of dst, where both src and dst
+     * are width pixels wide. Reads along the source rows, so that the
+     * memory access stays sequential.
+     */
+    void resampleColumns(int[] src, int width, int i, int[] dst) {
+      int half = ONE >> 1;
+      int rowStart = first[i] * width;
+      int offset = i * stride;
+      int n = count[i];
+      int out = i * width;
+      for (int x = 0; x < width; x++) {
+        int a = half, r = half, g = half, b = half;
+        int index = rowStart + x;
+        for (int j = 0; j < n; j++) {
+          int c = src[index];
+          int weight = weights[offset + j];
+          a += (c >>> 24) * weight;
+          r += ((c >> 16) & 0xff) * weight;
+          g += ((c >> 8) & 0xff) * weight;
+          b += (c & 0xff) * weight;
+          index += width;
+        }
+        dst[out + x] = pack(a, r, g, b);
+      }
+    }
+
+
+    static private int pack(int a, int r, int g, int b) {
+      return clamp(a >> WEIGHT_BITS) << 24 | clamp(r >> WEIGHT_BITS) << 16 |
+        clamp(g >> WEIGHT_BITS) << 8 | clamp(b >> WEIGHT_BITS);
+    }
+
+
+    // Lanczos has negative lobes, so sums can go a little past 0..255
+    static private int clamp(int value) {
+      return (value < 0) ? 0 : ((value > 255) ? 255 : value);
+    }
+  }
+
+
   //////////////////////////////////////////////////////////////
 
   // MARKING IMAGE AS LOADED / FOR USE IN RENDERERS
@@ -781,6 +1184,9 @@ public class PImage implements PConstants, Cloneable {
 
       case ALPHA:
         return (pixels[y*pixelWidth + x] << 24) | 0xffffff;
+
+      case GRAY8:
+        return grayColor(bytePixels[y*pixelWidth + x]);
     }
     return 0;
   }
@@ -869,8 +1275,12 @@ public class PImage implements PConstants, Cloneable {
                          PImage target, int targetX, int targetY) {
     int sourceIndex = sourceY*pixelWidth + sourceX;
     int targetIndex = targetY*target.pixelWidth + targetX;
+    // target is a new image of the same format, so a GRAY8 target
+    // has its bytePixels, but no pixels[] yet
+    Object source = (format == GRAY8) ? bytePixels : pixels;
+    Object dest = (format == GRAY8) ? target.bytePixels : target.pixels;
     for (int row = 0; row < sourceHeight; row++) {
-      System.arraycopy(pixels, sourceIndex, target.pixels, targetIndex, sourceWidth);
+      System.arraycopy(source, sourceIndex, dest, targetIndex, sourceWidth);
       sourceIndex += pixelWidth;
       targetIndex += target.pixelWidth;
     }
@@ -910,6 +1320,15 @@ public class PImage implements PConstants, Cloneable {
    */
   public void set(int x, int y, int c) {
     if ((x < 0) || (y < 0) || (x >= pixelWidth) || (y >= pixelHeight)) return;
+    if (format == GRAY8) {
+      byte value = (byte) luminance(c);
+      bytePixels[y*pixelWidth + x] = value;
+      if (pixels == null) {
+        updatePixels(x, y, 1, 1);
+        return;
+      }
+      c = grayColor(value);
+    }
     pixels[y*pixelWidth + x] = c;
     updatePixels(x, y, 1, 1);  // slow...
   }
@@ -964,10 +1383,14 @@ public class PImage implements PConstants, Cloneable {
     int sourceOffset = sourceY * sourceImage.pixelWidth + sourceX;
     int targetOffset = targetY * pixelWidth + targetX;
 
-    for (int y = sourceY; y < sourceY + sourceHeight; y++) {
-      System.arraycopy(sourceImage.pixels, sourceOffset, pixels, targetOffset, sourceWidth);
-      sourceOffset += sourceImage.pixelWidth;
-      targetOffset += pixelWidth;
+    if (format == GRAY8 || sourceImage.format == GRAY8) {
+      setGray(sourceImage, sourceOffset, sourceWidth, sourceHeight, targetOffset);
+    } else {
+      for (int y = sourceY; y < sourceY + sourceHeight; y++) {
+        System.arraycopy(sourceImage.pixels, sourceOffset, pixels, targetOffset, sourceWidth);
+        sourceOffset += sourceImage.pixelWidth;
+        targetOffset += pixelWidth;
+      }
     }
 
     //updatePixelsImpl(targetX, targetY, sourceWidth, sourceHeight);
@@ -975,6 +1398,44 @@ public class PImage implements PConstants, Cloneable {
   }
 
 
+  /**
+   * The part of setImpl() for when either image is GRAY8. The bytes of a
+   * GRAY8 image are copied directly, other images are converted to gray
+   * (when the target is GRAY8) or expanded to opaque gray (when the source
+   * is GRAY8). When this image is GRAY8 and its pixels[] array has been
+   * loaded, the copied region is kept up to date there as well.
+   */
+  private void setGray(PImage sourceImage, int sourceOffset,
+                       int sourceWidth, int sourceHeight, int targetOffset) {
+    boolean fromGray = sourceImage.format == GRAY8;
+    for (int row = 0; row < sourceHeight; row++) {
+      if (format == GRAY8) {
+        if (fromGray) {
+          System.arraycopy(sourceImage.bytePixels, sourceOffset,
+                           bytePixels, targetOffset, sourceWidth);
+        } else {
+          for (int i = 0; i < sourceWidth; i++) {
+            bytePixels[targetOffset + i] =
+              (byte) luminance(sourceImage.pixels[sourceOffset + i]);
+          }
+        }
+        if (pixels != null) {
+          for (int i = targetOffset; i < targetOffset + sourceWidth; i++) {
+            pixels[i] = grayColor(bytePixels[i]);
+          }
+        }
+      } else {
+        for (int i = 0; i < sourceWidth; i++) {
+          pixels[targetOffset + i] =
+            grayColor(sourceImage.bytePixels[sourceOffset + i]);
+        }
+      }
+      sourceOffset += sourceImage.pixelWidth;
+      targetOffset += pixelWidth;
+    }
+  }
+
+
 
   //////////////////////////////////////////////////////////////
 
@@ -994,7 +1455,30 @@ public class PImage implements PConstants, Cloneable {
     for (int i = 0; i < pixels.length; i++) {
       pixels[i] = ((maskArray[i] & 0xff) << 24) | (pixels[i] & 0xffffff);
     }
+    setMasked();
+  }
+
+
+  /**
+   * @param maskArray array of bytes used as the alpha channel, like the
+   * bytePixels[] of a GRAY8 image
+   */
+  public void mask(byte maskArray[]) {  // ignore
+    loadPixels();
+    if (maskArray.length != pixels.length) {
+      throw new IllegalArgumentException("mask() can only be used with an image that's the same size.");
+    }
+    for (int i = 0; i < pixels.length; i++) {
+      pixels[i] = ((maskArray[i] & 0xff) << 24) | (pixels[i] & 0xffffff);
+    }
+    setMasked();
+  }
+
+
+  private void setMasked() {
+    // a GRAY8 image has no room for alpha, so it becomes a regular ARGB image
     format = ARGB;
+    bytePixels = null;
     updatePixels();
   }
 
@@ -1035,8 +1519,12 @@ public class PImage implements PConstants, Cloneable {
    * @brief Masks part of an image with another image as an alpha channel
    */
   public void mask(PImage img) {
-    img.loadPixels();
-    mask(img.pixels);
+    if (img.format == GRAY8) {
+      mask(img.bytePixels);
+    } else {
+      img.loadPixels();
+      mask(img.pixels);
+    }
   }
 
 
@@ -1047,6 +1535,22 @@ public class PImage implements PConstants, Cloneable {
 
 
   public void filter(int kind) {
+    if (format == GRAY8) {
+      switch (kind) {
+        case GRAY:
+        case OPAQUE:
+          return;  // already gray and opaque
+        case INVERT:
+          filterGray(kind, 0);
+          return;
+        case THRESHOLD:
+          filterGray(kind, 0.5f);
+          return;
+      }
+    }
+    // GRAY8 images go through pixels[] for the filters that use neighboring
+    // pixels, but don't keep it around unless it had already been loaded
+    boolean temporary = (format == GRAY8 && pixels == null);
     loadPixels();
 
     switch (kind) {
@@ -1057,36 +1561,48 @@ public class PImage implements PConstants, Cloneable {
         filter(BLUR, 1);
         break;
 
+      case FAST_BLUR:
+        filter(FAST_BLUR, 1);
+        break;
+
       case GRAY:
         if (format == ALPHA) {
           // for an alpha image, convert it to an opaque grayscale
-          for (int i = 0; i < pixels.length; i++) {
-            int col = 255 - pixels[i];
-            pixels[i] = 0xff000000 | (col << 16) | (col << 8) | col;
-          }
+          filterRows(new RowFilter() {
+            void filter(int start, int stop) {
+              for (int i = rowIndex(start); i < rowIndex(stop); i++) {
+                int col = 255 - pixels[i];
+                pixels[i] = 0xff000000 | (col << 16) | (col << 8) | col;
+              }
+            }
+          });
           format = RGB;
 
         } else {
           // Converts RGB image data into grayscale using
           // weighted RGB components, and keeps alpha channel intact.
           // [toxi 040115]
-          for (int i = 0; i < pixels.length; i++) {
-            int col = pixels[i];
-            // luminance = 0.3*red + 0.59*green + 0.11*blue
-            // 0.30 * 256 =  77
-            // 0.59 * 256 = 151
-            // 0.11 * 256 =  28
-            int lum = (77*(col>>16&0xff) + 151*(col>>8&0xff) + 28*(col&0xff))>>8;
-            pixels[i] = (col & ALPHA_MASK) | lum<<16 | lum<<8 | lum;
-          }
+          filterRows(new RowFilter() {
+            void filter(int start, int stop) {
+              for (int i = rowIndex(start); i < rowIndex(stop); i++) {
+                int col = pixels[i];
+                int lum = luminance(col);
+                pixels[i] = (col & ALPHA_MASK) | lum<<16 | lum<<8 | lum;
+              }
+            }
+          });
         }
         break;
 
       case INVERT:
-        for (int i = 0; i < pixels.length; i++) {
-          //pixels[i] = 0xff000000 |
-          pixels[i] ^= 0xffffff;
-        }
+        filterRows(new RowFilter() {
+          void filter(int start, int stop) {
+            for (int i = rowIndex(start); i < rowIndex(stop); i++) {
+              //pixels[i] = 0xff000000 |
+              pixels[i] ^= 0xffffff;
+            }
+          }
+        });
         break;
 
       case POSTERIZE:
@@ -1114,6 +1630,9 @@ public class PImage implements PConstants, Cloneable {
         break;
     }
     updatePixels();  // mark as modified
+    if (temporary) {
+      pixels = null;
+    }
   }
 
 
@@ -1137,6 +1656,9 @@ public class PImage implements PConstants, Cloneable {
    * extent of the blurring. If no level parameter is used, the blur is
    * equivalent to Guassian blur of radius 1<br />
    * <br />
+   * FAST_BLUR - similar to BLUR, but takes the same time for any level,
+   * so it's much faster for large amounts of blurring<br />
+   * <br />
    * OPAQUE - sets the alpha channel to entirely opaque<br />
    * <br />
    * ERODE - reduces the light areas with the amount defined by the level
@@ -1151,6 +1673,8 @@ public class PImage implements PConstants, Cloneable {
    * <P>
    * <UL>
    * <LI>filter(BLUR) provides a basic blur.
+   * <LI>filter(FAST_BLUR) approximates BLUR with three box blurs, with a cost
+   * that doesn't depend on the radius.
    * <LI>filter(GRAY) converts the image to grayscale based on luminance.
    * <LI>filter(INVERT) will invert the color components in the image.
    * <LI>filter(OPAQUE) set all the high bits in the image to opaque
@@ -1167,10 +1691,15 @@ public class PImage implements PConstants, Cloneable {
    * @webref image:pixels
    * @brief Converts the image to grayscale or black and white
    * @usage web_application
-   * @param kind Either THRESHOLD, GRAY, OPAQUE, INVERT, POSTERIZE, BLUR, ERODE, or DILATE
+   * @param kind Either THRESHOLD, GRAY, OPAQUE, INVERT, POSTERIZE, BLUR, FAST_BLUR, ERODE, or DILATE
    * @param param unique for each, see above
    */
   public void filter(int kind, float param) {
+    if (format == GRAY8 && (kind == THRESHOLD || kind == POSTERIZE)) {
+      filterGray(kind, param);
+      return;
+    }
+    boolean temporary = (format == GRAY8 && pixels == null);
     loadPixels();
 
     switch (kind) {
@@ -1183,6 +1712,10 @@ public class PImage implements PConstants, Cloneable {
           blurRGB(param);
         break;
 
+      case FAST_BLUR:
+        fastBlur(param);
+        break;
+
       case GRAY:
         throw new RuntimeException("Use filter(GRAY) instead of " +
                                    "filter(GRAY, param)");
@@ -1196,13 +1729,79 @@ public class PImage implements PConstants, Cloneable {
                                    "filter(OPAQUE, param)");
 
       case POSTERIZE:
-        int levels = (int)param;
-        if ((levels < 2) || (levels > 255)) {
-          throw new RuntimeException("Levels must be between 2 and 255 for " +
-                                     "filter(POSTERIZE, levels)");
+        posterize(posterizeLevels(param));
+        break;
+
+      case THRESHOLD:  // greater than or equal to the threshold
+        threshold((int) (param * 255));
+        break;
+
+        // [toxi20050728] added new filters
+        case ERODE:
+          throw new RuntimeException("Use filter(ERODE) instead of " +
+                                     "filter(ERODE, param)");
+        case DILATE:
+          throw new RuntimeException("Use filter(DILATE) instead of " +
+                                     "filter(DILATE, param)");
+    }
+    updatePixels();  // mark as modified
+    if (temporary) {
+      pixels = null;
+    }
+  }
+
+
+  static private int posterizeLevels(float param) {
+    int levels = (int)param;
+    if ((levels < 2) || (levels > 255)) {
+      throw new RuntimeException("Levels must be between 2 and 255 for " +
+                                 "filter(POSTERIZE, levels)");
+    }
+    return levels;
+  }
+
+
+  /**
+   * INVERT, THRESHOLD and POSTERIZE for GRAY8 images. Each only depends on
+   * the value of the pixel itself, so they're done with a lookup table on
+   * bytePixels[], giving the same results as the other formats.
+   */
+  private void filterGray(int kind, float param) {
+    final byte[] table = new byte[256];
+    if (kind == INVERT) {
+      for (int v = 0; v < 256; v++) {
+        table[v] = (byte) (255 - v);
+      }
+    } else if (kind == THRESHOLD) {
+      int thresh = (int) (param * 255);
+      for (int v = 0; v < 256; v++) {
+        table[v] = (byte) ((v < thresh) ? 0 : 255);
+      }
+    } else {  // POSTERIZE
+      int levels = posterizeLevels(param);
+      for (int v = 0; v < 256; v++) {
+        table[v] = (byte) ((((v * levels) >> 8) * 255) / (levels - 1));
+      }
+    }
+    filterRows(new RowFilter() {
+      void filter(int start, int stop) {
+        for (int i = rowIndex(start); i < rowIndex(stop); i++) {
+          bytePixels[i] = table[bytePixels[i] & 0xff];
+          if (pixels != null) {
+            pixels[i] = grayColor(bytePixels[i]);
+          }
         }
-        int levels1 = levels - 1;
-        for (int i = 0; i < pixels.length; i++) {
+      }
+    });
+    setModified();
+  }
+
+
+  private void posterize(final int levels) {
+    final int levels1 = levels - 1;
+    filterRows(new RowFilter() {
+      void filter(int start, int stop) {
+        for (int i = rowIndex(start); i < rowIndex(stop); i++) {
           int rlevel = (pixels[i] >> 16) & 0xff;
           int glevel = (pixels[i] >> 8) & 0xff;
           int blevel = pixels[i] & 0xff;
@@ -1214,28 +1813,106 @@ public class PImage implements PConstants, Cloneable {
                        (glevel << 8) |
                        blevel);
         }
-        break;
+      }
+    });
+  }
 
-      case THRESHOLD:  // greater than or equal to the threshold
-        int thresh = (int) (param * 255);
-        for (int i = 0; i < pixels.length; i++) {
+
+  private void threshold(final int thresh) {
+    filterRows(new RowFilter() {
+      void filter(int start, int stop) {
+        for (int i = rowIndex(start); i < rowIndex(stop); i++) {
           int max = Math.max((pixels[i] & RED_MASK) >> 16,
                              Math.max((pixels[i] & GREEN_MASK) >> 8,
                                       (pixels[i] & BLUE_MASK)));
           pixels[i] = (pixels[i] & ALPHA_MASK) |
             ((max < thresh) ? 0x000000 : 0xffffff);
         }
-        break;
+      }
+    });
+  }
 
-        // [toxi20050728] added new filters
-        case ERODE:
-          throw new RuntimeException("Use filter(ERODE) instead of " +
-                                     "filter(ERODE, param)");
-        case DILATE:
-          throw new RuntimeException("Use filter(DILATE) instead of " +
-                                     "filter(DILATE, param)");
+
+  /**
+   * One pass of a filter. Each call handles the rows from start (inclusive)
+   * to stop (exclusive), and only writes to those rows of its output, so
+   * that separate bands of rows can be run on separate threads. Reading
+   * from rows outside the band is fine, as long as nothing in the same pass
+   * writes to the array being read.
+   */
+  static abstract private class RowFilter {
+    abstract void filter(int start, int stop);
+  }
+
+
+  /**
+   * Run a filter pass over all rows of the image, split into bands across
+   * filterPool when the image is large enough.
+   */
+  private void filterRows(RowFilter pass) {
+    filterRows(pixelHeight, pass);
+  }
+
+
+  /**
+   * Same as filterRows(pass), for passes with some other number of rows,
+   * i.e. ones that work on a transposed copy of the image.
+   */
+  private void filterRows(int rows, RowFilter pass) {
+    filterRows(rows, pixelWidth * pixelHeight, pass);
+  }
+
+
+  /**
+   * Same as filterRows(rows, pass), for passes that only cover part of the
+   * image, so the decision to use threads is based on pixelCount instead.
+   */
+  private void filterRows(int rows, int pixelCount, RowFilter pass) {
+    ForkJoinPool pool = filterPool;
+    if (pixelCount < FILTER_PARALLEL_PIXELS ||
+        pool.getParallelism() < 2) {
+      pass.filter(0, rows);
+    } else {
+      // a few bands per thread, so that an uneven split doesn't leave
+      // threads idle near the end
+      int grain = Math.max(1, rows / (pool.getParallelism() * 4));
+      pool.invoke(new RowBand(pass, 0, rows, grain));
     }
-    updatePixels();  // mark as modified
+  }
+
+
+  static private class RowBand extends RecursiveAction {
+    final RowFilter pass;
+    final int start, stop;
+    final int grain;
+
+    RowBand(RowFilter pass, int start, int stop, int grain) {
+      this.pass = pass;
+      this.start = start;
+      this.stop = stop;
+      this.grain = grain;
+    }
+
+    @Override
+    protected void compute() {
+      if (stop - start <= grain) {
+        pass.filter(start, stop);
+      } else {
+        int mid = (start + stop) >>> 1;
+        invokeAll(new RowBand(pass, start, mid, grain),
+                  new RowBand(pass, mid, stop, grain));
+      }
+    }
+  }
+
+
+  /** Index into pixels[] of the first pixel in a row. */
+  private int rowIndex(int row) {
+    if (row < pixelHeight) {
+      return row * pixelWidth;
+    }
+    // the last band also covers anything left over past the last full row
+    return (format == GRAY8) ? bytePixels.length : pixels.length;
   }
 
 
@@ -1282,14 +1959,29 @@ public class PImage implements PConstants, Cloneable {
 
 
   protected void blurAlpha(float r) {
-    int sum, cb;
-    int read, ri, ym, ymi, bk0;
-    int b2[] = new int[pixels.length];
-    int yi = 0;
+    final int b2[] = new int[pixels.length];
 
     buildBlurKernel(r);
 
-    for (int y = 0; y < pixelHeight; y++) {
+    filterRows(new RowFilter() {
+      void filter(int start, int stop) {
+        blurAlphaX(b2, start, stop);
+      }
+    });
+    filterRows(new RowFilter() {
+      void filter(int start, int stop) {
+        blurAlphaY(b2, start, stop);
+      }
+    });
+  }
+
+
+  private void blurAlphaX(int[] b2, int start, int stop) {
+    int sum, cb;
+    int read, ri, bk0;
+    int yi = start * pixelWidth;
+
+    for (int y = start; y < stop; y++) {
       for (int x = 0; x < pixelWidth; x++) {
         //cb = cg = cr = sum = 0;
         cb = sum = 0;
@@ -1316,12 +2008,17 @@ public class PImage implements PConstants, Cloneable {
       }
       yi += pixelWidth;
     }
+  }
 
-    yi = 0;
-    ym = -blurRadius;
+
+  private void blurAlphaY(int[] b2, int start, int stop) {
+    int sum, cb;
+    int read, ri, ym, ymi, bk0;
+    int yi = start * pixelWidth;
+    ym = start - blurRadius;
     ymi = ym * pixelWidth;
 
-    for (int y = 0; y < pixelHeight; y++) {
+    for (int y = start; y < stop; y++) {
       for (int x = 0; x < pixelWidth; x++) {
         cb = sum = 0;
         if (ym < 0) {
@@ -1353,16 +2050,31 @@ public class PImage implements PConstants, Cloneable {
 
 
   protected void blurRGB(float r) {
-    int sum, cr, cg, cb; //, k;
-    int /*pixel,*/ read, ri, /*roff,*/ ym, ymi, /*riw,*/ bk0;
-    int r2[] = new int[pixels.length];
-    int g2[] = new int[pixels.length];
-    int b2[] = new int[pixels.length];
-    int yi = 0;
+    final int r2[] = new int[pixels.length];
+    final int g2[] = new int[pixels.length];
+    final int b2[] = new int[pixels.length];
 
     buildBlurKernel(r);
 
-    for (int y = 0; y < pixelHeight; y++) {
+    filterRows(new RowFilter() {
+      void filter(int start, int stop) {
+        blurRGBX(r2, g2, b2, start, stop);
+      }
+    });
+    filterRows(new RowFilter() {
+      void filter(int start, int stop) {
+        blurRGBY(r2, g2, b2, start, stop);
+      }
+    });
+  }
+
+
+  private void blurRGBX(int[] r2, int[] g2, int[] b2, int start, int stop) {
+    int sum, cr, cg, cb;
+    int read, ri, bk0;
+    int yi = start * pixelWidth;
+
+    for (int y = start; y < stop; y++) {
       for (int x = 0; x < pixelWidth; x++) {
         cb = cg = cr = sum = 0;
         read = x - blurRadius;
@@ -1394,12 +2106,17 @@ public class PImage implements PConstants, Cloneable {
       }
       yi += pixelWidth;
     }
+  }
+
 
-    yi = 0;
-    ym = -blurRadius;
+  private void blurRGBY(int[] r2, int[] g2, int[] b2, int start, int stop) {
+    int sum, cr, cg, cb;
+    int read, ri, ym, ymi, bk0;
+    int yi = start * pixelWidth;
+    ym = start - blurRadius;
     ymi = ym * pixelWidth;
 
-    for (int y = 0; y < pixelHeight; y++) {
+    for (int y = start; y < stop; y++) {
       for (int x = 0; x < pixelWidth; x++) {
         cb = cg = cr = sum = 0;
         if (ym < 0) {
@@ -1435,18 +2152,34 @@ public class PImage implements PConstants, Cloneable {
 
 
   protected void blurARGB(float r) {
-    int sum, cr, cg, cb, ca;
-    int /*pixel,*/ read, ri, /*roff,*/ ym, ymi, /*riw,*/ bk0;
     int wh = pixels.length;
-    int r2[] = new int[wh];
-    int g2[] = new int[wh];
-    int b2[] = new int[wh];
-    int a2[] = new int[wh];
-    int yi = 0;
+    final int r2[] = new int[wh];
+    final int g2[] = new int[wh];
+    final int b2[] = new int[wh];
+    final int a2[] = new int[wh];
+
+    buildBlurKernel(r);
+
+    filterRows(new RowFilter() {
+      void filter(int start, int stop) {
+        blurARGBX(r2, g2, b2, a2, start, stop);
+      }
+    });
+    filterRows(new RowFilter() {
+      void filter(int start, int stop) {
+        blurARGBY(r2, g2, b2, a2, start, stop);
+      }
+    });
+  }
+
 
-    buildBlurKernel(r);
+  private void blurARGBX(int[] r2, int[] g2, int[] b2, int[] a2,
+                         int start, int stop) {
+    int sum, cr, cg, cb, ca;
+    int read, ri, bk0;
+    int yi = start * pixelWidth;
 
-    for (int y = 0; y < pixelHeight; y++) {
+    for (int y = start; y < stop; y++) {
       for (int x = 0; x < pixelWidth; x++) {
         cb = cg = cr = ca = sum = 0;
         read = x - blurRadius;
@@ -1480,12 +2213,18 @@ public class PImage implements PConstants, Cloneable {
       }
       yi += pixelWidth;
     }
+  }
+
 
-    yi = 0;
-    ym = -blurRadius;
+  private void blurARGBY(int[] r2, int[] g2, int[] b2, int[] a2,
+                         int start, int stop) {
+    int sum, cr, cg, cb, ca;
+    int read, ri, ym, ymi, bk0;
+    int yi = start * pixelWidth;
+    ym = start - blurRadius;
     ymi = ym * pixelWidth;
 
-    for (int y = 0; y < pixelHeight; y++) {
+    for (int y = start; y < stop; y++) {
       for (int x = 0; x < pixelWidth; x++) {
         cb = cg = cr = ca = sum = 0;
         if (ym < 0) {
@@ -1521,17 +2260,144 @@ public class PImage implements PConstants, Cloneable {
   }
 
 
+  /**
+   * Blur by running three box blurs in a row, which comes out very close
+   * to a gaussian. Each box blur keeps a running sum across the row, so the
+   * cost per pixel is the same for any radius, and the radius isn't capped
+   * the way it is for BLUR. The param is scaled so that the amount of blur
+   * roughly matches filter(BLUR, param).
+   * <p/>
+   * Each pass writes its output transposed, so that the vertical passes can
+   * also run along rows. The scratch buffer is kept between calls.
+   */
+  protected void fastBlur(float r) {
+    // BLUR uses a kernel of radius 3.5r, with weights that fall off with
+    // the square of the distance. That has a standard deviation of
+    // 3.5r / sqrt(10), so use the same value here.
+    float sigma = r * 3.5f / (float) Math.sqrt(10);
+    int[] radii = boxRadii(sigma, 3);
+
+    int count = pixelWidth * pixelHeight;
+    if (blurBuffer == null || blurBuffer.length < count) {
+      blurBuffer = new int[count];
+    }
+    for (int radius : radii) {
+      boxBlurPass(pixels, blurBuffer, pixelWidth, pixelHeight, radius);
+      boxBlurPass(blurBuffer, pixels, pixelHeight, pixelWidth, radius);
+    }
+    if (format == RGB) {
+      opaque();
+    }
+  }
+
+
+  /**
+   * Radius for each of n box blurs, chosen so that together they have
+   * a standard deviation close to sigma. From Wells, "Efficient Synthesis
+   * of Gaussian Filters by Cascaded Uniform Filters" (1986), as worked out
+   * by Ivan Kutskir for "Fastest Gaussian Blur (in linear time)".
+   */
+  static int[] boxRadii(float sigma, int n) {
+    double ideal = Math.sqrt(12 * sigma*sigma / n + 1);
+    int lower = (int) Math.floor(ideal);
+    if (lower % 2 == 0) {
+      lower--;
+    }
+    int upper = lower + 2;
+    // how many of the boxes should use the smaller width
+    double m = (12 * sigma*sigma - n*lower*lower - 4*n*lower - 3*n) / (-4.0*lower - 4);
+    int smaller = (int) Math.round(m);
+
+    int[] radii = new int[n];
+    for (int i = 0; i < n; i++) {
+      int width = (i < smaller) ? lower : upper;
+      radii[i] = Math.max(0, (width - 1) / 2);
+    }
+    return radii;
+  }
+
+
+  /**
+   * Box blur each row of src (which is w by h pixels), and write the result
+   * to dst transposed, as h by w pixels. Near the edges, the average only
+   * includes the pixels that are inside the image.
+   */
+  private void boxBlurPass(final int[] src, final int[] dst,
+                           final int w, final int h, final int radius) {
+    filterRows(h, new RowFilter() {
+      void filter(int start, int stop) {
+        for (int y = start; y < stop; y++) {
+          int offset = y * w;
+          int sa = 0, sr = 0, sg = 0, sb = 0;
+
+          // prime the window for the first pixel: [0, radius]
+          int last = Math.min(radius, w - 1);
+          for (int x = 0; x <= last; x++) {
+            int c = src[offset + x];
+            sa += c >>> 24;
+            sr += (c >> 16) & 0xff;
+            sg += (c >> 8) & 0xff;
+            sb += c & 0xff;
+          }
+          int count = last + 1;
+
+          int out = y;
+          for (int x = 0; x < w; x++) {
+            int half = count >> 1;
+            dst[out] = ((sa + half) / count) << 24 |
+                       ((sr + half) / count) << 16 |
+                       ((sg + half) / count) << 8 |
+                       ((sb + half) / count);
+            out += h;
+
+            // slide the window one pixel to the right
+            int in = x + radius + 1;
+            if (in < w) {
+              int c = src[offset + in];
+              sa += c >>> 24;
+              sr += (c >> 16) & 0xff;
+              sg += (c >> 8) & 0xff;
+              sb += c & 0xff;
+              count++;
+            }
+            int gone = x - radius;
+            if (gone >= 0) {
+              int c = src[offset + gone];
+              sa -= c >>> 24;
+              sr -= (c >> 16) & 0xff;
+              sg -= (c >> 8) & 0xff;
+              sb -= c & 0xff;
+              count--;
+            }
+          }
+        }
+      }
+    });
+  }
+
+
   /**
    * Generic dilate/erode filter using luminance values
    * as decision factor. [toxi 050728]
    */
   protected void dilate() {  // formerly dilate(false)
-    int index = 0;
+    final int[] outgoing = new int[pixels.length];
+    filterRows(new RowFilter() {
+      void filter(int start, int stop) {
+        dilate(outgoing, start, stop);
+      }
+    });
+    System.arraycopy(outgoing, 0, pixels, 0, pixels.length);
+  }
+
+
+  private void dilate(int[] outgoing, int start, int stop) {
+    int index = rowIndex(start);
+    int stopIndex = rowIndex(stop);
     int maxIndex = pixels.length;
-    int[] outgoing = new int[maxIndex];
 
     // erosion (grow light areas)
-    while (index < maxIndex) {
+    while (index < stopIndex) {
       int curRowIndex = index;
       int maxRowIndex = index + pixelWidth;
       while (index < maxRowIndex) {
@@ -1590,17 +2456,27 @@ public class PImage implements PConstants, Cloneable {
         outgoing[index++] = result;
       }
     }
-    System.arraycopy(outgoing, 0, pixels, 0, maxIndex);
   }
 
 
   protected void erode() {  // formerly dilate(true)
-    int index = 0;
+    final int[] outgoing = new int[pixels.length];
+    filterRows(new RowFilter() {
+      void filter(int start, int stop) {
+        erode(outgoing, start, stop);
+      }
+    });
+    System.arraycopy(outgoing, 0, pixels, 0, pixels.length);
+  }
+
+
+  private void erode(int[] outgoing, int start, int stop) {
+    int index = rowIndex(start);
+    int stopIndex = rowIndex(stop);
     int maxIndex = pixels.length;
-    int[] outgoing = new int[maxIndex];
 
     // dilate (grow dark areas)
-    while (index < maxIndex) {
+    while (index < stopIndex) {
       int curRowIndex = index;
       int maxRowIndex = index + pixelWidth;
       while (index < maxRowIndex) {
@@ -1659,7 +2535,209 @@ public class PImage implements PConstants, Cloneable {
         outgoing[index++] = result;
       }
     }
-    System.arraycopy(outgoing, 0, pixels, 0, maxIndex);
+  }
+
+
+
+  //////////////////////////////////////////////////////////////
+
+  // STATISTICS
+
+
+  // per-thread scratch space for the bands, so that statistics taken every
+  // frame don't allocate anything once the threads have warmed up
+  static private final ThreadLocal<long[]> statsScratch =
+    new ThreadLocal<long[]>() {
+      @Override
+      protected long[] initialValue() {
+        return new long[1 + PImageStats.CHANNELS * 4];
+      }
+    };
+
+  static private final ThreadLocal<int[][]> histogramScratch =
+    new ThreadLocal<int[][]>() {
+      @Override
+      protected int[][] initialValue() {
+        return new int[1][256];
+      }
+    };
+
+
+  /**
+   * Minimum, maximum, mean, and standard deviation of each channel of the
+   * image. See PImageStats for how the channels are read.
+   */
+  public PImageStats stats() {  // ignore
+    return stats(new PImageStats());
+  }
+
+
+  /**
+   * Same as stats(), but fills in an existing PImageStats object.
+   */
+  public PImageStats stats(final PImageStats target) {  // ignore
+    if (format != GRAY8) loadPixels();
+    target.reset();
+    filterRows(pixelHeight, new RowFilter() {
+      @Override
+      void filter(int start, int stop) {
+        long[] band = statsScratch.get();
+        band[0] = (long) (stop - start) * pixelWidth;
+        for (int c = 0; c < PImageStats.CHANNELS; c++) {
+          int offset = 1 + c*4;
+          band[offset] = 255;
+          band[offset + 1] = 0;
+          band[offset + 2] = 0;
+          band[offset + 3] = 0;
+        }
+        for (int i = start * pixelWidth; i < stop * pixelWidth; i++) {
+          int argb = statsColor(i);
+          for (int c = 0; c < PImageStats.CHANNELS; c++) {
+            int value = channelValue(argb, c);
+            int offset = 1 + c*4;
+            if (value < band[offset]) band[offset] = value;
+            if (value > band[offset + 1]) band[offset + 1] = value;
+            band[offset + 2] += value;
+            band[offset + 3] += value * value;
+          }
+        }
+        target.merge(band);
+      }
+    });
+    target.finish();
+    return target;
+  }
+
+
+  /**
+   * Count the values of one channel of the image in a number of equal
+   * bins covering 0 to 255.
+   *
+   * @param channel PImageStats.RED, GREEN, BLUE, ALPHA, or LUMINANCE
+   * @param bins number of bins, 256 to count each value separately
+   */
+  public int[] histogram(int channel, int bins) {  // ignore
+    if (bins < 1) {
+      throw new IllegalArgumentException("histogram() needs at least one bin");
+    }
+    return histogram(channel, new int[bins]);
+  }
+
+
+  /**
+   * Same as histogram(channel, bins), with the bins being the length of
+   * the counts array, which is cleared and filled in.
+   */
+  public int[] histogram(int channel, final int[] counts) {  // ignore
+    final int index = PImageStats.index(channel);
+    if (counts.length < 1) {
+      throw new IllegalArgumentException("histogram() needs at least one bin");
+    }
+    if (format != GRAY8) loadPixels();
+    final int bins = counts.length;
+    Arrays.fill(counts, 0);
+    filterRows(pixelHeight, new RowFilter() {
+      @Override
+      void filter(int start, int stop) {
+        int[][] holder = histogramScratch.get();
+        if (holder[0].length < bins) {
+          holder[0] = new int[bins];
+        }
+        int[] local = holder[0];
+        Arrays.fill(local, 0, bins, 0);
+        for (int i = start * pixelWidth; i < stop * pixelWidth; i++) {
+          local[(channelValue(statsColor(i), index) * bins) >> 8]++;
+        }
+        synchronized (counts) {
+          for (int b = 0; b < bins; b++) {
+            counts[b] += local[b];
+          }
+        }
+      }
+    });
+    return counts;
+  }
+
+
+  /**
+   * Make a summed-area table for one channel of the image, so that the sum
+   * of any rectangle can be found with four lookups using
+   * PImageStats.areaSum(). The table has a row and column of zeros at the
+   * top and left, so it's (pixelWidth+1) by (pixelHeight+1) entries.
+   */
+  public int[] integral(int channel) {  // ignore
+    return integral(channel, null);
+  }
+
+
+  /**
+   * Same as integral(channel), but reuses the table if it's the right size.
+   */
+  public int[] integral(int channel, int[] table) {  // ignore
+    final int index = PImageStats.index(channel);
+    if (format != GRAY8) loadPixels();
+    final int stride = pixelWidth + 1;
+    int length = stride * (pixelHeight + 1);
+    if (table == null || table.length != length) {
+      table = new int[length];
+    }
+    final int[] sums = table;
+    Arrays.fill(sums, 0, stride, 0);
+
+    // first the running sum along each row...
+    filterRows(pixelHeight, new RowFilter() {
+      @Override
+      void filter(int start, int stop) {
+        for (int y = start; y < stop; y++) {
+          int row = (y + 1) * stride;
+          int i = y * pixelWidth;
+          int sum = 0;
+          sums[row] = 0;
+          for (int x = 1; x <= pixelWidth; x++) {
+            sum += channelValue(statsColor(i++), index);
+            sums[row + x] = sum;
+          }
+        }
+      }
+    });
+    // ...then down each column, with the columns split into bands
+    filterRows(stride, pixelWidth * pixelHeight, new RowFilter() {
+      @Override
+      void filter(int start, int stop) {
+        for (int y = 2; y <= pixelHeight; y++) {
+          int row = y * stride;
+          int above = row - stride;
+          for (int x = start; x < stop; x++) {
+            sums[row + x] += sums[above + x];
+          }
+        }
+      }
+    });
+    return sums;
+  }
+
+
+  /** Pixel i as ARGB, read the way PImageStats describes */
+  private int statsColor(int i) {
+    if (format == GRAY8) {
+      return grayColor(bytePixels[i]);
+    }
+    int c = pixels[i];
+    if (format == ARGB) return c;
+    if (format == ALPHA) return (c & 0xff) << 24;
+    return c | 0xff000000;
+  }
+
+
+  /** One channel of a color, by its position from PImageStats.index() */
+  static private int channelValue(int argb, int index) {
+    switch (index) {
+      case 0: return (argb >> 16) & 0xff;
+      case 1: return (argb >> 8) & 0xff;
+      case 2: return argb & 0xff;
+      case 3: return argb >>> 24;
+      default: return luminance(argb);
+    }
   }
 
 
@@ -1907,10 +2985,15 @@ public class PImage implements PConstants, Cloneable {
     int dx2 = dx + dw;
     int dy2 = dy + dh;
 
+    // GRAY8 images are blended through pixels[], but only keep
+    // that array if it was already there
+    boolean temporary = (format == GRAY8 && pixels == null);
     loadPixels();
     if (src == this) {
       if (intersect(sx, sy, sx2, sy2, dx, dy, dx2, dy2)) {
-        blit_resize(get(sx, sy, sw, sh),
+        PImage region = get(sx, sy, sw, sh);
+        region.loadPixels();
+        blit_resize(region,
                     0, 0, sw, sh,
                     pixels, pixelWidth, pixelHeight, dx, dy, dx2, dy2, mode);
       } else {
@@ -1919,12 +3002,19 @@ public class PImage implements PConstants, Cloneable {
                     pixels, pixelWidth, pixelHeight, dx, dy, dx2, dy2, mode);
       }
     } else {
+      boolean sourceTemporary = (src.format == GRAY8 && src.pixels == null);
       src.loadPixels();
       blit_resize(src, sx, sy, sx2, sy2,
                   pixels, pixelWidth, pixelHeight, dx, dy, dx2, dy2, mode);
       //src.updatePixels();
+      if (sourceTemporary) {
+        src.pixels = null;
+      }
     }
     updatePixels();
+    if (temporary) {
+      pixels = null;
+    }
   }
 
 
@@ -1969,14 +3059,16 @@ public class PImage implements PConstants, Cloneable {
 
   /**
    * Internal blitter/resizer/copier from toxi.
-   * Uses bilinear filtering if smooth() has been enabled
-   * 'mode' determines the blending mode used in the process.
+   * Uses bilinear filtering, and 'mode' determines the blending mode used
+   * in the process. When the source and destination are the same size,
+   * the source pixels are blended directly, without any filtering. Large
+   * blits are split into bands of rows that run on separate threads.
    */
   private void blit_resize(PImage img,
                            int srcX1, int srcY1, int srcX2, int srcY2,
-                           int[] destPixels, int screenW, int screenH,
+                           final int[] destPixels, final int screenW, int screenH,
                            int destX1, int destY1, int destX2, int destY2,
-                           int mode) {
+                           final int mode) {
     if (srcX1 < 0) srcX1 = 0;
     if (srcY1 < 0) srcY1 = 0;
     if (srcX2 > img.pixelWidth) srcX2 = img.pixelWidth;
@@ -1987,12 +3079,6 @@ public class PImage implements PConstants, Cloneable {
     int destW = destX2 - destX1;
     int destH = destY2 - destY1;
 
-    boolean smooth = true;  // may as well go with the smoothing these days
-
-    if (!smooth) {
-      srcW++; srcH++;
-    }
-
     if (destW <= 0 || destH <= 0 ||
         srcW <= 0 || srcH <= 0 ||
         destX1 >= screenW || destY1 >= screenH ||
@@ -2000,512 +3086,221 @@ public class PImage implements PConstants, Cloneable {
       return;
     }
 
-    int dx = (int) (srcW / (float) destW * PRECISIONF);
-    int dy = (int) (srcH / (float) destH * PRECISIONF);
-
-    srcXOffset = destX1 < 0 ? -destX1 * dx : srcX1 * PRECISIONF;
-    srcYOffset = destY1 < 0 ? -destY1 * dy : srcY1 * PRECISIONF;
+    final int dx = (int) (srcW / (float) destW * PRECISIONF);
+    final int dy = (int) (srcH / (float) destH * PRECISIONF);
 
+    int srcXOffset = srcX1 * PRECISIONF;
+    int srcYOffset = srcY1 * PRECISIONF;
     if (destX1 < 0) {
+      srcXOffset -= destX1 * dx;
       destW += destX1;
       destX1 = 0;
     }
     if (destY1 < 0) {
+      srcYOffset -= destY1 * dy;
       destH += destY1;
       destY1 = 0;
     }
 
-    destW = min(destW, screenW - destX1);
-    destH = min(destH, screenH - destY1);
-
-    int destOffset = destY1 * screenW + destX1;
-    srcBuffer = img.pixels;
-
-    if (smooth) {
-      // use bilinear filtering
-      iw = img.pixelWidth;
-      iw1 = img.pixelWidth - 1;
-      ih1 = img.pixelHeight - 1;
-
-      switch (mode) {
-
-      case BLEND:
-        for (int y = 0; y < destH; y++) {
-          filter_new_scanline();
-          for (int x = 0; x < destW; x++) {
-            // davbol  - renamed old blend_multiply to blend_blend
-            destPixels[destOffset + x] =
-              blend_blend(destPixels[destOffset + x], filter_bilinear());
-            sX += dx;
-          }
-          destOffset += screenW;
-          srcYOffset += dy;
-        }
-        break;
-
-      case ADD:
-        for (int y = 0; y < destH; y++) {
-          filter_new_scanline();
-          for (int x = 0; x < destW; x++) {
-            destPixels[destOffset + x] =
-              blend_add_pin(destPixels[destOffset + x], filter_bilinear());
-            sX += dx;
-          }
-          destOffset += screenW;
-          srcYOffset += dy;
-        }
-        break;
-
-      case SUBTRACT:
-        for (int y = 0; y < destH; y++) {
-          filter_new_scanline();
-          for (int x = 0; x < destW; x++) {
-            destPixels[destOffset + x] =
-              blend_sub_pin(destPixels[destOffset + x], filter_bilinear());
-            sX += dx;
-          }
-          destOffset += screenW;
-          srcYOffset += dy;
-        }
-        break;
-
-      case LIGHTEST:
-        for (int y = 0; y < destH; y++) {
-          filter_new_scanline();
-          for (int x = 0; x < destW; x++) {
-            destPixels[destOffset + x] =
-              blend_lightest(destPixels[destOffset + x], filter_bilinear());
-            sX += dx;
-          }
-          destOffset += screenW;
-          srcYOffset += dy;
-        }
-        break;
-
-      case DARKEST:
-        for (int y = 0; y < destH; y++) {
-          filter_new_scanline();
-          for (int x = 0; x < destW; x++) {
-            destPixels[destOffset + x] =
-              blend_darkest(destPixels[destOffset + x], filter_bilinear());
-            sX += dx;
-          }
-          destOffset += screenW;
-          srcYOffset += dy;
-        }
-        break;
-
-      case REPLACE:
-        for (int y = 0; y < destH; y++) {
-          filter_new_scanline();
-          for (int x = 0; x < destW; x++) {
-            destPixels[destOffset + x] = filter_bilinear();
-            sX += dx;
-          }
-          destOffset += screenW;
-          srcYOffset += dy;
-        }
-        break;
-
-      case DIFFERENCE:
-        for (int y = 0; y < destH; y++) {
-          filter_new_scanline();
-          for (int x = 0; x < destW; x++) {
-            destPixels[destOffset + x] =
-              blend_difference(destPixels[destOffset + x], filter_bilinear());
-            sX += dx;
-          }
-          destOffset += screenW;
-          srcYOffset += dy;
-        }
-        break;
-
-      case EXCLUSION:
-        for (int y = 0; y < destH; y++) {
-          filter_new_scanline();
-          for (int x = 0; x < destW; x++) {
-            destPixels[destOffset + x] =
-              blend_exclusion(destPixels[destOffset + x], filter_bilinear());
-            sX += dx;
-          }
-          destOffset += screenW;
-          srcYOffset += dy;
-        }
-        break;
+    final int width = min(destW, screenW - destX1);
+    final int height = min(destH, screenH - destY1);
+    if (width <= 0 || height <= 0) {
+      return;
+    }
 
-      case MULTIPLY:
-        for (int y = 0; y < destH; y++) {
-          filter_new_scanline();
-          for (int x = 0; x < destW; x++) {
-            destPixels[destOffset + x] =
-              blend_multiply(destPixels[destOffset + x], filter_bilinear());
-            sX += dx;
+    final int destStart = destY1 * screenW + destX1;
+    final int[] srcBuffer = img.pixels;
+    final int iw = img.pixelWidth;
+    final int ih = img.pixelHeight;
+    final int startX = srcXOffset;
+    final int startY = srcYOffset;
+
+    if (dx == PRECISIONF && dy == PRECISIONF) {
+      // Same size, so bilinear filtering would return the source pixels
+      // exactly. Skip it, and blend straight from the source image.
+      final int srcStart = (startY >> PRECISIONB) * iw + (startX >> PRECISIONB);
+      filterRows(height, width * height, new RowFilter() {
+        void filter(int start, int stop) {
+          for (int y = start; y < stop; y++) {
+            blendRow(mode, srcBuffer, srcStart + y * iw,
+                     destPixels, destStart + y * screenW, width);
           }
-          destOffset += screenW;
-          srcYOffset += dy;
         }
-        break;
+      });
 
-      case SCREEN:
-        for (int y = 0; y < destH; y++) {
-          filter_new_scanline();
-          for (int x = 0; x < destW; x++) {
-            destPixels[destOffset + x] =
-              blend_screen(destPixels[destOffset + x], filter_bilinear());
-            sX += dx;
+    } else {
+      filterRows(height, width * height, new RowFilter() {
+        void filter(int start, int stop) {
+          int[] scanline = new int[width];
+          for (int y = start; y < stop; y++) {
+            filterScanline(srcBuffer, iw, ih, startX, startY + y * dy, dx,
+                           scanline, width);
+            blendRow(mode, scanline, 0,
+                     destPixels, destStart + y * screenW, width);
           }
-          destOffset += screenW;
-          srcYOffset += dy;
         }
-        break;
+      });
+    }
+  }
 
-      case OVERLAY:
-        for (int y = 0; y < destH; y++) {
-          filter_new_scanline();
-          for (int x = 0; x < destW; x++) {
-            destPixels[destOffset + x] =
-              blend_overlay(destPixels[destOffset + x], filter_bilinear());
-            sX += dx;
-          }
-          destOffset += screenW;
-          srcYOffset += dy;
-        }
-        break;
 
-      case HARD_LIGHT:
-        for (int y = 0; y < destH; y++) {
-          filter_new_scanline();
-          for (int x = 0; x < destW; x++) {
-            destPixels[destOffset + x] =
-              blend_hard_light(destPixels[destOffset + x], filter_bilinear());
-            sX += dx;
-          }
-          destOffset += screenW;
-          srcYOffset += dy;
-        }
-        break;
+  /**
+   * Fill 'out' with count pixels from one row of a source image using
+   * bilinear filtering, starting at (srcX, srcY) and moving dx to the right
+   * for each pixel. Coordinates are fixed point with PRECISIONB bits.
+   */
+  static private void filterScanline(int[] srcBuffer, int iw, int ih,
+                                     int srcX, int srcY, int dx,
+                                     int[] out, int count) {
+    int iw1 = iw - 1;
+    int ih1 = ih - 1;
+    int fracV = srcY & PREC_MAXVAL;
+    int ifV = PREC_MAXVAL - fracV + 1;
+    int v1 = (srcY >> PRECISIONB) * iw;
+    int v2 = min((srcY >> PRECISIONB) + 1, ih1) * iw;
+
+    int sX = srcX;
+    for (int x = 0; x < count; x++) {
+      int fracU = sX & PREC_MAXVAL;
+      int ifU = PREC_MAXVAL - fracU + 1;
+      int ul = (ifU * ifV) >> PRECISIONB;
+      int ll = ifU - ul;
+      int ur = ifV - ul;
+      int lr = PREC_MAXVAL + 1 - ul - ll - ur;
+      int u1 = (sX >> PRECISIONB);
+      int u2 = min(u1 + 1, iw1);
+
+      // get color values of the 4 neighbouring texels
+      int cUL = srcBuffer[v1 + u1];
+      int cUR = srcBuffer[v1 + u2];
+      int cLL = srcBuffer[v2 + u1];
+      int cLR = srcBuffer[v2 + u2];
+
+      int r = ((ul*((cUL&RED_MASK)>>16) + ll*((cLL&RED_MASK)>>16) +
+                ur*((cUR&RED_MASK)>>16) + lr*((cLR&RED_MASK)>>16))
+               << PREC_RED_SHIFT) & RED_MASK;
+
+      int g = ((ul*(cUL&GREEN_MASK) + ll*(cLL&GREEN_MASK) +
+                ur*(cUR&GREEN_MASK) + lr*(cLR&GREEN_MASK))
+               >>> PRECISIONB) & GREEN_MASK;
+
+      int b = (ul*(cUL&BLUE_MASK) + ll*(cLL&BLUE_MASK) +
+               ur*(cUR&BLUE_MASK) + lr*(cLR&BLUE_MASK))
+                 >>> PRECISIONB;
+
+      int a = ((ul*((cUL&ALPHA_MASK)>>>24) + ll*((cLL&ALPHA_MASK)>>>24) +
+                ur*((cUR&ALPHA_MASK)>>>24) + lr*((cLR&ALPHA_MASK)>>>24))
+               << PREC_ALPHA_SHIFT) & ALPHA_MASK;
+
+      out[x] = a | r | g | b;
+      sX += dx;
+    }
+  }
 
-      case SOFT_LIGHT:
-        for (int y = 0; y < destH; y++) {
-          filter_new_scanline();
-          for (int x = 0; x < destW; x++) {
-            destPixels[destOffset + x] =
-              blend_soft_light(destPixels[destOffset + x], filter_bilinear());
-            sX += dx;
-          }
-          destOffset += screenW;
-          srcYOffset += dy;
-        }
-        break;
 
-      // davbol - proposed 2007-01-09
-      case DODGE:
-        for (int y = 0; y < destH; y++) {
-          filter_new_scanline();
-          for (int x = 0; x < destW; x++) {
-            destPixels[destOffset + x] =
-              blend_dodge(destPixels[destOffset + x], filter_bilinear());
-            sX += dx;
-          }
-          destOffset += screenW;
-          srcYOffset += dy;
-        }
-        break;
+  /**
+   * Blend count pixels from src onto dst. The switch is outside the loops,
+   * so that each mode gets its own loop with the blend function inlined.
+   */
+  static private void blendRow(int mode, int[] src, int srcOffset,
+                               int[] dst, int dstOffset, int count) {
+    int end = dstOffset + count;
+    int s = srcOffset;
+    switch (mode) {
 
-      case BURN:
-        for (int y = 0; y < destH; y++) {
-          filter_new_scanline();
-          for (int x = 0; x < destW; x++) {
-            destPixels[destOffset + x] =
-              blend_burn(destPixels[destOffset + x], filter_bilinear());
-            sX += dx;
-          }
-          destOffset += screenW;
-          srcYOffset += dy;
-        }
-        break;
+    case REPLACE:
+      System.arraycopy(src, srcOffset, dst, dstOffset, count);
+      break;
 
+    case BLEND:
+      for (int d = dstOffset; d < end; d++) {
+        // davbol  - renamed old blend_multiply to blend_blend
+        dst[d] = blend_blend(dst[d], src[s++]);
       }
+      break;
 
-    } else {
-      // nearest neighbour scaling (++fast!)
-      switch (mode) {
-
-      case BLEND:
-        for (int y = 0; y < destH; y++) {
-          sX = srcXOffset;
-          sY = (srcYOffset >> PRECISIONB) * img.pixelWidth;
-          for (int x = 0; x < destW; x++) {
-            // davbol - renamed old blend_multiply to blend_blend
-            destPixels[destOffset + x] =
-              blend_blend(destPixels[destOffset + x],
-                          srcBuffer[sY + (sX >> PRECISIONB)]);
-            sX += dx;
-          }
-          destOffset += screenW;
-          srcYOffset += dy;
-        }
-        break;
-
-      case ADD:
-        for (int y = 0; y < destH; y++) {
-          sX = srcXOffset;
-          sY = (srcYOffset >> PRECISIONB) * img.pixelWidth;
-          for (int x = 0; x < destW; x++) {
-            destPixels[destOffset + x] =
-              blend_add_pin(destPixels[destOffset + x],
-                            srcBuffer[sY + (sX >> PRECISIONB)]);
-            sX += dx;
-          }
-          destOffset += screenW;
-          srcYOffset += dy;
-        }
-        break;
-
-      case SUBTRACT:
-        for (int y = 0; y < destH; y++) {
-          sX = srcXOffset;
-          sY = (srcYOffset >> PRECISIONB) * img.pixelWidth;
-          for (int x = 0; x < destW; x++) {
-            destPixels[destOffset + x] =
-              blend_sub_pin(destPixels[destOffset + x],
-                            srcBuffer[sY + (sX >> PRECISIONB)]);
-            sX += dx;
-          }
-          destOffset += screenW;
-          srcYOffset += dy;
-        }
-        break;
-
-      case LIGHTEST:
-        for (int y = 0; y < destH; y++) {
-          sX = srcXOffset;
-          sY = (srcYOffset >> PRECISIONB) * img.pixelWidth;
-          for (int x = 0; x < destW; x++) {
-            destPixels[destOffset + x] =
-              blend_lightest(destPixels[destOffset + x],
-                             srcBuffer[sY + (sX >> PRECISIONB)]);
-            sX += dx;
-          }
-          destOffset += screenW;
-          srcYOffset += dy;
-        }
-        break;
+    case ADD:
+      for (int d = dstOffset; d < end; d++) {
+        dst[d] = blend_add_pin(dst[d], src[s++]);
+      }
+      break;
 
-      case DARKEST:
-        for (int y = 0; y < destH; y++) {
-          sX = srcXOffset;
-          sY = (srcYOffset >> PRECISIONB) * img.pixelWidth;
-          for (int x = 0; x < destW; x++) {
-            destPixels[destOffset + x] =
-              blend_darkest(destPixels[destOffset + x],
-                            srcBuffer[sY + (sX >> PRECISIONB)]);
-            sX += dx;
-          }
-          destOffset += screenW;
-          srcYOffset += dy;
-        }
-        break;
+    case SUBTRACT:
+      for (int d = dstOffset; d < end; d++) {
+        dst[d] = blend_sub_pin(dst[d], src[s++]);
+      }
+      break;
 
-      case REPLACE:
-        for (int y = 0; y < destH; y++) {
-          sX = srcXOffset;
-          sY = (srcYOffset >> PRECISIONB) * img.pixelWidth;
-          for (int x = 0; x < destW; x++) {
-            destPixels[destOffset + x] = srcBuffer[sY + (sX >> PRECISIONB)];
-            sX += dx;
-          }
-          destOffset += screenW;
-          srcYOffset += dy;
-        }
-        break;
+    case LIGHTEST:
+      for (int d = dstOffset; d < end; d++) {
+        dst[d] = blend_lightest(dst[d], src[s++]);
+      }
+      break;
 
-      case DIFFERENCE:
-        for (int y = 0; y < destH; y++) {
-          sX = srcXOffset;
-          sY = (srcYOffset >> PRECISIONB) * img.pixelWidth;
-          for (int x = 0; x < destW; x++) {
-            destPixels[destOffset + x] =
-              blend_difference(destPixels[destOffset + x],
-                               srcBuffer[sY + (sX >> PRECISIONB)]);
-            sX += dx;
-          }
-          destOffset += screenW;
-          srcYOffset += dy;
-        }
-        break;
+    case DARKEST:
+      for (int d = dstOffset; d < end; d++) {
+        dst[d] = blend_darkest(dst[d], src[s++]);
+      }
+      break;
 
-      case EXCLUSION:
-        for (int y = 0; y < destH; y++) {
-          sX = srcXOffset;
-          sY = (srcYOffset >> PRECISIONB) * img.pixelWidth;
-          for (int x = 0; x < destW; x++) {
-            destPixels[destOffset + x] =
-              blend_exclusion(destPixels[destOffset + x],
-                              srcBuffer[sY + (sX >> PRECISIONB)]);
-            sX += dx;
-          }
-          destOffset += screenW;
-          srcYOffset += dy;
-        }
-        break;
+    case DIFFERENCE:
+      for (int d = dstOffset; d < end; d++) {
+        dst[d] = blend_difference(dst[d], src[s++]);
+      }
+      break;
 
-      case MULTIPLY:
-        for (int y = 0; y < destH; y++) {
-          sX = srcXOffset;
-          sY = (srcYOffset >> PRECISIONB) * img.pixelWidth;
-          for (int x = 0; x < destW; x++) {
-            destPixels[destOffset + x] =
-              blend_multiply(destPixels[destOffset + x],
-                            srcBuffer[sY + (sX >> PRECISIONB)]);
-            sX += dx;
-          }
-          destOffset += screenW;
-          srcYOffset += dy;
-        }
-        break;
+    case EXCLUSION:
+      for (int d = dstOffset; d < end; d++) {
+        dst[d] = blend_exclusion(dst[d], src[s++]);
+      }
+      break;
 
-      case SCREEN:
-        for (int y = 0; y < destH; y++) {
-          sX = srcXOffset;
-          sY = (srcYOffset >> PRECISIONB) * img.pixelWidth;
-          for (int x = 0; x < destW; x++) {
-            destPixels[destOffset + x] =
-              blend_screen(destPixels[destOffset + x],
-                            srcBuffer[sY + (sX >> PRECISIONB)]);
-            sX += dx;
-          }
-          destOffset += screenW;
-          srcYOffset += dy;
-        }
-        break;
+    case MULTIPLY:
+      for (int d = dstOffset; d < end; d++) {
+        dst[d] = blend_multiply(dst[d], src[s++]);
+      }
+      break;
 
-      case OVERLAY:
-        for (int y = 0; y < destH; y++) {
-          sX = srcXOffset;
-          sY = (srcYOffset >> PRECISIONB) * img.pixelWidth;
-          for (int x = 0; x < destW; x++) {
-            destPixels[destOffset + x] =
-              blend_overlay(destPixels[destOffset + x],
-                            srcBuffer[sY + (sX >> PRECISIONB)]);
-            sX += dx;
-          }
-          destOffset += screenW;
-          srcYOffset += dy;
-        }
-        break;
+    case SCREEN:
+      for (int d = dstOffset; d < end; d++) {
+        dst[d] = blend_screen(dst[d], src[s++]);
+      }
+      break;
 
-      case HARD_LIGHT:
-        for (int y = 0; y < destH; y++) {
-          sX = srcXOffset;
-          sY = (srcYOffset >> PRECISIONB) * img.pixelWidth;
-          for (int x = 0; x < destW; x++) {
-            destPixels[destOffset + x] =
-              blend_hard_light(destPixels[destOffset + x],
-                            srcBuffer[sY + (sX >> PRECISIONB)]);
-            sX += dx;
-          }
-          destOffset += screenW;
-          srcYOffset += dy;
-        }
-        break;
+    case OVERLAY:
+      for (int d = dstOffset; d < end; d++) {
+        dst[d] = blend_overlay(dst[d], src[s++]);
+      }
+      break;
 
-      case SOFT_LIGHT:
-        for (int y = 0; y < destH; y++) {
-          sX = srcXOffset;
-          sY = (srcYOffset >> PRECISIONB) * img.pixelWidth;
-          for (int x = 0; x < destW; x++) {
-            destPixels[destOffset + x] =
-              blend_soft_light(destPixels[destOffset + x],
-                            srcBuffer[sY + (sX >> PRECISIONB)]);
-            sX += dx;
-          }
-          destOffset += screenW;
-          srcYOffset += dy;
-        }
-        break;
+    case HARD_LIGHT:
+      for (int d = dstOffset; d < end; d++) {
+        dst[d] = blend_hard_light(dst[d], src[s++]);
+      }
+      break;
 
-      // davbol - proposed 2007-01-09
-      case DODGE:
-        for (int y = 0; y < destH; y++) {
-          sX = srcXOffset;
-          sY = (srcYOffset >> PRECISIONB) * img.pixelWidth;
-          for (int x = 0; x < destW; x++) {
-            destPixels[destOffset + x] =
-              blend_dodge(destPixels[destOffset + x],
-                            srcBuffer[sY + (sX >> PRECISIONB)]);
-            sX += dx;
-          }
-          destOffset += screenW;
-          srcYOffset += dy;
-        }
-        break;
+    case SOFT_LIGHT:
+      for (int d = dstOffset; d < end; d++) {
+        dst[d] = blend_soft_light(dst[d], src[s++]);
+      }
+      break;
 
-      case BURN:
-        for (int y = 0; y < destH; y++) {
-          sX = srcXOffset;
-          sY = (srcYOffset >> PRECISIONB) * img.pixelWidth;
-          for (int x = 0; x < destW; x++) {
-            destPixels[destOffset + x] =
-              blend_burn(destPixels[destOffset + x],
-                            srcBuffer[sY + (sX >> PRECISIONB)]);
-            sX += dx;
-          }
-          destOffset += screenW;
-          srcYOffset += dy;
-        }
-        break;
+    // davbol - proposed 2007-01-09
+    case DODGE:
+      for (int d = dstOffset; d < end; d++) {
+        dst[d] = blend_dodge(dst[d], src[s++]);
+      }
+      break;
 
+    case BURN:
+      for (int d = dstOffset; d < end; d++) {
+        dst[d] = blend_burn(dst[d], src[s++]);
       }
+      break;
     }
   }
 
 
-  private void filter_new_scanline() {
-    sX = srcXOffset;
-    fracV = srcYOffset & PREC_MAXVAL;
-    ifV = PREC_MAXVAL - fracV + 1;
-    v1 = (srcYOffset >> PRECISIONB) * iw;
-    v2 = min((srcYOffset >> PRECISIONB) + 1, ih1) * iw;
-  }
-
-
-  private int filter_bilinear() {
-    fracU = sX & PREC_MAXVAL;
-    ifU = PREC_MAXVAL - fracU + 1;
-    ul = (ifU * ifV) >> PRECISIONB;
-    ll = ifU - ul;
-    ur = ifV - ul;
-    lr = PREC_MAXVAL + 1 - ul - ll - ur;
-    u1 = (sX >> PRECISIONB);
-    u2 = min(u1 + 1, iw1);
-
-    // get color values of the 4 neighbouring texels
-    cUL = srcBuffer[v1 + u1];
-    cUR = srcBuffer[v1 + u2];
-    cLL = srcBuffer[v2 + u1];
-    cLR = srcBuffer[v2 + u2];
-
-    r = ((ul*((cUL&RED_MASK)>>16) + ll*((cLL&RED_MASK)>>16) +
-          ur*((cUR&RED_MASK)>>16) + lr*((cLR&RED_MASK)>>16))
-         << PREC_RED_SHIFT) & RED_MASK;
-
-    g = ((ul*(cUL&GREEN_MASK) + ll*(cLL&GREEN_MASK) +
-          ur*(cUR&GREEN_MASK) + lr*(cLR&GREEN_MASK))
-         >>> PRECISIONB) & GREEN_MASK;
-
-    b = (ul*(cUL&BLUE_MASK) + ll*(cLL&BLUE_MASK) +
-         ur*(cUR&BLUE_MASK) + lr*(cLR&BLUE_MASK))
-           >>> PRECISIONB;
-
-    a = ((ul*((cUL&ALPHA_MASK)>>>24) + ll*((cLL&ALPHA_MASK)>>>24) +
-          ur*((cUR&ALPHA_MASK)>>>24) + lr*((cLR&ALPHA_MASK)>>>24))
-         << PREC_ALPHA_SHIFT) & ALPHA_MASK;
-
-    return a | r | g | b;
-  }
-
-
 
   //////////////////////////////////////////////////////////////
 
@@ -3107,7 +3902,7 @@ int testFunction(int dst, int src) {
   protected boolean saveTGA(OutputStream output) {
     byte header[] = new byte[18];
 
-     if (format == ALPHA) {  // save ALPHA images as 8bit grayscale
+     if (format == ALPHA || format == GRAY8) {  // save as 8bit grayscale
        header[2] = 0x0B;
        header[16] = 0x08;
        header[17] = 0x28;
@@ -3141,7 +3936,7 @@ int testFunction(int dst, int src) {
 
        // 8bit image exporter is in separate loop
        // to avoid excessive conditionals...
-       if (format == ALPHA) {
+       if (format == ALPHA || format == GRAY8) {
          while (index < maxLen) {
            boolean isRLE = false;
            int rle = 1;
@@ -3361,6 +4156,12 @@ int testFunction(int dst, int src) {
 
   protected String[] saveImageFormats;
 
+  /**
+   * When set, save() writes .png files with this encoder instead of ImageIO.
+   * This also covers saveFrame() and its asynchronous saves.
+   */
+  static public PNGEncoder pngEncoder;
+
   /**
    * ( begin auto-generated from PImage_save.xml )
    *
@@ -3433,6 +4234,14 @@ int testFunction(int dst, int src) {
      try {
        OutputStream os = null;
 
+       PNGEncoder encoder = pngEncoder;
+       if (encoder != null && filename.toLowerCase().endsWith(".png")) {
+         os = new BufferedOutputStream(new FileOutputStream(filename), 32768);
+         encoder.write(this, os);
+         os.close();
+         return true;
+       }
+
        if (saveImageFormats == null) {
          saveImageFormats = javax.imageio.ImageIO.getWriterFormatNames();
        }
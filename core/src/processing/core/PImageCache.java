@@ -0,0 +1,186 @@
+/* -*- mode: java; c-basic-offset: 2; indent-tabs-mode: nil -*- */
+
+/*
+  Part of the Processing project - http://processing.org
+
+  This library is free software; you can redistribute it and/or
+  modify it under the terms of the GNU Lesser General Public
+  License as published by the Free Software Foundation, version 2.1.
+
+  This library is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General
+  Public License along with this library; if not, write to the
+  Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+  Boston, MA  02111-1307  USA
+*/
+
+package processing.core;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+
+/**
+ * Decoded images kept by loadImage() and requestImage(), so that loading
+ * the same file again doesn't decode it again. Turned on with
+ * PApplet.imageCache(). Images are looked up by the full path of the file
+ * and the time it was last modified, so a file that changes on disk is
+ * loaded again. When the images take up more than the budget, the ones
+ * used least recently are dropped.
+ * <p/>
+ * By default each hit returns a copy of the cached image, which is much
+ * faster than decoding and can be changed freely. With shared set, every
+ * hit returns the same PImage, which saves the copy and the memory, but
+ * then changes made to it will show up everywhere it's used.
+ */
+public class PImageCache {
+  protected long maxBytes;
+  protected boolean shared;
+
+  private long bytes;
+  private int hits;
+  private int misses;
+  private LinkedHashMap<String, Entry> entries =
+    new LinkedHashMap<String, Entry>(16, 0.75f, true);
+
+
+  static private class Entry {
+    final PImage image;
+    final long modified;
+    final long bytes;
+
+    Entry(PImage image, long modified) {
+      this.image = image;
+      this.modified = modified;
+      bytes = imageBytes(image);
+    }
+  }
+
+
+  /**
+   * @param maxBytes budget for the pixel data of the cached images
+   * @param shared true to return the cached PImage itself, not a copy
+   */
+  public PImageCache(long maxBytes, boolean shared) {
+    if (maxBytes <= 0) {
+      throw new IllegalArgumentException("maxBytes must be > 0");
+    }
+    this.maxBytes = maxBytes;
+    this.shared = shared;
+  }
+
+
+  static long imageBytes(PImage image) {
+    long count = 0;
+    if (image.pixels != null) count += 4L * image.pixels.length;
+    if (image.bytePixels != null) count += image.bytePixels.length;
+    return count;
+  }
+
+
+  /**
+   * Returns the image stored for this key, or null if there isn't one,
+   * or if it was stored for a different modification time.
+   */
+  public PImage get(String key, long modified) {
+    PImage image;
+    synchronized (this) {
+      Entry entry = entries.get(key);
+      if (entry == null) {
+        return null;
+      }
+      if (entry.modified != modified) {
+        // the file has changed since, so this one won't be used again
+        entries.remove(key);
+        bytes -= entry.bytes;
+        return null;
+      }
+      hits++;
+      image = entry.image;
+    }
+    // copy outside the lock, the cached image itself doesn't change
+    return shared ? image : image.copy();
+  }
+
+
+  /**
+   * Store a newly loaded image, counted as a miss. Returns the image to
+   * hand to the sketch, which is a copy unless the cache is shared.
+   */
+  public PImage put(String key, long modified, PImage image) {
+    Entry entry = new Entry(image, modified);
+    synchronized (this) {
+      misses++;
+      if (entry.bytes > maxBytes || image.width <= 0 || image.height <= 0) {
+        return image;  // won't fit, or didn't load properly
+      }
+      Entry previous = entries.put(key, entry);
+      if (previous != null) {
+        bytes -= previous.bytes;
+      }
+      bytes += entry.bytes;
+      trim();
+    }
+    return shared ? image : image.copy();
+  }
+
+
+  /** Drop images, least recently used first, until they fit the budget. */
+  private void trim() {
+    Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+    while (bytes > maxBytes && it.hasNext()) {
+      bytes -= it.next().getValue().bytes;
+      it.remove();
+    }
+  }
+
+
+  public synchronized void maxBytes(long maxBytes) {
+    if (maxBytes <= 0) {
+      throw new IllegalArgumentException("maxBytes must be > 0");
+    }
+    this.maxBytes = maxBytes;
+    trim();
+  }
+
+
+  public synchronized void clear() {
+    entries.clear();
+    bytes = 0;
+  }
+
+
+  /** Number of images currently in the cache */
+  public synchronized int size() {
+    return entries.size();
+  }
+
+
+  /** Bytes of pixel data currently in the cache */
+  public synchronized long bytes() {
+    return bytes;
+  }
+
+
+  /** Number of loads that were answered from the cache */
+  public synchronized int hits() {
+    return hits;
+  }
+
+
+  /** Number of loads that had to decode the file */
+  public synchronized int misses() {
+    return misses;
+  }
+
+
+  public synchronized void resetCounts() {
+    hits = 0;
+    misses = 0;
+  }
+}
@@ -0,0 +1,245 @@
+/* -*- mode: java; c-basic-offset: 2; indent-tabs-mode: nil -*- */
+
+/*
+  Part of the Processing project - http://processing.org
+
+  This library is free software; you can redistribute it and/or
+  modify it under the terms of the GNU Lesser General Public
+  License as published by the Free Software Foundation, version 2.1.
+
+  This library is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General
+  Public License along with this library; if not, write to the
+  Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+  Boston, MA  02111-1307  USA
+*/
+
+package processing.core;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+
+/**
+ * An image being loaded in the background by requestImageAsync().
+ * <p/>
+ * image() returns the PImage right away. Like with requestImage(), its
+ * width and height are 0 until it has loaded, and -1 if loading failed.
+ * As a Future, get() waits for the image, and cancel() drops a request
+ * that hasn't started yet, such as an image that has scrolled out of view.
+ * Requests with a higher priority are loaded first, and the priority can
+ * be changed while a request is waiting. A callback set with onLoad() is
+ * run on the animation thread (after draw()) once the image is done.
+ */
+public class PImageRequest extends FutureTask<PImage>
+implements Comparable<PImageRequest> {
+
+  static private final AtomicLong counter = new AtomicLong();
+
+  protected PApplet parent;
+  protected PImage vessel;
+  protected String filename;
+
+  private volatile int priority;
+  private final long order = counter.getAndIncrement();  // FIFO for ties
+  private ThreadPoolExecutor pool;
+  private Consumer<PImage> callback;
+  private boolean delivered;
+  private boolean finished;  // done() has been called
+  // counted down once done() has queued the callback, so that get()
+  // doesn't return before the callback is in line to run
+  private final CountDownLatch settled = new CountDownLatch(1);
+
+
+  PImageRequest(final PApplet parent, final String filename,
+                final String extension, final PImage vessel) {
+    super(new Runnable() {
+      public void run() {
+        adopt(vessel, parent.loadImage(filename, extension));
+      }
+    }, vessel);
+    this.parent = parent;
+    this.filename = filename;
+    this.vessel = vessel;
+  }
+
+
+  /**
+   * Take over the decoded arrays as they are, so the vessel ends up with
+   * the pixels without another copy.
+   */
+  static private void adopt(PImage vessel, PImage actual) {
+    // An error message should have already printed
+    if (actual == null) {
+      vessel.width = -1;
+      vessel.height = -1;
+
+    } else {
+      vessel.format = actual.format;
+      vessel.pixels = actual.pixels;
+      vessel.bytePixels = actual.bytePixels;
+
+      vessel.pixelWidth = actual.width;
+      vessel.pixelHeight = actual.height;
+      vessel.pixelDensity = 1;
+      // set the size last, since that's what sketches check
+      vessel.height = actual.height;
+      vessel.width = actual.width;
+    }
+  }
+
+
+  /** Complete the request right away, used for images already cached. */
+  void finish(PImage actual) {
+    adopt(vessel, actual);
+    set(vessel);
+  }
+
+
+  void submit(ThreadPoolExecutor pool) {
+    this.pool = pool;
+    pool.execute(this);
+  }
+
+
+  /**
+   * The image being loaded. Its width and height are 0 until it's ready.
+   */
+  public PImage image() {
+    return vessel;
+  }
+
+
+  public String getFilename() {
+    return filename;
+  }
+
+
+  public int priority() {
+    return priority;
+  }
+
+
+  /**
+   * Requests with a higher priority are loaded first. The default is 0.
+   * Changing it moves a waiting request ahead of (or behind) the others.
+   */
+  public void priority(int priority) {
+    ThreadPoolExecutor pool = this.pool;
+    if (pool != null && pool.remove(this)) {
+      // still waiting, so put it back in at its new place
+      this.priority = priority;
+      pool.execute(this);
+    } else {
+      this.priority = priority;
+    }
+  }
+
+
+  /**
+   * Run this once the image has loaded (or failed to load), on the
+   * animation thread after draw(). Not run if the request is cancelled.
+   * If the image is already done, it runs after the next draw(). In a
+   * sketch that has called noLoop(), the image being done calls redraw(),
+   * so that there is a next draw().
+   */
+  public PImageRequest onLoad(Consumer<PImage> callback) {
+    boolean posted;
+    synchronized (this) {
+      this.callback = callback;
+      delivered = false;
+      // otherwise done() hasn't happened yet, and will post it
+      posted = finished && !isCancelled();
+      if (posted) {
+        parent.postImageRequest(this);
+      }
+    }
+    if (posted) {
+      parent.runImageRequests();
+    }
+    return this;
+  }
+
+
+  @Override
+  public boolean cancel(boolean mayInterruptIfRunning) {
+    boolean cancelled = super.cancel(mayInterruptIfRunning);
+    if (cancelled && pool != null) {
+      pool.remove(this);  // don't leave it taking up space in the queue
+    }
+    return cancelled;
+  }
+
+
+  @Override
+  protected void done() {
+    // The result is final by now. Posting under the same lock as onLoad()
+    // means a callback added at any point gets posted by one or the other.
+    boolean posted;
+    synchronized (this) {
+      finished = true;
+      posted = (callback != null && !isCancelled());
+      if (posted) {
+        parent.postImageRequest(this);
+      }
+    }
+    settled.countDown();
+    if (posted) {
+      parent.runImageRequests();
+    }
+  }
+
+
+  /**
+   * Wait for the image. Once this returns, a callback set with onLoad()
+   * beforehand is already queued to run after the next draw().
+   */
+  @Override
+  public PImage get() throws InterruptedException, ExecutionException {
+    PImage image = super.get();
+    settled.await();
+    return image;
+  }
+
+
+  @Override
+  public PImage get(long timeout, TimeUnit unit)
+    throws InterruptedException, ExecutionException, TimeoutException {
+    long deadline = System.nanoTime() + unit.toNanos(timeout);
+    PImage image = super.get(timeout, unit);
+    if (!settled.await(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+      throw new TimeoutException();
+    }
+    return image;
+  }
+
+
+  /** Called by PApplet on the animation thread. */
+  void deliver() {
+    Consumer<PImage> callback;
+    synchronized (this) {
+      if (delivered || this.callback == null) return;
+      delivered = true;
+      callback = this.callback;
+    }
+    callback.accept(vessel);
+  }
+
+
+  @Override
+  public int compareTo(PImageRequest other) {
+    // higher priority first, then in the order they were requested
+    int diff = Integer.compare(other.priority, priority);
+    return (diff != 0) ? diff : Long.compare(order, other.order);
+  }
+}
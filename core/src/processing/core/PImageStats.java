@@ -0,0 +1,178 @@
+/* -*- mode: java; c-basic-offset: 2; indent-tabs-mode: nil -*- */
+
+/*
+  Part of the Processing project - http://processing.org
+
+  This library is free software; you can redistribute it and/or
+  modify it under the terms of the GNU Lesser General Public
+  License as published by the Free Software Foundation, version 2.1.
+
+  This library is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General
+  Public License along with this library; if not, write to the
+  Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+  Boston, MA  02111-1307  USA
+*/
+
+package processing.core;
+
+
+/**
+ * Per-channel statistics of an image, filled in by PImage.stats(). Read
+ * them with min(), max(), sum(), mean() and stddev(), passing RED, GREEN,
+ * BLUE, ALPHA, or LUMINANCE (with the same weights as filter(GRAY)). Pass
+ * the same object to stats() each frame to avoid allocating a new one.
+ * <p/>
+ * RGB and GRAY8 images are counted as fully opaque. ALPHA images only
+ * have an alpha channel, the others read as 0.
+ */
+public class PImageStats {
+  /** The same as PConstants.ALPHA, so ALPHA in a sketch means alpha here */
+  static public final int ALPHA     = PConstants.ALPHA;
+  // values that can't be mistaken for RGB, ARGB, or another constant
+  static public final int RED       = 200;
+  static public final int GREEN     = 201;
+  static public final int BLUE      = 202;
+  static public final int LUMINANCE = 203;
+
+  static final int CHANNELS = 5;
+
+  /** Number of pixels counted */
+  public int count;
+
+  // indexed by the position of each channel, see index()
+  final int[] min = new int[CHANNELS];
+  final int[] max = new int[CHANNELS];
+  final long[] sum = new long[CHANNELS];
+  final float[] mean = new float[CHANNELS];
+  final float[] stddev = new float[CHANNELS];
+
+  // running totals, merged from each band of rows
+  final long[] sumSquares = new long[CHANNELS];
+
+
+  /**
+   * Position of a channel in the arrays: 0 to 4 for red, green, blue,
+   * alpha and luminance.
+   */
+  static int index(int channel) {
+    switch (channel) {
+      case RED: return 0;
+      case GREEN: return 1;
+      case BLUE: return 2;
+      case ALPHA: return 3;
+      case LUMINANCE: return 4;
+    }
+    throw new IllegalArgumentException("Unknown channel " + channel +
+                                       ", use PImageStats.RED, GREEN, BLUE, " +
+                                       "ALPHA, or LUMINANCE");
+  }
+
+
+  /** Smallest value of the channel, from 0 to 255 */
+  public int min(int channel) {
+    return min[index(channel)];
+  }
+
+
+  /** Largest value of the channel, from 0 to 255 */
+  public int max(int channel) {
+    return max[index(channel)];
+  }
+
+
+  /** Total of the channel over every pixel */
+  public long sum(int channel) {
+    return sum[index(channel)];
+  }
+
+
+  public float mean(int channel) {
+    return mean[index(channel)];
+  }
+
+
+  public float stddev(int channel) {
+    return stddev[index(channel)];
+  }
+
+
+  void reset() {
+    count = 0;
+    for (int c = 0; c < CHANNELS; c++) {
+      min[c] = 255;
+      max[c] = 0;
+      sum[c] = 0;
+      sumSquares[c] = 0;
+    }
+  }
+
+
+  /**
+   * Add the totals from one band, laid out as count, then for each channel
+   * min, max, sum, and sum of squares.
+   */
+  synchronized void merge(long[] band) {
+    count += (int) band[0];
+    for (int c = 0; c < CHANNELS; c++) {
+      int offset = 1 + c*4;
+      min[c] = Math.min(min[c], (int) band[offset]);
+      max[c] = Math.max(max[c], (int) band[offset + 1]);
+      sum[c] += band[offset + 2];
+      sumSquares[c] += band[offset + 3];
+    }
+  }
+
+
+  void finish() {
+    for (int c = 0; c < CHANNELS; c++) {
+      if (count == 0) {
+        min[c] = 0;
+        mean[c] = 0;
+        stddev[c] = 0;
+      } else {
+        double m = (double) sum[c] / count;
+        double variance = (double) sumSquares[c] / count - m*m;
+        mean[c] = (float) m;
+        stddev[c] = (float) Math.sqrt(Math.max(0, variance));
+      }
+    }
+  }
+
+
+  /**
+   * Sum of a rectangle of pixels, using a table made by PImage.integral().
+   * The table wraps around on very large images, but the result is still
+   * exact as long as the sum for the rectangle itself fits in an int,
+   * which holds for any rectangle of up to about 8 million pixels.
+   *
+   * @param table summed-area table from PImage.integral()
+   * @param width width of the image the table was made from
+   */
+  static public int areaSum(int[] table, int width,
+                            int x, int y, int w, int h) {
+    int stride = width + 1;
+    int top = y * stride;
+    int bottom = (y + h) * stride;
+    return table[bottom + x + w] - table[bottom + x] -
+      table[top + x + w] + table[top + x];
+  }
+
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder();
+    String[] names = { "red", "green", "blue", "alpha", "luminance" };
+    for (int c = 0; c < CHANNELS; c++) {
+      sb.append(names[c]).append(": min ").append(min[c]);
+      sb.append(", max ").append(max[c]);
+      sb.append(", mean ").append(mean[c]);
+      sb.append(", stddev ").append(stddev[c]).append('\n');
+    }
+    return sb.toString();
+  }
+}
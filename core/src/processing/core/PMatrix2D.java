@@ -402,6 +402,43 @@ public class PMatrix2D implements PMatrix {
   }
 
 
+  /**
+   * Multiply many points at once, the same as mult(float[], float[]) for
+   * each. Each point is x, y, with 'stride' floats from the start of one
+   * point to the start of the next (2 for tightly packed points), both in
+   * src and dst. Large batches are split across threads. There's nothing
+   * to divide by, since a 2D matrix has no perspective.
+   * <p/>
+   * src and dst can be the same array with the same offset to transform the
+   * points in place, but should not otherwise overlap.
+   */
+  public void multArray(final float[] src, final int srcOffset,
+                        final float[] dst, final int dstOffset,
+                        int count, final int stride) {
+    if (stride < 2) {
+      throw new IllegalArgumentException("multArray() needs a stride of at least 2");
+    }
+    PMatrix3D.checkArray(src, srcOffset, count, stride, 2);
+    PMatrix3D.checkArray(dst, dstOffset, count, stride, 2);
+
+    final float m00 = this.m00, m01 = this.m01, m02 = this.m02;
+    final float m10 = this.m10, m11 = this.m11, m12 = this.m12;
+    PVectorArray.run(count, new PVectorArray.Span() {
+      void apply(int start, int stop) {
+        int s = srcOffset + start*stride;
+        int d = dstOffset + start*stride;
+        for (int i = start; i < stop; i++) {
+          float x = src[s], y = src[s+1];
+          dst[d] = m00*x + m01*y + m02;
+          dst[d+1] = m10*x + m11*y + m12;
+          s += stride;
+          d += stride;
+        }
+      }
+    });
+  }
+
+
   /**
    * Returns the x-coordinate of the result of multiplying the point (x, y)
    * by this matrix.
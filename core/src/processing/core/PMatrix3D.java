@@ -526,6 +526,75 @@ public final class PMatrix3D implements PMatrix /*, PConstants*/ {
   }
 
 
+  /**
+   * Multiply many points at once, the same as mult(float[], float[]) for
+   * each. Each point is x, y, z, with 'stride' floats from the start of one
+   * point to the start of the next (3 for tightly packed points, more when
+   * other values like colors sit in between), both in src and dst. Values
+   * after z are left alone in dst. Large batches are split across threads.
+   * <p/>
+   * src and dst can be the same array with the same offset to transform the
+   * points in place, but should not otherwise overlap.
+   */
+  public void multArray(float[] src, int srcOffset,
+                        float[] dst, int dstOffset, int count, int stride) {
+    multArray(src, srcOffset, dst, dstOffset, count, stride, false);
+  }
+
+
+  /**
+   * @param divide true to divide each result by its w, for points projected
+   *   through a perspective matrix (points where w is 0 are not divided)
+   */
+  public void multArray(final float[] src, final int srcOffset,
+                        final float[] dst, final int dstOffset,
+                        int count, final int stride, final boolean divide) {
+    if (stride < 3) {
+      throw new IllegalArgumentException("multArray() needs a stride of at least 3");
+    }
+    checkArray(src, srcOffset, count, stride, 3);
+    checkArray(dst, dstOffset, count, stride, 3);
+
+    final float m00 = this.m00, m01 = this.m01, m02 = this.m02, m03 = this.m03;
+    final float m10 = this.m10, m11 = this.m11, m12 = this.m12, m13 = this.m13;
+    final float m20 = this.m20, m21 = this.m21, m22 = this.m22, m23 = this.m23;
+    final float m30 = this.m30, m31 = this.m31, m32 = this.m32, m33 = this.m33;
+    PVectorArray.run(count, new PVectorArray.Span() {
+      void apply(int start, int stop) {
+        int s = srcOffset + start*stride;
+        int d = dstOffset + start*stride;
+        for (int i = start; i < stop; i++) {
+          float x = src[s], y = src[s+1], z = src[s+2];
+          float tx = m00*x + m01*y + m02*z + m03;
+          float ty = m10*x + m11*y + m12*z + m13;
+          float tz = m20*x + m21*y + m22*z + m23;
+          if (divide) {
+            float w = m30*x + m31*y + m32*z + m33;
+            if (w != 0 && w != 1) {
+              tx /= w; ty /= w; tz /= w;
+            }
+          }
+          dst[d] = tx;
+          dst[d+1] = ty;
+          dst[d+2] = tz;
+          s += stride;
+          d += stride;
+        }
+      }
+    });
+  }
+
+
+  static void checkArray(float[] array, int offset, int count, int stride,
+                         int size) {
+    if (offset < 0 || count < 0 ||
+        (count > 0 && offset + (long) (count-1)*stride + size > array.length)) {
+      throw new IllegalArgumentException("The array is too short for " +
+                                         count + " points starting at " + offset);
+    }
+  }
+
+
   /**
    * Returns the x-coordinate of the result of multiplying the point (x, y)
    * by this matrix.
@@ -0,0 +1,483 @@
+/* -*- mode: java; c-basic-offset: 2; indent-tabs-mode: nil -*- */
+
+/*
+  Part of the Processing project - http://processing.org
+
+  This library is free software; you can redistribute it and/or
+  modify it under the terms of the GNU Lesser General Public
+  License as published by the Free Software Foundation, version 2.1.
+
+  This library is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General
+  Public License along with this library; if not, write to the
+  Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+  Boston, MA  02111-1307  USA
+*/
+
+package processing.core;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+
+/**
+ * Writes PNG files straight from the pixels[] array of a PImage, without
+ * going through a BufferedImage and ImageIO. Large images are split into
+ * bands of rows that are filtered and compressed on separate threads,
+ * each band primed with the end of the one before it so that the file is
+ * nearly as small as when compressed in one piece.
+ * <p/>
+ * To use it for save() and saveFrame() (including the asynchronous saves
+ * done by saveFrame()), set PImage.pngEncoder:
+ * <pre>
+ * PImage.pngEncoder = new PNGEncoder(3, PNGEncoder.SUB);
+ * </pre>
+ */
+public class PNGEncoder {
+
+  /** Filter types, as numbered by the PNG spec */
+  static public final int NONE    = 0;
+  static public final int SUB     = 1;
+  static public final int UP      = 2;
+  static public final int AVERAGE = 3;
+  static public final int PAETH   = 4;
+  /** Pick the filter for each row that is likely to compress best */
+  static public final int ADAPTIVE = 5;
+
+  /** Uncompressed bytes per band when compressing on several threads */
+  static final int BAND_BYTES = 1 << 18;
+
+  /** Size of the deflate window, i.e. how much of a band primes the next */
+  static final int WINDOW = 32768;
+
+  static private final byte[] SIGNATURE = {
+    (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'
+  };
+
+  protected int level;
+  protected int filter;
+  protected boolean parallel = true;
+
+
+  /** Default compression level (6) with ADAPTIVE filtering */
+  public PNGEncoder() {
+    this(6, ADAPTIVE);
+  }
+
+
+  /**
+   * @param level compression level from 0 (none, fastest) to 9 (smallest)
+   * @param filter NONE, SUB, UP, AVERAGE, PAETH, or ADAPTIVE
+   */
+  public PNGEncoder(int level, int filter) {
+    level(level);
+    filter(filter);
+  }
+
+
+  public PNGEncoder level(int level) {
+    if (level < 0 || level > 9) {
+      throw new IllegalArgumentException("PNG compression level must be from 0 to 9");
+    }
+    this.level = level;
+    return this;
+  }
+
+
+  public PNGEncoder filter(int filter) {
+    if (filter < NONE || filter > ADAPTIVE) {
+      throw new IllegalArgumentException("Unknown PNG filter " + filter);
+    }
+    this.filter = filter;
+    return this;
+  }
+
+
+  /** Set false to always compress on the calling thread */
+  public PNGEncoder parallel(boolean parallel) {
+    this.parallel = parallel;
+    return this;
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  /**
+   * Write the image as a PNG. ARGB images keep their alpha channel, RGB
+   * images are written without one, and ALPHA and GRAY8 images are written
+   * as grayscale. The output stream is not closed.
+   */
+  public void write(PImage image, OutputStream output) throws IOException {
+    Rows rows = new Rows(image);
+
+    byte[] header = new byte[13];
+    putInt(header, 0, rows.width);
+    putInt(header, 4, rows.height);
+    header[8] = 8;  // bits per sample
+    header[9] = (byte) rows.colorType;
+    // compression, filter method, and interlace are all 0
+    output.write(SIGNATURE);
+    writeChunk(output, "IHDR", header, header.length);
+
+    int stride = rows.rowBytes + 1;
+    int bandRows = Math.max(1, BAND_BYTES / stride);
+    int bandCount = (rows.height + bandRows - 1) / bandRows;
+
+    ForkJoinPool pool = PImage.filterPool;
+    if (!parallel || bandCount < 2 || pool.getParallelism() < 2) {
+      Band band = new Band(rows, 0, rows.height, true);
+      Band.Result result = band.call();
+      writeChunk(output, "IDAT", result.data, result.data.length);
+      writeChunk(output, "IDAT", adlerTrailer(result.adler), 4);
+
+    } else {
+      List<Future<Band.Result>> results = new ArrayList<>();
+      for (int i = 0; i < bandCount; i++) {
+        int start = i * bandRows;
+        int stop = Math.min(rows.height, start + bandRows);
+        results.add(pool.submit(new Band(rows, start, stop, i == bandCount-1)));
+      }
+      // write each band as soon as it and the ones before it are done
+      long adler = 1;
+      try {
+        for (Future<Band.Result> future : results) {
+          Band.Result result = future.get();
+          writeChunk(output, "IDAT", result.data, result.data.length);
+          adler = combineAdler(adler, result.adler, result.length);
+        }
+      } catch (InterruptedException | ExecutionException e) {
+        for (Future<Band.Result> future : results) {
+          future.cancel(true);
+        }
+        throw new IOException("PNG compression failed", e);
+      }
+      writeChunk(output, "IDAT", adlerTrailer(adler), 4);
+    }
+    writeChunk(output, "IEND", header, 0);
+    output.flush();
+  }
+
+
+  /**
+   * The bands are raw deflate data, so the zlib header is written by hand
+   * at the start of the first one.
+   */
+  static private byte[] zlibHeader(int level) {
+    // CMF is deflate with a 32K window, FLEVEL is only informational
+    int flevel = (level < 2) ? 0 : (level < 6) ? 1 : (level == 6) ? 2 : 3;
+    int cmf = 0x78;
+    int flg = flevel << 6;
+    flg += 31 - ((cmf << 8) + flg) % 31;
+    return new byte[] { (byte) cmf, (byte) flg };
+  }
+
+
+  /** The Adler-32 checksum of all the uncompressed data ends the stream. */
+  static private byte[] adlerTrailer(long adler) {
+    byte[] trailer = new byte[4];
+    putInt(trailer, 0, (int) adler);
+    return trailer;
+  }
+
+
+  /**
+   * Checksum of two pieces of data joined together, from the checksums of
+   * each piece and the length of the second, as in zlib's adler32_combine.
+   */
+  static long combineAdler(long adler1, long adler2, long length2) {
+    final long base = 65521;
+    long rem = length2 % base;
+    long sum1 = adler1 & 0xffff;
+    long sum2 = (rem * sum1) % base;
+    sum1 += (adler2 & 0xffff) + base - 1;
+    sum2 += ((adler1 >>> 16) & 0xffff) + ((adler2 >>> 16) & 0xffff) + base - rem;
+    if (sum1 >= base) sum1 -= base;
+    if (sum1 >= base) sum1 -= base;
+    if (sum2 >= (base << 1)) sum2 -= (base << 1);
+    if (sum2 >= base) sum2 -= base;
+    return sum1 | (sum2 << 16);
+  }
+
+
+  static private void writeChunk(OutputStream output, String type,
+                                 byte[] data, int length) throws IOException {
+    byte[] word = new byte[4];
+    putInt(word, 0, length);
+    output.write(word);
+
+    byte[] name = type.getBytes("US-ASCII");
+    output.write(name);
+    output.write(data, 0, length);
+
+    CRC32 crc = new CRC32();
+    crc.update(name);
+    crc.update(data, 0, length);
+    putInt(word, 0, (int) crc.getValue());
+    output.write(word);
+  }
+
+
+  static private void putInt(byte[] b, int offset, int value) {
+    b[offset]     = (byte) (value >>> 24);
+    b[offset + 1] = (byte) (value >>> 16);
+    b[offset + 2] = (byte) (value >>> 8);
+    b[offset + 3] = (byte) value;
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  /** Reads the rows of an image as PNG samples, before filtering */
+  static private class Rows {
+    final int[] pixels;
+    final byte[] bytes;
+    final int format;
+    final int width, height;
+    final int colorType;
+    final int bpp;  // bytes per pixel
+    final int rowBytes;
+
+    Rows(PImage image) {
+      format = image.format;
+      width = image.pixelWidth;
+      height = image.pixelHeight;
+      if (format == PConstants.GRAY8 && image.bytePixels != null) {
+        bytes = image.bytePixels;
+        pixels = null;
+      } else {
+        bytes = null;
+        pixels = image.pixels;
+      }
+      if (format == PConstants.ARGB) {
+        colorType = 6;  // truecolor with alpha
+        bpp = 4;
+      } else if (format == PConstants.ALPHA || format == PConstants.GRAY8) {
+        colorType = 0;  // grayscale
+        bpp = 1;
+      } else {
+        colorType = 2;  // truecolor
+        bpp = 3;
+      }
+      rowBytes = width * bpp;
+    }
+
+    void read(int y, byte[] row) {
+      int index = y * width;
+      if (bytes != null) {
+        System.arraycopy(bytes, index, row, 0, width);
+
+      } else if (bpp == 1) {
+        if (format == PConstants.ALPHA) {
+          for (int x = 0; x < width; x++) {
+            row[x] = (byte) pixels[index++];
+          }
+        } else {
+          for (int x = 0; x < width; x++) {
+            row[x] = (byte) PImage.luminance(pixels[index++]);
+          }
+        }
+
+      } else {
+        int offset = 0;
+        for (int x = 0; x < width; x++) {
+          int argb = pixels[index++];
+          row[offset++] = (byte) (argb >> 16);
+          row[offset++] = (byte) (argb >> 8);
+          row[offset++] = (byte) argb;
+          if (bpp == 4) {
+            row[offset++] = (byte) (argb >>> 24);
+          }
+        }
+      }
+    }
+  }
+
+
+  /**
+   * Filters and compresses one band of rows. Each band is a separate piece
+   * of raw deflate data, ended with a sync flush (or finished, for the last
+   * one) so that the pieces can simply be written one after another.
+   */
+  private class Band implements Callable<Band.Result> {
+    final Rows rows;
+    final int start, stop;
+    final boolean last;
+
+    class Result {
+      byte[] data;
+      long adler;
+      long length;
+    }
+
+    Band(Rows rows, int start, int stop, boolean last) {
+      this.rows = rows;
+      this.start = start;
+      this.stop = stop;
+      this.last = last;
+    }
+
+    @Override
+    public Result call() {
+      int stride = rows.rowBytes + 1;
+      Deflater deflater = new Deflater(level, true);
+      ByteArrayOutputStream out =
+        new ByteArrayOutputStream(Math.max(64, (stop - start) * stride / 4));
+      if (start == 0) {
+        byte[] header = zlibHeader(level);
+        out.write(header, 0, header.length);
+
+      } else {
+        // prime with the end of the band before, which the decoder will
+        // have just seen, so matches can reach back across the seam
+        int dictRows = Math.min(start, (WINDOW + stride - 1) / stride);
+        byte[] dict = filterRows(start - dictRows, start);
+        int dictLength = Math.min(WINDOW, dict.length);
+        deflater.setDictionary(dict, dict.length - dictLength, dictLength);
+      }
+
+      byte[] data = filterRows(start, stop);
+      Adler32 adler = new Adler32();
+      adler.update(data, 0, data.length);
+
+      byte[] buffer = new byte[65536];
+      deflater.setInput(data);
+      if (last) {
+        deflater.finish();
+        while (!deflater.finished()) {
+          int count = deflater.deflate(buffer);
+          out.write(buffer, 0, count);
+        }
+      } else {
+        int count;
+        do {
+          count = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+          out.write(buffer, 0, count);
+        } while (count == buffer.length);
+      }
+      deflater.end();
+
+      Result result = new Result();
+      result.data = out.toByteArray();
+      result.adler = adler.getValue();
+      result.length = data.length;
+      return result;
+    }
+
+    /** The filtered rows from rowStart to rowStop, each led by its type */
+    byte[] filterRows(int rowStart, int rowStop) {
+      int rowBytes = rows.rowBytes;
+      byte[] out = new byte[(rowStop - rowStart) * (rowBytes + 1)];
+      byte[] prev = new byte[rowBytes];
+      byte[] curr = new byte[rowBytes];
+      if (rowStart > 0) {
+        rows.read(rowStart - 1, prev);
+      }
+      int offset = 0;
+      for (int y = rowStart; y < rowStop; y++) {
+        rows.read(y, curr);
+        int type = filter;
+        if (type == ADAPTIVE) {
+          type = pickFilter(curr, prev, rows.bpp);
+        }
+        out[offset++] = (byte) type;
+        filterRow(type, curr, prev, rows.bpp, out, offset);
+        offset += rowBytes;
+
+        byte[] temp = prev;
+        prev = curr;
+        curr = temp;
+      }
+      return out;
+    }
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  static private void filterRow(int type, byte[] curr, byte[] prev, int bpp,
+                                byte[] out, int offset) {
+    int count = curr.length;
+    switch (type) {
+    case NONE:
+      System.arraycopy(curr, 0, out, offset, count);
+      break;
+    case SUB:
+      for (int i = 0; i < count; i++) {
+        int left = (i < bpp) ? 0 : curr[i - bpp] & 0xff;
+        out[offset + i] = (byte) (curr[i] - left);
+      }
+      break;
+    case UP:
+      for (int i = 0; i < count; i++) {
+        out[offset + i] = (byte) (curr[i] - prev[i]);
+      }
+      break;
+    case AVERAGE:
+      for (int i = 0; i < count; i++) {
+        int left = (i < bpp) ? 0 : curr[i - bpp] & 0xff;
+        out[offset + i] = (byte) (curr[i] - ((left + (prev[i] & 0xff)) >> 1));
+      }
+      break;
+    case PAETH:
+      for (int i = 0; i < count; i++) {
+        int left = (i < bpp) ? 0 : curr[i - bpp] & 0xff;
+        int upLeft = (i < bpp) ? 0 : prev[i - bpp] & 0xff;
+        out[offset + i] = (byte) (curr[i] - paeth(left, prev[i] & 0xff, upLeft));
+      }
+      break;
+    }
+  }
+
+
+  static private int paeth(int a, int b, int c) {
+    int p = a + b - c;
+    int pa = Math.abs(p - a);
+    int pb = Math.abs(p - b);
+    int pc = Math.abs(p - c);
+    if (pa <= pb && pa <= pc) return a;
+    return (pb <= pc) ? b : c;
+  }
+
+
+  /**
+   * The usual heuristic from the PNG spec: the filter whose output has the
+   * smallest sum of absolute values, with bytes treated as signed.
+   */
+  static private int pickFilter(byte[] curr, byte[] prev, int bpp) {
+    int count = curr.length;
+    long[] sums = new long[5];
+    for (int i = 0; i < count; i++) {
+      int c = curr[i] & 0xff;
+      int up = prev[i] & 0xff;
+      int left = (i < bpp) ? 0 : curr[i - bpp] & 0xff;
+      int upLeft = (i < bpp) ? 0 : prev[i - bpp] & 0xff;
+      sums[NONE] += Math.abs((byte) c);
+      sums[SUB] += Math.abs((byte) (c - left));
+      sums[UP] += Math.abs((byte) (c - up));
+      sums[AVERAGE] += Math.abs((byte) (c - ((left + up) >> 1)));
+      sums[PAETH] += Math.abs((byte) (c - paeth(left, up, upLeft)));
+    }
+    int best = NONE;
+    for (int type = SUB; type <= PAETH; type++) {
+      if (sums[type] < sums[best]) best = type;
+    }
+    return best;
+  }
+}
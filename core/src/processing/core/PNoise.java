@@ -0,0 +1,358 @@
+/* -*- mode: java; c-basic-offset: 2; indent-tabs-mode: nil -*- */
+
+/*
+  Part of the Processing project - http://processing.org
+
+  This library is free software; you can redistribute it and/or
+  modify it under the terms of the GNU Lesser General Public
+  License as published by the Free Software Foundation, version 2.1.
+
+  This library is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General
+  Public License along with this library; if not, write to the
+  Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+  Boston, MA  02111-1307  USA
+*/
+
+package processing.core;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+
+/**
+ * The Perlin noise used by noise(), with its random table and level of
+ * detail fixed when it's created. Since nothing about it changes, the same
+ * PNoise can be used from several threads at once. PApplet.getNoise()
+ * returns the one behind noise(), reflecting noiseSeed() and noiseDetail().
+ * <p/>
+ * noiseGrid() fills an array with noise values much faster than calling
+ * noise() for each of them, because the work for each row and column is
+ * only done once, and large grids are split across threads. The values
+ * are exactly the same as those from noise().
+ */
+public class PNoise {
+  // [toxi 030901]
+  // implementation by the german demo group farbrausch
+  // as used in their demo "art": http://www.farb-rausch.de/fr010src.zip
+
+  static final int PERLIN_YWRAPB = 4;
+  static final int PERLIN_YWRAP = 1<<PERLIN_YWRAPB;
+  static final int PERLIN_ZWRAPB = 8;
+  static final int PERLIN_ZWRAP = 1<<PERLIN_ZWRAPB;
+  static final int PERLIN_SIZE = 4095;
+
+  // [toxi 031112]
+  // now using the cosine table from PGraphics
+  static final float[] COS_TABLE = PGraphics.cosLUT;
+  static final int TWO_PI = PGraphics.SINCOS_LENGTH;
+  static final int PI = TWO_PI >> 1;
+
+  /** Grids with at least this many values are split across threads */
+  static final int PARALLEL_COUNT = 128 * 128;
+
+  final float[] perlin;
+  final int octaves;
+  final float falloff;
+
+
+  /** Noise with a random table, 4 octaves, and a falloff of 0.5 */
+  public PNoise() {
+    this(new Random());
+  }
+
+
+  public PNoise(long seed) {
+    this(new Random(seed));
+  }
+
+
+  /**
+   * Noise with its table filled from this Random, the same way noise() does
+   * after noiseSeed(). Four octaves with a falloff of 0.5.
+   */
+  public PNoise(Random random) {
+    perlin = new float[PERLIN_SIZE + 1];
+    for (int i = 0; i < PERLIN_SIZE + 1; i++) {
+      perlin[i] = random.nextFloat();
+    }
+    octaves = 4;
+    falloff = 0.5f;
+  }
+
+
+  private PNoise(float[] perlin, int octaves, float falloff) {
+    this.perlin = perlin;
+    this.octaves = octaves;
+    this.falloff = falloff;
+  }
+
+
+  /**
+   * Noise using the same table with a different level of detail, see
+   * noiseDetail(). The table is shared, not copied.
+   */
+  public PNoise detail(int octaves, float falloff) {
+    if (octaves < 1) {
+      throw new IllegalArgumentException("Noise needs at least one octave");
+    }
+    return new PNoise(perlin, octaves, falloff);
+  }
+
+
+  public int octaves() {
+    return octaves;
+  }
+
+
+  public float falloff() {
+    return falloff;
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  public float noise(float x) {
+    return noise(x, 0f, 0f);
+  }
+
+
+  public float noise(float x, float y) {
+    return noise(x, y, 0f);
+  }
+
+
+  public float noise(float x, float y, float z) {
+    if (x<0) x=-x;
+    if (y<0) y=-y;
+    if (z<0) z=-z;
+
+    int xi=(int)x, yi=(int)y, zi=(int)z;
+    float xf = x - xi;
+    float yf = y - yi;
+    float zf = z - zi;
+    float rxf, ryf;
+
+    float r=0;
+    float ampl=0.5f;
+
+    float n1,n2,n3;
+
+    for (int i=0; i<octaves; i++) {
+      int of=xi+(yi<<PERLIN_YWRAPB)+(zi<<PERLIN_ZWRAPB);
+
+      rxf=fsc(xf);
+      ryf=fsc(yf);
+
+      n1  = perlin[of&PERLIN_SIZE];
+      n1 += rxf*(perlin[(of+1)&PERLIN_SIZE]-n1);
+      n2  = perlin[(of+PERLIN_YWRAP)&PERLIN_SIZE];
+      n2 += rxf*(perlin[(of+PERLIN_YWRAP+1)&PERLIN_SIZE]-n2);
+      n1 += ryf*(n2-n1);
+
+      of += PERLIN_ZWRAP;
+      n2  = perlin[of&PERLIN_SIZE];
+      n2 += rxf*(perlin[(of+1)&PERLIN_SIZE]-n2);
+      n3  = perlin[(of+PERLIN_YWRAP)&PERLIN_SIZE];
+      n3 += rxf*(perlin[(of+PERLIN_YWRAP+1)&PERLIN_SIZE]-n3);
+      n2 += ryf*(n3-n2);
+
+      n1 += fsc(zf)*(n2-n1);
+
+      r += n1*ampl;
+      ampl *= falloff;
+      xi<<=1; xf*=2;
+      yi<<=1; yf*=2;
+      zi<<=1; zf*=2;
+
+      if (xf>=1.0f) { xi++; xf--; }
+      if (yf>=1.0f) { yi++; yf--; }
+      if (zf>=1.0f) { zi++; zf--; }
+    }
+    return r;
+  }
+
+
+  static private float fsc(float i) {
+    // using bagel's cosine table instead
+    return 0.5f*(1.0f-COS_TABLE[(int)(i*PI)%TWO_PI]);
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  /**
+   * Fill out with a w by h grid of noise values, one row after another.
+   * The value at column i and row j is noise(x0 + i*step, y0 + j*step, z).
+   */
+  public void noiseGrid(float[] out, int w, int h,
+                        float x0, float y0, float step, float z) {
+    noiseGrid(out, w, h, x0, y0, step, step, z);
+  }
+
+
+  /**
+   * Same as noiseGrid(out, w, h, x0, y0, step, z), with separate steps for
+   * x and y. The value at column i and row j is
+   * noise(x0 + i*stepX, y0 + j*stepY, z).
+   */
+  public void noiseGrid(float[] out, int w, int h,
+                        float x0, float y0, float stepX, float stepY,
+                        float z) {
+    if (w < 0 || h < 0) {
+      throw new IllegalArgumentException("noiseGrid() needs a positive size");
+    }
+    if (out.length < w * h) {
+      throw new IllegalArgumentException("noiseGrid() needs an array of at least " +
+                                         w + " * " + h + " values");
+    }
+    if (w == 0 || h == 0) return;
+
+    Grid grid = new Grid(out, w, x0, y0, stepX, stepY, z);
+    ForkJoinPool pool = PImage.filterPool;
+    if (w * h < PARALLEL_COUNT || pool.getParallelism() < 2) {
+      grid.rows(0, h);
+    } else {
+      int grain = Math.max(1, h / (pool.getParallelism() * 4));
+      pool.invoke(new Band(grid, 0, h, grain));
+    }
+  }
+
+
+  /**
+   * Along x, the octaves only depend on the column, and along y and z they
+   * only depend on the row. So the integer offsets and faded fractions for
+   * each octave are worked out once per column and once per row, and the
+   * inner loop is left with just the table lookups and blending.
+   */
+  private class Grid {
+    final float[] out;
+    final int w;
+    final float y0, stepY;
+    // per column, per octave: xi and fsc(xf)
+    final int[] colOffset;
+    final float[] colFade;
+    // per octave, the same for the whole grid
+    final int[] zOffset;
+    final float[] zFade;
+    final float[] amplitude;
+
+    Grid(float[] out, int w, float x0, float y0,
+         float stepX, float stepY, float z) {
+      this.out = out;
+      this.w = w;
+      this.y0 = y0;
+      this.stepY = stepY;
+
+      colOffset = new int[w * octaves];
+      colFade = new float[w * octaves];
+      for (int i = 0; i < w; i++) {
+        float x = x0 + i*stepX;
+        if (x<0) x=-x;
+        int xi=(int)x;
+        float xf = x - xi;
+        for (int o = 0; o < octaves; o++) {
+          colOffset[o*w + i] = xi;
+          colFade[o*w + i] = fsc(xf);
+          xi<<=1; xf*=2;
+          if (xf>=1.0f) { xi++; xf--; }
+        }
+      }
+
+      zOffset = new int[octaves];
+      zFade = new float[octaves];
+      amplitude = new float[octaves];
+      if (z<0) z=-z;
+      int zi=(int)z;
+      float zf = z - zi;
+      float ampl=0.5f;
+      for (int o = 0; o < octaves; o++) {
+        zOffset[o] = zi<<PERLIN_ZWRAPB;
+        zFade[o] = fsc(zf);
+        amplitude[o] = ampl;
+        ampl *= falloff;
+        zi<<=1; zf*=2;
+        if (zf>=1.0f) { zi++; zf--; }
+      }
+    }
+
+    void rows(int start, int stop) {
+      int[] rowOffset = new int[octaves];
+      float[] rowFade = new float[octaves];
+      final float[] perlin = PNoise.this.perlin;
+
+      for (int j = start; j < stop; j++) {
+        float y = y0 + j*stepY;
+        if (y<0) y=-y;
+        int yi=(int)y;
+        float yf = y - yi;
+        for (int o = 0; o < octaves; o++) {
+          rowOffset[o] = (yi<<PERLIN_YWRAPB) + zOffset[o];
+          rowFade[o] = fsc(yf);
+          yi<<=1; yf*=2;
+          if (yf>=1.0f) { yi++; yf--; }
+        }
+
+        int index = j * w;
+        for (int i = 0; i < w; i++) {
+          float r=0;
+          for (int o = 0; o < octaves; o++) {
+            int of = colOffset[o*w + i] + rowOffset[o];
+            float rxf = colFade[o*w + i];
+            float ryf = rowFade[o];
+            float n1,n2,n3;
+
+            n1  = perlin[of&PERLIN_SIZE];
+            n1 += rxf*(perlin[(of+1)&PERLIN_SIZE]-n1);
+            n2  = perlin[(of+PERLIN_YWRAP)&PERLIN_SIZE];
+            n2 += rxf*(perlin[(of+PERLIN_YWRAP+1)&PERLIN_SIZE]-n2);
+            n1 += ryf*(n2-n1);
+
+            of += PERLIN_ZWRAP;
+            n2  = perlin[of&PERLIN_SIZE];
+            n2 += rxf*(perlin[(of+1)&PERLIN_SIZE]-n2);
+            n3  = perlin[(of+PERLIN_YWRAP)&PERLIN_SIZE];
+            n3 += rxf*(perlin[(of+PERLIN_YWRAP+1)&PERLIN_SIZE]-n3);
+            n2 += ryf*(n3-n2);
+
+            n1 += zFade[o]*(n2-n1);
+            r += n1*amplitude[o];
+          }
+          out[index++] = r;
+        }
+      }
+    }
+  }
+
+
+  static private class Band extends RecursiveAction {
+    final Grid grid;
+    final int start, stop;
+    final int grain;
+
+    Band(Grid grid, int start, int stop, int grain) {
+      this.grid = grid;
+      this.start = start;
+      this.stop = stop;
+      this.grain = grain;
+    }
+
+    @Override
+    protected void compute() {
+      if (stop - start <= grain) {
+        grid.rows(start, stop);
+      } else {
+        int mid = (start + stop) >>> 1;
+        invokeAll(new Band(grid, start, mid, grain),
+                  new Band(grid, mid, stop, grain));
+      }
+    }
+  }
+}
@@ -0,0 +1,241 @@
+/* -*- mode: java; c-basic-offset: 2; indent-tabs-mode: nil -*- */
+
+/*
+  Part of the Processing project - http://processing.org
+
+  This library is free software; you can redistribute it and/or
+  modify it under the terms of the GNU Lesser General Public
+  License as published by the Free Software Foundation, version 2.1.
+
+  This library is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General
+  Public License along with this library; if not, write to the
+  Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+  Boston, MA  02111-1307  USA
+*/
+
+package processing.core;
+
+import java.util.Arrays;
+import java.util.Random;
+
+
+/**
+ * A fast random number generator (xoroshiro128+) that can stand in for
+ * java.util.Random. Unlike Random, it has no locking or atomic updates,
+ * so each thread should use its own: see split(), and randomStream() in
+ * PApplet. To have random() and randomGaussian() use one:
+ * <pre>
+ * randomGenerator(new PRandom());
+ * </pre>
+ * The numbers are good for graphics and simulation, but not for anything
+ * to do with security.
+ */
+public class PRandom extends Random {
+  static private final long GOLDEN = 0x9E3779B97F4A7C15L;
+
+  // not initialized here, because Random's constructor calls setSeed()
+  // before the fields of this class would be set
+  private long s0, s1;
+  private double nextGaussian;
+  private boolean haveNextGaussian;
+
+
+  /** A generator with a different seed each time */
+  public PRandom() {
+    super();
+  }
+
+
+  public PRandom(long seed) {
+    super(seed);
+  }
+
+
+  /**
+   * Stream number 'stream' for this seed. Different streams are unrelated
+   * to each other, and the same seed and stream always give the same
+   * numbers, no matter which thread asks for them or when.
+   */
+  public PRandom(long seed, long stream) {
+    super(0);
+    setSeed(seed, stream);
+  }
+
+
+  @Override
+  public void setSeed(long seed) {
+    setSeed(seed, 0);
+  }
+
+
+  private void setSeed(long seed, long stream) {
+    long z = mix(seed) + stream * GOLDEN;
+    s0 = mix(z);
+    s1 = mix(z + GOLDEN);
+    if (s0 == 0 && s1 == 0) {
+      s1 = GOLDEN;  // the one state that never leaves itself
+    }
+    haveNextGaussian = false;
+  }
+
+
+  /** The splitmix64 finalizer, to spread the bits of a seed around */
+  static private long mix(long z) {
+    z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+    z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+    return z ^ (z >>> 31);
+  }
+
+
+  /**
+   * A new generator seeded from this one, for handing to another thread.
+   * Splitting in the same order after the same seed gives the same
+   * generators.
+   */
+  public PRandom split() {
+    return new PRandom(nextLong(), nextLong());
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  @Override
+  public long nextLong() {
+    long a = s0;
+    long b = s1;
+    long result = a + b;
+    b ^= a;
+    s0 = Long.rotateLeft(a, 24) ^ b ^ (b << 16);
+    s1 = Long.rotateLeft(b, 37);
+    return result;
+  }
+
+
+  @Override
+  protected int next(int bits) {
+    // the high bits are the better ones with xoroshiro128+
+    return (int) (nextLong() >>> (64 - bits));
+  }
+
+
+  @Override
+  public float nextFloat() {
+    return (nextLong() >>> 40) * 0x1.0p-24f;
+  }
+
+
+  @Override
+  public double nextDouble() {
+    return (nextLong() >>> 11) * 0x1.0p-53;
+  }
+
+
+  @Override
+  public boolean nextBoolean() {
+    return nextLong() < 0;
+  }
+
+
+  /**
+   * Normally distributed values with a mean of 0 and standard deviation
+   * of 1, using the polar method (as Random does, but with Math instead
+   * of StrictMath, and without the locking).
+   */
+  @Override
+  public double nextGaussian() {
+    if (haveNextGaussian) {
+      haveNextGaussian = false;
+      return nextGaussian;
+    }
+    double v1, v2, s;
+    do {
+      v1 = 2 * nextDouble() - 1;
+      v2 = 2 * nextDouble() - 1;
+      s = v1 * v1 + v2 * v2;
+    } while (s >= 1 || s == 0);
+    double multiplier = Math.sqrt(-2 * Math.log(s) / s);
+    nextGaussian = v2 * multiplier;
+    haveNextGaussian = true;
+    return v1 * multiplier;
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  /**
+   * Fill the array with values from low up to (but not including) high,
+   * the same as calling random(low, high) for each.
+   */
+  public void fill(float[] out, float low, float high) {
+    fill(out, 0, out.length, low, high);
+  }
+
+
+  public void fill(float[] out, int offset, int count, float low, float high) {
+    if (low >= high) {
+      Arrays.fill(out, offset, offset + count, low);
+      return;
+    }
+    float diff = high - low;
+    long a = s0;
+    long b = s1;
+    int stop = offset + count;
+    for (int i = offset; i < stop; ) {
+      // nextLong(), with the state kept in locals for the whole loop
+      long result = a + b;
+      b ^= a;
+      a = Long.rotateLeft(a, 24) ^ b ^ (b << 16);
+      b = Long.rotateLeft(b, 37);
+
+      float value = (result >>> 40) * 0x1.0p-24f * diff + low;
+      // rounding can land on high, see random(low, high)
+      if (value < high) {
+        out[i++] = value;
+      }
+    }
+    s0 = a;
+    s1 = b;
+  }
+
+
+  /**
+   * Fill the array with normally distributed values, with a mean of 0 and
+   * a standard deviation of 1. Values are made two at a time.
+   */
+  public void fillGaussian(float[] out) {
+    fillGaussian(out, 0, out.length);
+  }
+
+
+  public void fillGaussian(float[] out, int offset, int count) {
+    int i = offset;
+    int stop = offset + count;
+    if (i < stop && haveNextGaussian) {
+      out[i++] = (float) nextGaussian;
+      haveNextGaussian = false;
+    }
+    while (i < stop) {
+      double v1, v2, s;
+      do {
+        v1 = 2 * nextDouble() - 1;
+        v2 = 2 * nextDouble() - 1;
+        s = v1 * v1 + v2 * v2;
+      } while (s >= 1 || s == 0);
+      double multiplier = Math.sqrt(-2 * Math.log(s) / s);
+      out[i++] = (float) (v1 * multiplier);
+      if (i < stop) {
+        out[i++] = (float) (v2 * multiplier);
+      } else {
+        nextGaussian = v2 * multiplier;
+        haveNextGaussian = true;
+      }
+    }
+  }
+}
@@ -207,6 +207,11 @@ public class PShape implements PConstants {
   protected int childCount;
   protected PShape[] children;
 
+  /** Edges sorted by height, for contains(). Null until it's needed. */
+  protected ContainsIndex containsIndex;
+  /** Bounds used by findContaining(), null until needed or after changes */
+  protected float[] containsBounds;
+
 
   /** Array of VERTEX, BEZIER_VERTEX, and CURVE_VERTEX calls. */
   protected int vertexCodeCount;
@@ -788,6 +793,7 @@ public class PShape implements PConstants {
 
     // this is the state of the shape
     openShape = false;
+    invalidateContains();
   }
 
 
@@ -2061,6 +2067,7 @@ public class PShape implements PConstants {
     }
     children[childCount++] = who;
     who.parent = this;
+    invalidateContains();
 
     if (who.getName() != null) {
       addName(who.getName(), who);
@@ -2087,6 +2094,7 @@ public class PShape implements PConstants {
       children[idx] = who;
 
       who.parent = this;
+      invalidateContains();
 
       if (who.getName() != null) {
         addName(who.getName(), who);
@@ -2107,6 +2115,7 @@ public class PShape implements PConstants {
         children[i] = children[i + 1];
       }
       childCount--;
+      invalidateContains();
 
       if (child.getName() != null && nameTable != null) {
         nameTable.remove(child.getName());
@@ -2214,6 +2223,7 @@ public class PShape implements PConstants {
       vertexCodes = new int[vertexCodeCount];
       PApplet.arrayCopy(codes, vertexCodes, vertexCodeCount);
     }
+    invalidateContains();
   }
 
   /**
@@ -2293,6 +2303,7 @@ public class PShape implements PConstants {
 
     vertices[index][X] = x;
     vertices[index][Y] = y;
+    invalidateContains();
   }
 
 
@@ -2308,6 +2319,7 @@ public class PShape implements PConstants {
     vertices[index][X] = x;
     vertices[index][Y] = y;
     vertices[index][Z] = z;
+    invalidateContains();
   }
 
 
@@ -2328,6 +2340,7 @@ public class PShape implements PConstants {
     } else if (vec.z != 0 && vec.z == vec.z) {
       throw new IllegalArgumentException("Cannot set a z-coordinate on a 2D shape");
     }
+    invalidateContains();
   }
 
 
@@ -2977,29 +2990,23 @@ public class PShape implements PConstants {
   /**
    * Return true if this x, y coordinate is part of this shape. Only works
    * with PATH shapes or GROUP shapes that contain other GROUPs or PATHs.
+   * <p/>
+   * The edges of a path are sorted into horizontal bands the first time
+   * it's used, so only the edges at the height of the point are checked.
+   * Changing the vertices with setVertex() or setPath() sorts them again.
    */
   public boolean contains(float x, float y) {
     if (family == PATH) {
-      // apply the inverse transformation matrix to the point coordinates
-      PMatrix inverseCoords = matrix.get();
-      inverseCoords.invert();  // maybe cache this?
-      inverseCoords.invert();  // maybe cache this?
-      PVector p = new PVector();
-      inverseCoords.mult(new PVector(x,y),p);
-
-      // http://www.ecse.rpi.edu/Homepages/wrf/Research/Short_Notes/pnpoly.html
-      boolean c = false;
-      for (int i = 0, j = vertexCount-1; i < vertexCount; j = i++) {
-        if (((vertices[i][Y] > p.y) != (vertices[j][Y] > p.y)) &&
-            (p.x <
-                (vertices[j][X]-vertices[i][X]) *
-                (y-vertices[i][Y]) /
-                (vertices[j][1]-vertices[i][Y]) +
-                vertices[i][X])) {
-          c = !c;
-        }
+      float px = x, py = y;
+      if (matrix != null) {
+        // apply the inverse transformation matrix to the point coordinates
+        PMatrix inverseCoords = matrix.get();
+        inverseCoords.invert();
+        PVector p = inverseCoords.mult(new PVector(x, y), null);
+        px = p.x;
+        py = p.y;
       }
-      return c;
+      return getContainsIndex().contains(px, py);
 
     } else if (family == GROUP) {
       // If this is a group, loop through children until we find one that
@@ -3017,6 +3024,235 @@ public class PShape implements PConstants {
   }
 
 
+  /**
+   * Return the shape that contains this x, y coordinate, or null if there
+   * isn't one. For a PATH that's the shape itself. For a GROUP, it's the
+   * PATH inside it (or inside a GROUP inside it) that's drawn last, so the
+   * one on top. Groups and paths whose bounds don't include the point are
+   * skipped without looking at their vertices, which makes this much
+   * faster than calling contains() on each child. Other kinds of shapes
+   * are skipped.
+   */
+  public PShape findContaining(float x, float y) {
+    if (family != PATH && family != GROUP) {
+      return null;
+    }
+    float[] bounds = getContainsBounds();
+    if (bounds != null &&
+        !(x >= bounds[0] && x <= bounds[2] && y >= bounds[1] && y <= bounds[3])) {
+      return null;
+    }
+    if (family == PATH) {
+      return contains(x, y) ? this : null;
+    }
+    for (int i = childCount - 1; i >= 0; i--) {
+      PShape found = children[i].findContaining(x, y);
+      if (found != null) {
+        return found;
+      }
+    }
+    return null;
+  }
+
+
+  protected ContainsIndex getContainsIndex() {
+    if (containsIndex == null ||
+        containsIndex.vertices != vertices ||
+        containsIndex.count != vertexCount) {
+      containsIndex = new ContainsIndex(vertices, vertexCount);
+    }
+    return containsIndex;
+  }
+
+
+  /**
+   * The min x, min y, max x, and max y of the area where contains() can
+   * be true, in the same coordinates it takes. For a PATH, that's its
+   * vertices after its matrix, and for a GROUP, everything inside it.
+   * Returns null if the bounds aren't known, so nothing can be skipped.
+   */
+  protected float[] getContainsBounds() {
+    if (containsBounds != null) {
+      return containsBounds;
+    }
+    float[] bounds = {
+      Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY,
+      Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY
+    };
+    if (family == PATH) {
+      ContainsIndex index = getContainsIndex();
+      if (index.count != 0) {
+        if (matrix == null) {
+          bounds[0] = index.minX;
+          bounds[1] = index.minY;
+          bounds[2] = index.maxX;
+          bounds[3] = index.maxY;
+        } else {
+          float[] corners = {
+            index.minX, index.minY, index.maxX, index.minY,
+            index.minX, index.maxY, index.maxX, index.maxY
+          };
+          PVector p = new PVector();
+          for (int i = 0; i < corners.length; i += 2) {
+            matrix.mult(new PVector(corners[i], corners[i+1]), p);
+            includeBounds(bounds, p.x, p.y, p.x, p.y);
+          }
+        }
+      }
+    } else if (family == GROUP) {
+      for (int i = 0; i < childCount; i++) {
+        PShape child = children[i];
+        if (child.family == PATH || child.family == GROUP) {
+          float[] b = child.getContainsBounds();
+          if (b == null) {
+            return null;
+          }
+          includeBounds(bounds, b[0], b[1], b[2], b[3]);
+        }
+      }
+    } else {
+      return null;
+    }
+    containsBounds = bounds;
+    return bounds;
+  }
+
+
+  static private void includeBounds(float[] bounds, float x1, float y1,
+                                    float x2, float y2) {
+    bounds[0] = Math.min(bounds[0], x1);
+    bounds[1] = Math.min(bounds[1], y1);
+    bounds[2] = Math.max(bounds[2], x2);
+    bounds[3] = Math.max(bounds[3], y2);
+  }
+
+
+  /**
+   * Forget the edges and bounds used by contains() and findContaining(),
+   * after the vertices, matrix, or children have changed. The bounds of
+   * each parent include this shape, so those are reset too.
+   */
+  protected void invalidateContains() {
+    containsIndex = null;
+    for (PShape shape = this; shape != null; shape = shape.parent) {
+      shape.containsBounds = null;
+    }
+  }
+
+
+  /**
+   * The edges of a path, sorted into horizontal bands by the heights they
+   * span. The crossing test is the same one contains() always used
+   * (http://www.ecse.rpi.edu/Homepages/wrf/Research/Short_Notes/pnpoly.html),
+   * but only the edges in the band at the height of the point are checked,
+   * since none of the others can cross it.
+   */
+  static protected class ContainsIndex {
+    /** Paths with fewer vertices just check every edge */
+    static final int MIN_COUNT = 16;
+
+    final float[][] vertices;
+    final int count;
+    float minX, minY, maxX, maxY;
+
+    int bands;
+    float bandScale;
+    // for each band, where its edges start in bandEdges. Edge i goes from
+    // vertex i-1 (or the last vertex, for the first edge) to vertex i.
+    int[] bandStart;
+    int[] bandEdges;
+
+
+    ContainsIndex(float[][] vertices, int count) {
+      this.vertices = vertices;
+      this.count = count;
+      minX = minY = Float.POSITIVE_INFINITY;
+      maxX = maxY = Float.NEGATIVE_INFINITY;
+      for (int i = 0; i < count; i++) {
+        minX = Math.min(minX, vertices[i][X]);
+        minY = Math.min(minY, vertices[i][Y]);
+        maxX = Math.max(maxX, vertices[i][X]);
+        maxY = Math.max(maxY, vertices[i][Y]);
+      }
+      if (count >= MIN_COUNT && maxY > minY) {
+        // one band for every few edges, with fewer if long edges would
+        // end up in too many of them
+        bands = Math.min(count / 2, 4096);
+        while (true) {
+          bandScale = bands / (maxY - minY);
+          long total = 0;
+          for (int i = 0, j = count-1; i < count; j = i++) {
+            total += band(Math.max(vertices[i][Y], vertices[j][Y])) -
+              band(Math.min(vertices[i][Y], vertices[j][Y])) + 1;
+          }
+          if (total <= 8L * count || bands == 1) {
+            fillBands((int) total);
+            break;
+          }
+          bands /= 2;
+        }
+      }
+    }
+
+
+    private int band(float y) {
+      int band = (int) ((y - minY) * bandScale);
+      return Math.max(0, Math.min(bands - 1, band));
+    }
+
+
+    private void fillBands(int total) {
+      bandStart = new int[bands + 1];
+      for (int i = 0, j = count-1; i < count; j = i++) {
+        int last = band(Math.max(vertices[i][Y], vertices[j][Y]));
+        for (int b = band(Math.min(vertices[i][Y], vertices[j][Y])); b <= last; b++) {
+          bandStart[b + 1]++;
+        }
+      }
+      for (int b = 0; b < bands; b++) {
+        bandStart[b + 1] += bandStart[b];
+      }
+      bandEdges = new int[total];
+      int[] fill = new int[bands];
+      System.arraycopy(bandStart, 0, fill, 0, bands);
+      for (int i = 0, j = count-1; i < count; j = i++) {
+        int last = band(Math.max(vertices[i][Y], vertices[j][Y]));
+        for (int b = band(Math.min(vertices[i][Y], vertices[j][Y])); b <= last; b++) {
+          bandEdges[fill[b]++] = i;
+        }
+      }
+    }
+
+
+    boolean contains(float x, float y) {
+      if (!(x >= minX && x <= maxX && y >= minY && y <= maxY)) {
+        return false;
+      }
+      boolean c = false;
+      if (bandStart == null) {
+        for (int i = 0, j = count-1; i < count; j = i++) {
+          if (crosses(i, j, x, y)) c = !c;
+        }
+      } else {
+        int b = band(y);
+        for (int k = bandStart[b]; k < bandStart[b + 1]; k++) {
+          int i = bandEdges[k];
+          if (crosses(i, (i == 0) ? count-1 : i-1, x, y)) c = !c;
+        }
+      }
+      return c;
+    }
+
+
+    private boolean crosses(int i, int j, float x, float y) {
+      float[] vi = vertices[i];
+      float[] vj = vertices[j];
+      return ((vi[Y] > y) != (vj[Y] > y)) &&
+        (x < (vj[X]-vi[X]) * (y-vi[Y]) / (vj[Y]-vi[Y]) + vi[X]);
+    }
+  }
+
+
   // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
 
 
@@ -3337,6 +3573,8 @@ public class PShape implements PConstants {
    * that can handle <em>at least</em> the specified number of dimensions.
    */
   protected void checkMatrix(int dimensions) {
+    // the matrix is about to change, which moves the bounds
+    invalidateContains();
     if (matrix == null) {
       if (dimensions == 2) {
         matrix = new PMatrix2D();
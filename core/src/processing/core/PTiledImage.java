@@ -0,0 +1,537 @@
+/* -*- mode: java; c-basic-offset: 2; indent-tabs-mode: nil -*- */
+
+/*
+  Part of the Processing project - http://processing.org
+
+  This library is free software; you can redistribute it and/or
+  modify it under the terms of the GNU Lesser General Public
+  License as published by the Free Software Foundation, version 2.1.
+
+  This library is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General
+  Public License along with this library; if not, write to the
+  Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+  Boston, MA  02111-1307  USA
+*/
+
+package processing.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+
+/**
+ * An ARGB image that's too large for a single pixels[] array, like a
+ * 50,000 x 50,000 scan. The image is cut into square tiles, which are kept
+ * in a memory-mapped file. Only the tiles in use are copied into memory,
+ * and the least recently used ones are written back when the cache fills.
+ * <p/>
+ * There is no pixels[] array, so loadPixels() throws an exception. Use
+ * get(x, y, w, h) to read a region, which only touches the tiles that it
+ * overlaps, and set(), copy(), blend() or filter() to change the image,
+ * which are done one tile at a time. image() draws the tiles that overlap
+ * the u/v region passed to it, so image(tiled, x, y, w, h, u1, v1, u2, v2)
+ * is the way to show part of an image.
+ * <p/>
+ * Tiles are stored one after another, row by row, each one tileSize
+ * pixels square (even at the right and bottom edges) as big-endian ARGB
+ * ints, so a file can be opened again with the same size and tile size.
+ * Not safe to use from several threads at once.
+ */
+public class PTiledImage extends PImage {
+
+  static public final int DEFAULT_TILE_SIZE = 256;
+
+  /** Number of tiles kept in memory, 16 MB with the default tile size */
+  static public final int DEFAULT_CACHE_TILES = 64;
+
+  /** Largest number of bytes mapped by a single buffer */
+  static final int SEGMENT_BYTES = 1 << 30;
+
+  protected int tileSize;
+  protected int tileColumns;
+  protected int tileRows;
+
+  protected File file;
+  private boolean temporary;
+  private RandomAccessFile raf;
+  private FileChannel channel;
+
+  private int tilesPerSegment;
+  private MappedByteBuffer[] mappings;
+  private IntBuffer[] segments;  // int views of the mappings
+
+  private int cacheTiles;
+  private LinkedHashMap<Integer, Tile> cache;
+
+
+  /**
+   * Create a tiled image backed by a temporary file, which is deleted
+   * by dispose() or when the sketch exits.
+   */
+  public PTiledImage(int width, int height) {
+    this(null, width, height, DEFAULT_TILE_SIZE, DEFAULT_CACHE_TILES);
+  }
+
+
+  /**
+   * Create a tiled image stored in a file. If the file already has data
+   * from an image of the same size, that image is opened again.
+   */
+  public PTiledImage(File file, int width, int height) {
+    this(file, width, height, DEFAULT_TILE_SIZE, DEFAULT_CACHE_TILES);
+  }
+
+
+  /**
+   * @param file where to keep the tiles, or null for a temporary file
+   * @param tileSize width and height of each tile
+   * @param cacheTiles how many tiles to keep in memory
+   */
+  public PTiledImage(File file, int width, int height,
+                     int tileSize, int cacheTiles) {
+    if (width <= 0 || height <= 0) {
+      throw new IllegalArgumentException("width and height must be > 0");
+    }
+    if (tileSize <= 0 || (long) tileSize * tileSize * 4 > SEGMENT_BYTES) {
+      throw new IllegalArgumentException("tileSize " + tileSize + " is out of range");
+    }
+    if (cacheTiles <= 0) {
+      throw new IllegalArgumentException("cacheTiles must be > 0");
+    }
+    this.width = pixelWidth = width;
+    this.height = pixelHeight = height;
+    this.tileSize = tileSize;
+    this.cacheTiles = cacheTiles;
+    tileColumns = (width + tileSize - 1) / tileSize;
+    tileRows = (height + tileSize - 1) / tileSize;
+
+    int tileBytes = tileSize * tileSize * 4;
+    tilesPerSegment = SEGMENT_BYTES / tileBytes;
+    long tileCount = (long) tileColumns * tileRows;
+    int segmentCount = (int) ((tileCount + tilesPerSegment - 1) / tilesPerSegment);
+    mappings = new MappedByteBuffer[segmentCount];
+    segments = new IntBuffer[segmentCount];
+
+    try {
+      if (file == null) {
+        file = File.createTempFile("tiles", ".raw");
+        file.deleteOnExit();
+        temporary = true;
+      }
+      this.file = file;
+      raf = new RandomAccessFile(file, "rw");
+      channel = raf.getChannel();
+      long length = tileCount * tileBytes;
+      if (raf.length() < length) {
+        raf.setLength(length);  // new areas read as zeros (transparent)
+      }
+    } catch (IOException e) {
+      throw new RuntimeException("Could not create tile file " + file, e);
+    }
+
+    cache = new LinkedHashMap<Integer, Tile>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Integer, Tile> eldest) {
+        if (size() > PTiledImage.this.cacheTiles) {
+          writeTile(eldest.getValue());
+          return true;
+        }
+        return false;
+      }
+    };
+  }
+
+
+  public int getTileSize() {
+    return tileSize;
+  }
+
+
+  /**
+   * Write any changed tiles back to the file, and make sure the file
+   * on disk is up to date.
+   */
+  public void flush() {
+    for (Tile tile : cache.values()) {
+      writeTile(tile);
+    }
+    for (MappedByteBuffer mapping : mappings) {
+      if (mapping != null) {
+        mapping.force();
+      }
+    }
+  }
+
+
+  /**
+   * Save changes and close the file. A temporary file is deleted. The
+   * image can't be used after this.
+   */
+  public void dispose() {
+    if (channel == null) return;
+
+    if (temporary) {
+      cache.clear();
+    } else {
+      flush();
+    }
+    try {
+      raf.close();
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+    channel = null;
+    mappings = null;
+    segments = null;
+    cache = null;
+    if (temporary) {
+      // may fail while the mapping is still around (on Windows),
+      // in which case deleteOnExit() will take care of it
+      file.delete();
+    }
+  }
+
+
+  /**
+   * There's no pixels[] array for a tiled image, use get(x, y, w, h)
+   * to read a region into a regular PImage instead.
+   */
+  @Override
+  public void loadPixels() {  // ignore
+    throw new RuntimeException("A PTiledImage has no pixels[] array, " +
+                               "use get(x, y, w, h) to read part of it");
+  }
+
+
+  @Override
+  public int get(int x, int y) {
+    if ((x < 0) || (y < 0) || (x >= pixelWidth) || (y >= pixelHeight)) return 0;
+
+    PImage image = tile(x / tileSize, y / tileSize).image;
+    return image.pixels[(y % tileSize) * image.pixelWidth + (x % tileSize)];
+  }
+
+
+  /**
+   * Copy a region into a new ARGB image. Only the tiles that overlap the
+   * region are read, and parts of it that are outside this image are left
+   * transparent.
+   */
+  @Override
+  public PImage get(int x, int y, int w, int h) {
+    PImage target = new PImage(w, h, ARGB);
+    target.parent = parent;
+
+    int x1 = Math.max(0, x);
+    int y1 = Math.max(0, y);
+    int x2 = Math.min(pixelWidth, x + w);
+    int y2 = Math.min(pixelHeight, y + h);
+    for (int row = y1 / tileSize; row * tileSize < y2; row++) {
+      for (int column = x1 / tileSize; column * tileSize < x2; column++) {
+        PImage image = tile(column, row).image;
+        int tileX = column * tileSize;
+        int tileY = row * tileSize;
+        int left = Math.max(x1, tileX);
+        int right = Math.min(x2, tileX + image.pixelWidth);
+        int bottom = Math.min(y2, tileY + image.pixelHeight);
+        for (int py = Math.max(y1, tileY); py < bottom; py++) {
+          System.arraycopy(image.pixels, (py - tileY) * image.pixelWidth + (left - tileX),
+                           target.pixels, (py - y) * w + (left - x),
+                           right - left);
+        }
+      }
+    }
+    return target;
+  }
+
+
+  @Override
+  public void set(int x, int y, int c) {
+    if ((x < 0) || (y < 0) || (x >= pixelWidth) || (y >= pixelHeight)) return;
+
+    Tile tile = tile(x / tileSize, y / tileSize);
+    tile.image.set(x % tileSize, y % tileSize, c);
+    tile.dirty = true;
+  }
+
+
+  @Override
+  protected void setImpl(PImage sourceImage,
+                         int sourceX, int sourceY,
+                         int sourceWidth, int sourceHeight,
+                         int targetX, int targetY) {
+    if (sourceImage instanceof PTiledImage) {
+      sourceImage = sourceImage.get(sourceX, sourceY, sourceWidth, sourceHeight);
+      sourceX = 0;
+      sourceY = 0;
+    }
+    int x2 = targetX + sourceWidth;
+    int y2 = targetY + sourceHeight;
+    for (int row = targetY / tileSize; row * tileSize < y2; row++) {
+      for (int column = targetX / tileSize; column * tileSize < x2; column++) {
+        Tile tile = tile(column, row);
+        int tileX = column * tileSize;
+        int tileY = row * tileSize;
+        int left = Math.max(targetX, tileX);
+        int top = Math.max(targetY, tileY);
+        int right = Math.min(x2, tileX + tile.image.pixelWidth);
+        int bottom = Math.min(y2, tileY + tile.image.pixelHeight);
+        tile.image.setImpl(sourceImage,
+                           sourceX + left - targetX, sourceY + top - targetY,
+                           right - left, bottom - top,
+                           left - tileX, top - tileY);
+        tile.dirty = true;
+      }
+    }
+  }
+
+
+  /**
+   * Blend (or copy) a region of another image into this one, one tile
+   * at a time. When the source is also tiled, the region is read into
+   * a regular PImage first, so it should fit into memory.
+   */
+  @Override
+  public void blend(PImage src,
+                    int sx, int sy, int sw, int sh,
+                    int dx, int dy, int dw, int dh, int mode) {
+    if (src instanceof PTiledImage) {
+      src = src.get(sx, sy, sw, sh);
+      sx = 0;
+      sy = 0;
+    }
+    int x1 = Math.max(0, dx);
+    int y1 = Math.max(0, dy);
+    int x2 = Math.min(pixelWidth, dx + dw);
+    int y2 = Math.min(pixelHeight, dy + dh);
+    for (int row = y1 / tileSize; row * tileSize < y2; row++) {
+      for (int column = x1 / tileSize; column * tileSize < x2; column++) {
+        Tile tile = tile(column, row);
+        // the destination is clipped to the tile in blit_resize(), the
+        // same way it's clipped to the edges of a regular image
+        tile.image.blend(src, sx, sy, sw, sh,
+                         dx - column * tileSize, dy - row * tileSize,
+                         dw, dh, mode);
+        tile.dirty = true;
+      }
+    }
+  }
+
+
+  @Override
+  public void filter(int kind) {
+    switch (kind) {
+      case BLUR:
+        filter(BLUR, 1);
+        break;
+      case FAST_BLUR:
+        filter(FAST_BLUR, 1);
+        break;
+      case ERODE:
+      case DILATE:
+        filterRegions(kind, 0, 1);
+        break;
+      default:
+        for (int row = 0; row < tileRows; row++) {
+          for (int column = 0; column < tileColumns; column++) {
+            Tile tile = tile(column, row);
+            tile.image.filter(kind);
+            tile.dirty = true;
+          }
+        }
+    }
+  }
+
+
+  @Override
+  public void filter(int kind, float param) {
+    switch (kind) {
+      case BLUR:
+        int radius = (int) (param * 3.5f);  // same as buildBlurKernel()
+        filterRegions(kind, param, PApplet.constrain(radius, 1, 248));
+        break;
+      case FAST_BLUR:
+        int reach = 0;
+        for (int r : boxRadii(param * 3.5f / (float) Math.sqrt(10), 3)) {
+          reach += r;
+        }
+        filterRegions(kind, param, reach);
+        break;
+      default:
+        // the pixel by pixel filters (and errors for the others)
+        for (int row = 0; row < tileRows; row++) {
+          for (int column = 0; column < tileColumns; column++) {
+            Tile tile = tile(column, row);
+            tile.image.filter(kind, param);
+            tile.dirty = true;
+          }
+        }
+    }
+  }
+
+
+  /**
+   * Filters that look at neighboring pixels are run on each tile plus a
+   * border of the pixels within reach around it, read from the unfiltered
+   * image. The results go to a temporary tiled image until all the tiles
+   * are done, and are then copied back, so the tiles line up without seams
+   * and give the same result as filtering one large image.
+   */
+  private void filterRegions(int kind, float param, int reach) {
+    PTiledImage output =
+      new PTiledImage(null, pixelWidth, pixelHeight, tileSize, cacheTiles);
+    for (int row = 0; row < tileRows; row++) {
+      for (int column = 0; column < tileColumns; column++) {
+        int tileX = column * tileSize;
+        int tileY = row * tileSize;
+        int x1 = Math.max(0, tileX - reach);
+        int y1 = Math.max(0, tileY - reach);
+        int x2 = Math.min(pixelWidth, tileX + tileSize + reach);
+        int y2 = Math.min(pixelHeight, tileY + tileSize + reach);
+        PImage region = get(x1, y1, x2 - x1, y2 - y1);
+        if (kind == ERODE || kind == DILATE) {
+          region.filter(kind);
+        } else {
+          region.filter(kind, param);
+        }
+        Tile tile = output.tile(column, row);
+        tile.image.setImpl(region, tileX - x1, tileY - y1,
+                           tile.image.pixelWidth, tile.image.pixelHeight, 0, 0);
+        tile.dirty = true;
+      }
+    }
+    for (int row = 0; row < tileRows; row++) {
+      for (int column = 0; column < tileColumns; column++) {
+        Tile tile = tile(column, row);
+        PImage filtered = output.tile(column, row).image;
+        System.arraycopy(filtered.pixels, 0, tile.image.pixels, 0, filtered.pixels.length);
+        tile.image.updatePixels();
+        tile.dirty = true;
+      }
+    }
+    output.dispose();
+  }
+
+
+  /**
+   * Called by PGraphics.image(). Draws each tile that overlaps the region
+   * from (u1, v1) to (u2, v2) of this image, into its part of the
+   * rectangle from (x1, y1) to (x2, y2).
+   */
+  void drawTiles(PGraphics g, float x1, float y1, float x2, float y2,
+                 int u1, int v1, int u2, int v2) {
+    if (u2 <= u1 || v2 <= v1) return;
+
+    float scaleX = (x2 - x1) / (u2 - u1);
+    float scaleY = (y2 - y1) / (v2 - v1);
+    int left = Math.max(0, u1);
+    int top = Math.max(0, v1);
+    int right = Math.min(pixelWidth, u2);
+    int bottom = Math.min(pixelHeight, v2);
+    for (int row = top / tileSize; row * tileSize < bottom; row++) {
+      for (int column = left / tileSize; column * tileSize < right; column++) {
+        PImage image = tile(column, row).image;
+        int tileX = column * tileSize;
+        int tileY = row * tileSize;
+        int tu1 = Math.max(left, tileX);
+        int tv1 = Math.max(top, tileY);
+        int tu2 = Math.min(right, tileX + image.pixelWidth);
+        int tv2 = Math.min(bottom, tileY + image.pixelHeight);
+        g.imageImpl(image,
+                    x1 + (tu1 - u1) * scaleX, y1 + (tv1 - v1) * scaleY,
+                    x1 + (tu2 - u1) * scaleX, y1 + (tv2 - v1) * scaleY,
+                    tu1 - tileX, tv1 - tileY, tu2 - tileX, tv2 - tileY);
+      }
+    }
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  /** One tile, and whether it has changes that aren't in the file yet */
+  static private class Tile {
+    final int index;
+    final PImage image;
+    boolean dirty;
+
+    Tile(int index, PImage image) {
+      this.index = index;
+      this.image = image;
+    }
+  }
+
+
+  private Tile tile(int column, int row) {
+    int index = row * tileColumns + column;
+    Tile tile = cache.get(index);
+    if (tile == null) {
+      tile = readTile(column, row);
+      cache.put(index, tile);
+    }
+    return tile;
+  }
+
+
+  private Tile readTile(int column, int row) {
+    int index = row * tileColumns + column;
+    int w = Math.min(tileSize, pixelWidth - column * tileSize);
+    int h = Math.min(tileSize, pixelHeight - row * tileSize);
+    PImage image = new PImage(w, h, ARGB);
+    image.parent = parent;
+
+    IntBuffer ints = segment(index);
+    int offset = (index % tilesPerSegment) * tileSize * tileSize;
+    for (int y = 0; y < h; y++) {
+      ints.position(offset + y * tileSize);
+      ints.get(image.pixels, y * w, w);
+    }
+    return new Tile(index, image);
+  }
+
+
+  private void writeTile(Tile tile) {
+    if (!tile.dirty) return;
+
+    PImage image = tile.image;
+    IntBuffer ints = segment(tile.index);
+    int offset = (tile.index % tilesPerSegment) * tileSize * tileSize;
+    for (int y = 0; y < image.pixelHeight; y++) {
+      ints.position(offset + y * tileSize);
+      ints.put(image.pixels, y * image.pixelWidth, image.pixelWidth);
+    }
+    tile.dirty = false;
+  }
+
+
+  /** Map the part of the file holding the tile with this index. */
+  private IntBuffer segment(int index) {
+    int which = index / tilesPerSegment;
+    if (segments[which] == null) {
+      long tileBytes = tileSize * tileSize * 4;
+      long start = which * tilesPerSegment * tileBytes;
+      long tileCount = (long) tileColumns * tileRows;
+      long count = Math.min(tilesPerSegment, tileCount - which * tilesPerSegment);
+      try {
+        mappings[which] =
+          channel.map(FileChannel.MapMode.READ_WRITE, start, count * tileBytes);
+      } catch (IOException e) {
+        throw new RuntimeException("Could not map tiles from " + file, e);
+      }
+      segments[which] = mappings[which].asIntBuffer();
+    }
+    return segments[which];
+  }
+
+}
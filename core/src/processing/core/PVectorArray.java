@@ -0,0 +1,483 @@
+/* -*- mode: java; c-basic-offset: 2; indent-tabs-mode: nil -*- */
+
+/*
+  Part of the Processing project - http://processing.org
+
+  This library is free software; you can redistribute it and/or
+  modify it under the terms of the GNU Lesser General Public
+  License as published by the Free Software Foundation, version 2.1.
+
+  This library is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General
+  Public License along with this library; if not, write to the
+  Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+  Boston, MA  02111-1307  USA
+*/
+
+package processing.core;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+
+/**
+ * A list of vectors kept as three arrays of floats, one each for x, y,
+ * and z, rather than as separate PVector objects. Made for particle
+ * systems and the like, where the same operation is done to thousands of
+ * vectors each frame: the operations here work on every vector at once,
+ * in place, without creating any objects. Large lists are split across
+ * threads. The results are the same as calling the PVector method of the
+ * same name on each vector.
+ * <pre>
+ * position.add(velocity);
+ * velocity.limit(maxSpeed);
+ * points(position);
+ * </pre>
+ * The x, y, and z arrays can be read and written directly, but may be
+ * longer than size(), and are replaced when append() needs more room.
+ */
+public class PVectorArray {
+  /** Lists with at least this many vectors are split across threads */
+  static final int PARALLEL_COUNT = 1 << 16;
+
+  public float[] x;
+  public float[] y;
+  public float[] z;
+
+  int count;
+
+
+  /** An empty list, with room for 10 vectors before it has to grow. */
+  public PVectorArray() {
+    x = new float[10];
+    y = new float[10];
+    z = new float[10];
+  }
+
+
+  /**
+   * A list that already holds 'count' vectors, all set to (0, 0, 0), ready
+   * to be filled with set(). Unlike FloatList(int), this is not empty.
+   */
+  public PVectorArray(int count) {
+    x = new float[count];
+    y = new float[count];
+    z = new float[count];
+    this.count = count;
+  }
+
+
+  public int size() {
+    return count;
+  }
+
+
+  /** Remove all vectors, keeping the arrays to be filled again. */
+  public void clear() {
+    count = 0;
+  }
+
+
+  public PVector get(int index) {
+    return get(index, null);
+  }
+
+
+  /**
+   * @param target Set to null to create a new vector
+   */
+  public PVector get(int index, PVector target) {
+    checkIndex(index);
+    if (target == null) {
+      return new PVector(x[index], y[index], z[index]);
+    }
+    return target.set(x[index], y[index], z[index]);
+  }
+
+
+  public void set(int index, float x, float y, float z) {
+    checkIndex(index);
+    this.x[index] = x;
+    this.y[index] = y;
+    this.z[index] = z;
+  }
+
+
+  public void set(int index, PVector v) {
+    set(index, v.x, v.y, v.z);
+  }
+
+
+  public void append(float x, float y) {
+    append(x, y, 0);
+  }
+
+
+  public void append(float x, float y, float z) {
+    if (count == this.x.length) {
+      int length = Math.max(4, count << 1);
+      this.x = Arrays.copyOf(this.x, length);
+      this.y = Arrays.copyOf(this.y, length);
+      this.z = Arrays.copyOf(this.z, length);
+    }
+    this.x[count] = x;
+    this.y[count] = y;
+    this.z[count] = z;
+    count++;
+  }
+
+
+  public void append(PVector v) {
+    append(v.x, v.y, v.z);
+  }
+
+
+  /**
+   * Remove the vector at this index by moving the last one into its
+   * place. Faster than shifting everything down, but changes the order.
+   */
+  public void removeFast(int index) {
+    checkIndex(index);
+    count--;
+    x[index] = x[count];
+    y[index] = y[count];
+    z[index] = z[count];
+  }
+
+
+  private void checkIndex(int index) {
+    if (index < 0 || index >= count) {
+      throw new ArrayIndexOutOfBoundsException(index);
+    }
+  }
+
+
+  private void checkSize(PVectorArray other) {
+    if (other.count < count) {
+      throw new IllegalArgumentException("The other list has " + other.count +
+                                         " vectors, but this one has " + count);
+    }
+  }
+
+
+  private void checkOutput(float[] out) {
+    if (out.length < count) {
+      throw new IllegalArgumentException("The output array needs room for " +
+                                         count + " values");
+    }
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  /** Add the vector at the same index in v to each vector. */
+  public PVectorArray add(final PVectorArray v) {
+    checkSize(v);
+    run(count, new Span() {
+      void apply(int start, int stop) {
+        float[] x = PVectorArray.this.x, y = PVectorArray.this.y, z = PVectorArray.this.z;
+        float[] vx = v.x, vy = v.y, vz = v.z;
+        for (int i = start; i < stop; i++) {
+          x[i] += vx[i];
+          y[i] += vy[i];
+          z[i] += vz[i];
+        }
+      }
+    });
+    return this;
+  }
+
+
+  /**
+   * Add v multiplied by amt to each vector, for instance to move each
+   * position by its velocity times the time step.
+   */
+  public PVectorArray add(final PVectorArray v, final float amt) {
+    checkSize(v);
+    run(count, new Span() {
+      void apply(int start, int stop) {
+        float[] x = PVectorArray.this.x, y = PVectorArray.this.y, z = PVectorArray.this.z;
+        float[] vx = v.x, vy = v.y, vz = v.z;
+        for (int i = start; i < stop; i++) {
+          x[i] += vx[i] * amt;
+          y[i] += vy[i] * amt;
+          z[i] += vz[i] * amt;
+        }
+      }
+    });
+    return this;
+  }
+
+
+  /** Add the same x, y, and z to each vector. */
+  public PVectorArray add(final float ax, final float ay, final float az) {
+    run(count, new Span() {
+      void apply(int start, int stop) {
+        float[] x = PVectorArray.this.x, y = PVectorArray.this.y, z = PVectorArray.this.z;
+        for (int i = start; i < stop; i++) {
+          x[i] += ax;
+          y[i] += ay;
+          z[i] += az;
+        }
+      }
+    });
+    return this;
+  }
+
+
+  /** Subtract the vector at the same index in v from each vector. */
+  public PVectorArray sub(final PVectorArray v) {
+    checkSize(v);
+    run(count, new Span() {
+      void apply(int start, int stop) {
+        float[] x = PVectorArray.this.x, y = PVectorArray.this.y, z = PVectorArray.this.z;
+        float[] vx = v.x, vy = v.y, vz = v.z;
+        for (int i = start; i < stop; i++) {
+          x[i] -= vx[i];
+          y[i] -= vy[i];
+          z[i] -= vz[i];
+        }
+      }
+    });
+    return this;
+  }
+
+
+  public PVectorArray sub(float sx, float sy, float sz) {
+    return add(-sx, -sy, -sz);
+  }
+
+
+  public PVectorArray mult(final float n) {
+    run(count, new Span() {
+      void apply(int start, int stop) {
+        float[] x = PVectorArray.this.x, y = PVectorArray.this.y, z = PVectorArray.this.z;
+        for (int i = start; i < stop; i++) {
+          x[i] *= n;
+          y[i] *= n;
+          z[i] *= n;
+        }
+      }
+    });
+    return this;
+  }
+
+
+  /** Make each vector length 1, leaving zero-length vectors alone. */
+  public PVectorArray normalize() {
+    run(count, new Span() {
+      void apply(int start, int stop) {
+        float[] x = PVectorArray.this.x, y = PVectorArray.this.y, z = PVectorArray.this.z;
+        for (int i = start; i < stop; i++) {
+          float m = (float) Math.sqrt(x[i]*x[i] + y[i]*y[i] + z[i]*z[i]);
+          if (m != 0 && m != 1) {
+            x[i] /= m;
+            y[i] /= m;
+            z[i] /= m;
+          }
+        }
+      }
+    });
+    return this;
+  }
+
+
+  /** Shorten any vector that is longer than max to a length of max. */
+  public PVectorArray limit(final float max) {
+    final float maxSq = max*max;
+    run(count, new Span() {
+      void apply(int start, int stop) {
+        float[] x = PVectorArray.this.x, y = PVectorArray.this.y, z = PVectorArray.this.z;
+        for (int i = start; i < stop; i++) {
+          float magSq = x[i]*x[i] + y[i]*y[i] + z[i]*z[i];
+          if (magSq > maxSq) {
+            // same steps as PVector.limit(), normalize() then mult()
+            float m = (float) Math.sqrt(magSq);
+            x[i] = x[i] / m * max;
+            y[i] = y[i] / m * max;
+            z[i] = z[i] / m * max;
+          }
+        }
+      }
+    });
+    return this;
+  }
+
+
+  /**
+   * Move each vector toward the vector at the same index in v.
+   * @param amt 0.0 leaves the vectors as they are, 1.0 sets them to v
+   */
+  public PVectorArray lerp(final PVectorArray v, final float amt) {
+    checkSize(v);
+    run(count, new Span() {
+      void apply(int start, int stop) {
+        float[] x = PVectorArray.this.x, y = PVectorArray.this.y, z = PVectorArray.this.z;
+        float[] vx = v.x, vy = v.y, vz = v.z;
+        for (int i = start; i < stop; i++) {
+          x[i] += (vx[i] - x[i]) * amt;
+          y[i] += (vy[i] - y[i]) * amt;
+          z[i] += (vz[i] - z[i]) * amt;
+        }
+      }
+    });
+    return this;
+  }
+
+
+  /**
+   * Transform each vector by the matrix, the same as PMatrix3D.mult().
+   */
+  public PVectorArray applyMatrix(PMatrix3D matrix) {
+    final float m00 = matrix.m00, m01 = matrix.m01, m02 = matrix.m02, m03 = matrix.m03;
+    final float m10 = matrix.m10, m11 = matrix.m11, m12 = matrix.m12, m13 = matrix.m13;
+    final float m20 = matrix.m20, m21 = matrix.m21, m22 = matrix.m22, m23 = matrix.m23;
+    run(count, new Span() {
+      void apply(int start, int stop) {
+        float[] x = PVectorArray.this.x, y = PVectorArray.this.y, z = PVectorArray.this.z;
+        for (int i = start; i < stop; i++) {
+          float sx = x[i], sy = y[i], sz = z[i];
+          x[i] = m00*sx + m01*sy + m02*sz + m03;
+          y[i] = m10*sx + m11*sy + m12*sz + m13;
+          z[i] = m20*sx + m21*sy + m22*sz + m23;
+        }
+      }
+    });
+    return this;
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  /**
+   * Distance from each vector to the one at the same index in v.
+   * @param out array to fill, or null to create a new one
+   * @return out, or the new array
+   */
+  public float[] dist(final PVectorArray v, float[] out) {
+    checkSize(v);
+    if (out == null) {
+      out = new float[count];
+    }
+    checkOutput(out);
+    final float[] target = out;
+    run(count, new Span() {
+      void apply(int start, int stop) {
+        float[] x = PVectorArray.this.x, y = PVectorArray.this.y, z = PVectorArray.this.z;
+        float[] vx = v.x, vy = v.y, vz = v.z;
+        for (int i = start; i < stop; i++) {
+          float dx = x[i] - vx[i];
+          float dy = y[i] - vy[i];
+          float dz = z[i] - vz[i];
+          target[i] = (float) Math.sqrt(dx*dx + dy*dy + dz*dz);
+        }
+      }
+    });
+    return out;
+  }
+
+
+  /**
+   * Distance from each vector to the same point.
+   * @param out array to fill, or null to create a new one
+   * @return out, or the new array
+   */
+  public float[] dist(final PVector v, float[] out) {
+    if (out == null) {
+      out = new float[count];
+    }
+    checkOutput(out);
+    final float[] target = out;
+    final float vx = v.x, vy = v.y, vz = v.z;
+    run(count, new Span() {
+      void apply(int start, int stop) {
+        float[] x = PVectorArray.this.x, y = PVectorArray.this.y, z = PVectorArray.this.z;
+        for (int i = start; i < stop; i++) {
+          float dx = x[i] - vx;
+          float dy = y[i] - vy;
+          float dz = z[i] - vz;
+          target[i] = (float) Math.sqrt(dx*dx + dy*dy + dz*dz);
+        }
+      }
+    });
+    return out;
+  }
+
+
+  /**
+   * The angle of each vector in 2D, see PVector.heading().
+   * @param out array to fill, or null to create a new one
+   * @return out, or the new array
+   */
+  public float[] heading(float[] out) {
+    if (out == null) {
+      out = new float[count];
+    }
+    checkOutput(out);
+    final float[] target = out;
+    run(count, new Span() {
+      void apply(int start, int stop) {
+        float[] x = PVectorArray.this.x, y = PVectorArray.this.y;
+        for (int i = start; i < stop; i++) {
+          target[i] = (float) Math.atan2(y[i], x[i]);
+        }
+      }
+    });
+    return out;
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  /**
+   * One operation, done to the vectors (or points, in PMatrix2D and
+   * PMatrix3D.multArray) from start up to stop.
+   */
+  static abstract class Span {
+    abstract void apply(int start, int stop);
+  }
+
+
+  static void run(int count, Span span) {
+    ForkJoinPool pool = PImage.filterPool;
+    if (count < PARALLEL_COUNT || pool.getParallelism() < 2) {
+      span.apply(0, count);
+    } else {
+      int grain = Math.max(1, count / (pool.getParallelism() * 4));
+      pool.invoke(new Band(span, 0, count, grain));
+    }
+  }
+
+
+  static private class Band extends RecursiveAction {
+    final Span span;
+    final int start, stop;
+    final int grain;
+
+    Band(Span span, int start, int stop, int grain) {
+      this.span = span;
+      this.start = start;
+      this.stop = stop;
+      this.grain = grain;
+    }
+
+    @Override
+    protected void compute() {
+      if (stop - start <= grain) {
+        span.apply(start, stop);
+      } else {
+        int mid = (start + stop) >>> 1;
+        invokeAll(new Band(span, start, mid, grain),
+                  new Band(span, mid, stop, grain));
+      }
+    }
+  }
+}
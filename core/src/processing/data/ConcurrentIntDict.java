@@ -0,0 +1,288 @@
+package processing.data;
+
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+
+/**
+ * A String to int lookup that can be updated from several threads at once,
+ * for counting events from thread() workers or network callbacks without
+ * wrapping every call to an IntDict in a synchronized block.
+ * <p/>
+ * Keys are spread across a number of shards. Adding to a key that already
+ * exists doesn't lock at all, it's a single atomic add. Creating a new key
+ * only locks the shard that it belongs to, so threads inserting different
+ * keys rarely wait on one another. Keys can't be removed individually,
+ * use clear() to start over.
+ * <p/>
+ * Use snapshot() to get a regular IntDict for sorting, printing, or saving.
+ *
+ * @see IntDict
+ */
+public class ConcurrentIntDict {
+
+  static final int MAX_SHARDS = 64;
+
+  final Shard[] shards;
+  final int shardShift;
+
+
+  public ConcurrentIntDict() {
+    this(Runtime.getRuntime().availableProcessors() * 4);
+  }
+
+
+  /**
+   * @param concurrency rough number of threads expected to add new keys at
+   *                    the same time, rounded up to a power of 2 (max 64)
+   */
+  public ConcurrentIntDict(int concurrency) {
+    int count = 1;
+    int bits = 0;
+    while (count < concurrency && count < MAX_SHARDS) {
+      count <<= 1;
+      bits++;
+    }
+    shards = new Shard[count];
+    for (int i = 0; i < count; i++) {
+      shards[i] = new Shard();
+    }
+    // use the high bits to choose a shard, the low bits for the slot
+    shardShift = 32 - bits;
+  }
+
+
+  /**
+   * Returns the number of key/value pairs. When other threads are adding
+   * keys, this is only an estimate.
+   */
+  public int size() {
+    int total = 0;
+    for (Shard shard : shards) {
+      total += shard.count;
+    }
+    return total;
+  }
+
+
+  /**
+   * Remove all entries. Updates made by other threads while this is running
+   * may or may not be kept.
+   */
+  public void clear() {
+    for (Shard shard : shards) {
+      shard.clear();
+    }
+  }
+
+
+  private Shard shard(int hash) {
+    return (shardShift == 32) ? shards[0] : shards[hash >>> shardShift];
+  }
+
+
+  /**
+   * Return a value for the specified key.
+   */
+  public int get(String key) {
+    Counter counter = find(key);
+    if (counter == null) {
+      throw new IllegalArgumentException("No key named '" + key + "'");
+    }
+    return counter.value;
+  }
+
+
+  public int get(String key, int alternate) {
+    Counter counter = find(key);
+    return (counter == null) ? alternate : counter.value;
+  }
+
+
+  public boolean hasKey(String key) {
+    return find(key) != null;
+  }
+
+
+  /**
+   * Create a new key/value pair or change the value of one.
+   */
+  public void set(String key, int amount) {
+    counter(key).value = amount;
+  }
+
+
+  /**
+   * Increase the value associated with a specific key by 1.
+   */
+  public void increment(String key) {
+    add(key, 1);
+  }
+
+
+  /**
+   * Merge a (regular, single-threaded) dictionary into this one.
+   */
+  public void increment(IntDict dict) {
+    for (int i = 0; i < dict.size(); i++) {
+      add(dict.key(i), dict.value(i));
+    }
+  }
+
+
+  /**
+   * Add to a value, and return the new value.
+   */
+  public int add(String key, int amount) {
+    return Counter.VALUE.addAndGet(counter(key), amount);
+  }
+
+
+  public int sub(String key, int amount) {
+    return add(key, -amount);
+  }
+
+
+  private Counter find(String key) {
+    if (key == null) {
+      return null;
+    }
+    int hash = KeyIndex.hash(key);
+    return shard(hash).find(key, hash);
+  }
+
+
+  /** Find the counter for this key, creating it if it doesn't exist yet. */
+  private Counter counter(String key) {
+    if (key == null) {
+      throw new IllegalArgumentException("ConcurrentIntDict does not allow null keys");
+    }
+    int hash = KeyIndex.hash(key);
+    Shard shard = shard(hash);
+    Counter counter = shard.find(key, hash);
+    if (counter == null) {
+      counter = shard.create(key, hash);
+    }
+    return counter;
+  }
+
+
+  /**
+   * Copy the current contents into a regular IntDict. The copy is not
+   * atomic: when other threads are still counting, each value will be
+   * whatever it was at the moment that key was read.
+   */
+  public IntDict snapshot() {
+    IntDict outgoing = new IntDict(Math.max(size(), 1));
+    for (Shard shard : shards) {
+      AtomicReferenceArray<Counter> table = shard.table;
+      for (int i = 0; i < table.length(); i++) {
+        Counter counter = table.get(i);
+        if (counter != null) {
+          outgoing.create(counter.key, counter.value);
+        }
+      }
+    }
+    return outgoing;
+  }
+
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + " size=" + size() + " " + snapshot().toJSON();
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  static class Counter {
+    static final AtomicIntegerFieldUpdater<Counter> VALUE =
+      AtomicIntegerFieldUpdater.newUpdater(Counter.class, "value");
+
+    final String key;
+    final int hash;
+    volatile int value;
+
+    Counter(String key, int hash) {
+      this.key = key;
+      this.hash = hash;
+    }
+  }
+
+
+  /**
+   * One open-addressing table of counters. Readers probe it without
+   * locking. Writers lock the shard, and when the table fills up, a larger
+   * copy is published: the Counter objects are shared between the old and
+   * new tables, so updates through a stale table are never lost, and a
+   * reader that misses a key on a stale table retries under the lock.
+   */
+  static class Shard {
+    volatile AtomicReferenceArray<Counter> table =
+      new AtomicReferenceArray<>(16);
+    volatile int count;
+
+
+    Counter find(String key, int hash) {
+      AtomicReferenceArray<Counter> t = table;
+      int mask = t.length() - 1;
+      int slot = hash & mask;
+      Counter counter;
+      while ((counter = t.get(slot)) != null) {
+        if (counter.hash == hash && key.equals(counter.key)) {
+          return counter;
+        }
+        slot = (slot + 1) & mask;
+      }
+      return null;
+    }
+
+
+    synchronized Counter create(String key, int hash) {
+      // someone else may have added it since find() was called
+      Counter counter = find(key, hash);
+      if (counter != null) {
+        return counter;
+      }
+      counter = new Counter(key, hash);
+      AtomicReferenceArray<Counter> t = table;
+      if ((count + 1) * 2 > t.length()) {
+        t = grow(t);
+      }
+      insert(t, counter);
+      count++;
+      return counter;
+    }
+
+
+    private AtomicReferenceArray<Counter> grow(AtomicReferenceArray<Counter> t) {
+      AtomicReferenceArray<Counter> bigger =
+        new AtomicReferenceArray<>(t.length() << 1);
+      for (int i = 0; i < t.length(); i++) {
+        Counter counter = t.get(i);
+        if (counter != null) {
+          insert(bigger, counter);
+        }
+      }
+      table = bigger;
+      return bigger;
+    }
+
+
+    static private void insert(AtomicReferenceArray<Counter> t, Counter counter) {
+      int mask = t.length() - 1;
+      int slot = counter.hash & mask;
+      while (t.get(slot) != null) {
+        slot = (slot + 1) & mask;
+      }
+      t.set(slot, counter);
+    }
+
+
+    synchronized void clear() {
+      table = new AtomicReferenceArray<>(16);
+      count = 0;
+    }
+  }
+}
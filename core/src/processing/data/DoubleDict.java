@@ -1,7 +1,6 @@
 package processing.data;
 
 import java.io.*;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.NoSuchElementException;
@@ -25,7 +24,7 @@ public class DoubleDict {
   protected double[] values;
 
   /** Internal implementation for faster lookups */
-  private HashMap<String, Integer> indices = new HashMap<>();
+  private KeyIndex indices = new KeyIndex();
 
 
   public DoubleDict() {
@@ -45,6 +44,7 @@ public class DoubleDict {
     count = 0;
     keys = new String[length];
     values = new double[length];
+    indices = new KeyIndex(length);
   }
 
 
@@ -64,7 +64,7 @@ public class DoubleDict {
       if (pieces.length == 2) {
         keys[count] = pieces[0];
         values[count] = PApplet.parseFloat(pieces[1]);
-        indices.put(pieces[0], count);
+        indices.put(keys, count);
         count++;
       }
     }
@@ -82,7 +82,7 @@ public class DoubleDict {
     this.values = values;
     count = keys.length;
     for (int i = 0; i < count; i++) {
-      indices.put(keys[i], i);
+      indices.put(keys, i);
     }
   }
 
@@ -103,7 +103,7 @@ public class DoubleDict {
     for (int i = 0; i < count; i++) {
       keys[i] = (String) pairs[i][0];
       values[i] = (Float) pairs[i][1];
-      indices.put(keys[i], i);
+      indices.put(keys, i);
     }
   }
 
@@ -116,7 +116,7 @@ public class DoubleDict {
     for (Map.Entry<String, Double> e : incoming.entrySet()) {
       keys[index] = e.getKey();
       values[index] = e.getValue();
-      indices.put(keys[index], index);
+      indices.put(keys, index);
       index++;
     }
   }
@@ -164,15 +164,12 @@ public class DoubleDict {
    */
   public void clear() {
     count = 0;
-    indices = new HashMap<>();
+    indices.clear();
   }
 
 
   private void resetIndices() {
-    indices = new HashMap<>(count);
-    for (int i = 0; i < count; i++) {
-      indices.put(keys[i], i);
-    }
+    indices.reindex(count);
   }
 
 
@@ -400,6 +397,7 @@ public class DoubleDict {
       throw new ArrayIndexOutOfBoundsException(index);
     }
     keys[index] = key;
+    indices.replace(keys, index);
     values[index] = value;
   }
 
@@ -590,8 +588,7 @@ public class DoubleDict {
 
 
   public int index(String what) {
-    Integer found = indices.get(what);
-    return (found == null) ? -1 : found.intValue();
+    return indices.find(keys, what);
   }
 
 
@@ -600,9 +597,9 @@ public class DoubleDict {
       keys = PApplet.expand(keys);
       values = PApplet.expand(values);
     }
-    indices.put(what, Integer.valueOf(count));
     keys[count] = what;
     values[count] = much;
+    indices.put(keys, count);
     count++;
   }
 
@@ -627,11 +624,10 @@ public class DoubleDict {
       throw new ArrayIndexOutOfBoundsException(index);
     }
     double value = values[index];
-    indices.remove(keys[index]);
+    indices.remove(index, count);
     for (int i = index; i < count-1; i++) {
       keys[i] = keys[i+1];
       values[i] = values[i+1];
-      indices.put(keys[i], i);
     }
     count--;
     keys[count] = null;
@@ -641,15 +637,18 @@ public class DoubleDict {
 
 
   public void swap(int a, int b) {
+    indices.swap(a, b);
+    swapEntries(a, b);
+  }
+
+
+  private void swapEntries(int a, int b) {
     String tkey = keys[a];
     double tvalue = values[a];
     keys[a] = keys[b];
     values[a] = values[b];
     keys[b] = tkey;
     values[b] = tvalue;
-
-//    indices.put(keys[a], Integer.valueOf(a));
-//    indices.put(keys[b], Integer.valueOf(b));
   }
 
 
@@ -763,10 +762,11 @@ public class DoubleDict {
 
       @Override
       public void swap(int a, int b) {
-        DoubleDict.this.swap(a, b);
+        swapEntries(a, b);
+        indices.swapHashes(a, b);
       }
     };
-    s.run();
+    s.runParallel();
 
     // Set the indices after sort/swaps (performance fix 160411)
     resetIndices();
@@ -794,9 +794,7 @@ public class DoubleDict {
     DoubleDict outgoing = new DoubleDict(count);
     System.arraycopy(keys, 0, outgoing.keys, 0, count);
     System.arraycopy(values, 0, outgoing.values, 0, count);
-    for (int i = 0; i < count; i++) {
-      outgoing.indices.put(keys[i], i);
-    }
+    outgoing.indices = indices.copy();
     outgoing.count = count;
     return outgoing;
   }
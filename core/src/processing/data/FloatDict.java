@@ -1,7 +1,6 @@
 package processing.data;
 
 import java.io.*;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 
@@ -24,7 +23,7 @@ public class FloatDict {
   protected float[] values;
 
   /** Internal implementation for faster lookups */
-  private HashMap<String, Integer> indices = new HashMap<>();
+  private KeyIndex indices = new KeyIndex();
 
 
   public FloatDict() {
@@ -44,6 +43,7 @@ public class FloatDict {
     count = 0;
     keys = new String[length];
     values = new float[length];
+    indices = new KeyIndex(length);
   }
 
 
@@ -63,7 +63,7 @@ public class FloatDict {
       if (pieces.length == 2) {
         keys[count] = pieces[0];
         values[count] = PApplet.parseFloat(pieces[1]);
-        indices.put(pieces[0], count);
+        indices.put(keys, count);
         count++;
       }
     }
@@ -81,7 +81,7 @@ public class FloatDict {
     this.values = values;
     count = keys.length;
     for (int i = 0; i < count; i++) {
-      indices.put(keys[i], i);
+      indices.put(keys, i);
     }
   }
 
@@ -102,7 +102,7 @@ public class FloatDict {
     for (int i = 0; i < count; i++) {
       keys[i] = (String) pairs[i][0];
       values[i] = (Float) pairs[i][1];
-      indices.put(keys[i], i);
+      indices.put(keys, i);
     }
   }
 
@@ -149,15 +149,12 @@ public class FloatDict {
    */
   public void clear() {
     count = 0;
-    indices = new HashMap<>();
+    indices.clear();
   }
 
 
   private void resetIndices() {
-    indices = new HashMap<>(count);
-    for (int i = 0; i < count; i++) {
-      indices.put(keys[i], i);
-    }
+    indices.reindex(count);
   }
 
 
@@ -385,6 +382,7 @@ public class FloatDict {
       throw new ArrayIndexOutOfBoundsException(index);
     }
     keys[index] = key;
+    indices.replace(keys, index);
     values[index] = value;
   }
 
@@ -587,8 +585,7 @@ public class FloatDict {
 
 
   public int index(String what) {
-    Integer found = indices.get(what);
-    return (found == null) ? -1 : found.intValue();
+    return indices.find(keys, what);
   }
 
 
@@ -597,9 +594,9 @@ public class FloatDict {
       keys = PApplet.expand(keys);
       values = PApplet.expand(values);
     }
-    indices.put(what, Integer.valueOf(count));
     keys[count] = what;
     values[count] = much;
+    indices.put(keys, count);
     count++;
   }
 
@@ -624,11 +621,10 @@ public class FloatDict {
       throw new ArrayIndexOutOfBoundsException(index);
     }
     float value = values[index];
-    indices.remove(keys[index]);
+    indices.remove(index, count);
     for (int i = index; i < count-1; i++) {
       keys[i] = keys[i+1];
       values[i] = values[i+1];
-      indices.put(keys[i], i);
     }
     count--;
     keys[count] = null;
@@ -638,15 +634,18 @@ public class FloatDict {
 
 
   public void swap(int a, int b) {
+    indices.swap(a, b);
+    swapEntries(a, b);
+  }
+
+
+  private void swapEntries(int a, int b) {
     String tkey = keys[a];
     float tvalue = values[a];
     keys[a] = keys[b];
     values[a] = values[b];
     keys[b] = tkey;
     values[b] = tvalue;
-
-//    indices.put(keys[a], Integer.valueOf(a));
-//    indices.put(keys[b], Integer.valueOf(b));
   }
 
 
@@ -760,10 +759,11 @@ public class FloatDict {
 
       @Override
       public void swap(int a, int b) {
-        FloatDict.this.swap(a, b);
+        swapEntries(a, b);
+        indices.swapHashes(a, b);
       }
     };
-    s.run();
+    s.runParallel();
 
     // Set the indices after sort/swaps (performance fix 160411)
     resetIndices();
@@ -791,9 +791,7 @@ public class FloatDict {
     FloatDict outgoing = new FloatDict(count);
     System.arraycopy(keys, 0, outgoing.keys, 0, count);
     System.arraycopy(values, 0, outgoing.values, 0, count);
-    for (int i = 0; i < count; i++) {
-      outgoing.indices.put(keys[i], i);
-    }
+    outgoing.indices = indices.copy();
     outgoing.count = count;
     return outgoing;
   }
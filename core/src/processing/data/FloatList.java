@@ -546,6 +546,136 @@ public class FloatList implements Iterable<Float> {
   }
 
 
+  /**
+   * Add the same amount to every value in the list.
+   * Not to be confused with add(index, amount), which changes one value.
+   */
+  public void addEach(float amount) {
+    for (int i = 0; i < count; i++) {
+      data[i] += amount;
+    }
+  }
+
+
+  /**
+   * Subtract the same amount from every value in the list.
+   * Not to be confused with sub(index, amount), which changes one value.
+   */
+  public void subEach(float amount) {
+    for (int i = 0; i < count; i++) {
+      data[i] -= amount;
+    }
+  }
+
+
+  /**
+   * Multiply every value in the list by the same amount.
+   * Not to be confused with mult(index, amount), which changes one value.
+   */
+  public void multEach(float amount) {
+    for (int i = 0; i < count; i++) {
+      data[i] *= amount;
+    }
+  }
+
+
+  /**
+   * Divide every value in the list by the same amount.
+   * Not to be confused with div(index, amount), which changes one value.
+   */
+  public void divEach(float amount) {
+    for (int i = 0; i < count; i++) {
+      data[i] /= amount;
+    }
+  }
+
+
+  private void checkSize(FloatList list, String method) {
+    if (list.count != count) {
+      final String msg = String.format("The list size is %d. " +
+        "You cannot %s() a list of size %d.", count, method, list.count);
+      throw new IllegalArgumentException(msg);
+    }
+  }
+
+
+  /**
+   * Add each value of another list to the value at the same index in this
+   * one. Both lists must be the same size.
+   */
+  public void add(FloatList list) {
+    checkSize(list, "add");
+    float[] other = list.data;
+    for (int i = 0; i < count; i++) {
+      data[i] += other[i];
+    }
+  }
+
+
+  /**
+   * Subtract each value of another list from the value at the same index
+   * in this one. Both lists must be the same size.
+   */
+  public void sub(FloatList list) {
+    checkSize(list, "sub");
+    float[] other = list.data;
+    for (int i = 0; i < count; i++) {
+      data[i] -= other[i];
+    }
+  }
+
+
+  /**
+   * Multiply each value by the value at the same index in another list.
+   * Both lists must be the same size.
+   */
+  public void mult(FloatList list) {
+    checkSize(list, "mult");
+    float[] other = list.data;
+    for (int i = 0; i < count; i++) {
+      data[i] *= other[i];
+    }
+  }
+
+
+  /**
+   * Divide each value by the value at the same index in another list.
+   * Both lists must be the same size.
+   */
+  public void div(FloatList list) {
+    checkSize(list, "div");
+    float[] other = list.data;
+    for (int i = 0; i < count; i++) {
+      data[i] /= other[i];
+    }
+  }
+
+
+  /**
+   * Move each value part of the way towards the value at the same index in
+   * another list, same as calling lerp() on every pair. An amount of 0 leaves
+   * this list as it is, 1 makes it a copy of the target.
+   */
+  public void lerp(FloatList target, float amt) {
+    checkSize(target, "lerp");
+    float[] other = target.data;
+    for (int i = 0; i < count; i++) {
+      data[i] += (other[i] - data[i]) * amt;
+    }
+  }
+
+
+  /**
+   * Constrain every value to the range low..high. NaN values are left alone.
+   */
+  public void clamp(float low, float high) {
+    for (int i = 0; i < count; i++) {
+      float value = data[i];
+      data[i] = (value < low) ? low : ((value > high) ? high : value);
+    }
+  }
+
+
   private void checkMinMax(String functionName) {
     if (count == 0) {
       String msg =
@@ -640,12 +770,85 @@ public class FloatList implements Iterable<Float> {
   }
 
 
+  /**
+   * Large lists are added up in parallel, see ParallelSum.
+   */
   public double sumDouble() {
+    return new ParallelSum.OfDouble() {
+      @Override
+      double sum(int start, int stop) {
+        double sum = 0;
+        for (int i = start; i < stop; i++) {
+          sum += data[i];
+        }
+        return sum;
+      }
+    }.run(count);
+  }
+
+
+  /**
+   * Multiply each value by the value at the same index in another list, and
+   * return the sum of the products. Both lists must be the same size.
+   */
+  public double dot(FloatList list) {
+    checkSize(list, "dot");
+    final float[] other = list.data;
+    return new ParallelSum.OfDouble() {
+      @Override
+      double sum(int start, int stop) {
+        double sum = 0;
+        for (int i = start; i < stop; i++) {
+          sum += (double) data[i] * other[i];
+        }
+        return sum;
+      }
+    }.run(count);
+  }
+
+
+  /**
+   * Replace each value with the sum of itself and all the values before it.
+   * The running total is kept as a double, so it doesn't drift on long lists.
+   */
+  public void cumulativeSum() {
     double sum = 0;
     for (int i = 0; i < count; i++) {
       sum += data[i];
+      data[i] = (float) sum;
     }
-    return sum;
+  }
+
+
+  /**
+   * Count how many values fall into each of a number of equal-sized bins
+   * spread between the smallest and largest values in the list.
+   */
+  public IntList histogram(int bins) {
+    checkMinMax("histogram");
+    return histogram(bins, min(), max());
+  }
+
+
+  /**
+   * Count how many values fall into each of a number of equal-sized bins
+   * spread between low and high. The high value itself goes into the last
+   * bin. Values outside the range (and NaN) are not counted.
+   */
+  public IntList histogram(int bins, float low, float high) {
+    if (bins < 1) {
+      throw new IllegalArgumentException("histogram() needs at least one bin");
+    }
+    int[] counts = new int[bins];
+    double scale = (high > low) ? bins / ((double) high - low) : 0;
+    for (int i = 0; i < count; i++) {
+      float value = data[i];
+      if (value >= low && value <= high) {
+        int bin = (int) ((value - (double) low) * scale);
+        counts[bin < bins ? bin : bins - 1]++;
+      }
+    }
+    return new IntList(counts);
   }
 
 
@@ -705,7 +908,7 @@ public class FloatList implements Iterable<Float> {
         data[a] = data[b];
         data[b] = temp;
       }
-    }.run();
+    }.runParallel();
   }
 
 
@@ -854,16 +1057,12 @@ public class FloatList implements Iterable<Float> {
    * normalization in place on int values).
    */
   public FloatList getPercent() {
-    double sum = 0;
-    for (float value : array()) {
-      sum += value;
-    }
-    FloatList outgoing = new FloatList(count);
+    double sum = sumDouble();
+    float[] percents = new float[count];
     for (int i = 0; i < count; i++) {
-      double percent = data[i] / sum;
-      outgoing.set(i, (float) percent);
+      percents[i] = (float) (data[i] / sum);
     }
-    return outgoing;
+    return new FloatList(percents);
   }
 
 
@@ -1,7 +1,6 @@
 package processing.data;
 
 import java.io.*;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 
@@ -24,7 +23,7 @@ public class IntDict {
   protected int[] values;
 
   /** Internal implementation for faster lookups */
-  private HashMap<String, Integer> indices = new HashMap<>();
+  private KeyIndex indices = new KeyIndex();
 
 
   public IntDict() {
@@ -44,6 +43,7 @@ public class IntDict {
     count = 0;
     keys = new String[length];
     values = new int[length];
+    indices = new KeyIndex(length);
   }
 
 
@@ -63,7 +63,7 @@ public class IntDict {
       if (pieces.length == 2) {
         keys[count] = pieces[0];
         values[count] = PApplet.parseInt(pieces[1]);
-        indices.put(pieces[0], count);
+        indices.put(keys, count);
         count++;
       }
     }
@@ -80,7 +80,7 @@ public class IntDict {
     this.values = values;
     count = keys.length;
     for (int i = 0; i < count; i++) {
-      indices.put(keys[i], i);
+      indices.put(keys, i);
     }
   }
 
@@ -101,7 +101,7 @@ public class IntDict {
     for (int i = 0; i < count; i++) {
       keys[i] = (String) pairs[i][0];
       values[i] = (Integer) pairs[i][1];
-      indices.put(keys[i], i);
+      indices.put(keys, i);
     }
   }
 
@@ -148,15 +148,12 @@ public class IntDict {
    */
   public void clear() {
     count = 0;
-    indices = new HashMap<>();
+    indices.clear();
   }
 
 
   private void resetIndices() {
-    indices = new HashMap<>(count);
-    for (int i = 0; i < count; i++) {
-      indices.put(keys[i], i);
-    }
+    indices.reindex(count);
   }
 
 
@@ -386,6 +383,7 @@ public class IntDict {
       throw new ArrayIndexOutOfBoundsException(index);
     }
     keys[index] = key;
+    indices.replace(keys, index);
     values[index] = value;
   }
 
@@ -572,8 +570,7 @@ public class IntDict {
 
 
   public int index(String what) {
-    Integer found = indices.get(what);
-    return (found == null) ? -1 : found.intValue();
+    return indices.find(keys, what);
   }
 
 
@@ -582,9 +579,9 @@ public class IntDict {
       keys = PApplet.expand(keys);
       values = PApplet.expand(values);
     }
-    indices.put(what, Integer.valueOf(count));
     keys[count] = what;
     values[count] = much;
+    indices.put(keys, count);
     count++;
   }
 
@@ -608,11 +605,10 @@ public class IntDict {
       throw new ArrayIndexOutOfBoundsException(index);
     }
     int value = values[index];
-    indices.remove(keys[index]);
+    indices.remove(index, count);
     for (int i = index; i < count-1; i++) {
       keys[i] = keys[i+1];
       values[i] = values[i+1];
-      indices.put(keys[i], i);
     }
     count--;
     keys[count] = null;
@@ -622,15 +618,18 @@ public class IntDict {
 
 
   public void swap(int a, int b) {
+    indices.swap(a, b);
+    swapEntries(a, b);
+  }
+
+
+  private void swapEntries(int a, int b) {
     String tkey = keys[a];
     int tvalue = values[a];
     keys[a] = keys[b];
     values[a] = values[b];
     keys[b] = tkey;
     values[b] = tvalue;
-
-//    indices.put(keys[a], Integer.valueOf(a));
-//    indices.put(keys[b], Integer.valueOf(b));
   }
 
 
@@ -708,10 +707,10 @@ public class IntDict {
         if (useKeys) {
           diff = keys[a].compareToIgnoreCase(keys[b]);
           if (diff == 0) {
-            diff = values[a] - values[b];
+            diff = Integer.compare(values[a], values[b]);
           }
         } else {  // sort values
-          diff = values[a] - values[b];
+          diff = Integer.compare(values[a], values[b]);
           if (diff == 0 && stable) {
             diff = keys[a].compareToIgnoreCase(keys[b]);
           }
@@ -721,10 +720,11 @@ public class IntDict {
 
       @Override
       public void swap(int a, int b) {
-        IntDict.this.swap(a, b);
+        swapEntries(a, b);
+        indices.swapHashes(a, b);
       }
     };
-    s.run();
+    s.runParallel();
 
     // Set the indices after sort/swaps (performance fix 160411)
     resetIndices();
@@ -752,9 +752,7 @@ public class IntDict {
     IntDict outgoing = new IntDict(count);
     System.arraycopy(keys, 0, outgoing.keys, 0, count);
     System.arraycopy(values, 0, outgoing.values, 0, count);
-    for (int i = 0; i < count; i++) {
-      outgoing.indices.put(keys[i], i);
-    }
+    outgoing.indices = indices.copy();
     outgoing.count = count;
     return outgoing;
   }
@@ -0,0 +1,775 @@
+package processing.data;
+
+import java.io.*;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import processing.core.PApplet;
+
+
+/**
+ * A simple class to use an int as a lookup for a float value. Works like
+ * FloatDict, but avoids converting ids, colors, and other numeric keys into
+ * Strings (and all the garbage that creates).
+ *
+ * @see FloatDict
+ * @see IntFloatDict
+ * @see LongIntDict
+ */
+public class IntFloatDict {
+
+  /** Number of elements in the table */
+  protected int count;
+
+  protected int[] keys;
+  protected float[] values;
+
+  /** Internal implementation for faster lookups */
+  private IntKeyIndex indices;
+
+
+  public IntFloatDict() {
+    this(10);
+  }
+
+
+  /**
+   * Create a new lookup with a specific size. This is more efficient than not
+   * specifying a size. Use it when you know the rough size of the thing you're creating.
+   *
+   * @nowebref
+   */
+  public IntFloatDict(int length) {
+    count = 0;
+    keys = new int[length];
+    values = new float[length];
+    indices = new IntKeyIndex(length);
+  }
+
+
+  /**
+   * Read a set of entries from a Reader that has each key/value pair on
+   * a single line, separated by a tab.
+   *
+   * @nowebref
+   */
+  public IntFloatDict(BufferedReader reader) {
+    String[] lines = PApplet.loadStrings(reader);
+    keys = new int[lines.length];
+    values = new float[lines.length];
+    indices = new IntKeyIndex(lines.length);
+
+    for (int i = 0; i < lines.length; i++) {
+      String[] pieces = PApplet.split(lines[i], '\t');
+      if (pieces.length == 2) {
+        keys[count] = PApplet.parseInt(pieces[0]);
+        values[count] = PApplet.parseFloat(pieces[1]);
+        indices.put(keys, count);
+        count++;
+      }
+    }
+  }
+
+
+  /**
+   * @nowebref
+   */
+  public IntFloatDict(int[] keys, float[] values) {
+    if (keys.length != values.length) {
+      throw new IllegalArgumentException("key and value arrays must be the same length");
+    }
+    this.keys = keys;
+    this.values = values;
+    count = keys.length;
+    indices = new IntKeyIndex(count);
+    for (int i = 0; i < count; i++) {
+      indices.put(keys, i);
+    }
+  }
+
+
+  /**
+   * Constructor to allow (more intuitive) inline initialization, e.g.:
+   * <pre>
+   * new IntFloatDict(new float[][] {
+   *   { 1, 0.5f },
+   *   { 2, 0.25f }
+   * });
+   * </pre>
+   */
+  public IntFloatDict(float[][] pairs) {
+    count = pairs.length;
+    this.keys = new int[count];
+    this.values = new float[count];
+    indices = new IntKeyIndex(count);
+    for (int i = 0; i < count; i++) {
+      keys[i] = (int) pairs[i][0];
+      values[i] = pairs[i][1];
+      indices.put(keys, i);
+    }
+  }
+
+
+  /**
+   * Returns the number of key/value pairs
+   */
+  public int size() {
+    return count;
+  }
+
+
+  /**
+   * Resize the internal data, this can only be used to shrink the list.
+   * Helpful for situations like sorting and then grabbing the top 50 entries.
+   */
+  public void resize(int length) {
+    if (length > count) {
+      throw new IllegalArgumentException("resize() can only be used to shrink the dictionary");
+    }
+    if (length < 1) {
+      throw new IllegalArgumentException("resize(" + length + ") is too small, use 1 or higher");
+    }
+
+    int[] newKeys = new int[length];
+    float[] newValues = new float[length];
+    PApplet.arrayCopy(keys, newKeys, length);
+    PApplet.arrayCopy(values, newValues, length);
+    keys = newKeys;
+    values = newValues;
+    count = length;
+    resetIndices();
+  }
+
+
+  /**
+   * Remove all entries.
+   */
+  public void clear() {
+    count = 0;
+    indices.clear();
+  }
+
+
+  private void resetIndices() {
+    indices.reindex(keys, count);
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  public class Entry {
+    public int key;
+    public float value;
+
+    Entry(int key, float value) {
+      this.key = key;
+      this.value = value;
+    }
+  }
+
+
+  public Iterable<Entry> entries() {
+    return new Iterable<Entry>() {
+
+      public Iterator<Entry> iterator() {
+        return entryIterator();
+      }
+    };
+  }
+
+
+  public Iterator<Entry> entryIterator() {
+    return new Iterator<Entry>() {
+      int index = -1;
+
+      public void remove() {
+        removeIndex(index);
+        index--;
+      }
+
+      public Entry next() {
+        ++index;
+        Entry e = new Entry(keys[index], values[index]);
+        return e;
+      }
+
+      public boolean hasNext() {
+        return index+1 < size();
+      }
+    };
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  public int key(int index) {
+    return keys[index];
+  }
+
+
+  protected void crop() {
+    if (count != keys.length) {
+      keys = PApplet.subset(keys, 0, count);
+      values = PApplet.subset(values, 0, count);
+    }
+  }
+
+
+  public Iterable<Integer> keys() {
+    return new Iterable<Integer>() {
+
+      @Override
+      public Iterator<Integer> iterator() {
+        return keyIterator();
+      }
+    };
+  }
+
+
+  // Use this to iterate when you want to be able to remove elements along the way
+  public Iterator<Integer> keyIterator() {
+    return new Iterator<Integer>() {
+      int index = -1;
+
+      public void remove() {
+        removeIndex(index);
+        index--;
+      }
+
+      public Integer next() {
+        return key(++index);
+      }
+
+      public boolean hasNext() {
+        return index+1 < size();
+      }
+    };
+  }
+
+
+  /**
+   * Return a copy of the internal keys array. This array can be modified.
+   */
+  public int[] keyArray() {
+    crop();
+    return keyArray(null);
+  }
+
+
+  public int[] keyArray(int[] outgoing) {
+    if (outgoing == null || outgoing.length != count) {
+      outgoing = new int[count];
+    }
+    System.arraycopy(keys, 0, outgoing, 0, count);
+    return outgoing;
+  }
+
+
+  public float value(int index) {
+    return values[index];
+  }
+
+
+  public Iterable<Float> values() {
+    return new Iterable<Float>() {
+
+      @Override
+      public Iterator<Float> iterator() {
+        return valueIterator();
+      }
+    };
+  }
+
+
+  public Iterator<Float> valueIterator() {
+    return new Iterator<Float>() {
+      int index = -1;
+
+      public void remove() {
+        removeIndex(index);
+        index--;
+      }
+
+      public Float next() {
+        return value(++index);
+      }
+
+      public boolean hasNext() {
+        return index+1 < size();
+      }
+    };
+  }
+
+
+  /**
+   * Create a new array and copy each of the values into it.
+   */
+  public float[] valueArray() {
+    crop();
+    return valueArray(null);
+  }
+
+
+  /**
+   * Fill an already-allocated array with the values (more efficient than
+   * creating a new array each time). If 'array' is null, or not the same
+   * size as the number of values, a new array will be allocated and returned.
+   *
+   * @param array values to copy into the array
+   */
+  public float[] valueArray(float[] array) {
+    if (array == null || array.length != size()) {
+      array = new float[count];
+    }
+    System.arraycopy(values, 0, array, 0, count);
+    return array;
+  }
+
+
+  /**
+   * Return a value for the specified key.
+   */
+  public float get(int key) {
+    int index = index(key);
+    if (index == -1) {
+      throw new IllegalArgumentException("No key " + key);
+    }
+    return values[index];
+  }
+
+
+  public float get(int key, float alternate) {
+    int index = index(key);
+    if (index == -1) return alternate;
+    return values[index];
+  }
+
+
+  /**
+   * Create a new key/value pair or change the value of one.
+   */
+  public void set(int key, float amount) {
+    int index = index(key);
+    if (index == -1) {
+      create(key, amount);
+    } else {
+      values[index] = amount;
+    }
+  }
+
+
+  public void setIndex(int index, int key, float value) {
+    if (index < 0 || index >= count) {
+      throw new ArrayIndexOutOfBoundsException(index);
+    }
+    indices.replace(keys, index, key);
+    values[index] = value;
+  }
+
+
+  public boolean hasKey(int key) {
+    return index(key) != -1;
+  }
+
+
+  public void add(int key, float amount) {
+    int index = index(key);
+    if (index == -1) {
+      create(key, amount);
+    } else {
+      values[index] += amount;
+    }
+  }
+
+
+  public void sub(int key, float amount) {
+    add(key, -amount);
+  }
+
+
+  public void mult(int key, float amount) {
+    int index = index(key);
+    if (index != -1) {
+      values[index] *= amount;
+    }
+  }
+
+
+  public void div(int key, float amount) {
+    int index = index(key);
+    if (index != -1) {
+      values[index] /= amount;
+    }
+  }
+
+
+  private void checkMinMax(String functionName) {
+    if (count == 0) {
+      String msg =
+        String.format("Cannot use %s() on an empty %s.",
+                      functionName, getClass().getSimpleName());
+      throw new RuntimeException(msg);
+    }
+  }
+
+
+  // return the index of the minimum value, ignoring NaN
+  public int minIndex() {
+    if (count == 0) return -1;
+
+    // Will still return -1 if there are 1 or more entries, and they're all NaN
+    float m = Float.NaN;
+    int mi = -1;
+    for (int i = 0; i < count; i++) {
+      // find one good value to start
+      if (values[i] == values[i]) {
+        m = values[i];
+        mi = i;
+
+        // calculate the rest
+        for (int j = i+1; j < count; j++) {
+          float d = values[j];
+          if ((d == d) && (d < m)) {
+            m = values[j];
+            mi = j;
+          }
+        }
+        break;
+      }
+    }
+    return mi;
+  }
+
+
+  // return the key for the minimum value
+  public int minKey() {
+    checkMinMax("minKey");
+    int index = minIndex();
+    if (index == -1) {
+      throw new RuntimeException("minKey() is not available when all values are NaN");
+    }
+    return keys[index];
+  }
+
+
+  // return the minimum value, or throw an error if there are no values
+  public float minValue() {
+    checkMinMax("minValue");
+    int index = minIndex();
+    if (index == -1) {
+      return Float.NaN;
+    }
+    return values[index];
+  }
+
+
+  // return the index of the max value, ignoring NaN
+  public int maxIndex() {
+    if (count == 0) {
+      return -1;
+    }
+    // Will still return -1 if there is 1 or more entries, and they're all NaN
+    float m = Float.NaN;
+    int mi = -1;
+    for (int i = 0; i < count; i++) {
+      // find one good value to start
+      if (values[i] == values[i]) {
+        m = values[i];
+        mi = i;
+
+        // calculate the rest
+        for (int j = i+1; j < count; j++) {
+          float d = values[j];
+          if (!Float.isNaN(d) && (d > m)) {
+            m = values[j];
+            mi = j;
+          }
+        }
+        break;
+      }
+    }
+    return mi;
+  }
+
+
+  // return the key for the maximum value
+  public int maxKey() {
+    checkMinMax("maxKey");
+    int index = maxIndex();
+    if (index == -1) {
+      throw new RuntimeException("maxKey() is not available when all values are NaN");
+    }
+    return keys[index];
+  }
+
+
+  /** The max value. (Or NaN if no entries or they're all NaN.) */
+  public float maxValue() {
+    int index = maxIndex();
+    if (index == -1) {
+      return Float.NaN;
+    }
+    return values[index];
+  }
+
+
+  public float sum() {
+    double amount = sumDouble();
+    if (amount > Float.MAX_VALUE) {
+      throw new RuntimeException("sum() exceeds " + Float.MAX_VALUE + ", use sumDouble()");
+    }
+    if (amount < -Float.MAX_VALUE) {
+      throw new RuntimeException("sum() lower than " + -Float.MAX_VALUE + ", use sumDouble()");
+    }
+    return (float) amount;
+  }
+
+
+  public double sumDouble() {
+    double sum = 0;
+    for (int i = 0; i < count; i++) {
+      sum += values[i];
+    }
+    return sum;
+  }
+
+
+  public int index(int what) {
+    return indices.find(keys, what);
+  }
+
+
+  protected void create(int what, float much) {
+    if (count == keys.length) {
+      keys = PApplet.expand(keys);
+      values = PApplet.expand(values);
+    }
+    keys[count] = what;
+    values[count] = much;
+    indices.put(keys, count);
+    count++;
+  }
+
+
+  public float remove(int key) {
+    int index = index(key);
+    if (index == -1) {
+      throw new NoSuchElementException("'" + key + "' not found");
+    }
+    float value = values[index];
+    removeIndex(index);
+    return value;
+  }
+
+
+  public float removeIndex(int index) {
+    if (index < 0 || index >= count) {
+      throw new ArrayIndexOutOfBoundsException(index);
+    }
+    float value = values[index];
+    indices.remove(keys, index);
+    for (int i = index; i < count-1; i++) {
+      keys[i] = keys[i+1];
+      values[i] = values[i+1];
+    }
+    count--;
+    keys[count] = 0;
+    values[count] = 0;
+    return value;
+  }
+
+
+  public void swap(int a, int b) {
+    indices.swap(keys, a, b);
+    swapEntries(a, b);
+  }
+
+
+  private void swapEntries(int a, int b) {
+    int tkey = keys[a];
+    float tvalue = values[a];
+    keys[a] = keys[b];
+    values[a] = values[b];
+    keys[b] = tkey;
+    values[b] = tvalue;
+  }
+
+
+  /**
+   * Sort the keys in ascending order.
+   */
+  public void sortKeys() {
+    sortImpl(true, false, true);
+  }
+
+
+  /**
+   * Sort the keys in descending order.
+   */
+  public void sortKeysReverse() {
+    sortImpl(true, true, true);
+  }
+
+
+  /**
+   * Sort by values in ascending order. The smallest value will be at [0].
+   */
+  public void sortValues() {
+    sortValues(true);
+  }
+
+
+  /**
+   * Set true to ensure that the order returned is identical. Slightly
+   * slower because the tie-breaker for identical values compares the keys.
+   * @param stable
+   */
+  public void sortValues(boolean stable) {
+    sortImpl(false, false, stable);
+  }
+
+
+  /**
+   * Sort by values in descending order. The largest value will be at [0].
+   */
+  public void sortValuesReverse() {
+    sortValuesReverse(true);
+  }
+
+
+  public void sortValuesReverse(boolean stable) {
+    sortImpl(false, true, stable);
+  }
+
+
+  protected void sortImpl(final boolean useKeys, final boolean reverse,
+                          final boolean stable) {
+    Sort s = new Sort() {
+      @Override
+      public int size() {
+        if (useKeys) {
+          return count;  // don't worry about NaN values
+
+        } else if (count == 0) {  // skip the NaN check, it'll AIOOBE
+          return 0;
+
+        } else {  // first move NaN values to the end of the list
+          int right = count - 1;
+          while (values[right] != values[right]) {
+            right--;
+            if (right == -1) {
+              return 0;  // all values are NaN
+            }
+          }
+          for (int i = right; i >= 0; --i) {
+            if (Float.isNaN(values[i])) {
+              swap(i, right);
+              --right;
+            }
+          }
+          return right + 1;
+        }
+      }
+
+      @Override
+      public int compare(int a, int b) {
+        int diff;
+        if (useKeys) {
+          // keys are unique, no need for a tie-breaker
+          diff = Integer.compare(keys[a], keys[b]);
+        } else {  // sort values
+          diff = Float.compare(values[a], values[b]);
+          if (diff == 0 && stable) {
+            diff = Integer.compare(keys[a], keys[b]);
+          }
+        }
+        return reverse ? -diff : diff;
+      }
+
+      @Override
+      public void swap(int a, int b) {
+        swapEntries(a, b);
+      }
+    };
+    s.runParallel();
+
+    // Set the indices after sort/swaps
+    resetIndices();
+  }
+
+
+  /**
+   * Sum all of the values in this dictionary, then return a new IntFloatDict
+   * of each key, divided by the total sum. The total for all values will be ~1.0.
+   * @return an IntFloatDict with the original keys, mapped to their pct of the total
+   */
+  public IntFloatDict getPercent() {
+    double sum = sumDouble();
+    IntFloatDict outgoing = new IntFloatDict(count);
+    for (int i = 0; i < size(); i++) {
+      double percent = value(i) / sum;
+      outgoing.set(key(i), (float) percent);
+    }
+    return outgoing;
+  }
+
+
+  /** Returns a duplicate copy of this object. */
+  public IntFloatDict copy() {
+    IntFloatDict outgoing = new IntFloatDict(count);
+    System.arraycopy(keys, 0, outgoing.keys, 0, count);
+    System.arraycopy(values, 0, outgoing.values, 0, count);
+    outgoing.indices = indices.copy();
+    outgoing.count = count;
+    return outgoing;
+  }
+
+
+  public void print() {
+    for (int i = 0; i < size(); i++) {
+      System.out.println(keys[i] + " = " + values[i]);
+    }
+  }
+
+
+  /**
+   * Save tab-delimited entries to a file (TSV format, UTF-8 encoding)
+   */
+  public void save(File file) {
+    PrintWriter writer = PApplet.createWriter(file);
+    write(writer);
+    writer.close();
+  }
+
+
+  /**
+   * Write tab-delimited entries to a PrintWriter
+   */
+  public void write(PrintWriter writer) {
+    for (int i = 0; i < count; i++) {
+      writer.println(keys[i] + "\t" + values[i]);
+    }
+    writer.flush();
+  }
+
+
+  /**
+   * Return this dictionary as a String in JSON format. JSON keys are always
+   * Strings, so the keys are quoted.
+   */
+  public String toJSON() {
+    StringList items = new StringList();
+    for (int i = 0; i < count; i++) {
+      items.append("\"" + keys[i] + "\": " + values[i]);
+    }
+    return "{ " + items.join(", ") + " }";
+  }
+
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + " size=" + size() + " " + toJSON();
+  }
+}
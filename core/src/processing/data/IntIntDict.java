@@ -0,0 +1,733 @@
+package processing.data;
+
+import java.io.*;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import processing.core.PApplet;
+
+
+/**
+ * A simple class to use an int as a lookup for an int value. Works like
+ * IntDict, but avoids converting ids, colors, and other numeric keys into
+ * Strings (and all the garbage that creates).
+ *
+ * @see IntDict
+ * @see IntFloatDict
+ * @see LongIntDict
+ */
+public class IntIntDict {
+
+  /** Number of elements in the table */
+  protected int count;
+
+  protected int[] keys;
+  protected int[] values;
+
+  /** Internal implementation for faster lookups */
+  private IntKeyIndex indices;
+
+
+  public IntIntDict() {
+    this(10);
+  }
+
+
+  /**
+   * Create a new lookup with a specific size. This is more efficient than not
+   * specifying a size. Use it when you know the rough size of the thing you're creating.
+   *
+   * @nowebref
+   */
+  public IntIntDict(int length) {
+    count = 0;
+    keys = new int[length];
+    values = new int[length];
+    indices = new IntKeyIndex(length);
+  }
+
+
+  /**
+   * Read a set of entries from a Reader that has each key/value pair on
+   * a single line, separated by a tab.
+   *
+   * @nowebref
+   */
+  public IntIntDict(BufferedReader reader) {
+    String[] lines = PApplet.loadStrings(reader);
+    keys = new int[lines.length];
+    values = new int[lines.length];
+    indices = new IntKeyIndex(lines.length);
+
+    for (int i = 0; i < lines.length; i++) {
+      String[] pieces = PApplet.split(lines[i], '\t');
+      if (pieces.length == 2) {
+        keys[count] = PApplet.parseInt(pieces[0]);
+        values[count] = PApplet.parseInt(pieces[1]);
+        indices.put(keys, count);
+        count++;
+      }
+    }
+  }
+
+
+  /**
+   * @nowebref
+   */
+  public IntIntDict(int[] keys, int[] values) {
+    if (keys.length != values.length) {
+      throw new IllegalArgumentException("key and value arrays must be the same length");
+    }
+    this.keys = keys;
+    this.values = values;
+    count = keys.length;
+    indices = new IntKeyIndex(count);
+    for (int i = 0; i < count; i++) {
+      indices.put(keys, i);
+    }
+  }
+
+
+  /**
+   * Constructor to allow (more intuitive) inline initialization, e.g.:
+   * <pre>
+   * new IntIntDict(new int[][] {
+   *   { 1, 10 },
+   *   { 2, 20 }
+   * });
+   * </pre>
+   */
+  public IntIntDict(int[][] pairs) {
+    count = pairs.length;
+    this.keys = new int[count];
+    this.values = new int[count];
+    indices = new IntKeyIndex(count);
+    for (int i = 0; i < count; i++) {
+      keys[i] = pairs[i][0];
+      values[i] = pairs[i][1];
+      indices.put(keys, i);
+    }
+  }
+
+
+  /**
+   * Returns the number of key/value pairs
+   */
+  public int size() {
+    return count;
+  }
+
+
+  /**
+   * Resize the internal data, this can only be used to shrink the list.
+   * Helpful for situations like sorting and then grabbing the top 50 entries.
+   */
+  public void resize(int length) {
+    if (length > count) {
+      throw new IllegalArgumentException("resize() can only be used to shrink the dictionary");
+    }
+    if (length < 1) {
+      throw new IllegalArgumentException("resize(" + length + ") is too small, use 1 or higher");
+    }
+
+    int[] newKeys = new int[length];
+    int[] newValues = new int[length];
+    PApplet.arrayCopy(keys, newKeys, length);
+    PApplet.arrayCopy(values, newValues, length);
+    keys = newKeys;
+    values = newValues;
+    count = length;
+    resetIndices();
+  }
+
+
+  /**
+   * Remove all entries.
+   */
+  public void clear() {
+    count = 0;
+    indices.clear();
+  }
+
+
+  private void resetIndices() {
+    indices.reindex(keys, count);
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  public class Entry {
+    public int key;
+    public int value;
+
+    Entry(int key, int value) {
+      this.key = key;
+      this.value = value;
+    }
+  }
+
+
+  public Iterable<Entry> entries() {
+    return new Iterable<Entry>() {
+
+      public Iterator<Entry> iterator() {
+        return entryIterator();
+      }
+    };
+  }
+
+
+  public Iterator<Entry> entryIterator() {
+    return new Iterator<Entry>() {
+      int index = -1;
+
+      public void remove() {
+        removeIndex(index);
+        index--;
+      }
+
+      public Entry next() {
+        ++index;
+        Entry e = new Entry(keys[index], values[index]);
+        return e;
+      }
+
+      public boolean hasNext() {
+        return index+1 < size();
+      }
+    };
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  public int key(int index) {
+    return keys[index];
+  }
+
+
+  protected void crop() {
+    if (count != keys.length) {
+      keys = PApplet.subset(keys, 0, count);
+      values = PApplet.subset(values, 0, count);
+    }
+  }
+
+
+  public Iterable<Integer> keys() {
+    return new Iterable<Integer>() {
+
+      @Override
+      public Iterator<Integer> iterator() {
+        return keyIterator();
+      }
+    };
+  }
+
+
+  // Use this to iterate when you want to be able to remove elements along the way
+  public Iterator<Integer> keyIterator() {
+    return new Iterator<Integer>() {
+      int index = -1;
+
+      public void remove() {
+        removeIndex(index);
+        index--;
+      }
+
+      public Integer next() {
+        return key(++index);
+      }
+
+      public boolean hasNext() {
+        return index+1 < size();
+      }
+    };
+  }
+
+
+  /**
+   * Return a copy of the internal keys array. This array can be modified.
+   */
+  public int[] keyArray() {
+    crop();
+    return keyArray(null);
+  }
+
+
+  public int[] keyArray(int[] outgoing) {
+    if (outgoing == null || outgoing.length != count) {
+      outgoing = new int[count];
+    }
+    System.arraycopy(keys, 0, outgoing, 0, count);
+    return outgoing;
+  }
+
+
+  public int value(int index) {
+    return values[index];
+  }
+
+
+  public Iterable<Integer> values() {
+    return new Iterable<Integer>() {
+
+      @Override
+      public Iterator<Integer> iterator() {
+        return valueIterator();
+      }
+    };
+  }
+
+
+  public Iterator<Integer> valueIterator() {
+    return new Iterator<Integer>() {
+      int index = -1;
+
+      public void remove() {
+        removeIndex(index);
+        index--;
+      }
+
+      public Integer next() {
+        return value(++index);
+      }
+
+      public boolean hasNext() {
+        return index+1 < size();
+      }
+    };
+  }
+
+
+  /**
+   * Create a new array and copy each of the values into it.
+   */
+  public int[] valueArray() {
+    crop();
+    return valueArray(null);
+  }
+
+
+  /**
+   * Fill an already-allocated array with the values (more efficient than
+   * creating a new array each time). If 'array' is null, or not the same
+   * size as the number of values, a new array will be allocated and returned.
+   *
+   * @param array values to copy into the array
+   */
+  public int[] valueArray(int[] array) {
+    if (array == null || array.length != size()) {
+      array = new int[count];
+    }
+    System.arraycopy(values, 0, array, 0, count);
+    return array;
+  }
+
+
+  /**
+   * Return a value for the specified key.
+   */
+  public int get(int key) {
+    int index = index(key);
+    if (index == -1) {
+      throw new IllegalArgumentException("No key " + key);
+    }
+    return values[index];
+  }
+
+
+  public int get(int key, int alternate) {
+    int index = index(key);
+    if (index == -1) return alternate;
+    return values[index];
+  }
+
+
+  /**
+   * Create a new key/value pair or change the value of one.
+   */
+  public void set(int key, int amount) {
+    int index = index(key);
+    if (index == -1) {
+      create(key, amount);
+    } else {
+      values[index] = amount;
+    }
+  }
+
+
+  public void setIndex(int index, int key, int value) {
+    if (index < 0 || index >= count) {
+      throw new ArrayIndexOutOfBoundsException(index);
+    }
+    indices.replace(keys, index, key);
+    values[index] = value;
+  }
+
+
+  public boolean hasKey(int key) {
+    return index(key) != -1;
+  }
+
+
+  /**
+   * Increase the value associated with a specific key by 1.
+   */
+  public void increment(int key) {
+    add(key, 1);
+  }
+
+
+  /**
+   * Merge another dictionary into this one.
+   */
+  public void increment(IntIntDict dict) {
+    for (int i = 0; i < dict.count; i++) {
+      add(dict.key(i), dict.value(i));
+    }
+  }
+
+
+  public void add(int key, int amount) {
+    int index = index(key);
+    if (index == -1) {
+      create(key, amount);
+    } else {
+      values[index] += amount;
+    }
+  }
+
+
+  public void sub(int key, int amount) {
+    add(key, -amount);
+  }
+
+
+  public void mult(int key, int amount) {
+    int index = index(key);
+    if (index != -1) {
+      values[index] *= amount;
+    }
+  }
+
+
+  public void div(int key, int amount) {
+    int index = index(key);
+    if (index != -1) {
+      values[index] /= amount;
+    }
+  }
+
+
+  private void checkMinMax(String functionName) {
+    if (count == 0) {
+      String msg =
+        String.format("Cannot use %s() on an empty %s.",
+                      functionName, getClass().getSimpleName());
+      throw new RuntimeException(msg);
+    }
+  }
+
+
+  // return the index of the minimum value
+  public int minIndex() {
+    if (count == 0) return -1;
+
+    int index = 0;
+    int value = values[0];
+    for (int i = 1; i < count; i++) {
+      if (values[i] < value) {
+        index = i;
+        value = values[i];
+      }
+    }
+    return index;
+  }
+
+
+  // return the key for the minimum value
+  public int minKey() {
+    checkMinMax("minKey");
+    return keys[minIndex()];
+  }
+
+
+  // return the minimum value, or throw an error if there are no values
+  public int minValue() {
+    checkMinMax("minValue");
+    return values[minIndex()];
+  }
+
+
+  // return the index of the max value
+  public int maxIndex() {
+    if (count == 0) {
+      return -1;
+    }
+    int index = 0;
+    int value = values[0];
+    for (int i = 1; i < count; i++) {
+      if (values[i] > value) {
+        index = i;
+        value = values[i];
+      }
+    }
+    return index;
+  }
+
+
+  // return the key for the maximum value, or throw an error if there are no values
+  public int maxKey() {
+    checkMinMax("maxKey");
+    return keys[maxIndex()];
+  }
+
+
+  // return the maximum value or throw an error if zero length
+  public int maxValue() {
+    checkMinMax("maxValue");
+    return values[maxIndex()];
+  }
+
+
+  public int sum() {
+    long amount = sumLong();
+    if (amount > Integer.MAX_VALUE) {
+      throw new RuntimeException("sum() exceeds " + Integer.MAX_VALUE + ", use sumLong()");
+    }
+    if (amount < Integer.MIN_VALUE) {
+      throw new RuntimeException("sum() less than " + Integer.MIN_VALUE + ", use sumLong()");
+    }
+    return (int) amount;
+  }
+
+
+  public long sumLong() {
+    long sum = 0;
+    for (int i = 0; i < count; i++) {
+      sum += values[i];
+    }
+    return sum;
+  }
+
+
+  public int index(int what) {
+    return indices.find(keys, what);
+  }
+
+
+  protected void create(int what, int much) {
+    if (count == keys.length) {
+      keys = PApplet.expand(keys);
+      values = PApplet.expand(values);
+    }
+    keys[count] = what;
+    values[count] = much;
+    indices.put(keys, count);
+    count++;
+  }
+
+
+  public int remove(int key) {
+    int index = index(key);
+    if (index == -1) {
+      throw new NoSuchElementException("'" + key + "' not found");
+    }
+    int value = values[index];
+    removeIndex(index);
+    return value;
+  }
+
+
+  public int removeIndex(int index) {
+    if (index < 0 || index >= count) {
+      throw new ArrayIndexOutOfBoundsException(index);
+    }
+    int value = values[index];
+    indices.remove(keys, index);
+    for (int i = index; i < count-1; i++) {
+      keys[i] = keys[i+1];
+      values[i] = values[i+1];
+    }
+    count--;
+    keys[count] = 0;
+    values[count] = 0;
+    return value;
+  }
+
+
+  public void swap(int a, int b) {
+    indices.swap(keys, a, b);
+    swapEntries(a, b);
+  }
+
+
+  private void swapEntries(int a, int b) {
+    int tkey = keys[a];
+    int tvalue = values[a];
+    keys[a] = keys[b];
+    values[a] = values[b];
+    keys[b] = tkey;
+    values[b] = tvalue;
+  }
+
+
+  /**
+   * Sort the keys in ascending order.
+   */
+  public void sortKeys() {
+    sortImpl(true, false, true);
+  }
+
+
+  /**
+   * Sort the keys in descending order.
+   */
+  public void sortKeysReverse() {
+    sortImpl(true, true, true);
+  }
+
+
+  /**
+   * Sort by values in ascending order. The smallest value will be at [0].
+   */
+  public void sortValues() {
+    sortValues(true);
+  }
+
+
+  /**
+   * Set true to ensure that the order returned is identical. Slightly
+   * slower because the tie-breaker for identical values compares the keys.
+   * @param stable
+   */
+  public void sortValues(boolean stable) {
+    sortImpl(false, false, stable);
+  }
+
+
+  /**
+   * Sort by values in descending order. The largest value will be at [0].
+   */
+  public void sortValuesReverse() {
+    sortValuesReverse(true);
+  }
+
+
+  public void sortValuesReverse(boolean stable) {
+    sortImpl(false, true, stable);
+  }
+
+
+  protected void sortImpl(final boolean useKeys, final boolean reverse,
+                          final boolean stable) {
+    Sort s = new Sort() {
+      @Override
+      public int size() {
+        return count;
+      }
+
+      @Override
+      public int compare(int a, int b) {
+        int diff;
+        if (useKeys) {
+          // keys are unique, no need for a tie-breaker
+          diff = Integer.compare(keys[a], keys[b]);
+        } else {  // sort values
+          diff = Integer.compare(values[a], values[b]);
+          if (diff == 0 && stable) {
+            diff = Integer.compare(keys[a], keys[b]);
+          }
+        }
+        return reverse ? -diff : diff;
+      }
+
+      @Override
+      public void swap(int a, int b) {
+        swapEntries(a, b);
+      }
+    };
+    s.runParallel();
+
+    // Set the indices after sort/swaps
+    resetIndices();
+  }
+
+
+  /**
+   * Sum all of the values in this dictionary, then return a new IntFloatDict
+   * of each key, divided by the total sum. The total for all values will be ~1.0.
+   * @return an IntFloatDict with the original keys, mapped to their pct of the total
+   */
+  public IntFloatDict getPercent() {
+    double sum = sumLong();
+    IntFloatDict outgoing = new IntFloatDict(count);
+    for (int i = 0; i < size(); i++) {
+      double percent = value(i) / sum;
+      outgoing.set(key(i), (float) percent);
+    }
+    return outgoing;
+  }
+
+
+  /** Returns a duplicate copy of this object. */
+  public IntIntDict copy() {
+    IntIntDict outgoing = new IntIntDict(count);
+    System.arraycopy(keys, 0, outgoing.keys, 0, count);
+    System.arraycopy(values, 0, outgoing.values, 0, count);
+    outgoing.indices = indices.copy();
+    outgoing.count = count;
+    return outgoing;
+  }
+
+
+  public void print() {
+    for (int i = 0; i < size(); i++) {
+      System.out.println(keys[i] + " = " + values[i]);
+    }
+  }
+
+
+  /**
+   * Save tab-delimited entries to a file (TSV format, UTF-8 encoding)
+   */
+  public void save(File file) {
+    PrintWriter writer = PApplet.createWriter(file);
+    write(writer);
+    writer.close();
+  }
+
+
+  /**
+   * Write tab-delimited entries to a PrintWriter
+   */
+  public void write(PrintWriter writer) {
+    for (int i = 0; i < count; i++) {
+      writer.println(keys[i] + "\t" + values[i]);
+    }
+    writer.flush();
+  }
+
+
+  /**
+   * Return this dictionary as a String in JSON format. JSON keys are always
+   * Strings, so the keys are quoted.
+   */
+  public String toJSON() {
+    StringList items = new StringList();
+    for (int i = 0; i < count; i++) {
+      items.append("\"" + keys[i] + "\": " + values[i]);
+    }
+    return "{ " + items.join(", ") + " }";
+  }
+
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + " size=" + size() + " " + toJSON();
+  }
+}
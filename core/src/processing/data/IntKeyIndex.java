@@ -0,0 +1,213 @@
+package processing.data;
+
+import java.util.Arrays;
+
+
+/**
+ * Lookup from int keys to their position in the parallel keys[] and values[]
+ * arrays used by the Int-keyed Dict classes. Same open-addressing table
+ * as KeyIndex, but the hash is cheap to recompute from the key itself,
+ * so nothing else is cached.
+ */
+class IntKeyIndex {
+  /** Entry index + 1 for each slot in the table, 0 for an empty slot. */
+  int[] slots;
+  int mask;
+  /** Number of slots in use */
+  int used;
+
+
+  IntKeyIndex() {
+    this(10);
+  }
+
+
+  IntKeyIndex(int length) {
+    int size = tableSize(length);
+    slots = new int[size];
+    mask = size - 1;
+  }
+
+
+  /** Keep the table at most half full. */
+  static private int tableSize(int count) {
+    int size = 16;
+    while (size < count * 2 && size < (1 << 30)) {
+      size <<= 1;
+    }
+    return size;
+  }
+
+
+  static int hash(int key) {
+    int h = key * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+
+
+  /** Return the index of key in keys[], or -1 if it's not present. */
+  int find(int[] keys, int key) {
+    int slot = hash(key) & mask;
+    int entry;
+    while ((entry = slots[slot]) != 0) {
+      if (keys[entry - 1] == key) {
+        return entry - 1;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return -1;
+  }
+
+
+  /**
+   * Add keys[index] to the table. If the key is already present,
+   * its entry is replaced with this index.
+   */
+  void put(int[] keys, int index) {
+    int key = keys[index];
+    int slot = hash(key) & mask;
+    int entry;
+    while ((entry = slots[slot]) != 0) {
+      if (keys[entry - 1] == key) {
+        slots[slot] = index + 1;
+        return;
+      }
+      slot = (slot + 1) & mask;
+    }
+    slots[slot] = index + 1;
+    used++;
+    if (used * 2 > slots.length) {
+      grow(keys);
+    }
+  }
+
+
+  private void grow(int[] keys) {
+    int[] oldSlots = slots;
+    slots = new int[oldSlots.length << 1];
+    mask = slots.length - 1;
+    for (int entry : oldSlots) {
+      if (entry != 0) {
+        insert(keys, entry - 1);
+      }
+    }
+  }
+
+
+  /** Insert an entry that's known not to be in the table already. */
+  private void insert(int[] keys, int index) {
+    int slot = hash(keys[index]) & mask;
+    while (slots[slot] != 0) {
+      slot = (slot + 1) & mask;
+    }
+    slots[slot] = index + 1;
+  }
+
+
+  /** Find the slot that points at a particular entry. */
+  private int slotOf(int[] keys, int index) {
+    int slot = hash(keys[index]) & mask;
+    while (slots[slot] != index + 1) {
+      if (slots[slot] == 0) {
+        return -1;  // not indexed (shadowed by a duplicate key)
+      }
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+
+  /**
+   * Clear a slot, moving later entries of the same probe run back so that
+   * lookups don't stop early at the hole.
+   */
+  private void clearSlot(int[] keys, int slot) {
+    int hole = slot;
+    int next = (hole + 1) & mask;
+    int entry;
+    while ((entry = slots[next]) != 0) {
+      int home = hash(keys[entry - 1]) & mask;
+      // move it if the hole is between its home slot and where it sits now
+      if (((next - home) & mask) >= ((next - hole) & mask)) {
+        slots[hole] = entry;
+        hole = next;
+      }
+      next = (next + 1) & mask;
+    }
+    slots[hole] = 0;
+    used--;
+  }
+
+
+  /**
+   * Remove the entry at index, and renumber the entries after it, which the
+   * Dict will shift down by one. Call this before keys[] is modified.
+   */
+  void remove(int[] keys, int index) {
+    int slot = slotOf(keys, index);
+    if (slot != -1) {
+      clearSlot(keys, slot);
+    }
+    int last = index + 1;
+    for (int i = 0; i < slots.length; i++) {
+      if (slots[i] > last) {
+        slots[i]--;
+      }
+    }
+  }
+
+
+  /** Change the key for the entry at index. Call before keys[] is modified. */
+  void replace(int[] keys, int index, int key) {
+    int slot = slotOf(keys, index);
+    if (slot != -1) {
+      clearSlot(keys, slot);
+    }
+    keys[index] = key;
+    put(keys, index);
+  }
+
+
+  /** Swap two entries. Call this before their keys are swapped. */
+  void swap(int[] keys, int a, int b) {
+    int slotA = slotOf(keys, a);
+    int slotB = slotOf(keys, b);
+    if (slotA != -1) {
+      slots[slotA] = b + 1;
+    }
+    if (slotB != -1) {
+      slots[slotB] = a + 1;
+    }
+  }
+
+
+  /** Refill the table with the first count entries, e.g. after sorting. */
+  void reindex(int[] keys, int count) {
+    if (count * 2 > slots.length) {
+      int size = tableSize(count);
+      slots = new int[size];
+      mask = size - 1;
+    } else {
+      Arrays.fill(slots, 0);
+    }
+    used = count;
+    for (int i = 0; i < count; i++) {
+      insert(keys, i);
+    }
+  }
+
+
+  void clear() {
+    Arrays.fill(slots, 0);
+    used = 0;
+  }
+
+
+  IntKeyIndex copy() {
+    IntKeyIndex outgoing = new IntKeyIndex(0);
+    outgoing.slots = slots.clone();
+    outgoing.mask = mask;
+    outgoing.used = used;
+    return outgoing;
+  }
+}
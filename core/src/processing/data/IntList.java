@@ -108,8 +108,9 @@ public class IntList implements Iterable<Integer> {
     int count = stop - start;
     IntList newbie = new IntList(count);
     for (int i = 0; i < count; i++) {
-      newbie.set(i, start+i);
+      newbie.data[i] = start+i;
     }
+    newbie.count = count;
     return newbie;
   }
 
@@ -527,6 +528,122 @@ public class IntList implements Iterable<Integer> {
   }
 
 
+  /**
+   * Add the same amount to every value in the list.
+   * Not to be confused with add(index, amount), which changes one value.
+   */
+  public void addEach(int amount) {
+    for (int i = 0; i < count; i++) {
+      data[i] += amount;
+    }
+  }
+
+
+  /**
+   * Subtract the same amount from every value in the list.
+   * Not to be confused with sub(index, amount), which changes one value.
+   */
+  public void subEach(int amount) {
+    for (int i = 0; i < count; i++) {
+      data[i] -= amount;
+    }
+  }
+
+
+  /**
+   * Multiply every value in the list by the same amount.
+   * Not to be confused with mult(index, amount), which changes one value.
+   */
+  public void multEach(int amount) {
+    for (int i = 0; i < count; i++) {
+      data[i] *= amount;
+    }
+  }
+
+
+  /**
+   * Divide every value in the list by the same amount.
+   * Not to be confused with div(index, amount), which changes one value.
+   */
+  public void divEach(int amount) {
+    for (int i = 0; i < count; i++) {
+      data[i] /= amount;
+    }
+  }
+
+
+  private void checkSize(IntList list, String method) {
+    if (list.count != count) {
+      final String msg = String.format("The list size is %d. " +
+        "You cannot %s() a list of size %d.", count, method, list.count);
+      throw new IllegalArgumentException(msg);
+    }
+  }
+
+
+  /**
+   * Add each value of another list to the value at the same index in this
+   * one. Both lists must be the same size.
+   */
+  public void add(IntList list) {
+    checkSize(list, "add");
+    int[] other = list.data;
+    for (int i = 0; i < count; i++) {
+      data[i] += other[i];
+    }
+  }
+
+
+  /**
+   * Subtract each value of another list from the value at the same index
+   * in this one. Both lists must be the same size.
+   */
+  public void sub(IntList list) {
+    checkSize(list, "sub");
+    int[] other = list.data;
+    for (int i = 0; i < count; i++) {
+      data[i] -= other[i];
+    }
+  }
+
+
+  /**
+   * Multiply each value by the value at the same index in another list.
+   * Both lists must be the same size.
+   */
+  public void mult(IntList list) {
+    checkSize(list, "mult");
+    int[] other = list.data;
+    for (int i = 0; i < count; i++) {
+      data[i] *= other[i];
+    }
+  }
+
+
+  /**
+   * Divide each value by the value at the same index in another list.
+   * Both lists must be the same size.
+   */
+  public void div(IntList list) {
+    checkSize(list, "div");
+    int[] other = list.data;
+    for (int i = 0; i < count; i++) {
+      data[i] /= other[i];
+    }
+  }
+
+
+  /**
+   * Constrain every value to the range low..high.
+   */
+  public void clamp(int low, int high) {
+    for (int i = 0; i < count; i++) {
+      int value = data[i];
+      data[i] = (value < low) ? low : ((value > high) ? high : value);
+    }
+  }
+
+
   private void checkMinMax(String functionName) {
     if (count == 0) {
       String msg =
@@ -609,12 +726,95 @@ public class IntList implements Iterable<Integer> {
   }
 
 
+  /**
+   * Large lists are added up in parallel, see ParallelSum.
+   */
   public long sumLong() {
+    return new ParallelSum.OfLong() {
+      @Override
+      long sum(int start, int stop) {
+        long sum = 0;
+        for (int i = start; i < stop; i++) {
+          sum += data[i];
+        }
+        return sum;
+      }
+    }.run(count);
+  }
+
+
+  /**
+   * Multiply each value by the value at the same index in another list, and
+   * return the sum of the products. Both lists must be the same size.
+   */
+  public long dot(IntList list) {
+    checkSize(list, "dot");
+    final int[] other = list.data;
+    return new ParallelSum.OfLong() {
+      @Override
+      long sum(int start, int stop) {
+        long sum = 0;
+        for (int i = start; i < stop; i++) {
+          sum += (long) data[i] * other[i];
+        }
+        return sum;
+      }
+    }.run(count);
+  }
+
+
+  /**
+   * Replace each value with the sum of itself and all the values before it.
+   * If any of the sums won't fit in an int, an exception is thrown and the
+   * list is left as it was.
+   */
+  public void cumulativeSum() {
+    // check everything first, so that the list isn't left half done
     long sum = 0;
     for (int i = 0; i < count; i++) {
       sum += data[i];
+      if (sum > Integer.MAX_VALUE || sum < Integer.MIN_VALUE) {
+        throw new RuntimeException("cumulativeSum() does not fit in an int " +
+                                   "after element " + i);
+      }
+    }
+    int running = 0;
+    for (int i = 0; i < count; i++) {
+      running += data[i];
+      data[i] = running;
+    }
+  }
+
+
+  /**
+   * Count how many values fall into each of a number of equal-sized bins
+   * spread between the smallest and largest values in the list.
+   */
+  public IntList histogram(int bins) {
+    checkMinMax("histogram");
+    return histogram(bins, min(), max());
+  }
+
+
+  /**
+   * Count how many values fall into each of a number of equal-sized bins
+   * spread between low and high (inclusive). Values outside the range are
+   * not counted.
+   */
+  public IntList histogram(int bins, int low, int high) {
+    if (bins < 1) {
+      throw new IllegalArgumentException("histogram() needs at least one bin");
+    }
+    int[] counts = new int[bins];
+    // the range is inclusive, so there are (high - low + 1) possible values
+    double scale = (high >= low) ? bins / ((double) high - low + 1) : 0;
+    for (int i = 0; i < count; i++) {
+      int value = data[i];
+      if (value >= low && value <= high) {
+        counts[(int) (((double) value - low) * scale)]++;
+      }
     }
-    return sum;
+    return new IntList(counts);
   }
 
 
@@ -644,7 +844,7 @@ public class IntList implements Iterable<Integer> {
 
       @Override
       public int compare(int a, int b) {
-        return data[b] - data[a];
+        return Integer.compare(data[b], data[a]);
       }
 
       @Override
@@ -653,7 +853,7 @@ public class IntList implements Iterable<Integer> {
         data[a] = data[b];
         data[b] = temp;
       }
-    }.run();
+    }.runParallel();
   }
 
 
@@ -841,16 +1041,12 @@ public class IntList implements Iterable<Integer> {
    * normalization in place on int values).
    */
   public FloatList getPercent() {
-    double sum = 0;
-    for (float value : array()) {
-      sum += value;
-    }
-    FloatList outgoing = new FloatList(count);
+    double sum = sumLong();
+    float[] percents = new float[count];
     for (int i = 0; i < count; i++) {
-      double percent = data[i] / sum;
-      outgoing.set(i, (float) percent);
+      percents[i] = (float) (data[i] / sum);
     }
-    return outgoing;
+    return new FloatList(percents);
   }
 
 
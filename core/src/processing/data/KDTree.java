@@ -0,0 +1,263 @@
+package processing.data;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+
+/**
+ * A spatial index that splits the points in half again and again, along
+ * whichever axis they're spread out the most. Unlike SpatialGrid, it
+ * doesn't need a cell size, and works just as well for points that are
+ * bunched up in a few places or spread over a huge area. It's the better
+ * choice for nearest() when nothing is known about the distances.
+ * <p/>
+ * Each part of the tree keeps the bounds of the points inside it, and
+ * update() only grows the bounds along the way to the point that moved.
+ * Queries are still exact, but get slower as the bounds grow, so rebuild()
+ * after the points have moved a lot (once per frame is common).
+ *
+ * @see SpatialGrid
+ */
+public class KDTree extends SpatialIndex {
+  /** Ranges of this many points or fewer are checked one by one */
+  static final int LEAF = 8;
+
+  // index of the point at each position, and the other way around
+  private int[] order = new int[0];
+  private int[] position = order;
+  // split axis for the range whose middle is at each position
+  private byte[] axis = new byte[0];
+  // min x, y, z, then max x, y, z, for the range whose middle is at each
+  private float[] bounds = new float[0];
+
+
+  public KDTree() { }
+
+
+  @Override
+  public void rebuild() {
+    if (order.length != count) {
+      order = new int[count];
+      position = new int[count];
+      axis = new byte[count];
+      bounds = new float[count * 6];
+    }
+    for (int i = 0; i < count; i++) {
+      order[i] = i;
+    }
+    if (count < ParallelSum.PARALLEL_THRESHOLD) {
+      build(0, count);
+    } else {
+      ForkJoinPool.commonPool().invoke(new Build(0, count));
+    }
+    for (int i = 0; i < count; i++) {
+      position[order[i]] = i;
+    }
+  }
+
+
+  /**
+   * Work out the bounds of the range, then split it at the middle along
+   * its longest side. Returns the position of the middle, or -1 when the
+   * range is a leaf and doesn't need splitting.
+   */
+  private int split(int lo, int hi) {
+    int mid = (lo + hi) >>> 1;
+    float x0 = Float.POSITIVE_INFINITY, y0 = x0, z0 = x0;
+    float x1 = Float.NEGATIVE_INFINITY, y1 = x1, z1 = x1;
+    for (int p = lo; p < hi; p++) {
+      int i = order[p];
+      x0 = Math.min(x0, x[i]); x1 = Math.max(x1, x[i]);
+      y0 = Math.min(y0, y[i]); y1 = Math.max(y1, y[i]);
+      z0 = Math.min(z0, z[i]); z1 = Math.max(z1, z[i]);
+    }
+    int b = mid * 6;
+    bounds[b] = x0; bounds[b+1] = y0; bounds[b+2] = z0;
+    bounds[b+3] = x1; bounds[b+4] = y1; bounds[b+5] = z1;
+    if (hi - lo <= LEAF) {
+      return -1;
+    }
+
+    int a = 0;
+    if (y1 - y0 > x1 - x0) a = 1;
+    if (dimensions == 3 && z1 - z0 > Math.max(x1 - x0, y1 - y0)) a = 2;
+    axis[mid] = (byte) a;
+    select(lo, hi - 1, mid, coords(a));
+    return mid;
+  }
+
+
+  private float[] coords(int a) {
+    return (a == 0) ? x : ((a == 1) ? y : z);
+  }
+
+
+  /**
+   * Reorder order[left..right] so the point at k is in its sorted place,
+   * with nothing greater before it and nothing less after it. This is
+   * Hoare's partitioning, which stays fast when many values are the same.
+   */
+  private void select(int left, int right, int k, float[] c) {
+    while (right > left) {
+      float pivot = c[order[k]];
+      int i = left;
+      int j = right;
+      do {
+        while (c[order[i]] < pivot) i++;
+        while (pivot < c[order[j]]) j--;
+        if (i <= j) {
+          int temp = order[i];
+          order[i] = order[j];
+          order[j] = temp;
+          i++;
+          j--;
+        }
+      } while (i <= j);
+      if (j < k) left = i;
+      if (k < i) right = j;
+    }
+  }
+
+
+  private void build(int lo, int hi) {
+    if (lo < hi) {
+      int mid = split(lo, hi);
+      if (mid != -1) {
+        build(lo, mid);
+        build(mid + 1, hi);
+      }
+    }
+  }
+
+
+  private class Build extends RecursiveAction {
+    final int lo, hi;
+
+    Build(int lo, int hi) {
+      this.lo = lo;
+      this.hi = hi;
+    }
+
+    @Override
+    protected void compute() {
+      if (hi - lo <= ParallelSum.CHUNK) {
+        build(lo, hi);
+      } else {
+        int mid = split(lo, hi);
+        invokeAll(new Build(lo, mid), new Build(mid + 1, hi));
+      }
+    }
+  }
+
+
+  @Override
+  void moved(int index, float oldX, float oldY, float oldZ) {
+    // grow the bounds of each range on the way down to the point
+    float px = x[index], py = y[index], pz = z[index];
+    int p = position[index];
+    int lo = 0, hi = count;
+    while (true) {
+      int mid = (lo + hi) >>> 1;
+      int b = mid * 6;
+      bounds[b] = Math.min(bounds[b], px);
+      bounds[b+1] = Math.min(bounds[b+1], py);
+      bounds[b+2] = Math.min(bounds[b+2], pz);
+      bounds[b+3] = Math.max(bounds[b+3], px);
+      bounds[b+4] = Math.max(bounds[b+4], py);
+      bounds[b+5] = Math.max(bounds[b+5], pz);
+      if (hi - lo <= LEAF || p == mid) {
+        break;
+      }
+      if (p < mid) {
+        hi = mid;
+      } else {
+        lo = mid + 1;
+      }
+    }
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  /** Squared distance from the location to the bounds of a range. */
+  private float boundsDistSq(int mid, float qx, float qy, float qz) {
+    int b = mid * 6;
+    float dx = Math.max(0, Math.max(bounds[b] - qx, qx - bounds[b+3]));
+    float dy = Math.max(0, Math.max(bounds[b+1] - qy, qy - bounds[b+4]));
+    float dz = Math.max(0, Math.max(bounds[b+2] - qz, qz - bounds[b+5]));
+    return dx*dx + dy*dy + dz*dz;
+  }
+
+
+  @Override
+  void findWithin(float qx, float qy, float qz, float radius, IntList out) {
+    within(0, count, qx, qy, qz, radius * radius, out);
+  }
+
+
+  private void within(int lo, int hi, float qx, float qy, float qz,
+                      float limit, IntList out) {
+    if (lo >= hi) return;
+    int mid = (lo + hi) >>> 1;
+    if (boundsDistSq(mid, qx, qy, qz) > limit) return;
+
+    if (hi - lo <= LEAF) {
+      for (int p = lo; p < hi; p++) {
+        int i = order[p];
+        if (distSq(i, qx, qy, qz) <= limit) {
+          out.append(i);
+        }
+      }
+    } else {
+      int i = order[mid];
+      if (distSq(i, qx, qy, qz) <= limit) {
+        out.append(i);
+      }
+      within(lo, mid, qx, qy, qz, limit, out);
+      within(mid + 1, hi, qx, qy, qz, limit, out);
+    }
+  }
+
+
+  @Override
+  void findNearest(float qx, float qy, float qz, Nearest best) {
+    nearest(0, count, qx, qy, qz, best);
+  }
+
+
+  private void nearest(int lo, int hi, float qx, float qy, float qz,
+                       Nearest best) {
+    if (hi - lo <= LEAF) {
+      for (int p = lo; p < hi; p++) {
+        int i = order[p];
+        best.offer(i, distSq(i, qx, qy, qz));
+      }
+      return;
+    }
+    int mid = (lo + hi) >>> 1;
+    int i = order[mid];
+    best.offer(i, distSq(i, qx, qy, qz));
+
+    // the side of the split the location is on is likely to be closer
+    int nearLo = lo, nearHi = mid;
+    int farLo = mid + 1, farHi = hi;
+    int a = axis[mid];
+    float q = (a == 0) ? qx : ((a == 1) ? qy : qz);
+    if (q > coords(a)[i]) {
+      nearLo = mid + 1; nearHi = hi;
+      farLo = lo; farHi = mid;
+    }
+    visit(nearLo, nearHi, qx, qy, qz, best);
+    visit(farLo, farHi, qx, qy, qz, best);
+  }
+
+
+  private void visit(int lo, int hi, float qx, float qy, float qz,
+                     Nearest best) {
+    if (lo < hi &&
+        boundsDistSq((lo + hi) >>> 1, qx, qy, qz) < best.worst()) {
+      nearest(lo, hi, qx, qy, qz, best);
+    }
+  }
+}
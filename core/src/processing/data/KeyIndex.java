@@ -0,0 +1,267 @@
+package processing.data;
+
+import java.util.Arrays;
+
+
+/**
+ * Lookup from String keys to their position in the parallel keys[] and
+ * values[] arrays used by the Dict classes. This replaces a
+ * HashMap&lt;String, Integer&gt;: it's an open-addressing (linear probing)
+ * table of int slots, so lookups don't box, and a hash is cached for each
+ * entry so that probes rarely need to call equals(). Sorting and removing
+ * entries update the table in place, rather than rebuilding it.
+ */
+class KeyIndex {
+  /** Entry index + 1 for each slot in the table, 0 for an empty slot. */
+  int[] slots;
+  int mask;
+  /** Number of slots in use */
+  int used;
+
+  /** Hash of each entry's key, in the same order as the keys[] array. */
+  int[] hashes;
+
+
+  KeyIndex() {
+    this(10);
+  }
+
+
+  KeyIndex(int length) {
+    int size = tableSize(length);
+    slots = new int[size];
+    mask = size - 1;
+    hashes = new int[Math.max(length, 1)];
+  }
+
+
+  /**
+   * Build an index for the first count entries of keys. If a key is found
+   * more than once, the last occurrence wins (same as HashMap.put() did).
+   */
+  KeyIndex(String[] keys, int count) {
+    this(count);
+    for (int i = 0; i < count; i++) {
+      put(keys, i);
+    }
+  }
+
+
+  /** Keep the table at most half full. */
+  static private int tableSize(int count) {
+    int size = 16;
+    while (size < count * 2 && size < (1 << 30)) {
+      size <<= 1;
+    }
+    return size;
+  }
+
+
+  static int hash(String key) {
+    if (key == null) {
+      return 0;
+    }
+    // Spread the bits, String.hashCode() varies mostly in the low bits
+    // for keys like "item1", "item2", which causes long probe runs.
+    int h = key.hashCode() * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+
+
+  /** Return the index of key in keys[], or -1 if it's not present. */
+  int find(String[] keys, String key) {
+    int h = hash(key);
+    int slot = h & mask;
+    int entry;
+    while ((entry = slots[slot]) != 0) {
+      entry--;
+      if (hashes[entry] == h) {
+        String other = keys[entry];
+        if (other == key || (key != null && key.equals(other))) {
+          return entry;
+        }
+      }
+      slot = (slot + 1) & mask;
+    }
+    return -1;
+  }
+
+
+  /**
+   * Add keys[index] to the table. If the key is already present,
+   * its entry is replaced with this index.
+   */
+  void put(String[] keys, int index) {
+    if (index >= hashes.length) {
+      hashes = Arrays.copyOf(hashes, Math.max(index + 1, hashes.length << 1));
+    }
+    String key = keys[index];
+    int h = hash(key);
+    hashes[index] = h;
+
+    int slot = h & mask;
+    int entry;
+    while ((entry = slots[slot]) != 0) {
+      entry--;
+      if (hashes[entry] == h) {
+        String other = keys[entry];
+        if (other == key || (key != null && key.equals(other))) {
+          slots[slot] = index + 1;
+          return;
+        }
+      }
+      slot = (slot + 1) & mask;
+    }
+    slots[slot] = index + 1;
+    used++;
+    if (used * 2 > slots.length) {
+      grow();
+    }
+  }
+
+
+  private void grow() {
+    int[] oldSlots = slots;
+    slots = new int[oldSlots.length << 1];
+    mask = slots.length - 1;
+    for (int entry : oldSlots) {
+      if (entry != 0) {
+        insert(entry - 1);
+      }
+    }
+  }
+
+
+  /** Insert an entry whose hash is already cached, without checking keys. */
+  private void insert(int index) {
+    int slot = hashes[index] & mask;
+    while (slots[slot] != 0) {
+      slot = (slot + 1) & mask;
+    }
+    slots[slot] = index + 1;
+  }
+
+
+  /** Find the slot that points at a particular entry. */
+  private int slotOf(int index) {
+    int slot = hashes[index] & mask;
+    while (slots[slot] != index + 1) {
+      if (slots[slot] == 0) {
+        return -1;  // not indexed (shadowed by a duplicate key)
+      }
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+
+  /**
+   * Clear a slot, moving later entries of the same probe run back so that
+   * lookups don't stop early at the hole.
+   */
+  private void clearSlot(int slot) {
+    int hole = slot;
+    int next = (hole + 1) & mask;
+    int entry;
+    while ((entry = slots[next]) != 0) {
+      int home = hashes[entry - 1] & mask;
+      // move it if the hole is between its home slot and where it sits now
+      if (((next - home) & mask) >= ((next - hole) & mask)) {
+        slots[hole] = entry;
+        hole = next;
+      }
+      next = (next + 1) & mask;
+    }
+    slots[hole] = 0;
+    used--;
+  }
+
+
+  /**
+   * Remove the entry at index, and shift the entries after it down by one,
+   * same as the Dict classes do with their keys[] and values[] arrays.
+   */
+  void remove(int index, int count) {
+    int slot = slotOf(index);
+    if (slot != -1) {
+      clearSlot(slot);
+    }
+    System.arraycopy(hashes, index + 1, hashes, index, count - index - 1);
+    int last = index + 1;
+    for (int i = 0; i < slots.length; i++) {
+      if (slots[i] > last) {
+        slots[i]--;
+      }
+    }
+  }
+
+
+  /** Change the key for the entry at index, after keys[index] is set. */
+  void replace(String[] keys, int index) {
+    int slot = slotOf(index);
+    if (slot != -1) {
+      clearSlot(slot);
+    }
+    put(keys, index);
+  }
+
+
+  /** Swap two entries, to match a swap of their keys and values. */
+  void swap(int a, int b) {
+    int slotA = slotOf(a);
+    int slotB = slotOf(b);
+    if (slotA != -1) {
+      slots[slotA] = b + 1;
+    }
+    if (slotB != -1) {
+      slots[slotB] = a + 1;
+    }
+    swapHashes(a, b);
+  }
+
+
+  /**
+   * Swap only the cached hashes. Used while sorting, followed by a call
+   * to reindex() once all the entries are in their final positions.
+   */
+  void swapHashes(int a, int b) {
+    int temp = hashes[a];
+    hashes[a] = hashes[b];
+    hashes[b] = temp;
+  }
+
+
+  /**
+   * Refill the table with the first count entries, using the cached hashes.
+   * No keys are re-hashed and nothing is allocated.
+   */
+  void reindex(int count) {
+    if (count * 2 > slots.length) {
+      int size = tableSize(count);
+      slots = new int[size];
+      mask = size - 1;
+    } else {
+      Arrays.fill(slots, 0);
+    }
+    used = count;
+    for (int i = 0; i < count; i++) {
+      insert(i);
+    }
+  }
+
+
+  void clear() {
+    Arrays.fill(slots, 0);
+    used = 0;
+  }
+
+
+  KeyIndex copy() {
+    KeyIndex outgoing = new KeyIndex(0);
+    outgoing.slots = slots.clone();
+    outgoing.mask = mask;
+    outgoing.used = used;
+    outgoing.hashes = hashes.clone();
+    return outgoing;
+  }
+}
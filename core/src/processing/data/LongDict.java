@@ -1,7 +1,6 @@
 package processing.data;
 
 import java.io.*;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 
@@ -24,7 +23,7 @@ public class LongDict {
   protected long[] values;
 
   /** Internal implementation for faster lookups */
-  private HashMap<String, Integer> indices = new HashMap<>();
+  private KeyIndex indices = new KeyIndex();
 
 
   public LongDict() {
@@ -44,6 +43,7 @@ public class LongDict {
     count = 0;
     keys = new String[length];
     values = new long[length];
+    indices = new KeyIndex(length);
   }
 
 
@@ -63,7 +63,7 @@ public class LongDict {
       if (pieces.length == 2) {
         keys[count] = pieces[0];
         values[count] = PApplet.parseInt(pieces[1]);
-        indices.put(pieces[0], count);
+        indices.put(keys, count);
         count++;
       }
     }
@@ -80,7 +80,7 @@ public class LongDict {
     this.values = values;
     count = keys.length;
     for (int i = 0; i < count; i++) {
-      indices.put(keys[i], i);
+      indices.put(keys, i);
     }
   }
 
@@ -101,7 +101,7 @@ public class LongDict {
     for (int i = 0; i < count; i++) {
       keys[i] = (String) pairs[i][0];
       values[i] = (Integer) pairs[i][1];
-      indices.put(keys[i], i);
+      indices.put(keys, i);
     }
   }
 
@@ -148,15 +148,12 @@ public class LongDict {
    */
   public void clear() {
     count = 0;
-    indices = new HashMap<>();
+    indices.clear();
   }
 
 
   private void resetIndices() {
-    indices = new HashMap<>(count);
-    for (int i = 0; i < count; i++) {
-      indices.put(keys[i], i);
-    }
+    indices.reindex(count);
   }
 
 
@@ -386,6 +383,7 @@ public class LongDict {
       throw new ArrayIndexOutOfBoundsException(index);
     }
     keys[index] = key;
+    indices.replace(keys, index);
     values[index] = value;
   }
 
@@ -560,8 +558,7 @@ public class LongDict {
 
 
   public int index(String what) {
-    Integer found = indices.get(what);
-    return (found == null) ? -1 : found.intValue();
+    return indices.find(keys, what);
   }
 
 
@@ -570,9 +567,9 @@ public class LongDict {
       keys = PApplet.expand(keys);
       values = PApplet.expand(values);
     }
-    indices.put(what, Integer.valueOf(count));
     keys[count] = what;
     values[count] = much;
+    indices.put(keys, count);
     count++;
   }
 
@@ -597,11 +594,10 @@ public class LongDict {
       throw new ArrayIndexOutOfBoundsException(index);
     }
     long value = values[index];
-    indices.remove(keys[index]);
+    indices.remove(index, count);
     for (int i = index; i < count-1; i++) {
       keys[i] = keys[i+1];
       values[i] = values[i+1];
-      indices.put(keys[i], i);
     }
     count--;
     keys[count] = null;
@@ -611,15 +607,18 @@ public class LongDict {
 
 
   public void swap(int a, int b) {
+    indices.swap(a, b);
+    swapEntries(a, b);
+  }
+
+
+  private void swapEntries(int a, int b) {
     String tkey = keys[a];
     long tvalue = values[a];
     keys[a] = keys[b];
     values[a] = values[b];
     keys[b] = tkey;
     values[b] = tvalue;
-
-//    indices.put(keys[a], Integer.valueOf(a));
-//    indices.put(keys[b], Integer.valueOf(b));
   }
 
 
@@ -697,10 +696,10 @@ public class LongDict {
         if (useKeys) {
           diff = keys[a].compareToIgnoreCase(keys[b]);
           if (diff == 0) {
-            diff = values[a] - values[b];
+            diff = Long.compare(values[a], values[b]);
           }
         } else {  // sort values
-          diff = values[a] - values[b];
+          diff = Long.compare(values[a], values[b]);
           if (diff == 0 && stable) {
             diff = keys[a].compareToIgnoreCase(keys[b]);
           }
@@ -716,10 +715,11 @@ public class LongDict {
 
       @Override
       public void swap(int a, int b) {
-        LongDict.this.swap(a, b);
+        swapEntries(a, b);
+        indices.swapHashes(a, b);
       }
     };
-    s.run();
+    s.runParallel();
 
     // Set the indices after sort/swaps (performance fix 160411)
     resetIndices();
@@ -747,9 +747,7 @@ public class LongDict {
     LongDict outgoing = new LongDict(count);
     System.arraycopy(keys, 0, outgoing.keys, 0, count);
     System.arraycopy(values, 0, outgoing.values, 0, count);
-    for (int i = 0; i < count; i++) {
-      outgoing.indices.put(keys[i], i);
-    }
+    outgoing.indices = indices.copy();
     outgoing.count = count;
     return outgoing;
   }
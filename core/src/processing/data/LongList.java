@@ -108,8 +108,9 @@ public class LongList implements Iterable<Long> {
     int count = stop - start;
     LongList newbie = new LongList(count);
     for (int i = 0; i < count; i++) {
-      newbie.set(i, start+i);
+      newbie.data[i] = start+i;
     }
+    newbie.count = count;
     return newbie;
   }
 
@@ -644,8 +645,7 @@ public class LongList implements Iterable<Long> {
 
       @Override
       public int compare(int a, int b) {
-        long diff = data[b] - data[a];
-        return diff == 0 ? 0 : (diff < 0 ? -1 : 1);
+        return Long.compare(data[b], data[a]);
       }
 
       @Override
@@ -654,7 +654,7 @@ public class LongList implements Iterable<Long> {
         data[a] = data[b];
         data[b] = temp;
       }
-    }.run();
+    }.runParallel();
   }
 
 
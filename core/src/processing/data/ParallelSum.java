@@ -0,0 +1,102 @@
+package processing.data;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+
+/**
+ * Internal helper for the sums and dot products in the list classes.
+ * <p/>
+ * Large ranges are cut into fixed-size chunks that are added up pairwise
+ * on the common ForkJoinPool. The chunks and the order in which they're
+ * combined don't depend on the number of threads, so the same list always
+ * gives the same (floating point) result.
+ */
+class ParallelSum {
+
+  /** Below this many elements, everything runs on the calling thread */
+  static final int PARALLEL_THRESHOLD = 1 << 16;
+
+  /** Number of elements added up by each task */
+  static final int CHUNK = 1 << 13;
+
+
+  static abstract class OfDouble {
+
+    /** Add up the elements from start (inclusive) to stop (exclusive). */
+    abstract double sum(int start, int stop);
+
+
+    double run(int count) {
+      if (count < PARALLEL_THRESHOLD) {
+        return sum(0, count);
+      }
+      int chunks = (count + CHUNK - 1) / CHUNK;
+      return ForkJoinPool.commonPool().invoke(new Task(0, chunks, count));
+    }
+
+
+    private class Task extends RecursiveTask<Double> {
+      final int first, last;  // chunk range, last is exclusive
+      final int count;
+
+      Task(int first, int last, int count) {
+        this.first = first;
+        this.last = last;
+        this.count = count;
+      }
+
+      @Override
+      protected Double compute() {
+        if (last - first == 1) {
+          return sum(first * CHUNK, Math.min((first + 1) * CHUNK, count));
+        }
+        int mid = (first + last) >>> 1;
+        Task left = new Task(first, mid, count);
+        left.fork();
+        double right = new Task(mid, last, count).compute();
+        return left.join() + right;
+      }
+    }
+  }
+
+
+  static abstract class OfLong {
+
+    /** Add up the elements from start (inclusive) to stop (exclusive). */
+    abstract long sum(int start, int stop);
+
+
+    long run(int count) {
+      if (count < PARALLEL_THRESHOLD) {
+        return sum(0, count);
+      }
+      int chunks = (count + CHUNK - 1) / CHUNK;
+      return ForkJoinPool.commonPool().invoke(new Task(0, chunks, count));
+    }
+
+
+    private class Task extends RecursiveTask<Long> {
+      final int first, last;  // chunk range, last is exclusive
+      final int count;
+
+      Task(int first, int last, int count) {
+        this.first = first;
+        this.last = last;
+        this.count = count;
+      }
+
+      @Override
+      protected Long compute() {
+        if (last - first == 1) {
+          return sum(first * CHUNK, Math.min((first + 1) * CHUNK, count));
+        }
+        int mid = (first + last) >>> 1;
+        Task left = new Task(first, mid, count);
+        left.fork();
+        long right = new Task(mid, last, count).compute();
+        return left.join() + right;
+      }
+    }
+  }
+}
@@ -1,12 +1,34 @@
 package processing.data;
 
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
 
 /**
  * Internal sorter used by several data classes.
  * Advanced users only, not official API.
+ * <p/>
+ * run() is an introsort: quicksort with a median-of-three pivot, switching
+ * to heapsort if the recursion gets too deep (so that it stays O(n log n)
+ * even on adversarial input), and to insertion sort for small ranges.
+ * runStable() keeps equal elements in their original order, and
+ * runParallel() splits large sorts across the common ForkJoinPool.
  */
 public abstract class Sort implements Runnable {
 
+  /** Ranges this size or smaller are finished with an insertion sort */
+  static final int INSERTION_THRESHOLD = 16;
+
+  /** Below this many elements, runParallel() just calls run() */
+  static final int PARALLEL_THRESHOLD = 1 << 15;
+
+  /** Size of range that each parallel task will sort on its own */
+  static final int PARALLEL_GRAIN = 1 << 13;
+
+  /** Block size for the insertion sort pass of runStable() */
+  static final int STABLE_BLOCK = 20;
+
+
   public Sort() { }
 
 
@@ -18,29 +40,296 @@ public abstract class Sort implements Runnable {
   }
 
 
+  /**
+   * Sort so that elements comparing as equal keep their original order.
+   * Only uses compare() and swap(), so it needs no extra memory. This makes
+   * O(n log n) calls to compare(), but O(n log n log n) calls to swap().
+   */
+  public void runStable() {
+    int c = size();
+    if (c > 1) {
+      stable(c);
+    }
+  }
+
+
+  /**
+   * Same as run(), but large sorts are split across several threads.
+   * Only use this when compare() and swap() can be called at the same time
+   * from different threads, as long as the indices are different. That's
+   * the case when they only read and swap elements of arrays.
+   */
+  public void runParallel() {
+    runParallel(ForkJoinPool.commonPool());
+  }
+
+
+  void runParallel(ForkJoinPool pool) {
+    int c = size();
+    if (c > 1) {
+      if (c < PARALLEL_THRESHOLD || pool.getParallelism() < 2) {
+        sort(0, c - 1);
+      } else {
+        pool.invoke(new ParallelSort(0, c - 1, depthLimit(c)));
+      }
+    }
+  }
+
+
+  /** Sort the elements from i to j (inclusive). */
   protected void sort(int i, int j) {
-    int pivotIndex = (i+j)/2;
-    swap(pivotIndex, j);
-    int k = partition(i-1, j);
-    swap(k, j);
-    if ((k-i) > 1) sort(i, k-1);
-    if ((j-k) > 1) sort(k+1, j);
+    introsort(i, j, depthLimit(j - i + 1));
   }
 
 
-  protected int partition(int left, int right) {
-    int pivot = right;
-    do {
-      while (compare(++left, pivot) < 0) { }
-      while ((right != 0) && (compare(--right, pivot) > 0)) { }
-      swap(left, right);
-    } while (left < right);
-    swap(left, right);
-    return left;
+  /** Allow 2 * log2(n) levels of quicksort before giving up on it. */
+  static private int depthLimit(int n) {
+    return 2 * (31 - Integer.numberOfLeadingZeros(n));
+  }
+
+
+  private void introsort(int lo, int hi, int depth) {
+    while (hi - lo >= INSERTION_THRESHOLD) {
+      if (depth == 0) {
+        heapsort(lo, hi);
+        return;
+      }
+      depth--;
+      int p = partition(lo, hi);
+      // Recurse into the smaller side and loop on the larger one,
+      // so the stack never gets deeper than log2(n).
+      if (p - lo < hi - p) {
+        introsort(lo, p - 1, depth);
+        lo = p + 1;
+      } else {
+        introsort(p + 1, hi, depth);
+        hi = p - 1;
+      }
+    }
+    insertionSort(lo, hi);
+  }
+
+
+  /**
+   * Partition lo..hi around the median of the first, middle, and last
+   * elements, and return the final position of the pivot. Both scans stop
+   * on elements equal to the pivot, so runs of duplicates are split evenly
+   * instead of degrading to O(n^2).
+   */
+  protected int partition(int lo, int hi) {
+    int mid = (lo + hi) >>> 1;
+    if (compare(mid, lo) < 0) swap(mid, lo);
+    if (compare(hi, lo) < 0) swap(hi, lo);
+    if (compare(hi, mid) < 0) swap(hi, mid);
+    // now lo <= mid <= hi, park the pivot (the median) at hi
+    swap(mid, hi);
+
+    // lo is <= the pivot, and mid is >= it, so both scans stay in range
+    int i = lo;
+    int j = hi;
+    while (true) {
+      // (the bounds checks only matter if compare() is inconsistent)
+      do { i++; } while (i < hi && compare(i, hi) < 0);
+      do { j--; } while (j > lo && compare(hi, j) < 0);
+      if (i >= j) break;
+      swap(i, j);
+    }
+    swap(i, hi);
+    return i;
+  }
+
+
+  private void insertionSort(int lo, int hi) {
+    for (int i = lo + 1; i <= hi; i++) {
+      for (int j = i; j > lo && compare(j, j - 1) < 0; j--) {
+        swap(j, j - 1);
+      }
+    }
+  }
+
+
+  private void heapsort(int lo, int hi) {
+    int n = hi - lo + 1;
+    for (int i = n/2 - 1; i >= 0; i--) {
+      siftDown(lo, i, n);
+    }
+    for (int end = n - 1; end > 0; end--) {
+      swap(lo, lo + end);
+      siftDown(lo, 0, end);
+    }
+  }
+
+
+  private void siftDown(int lo, int root, int n) {
+    while (true) {
+      int child = 2*root + 1;
+      if (child >= n) return;
+      if (child + 1 < n && compare(lo + child, lo + child + 1) < 0) {
+        child++;
+      }
+      if (compare(lo + root, lo + child) >= 0) return;
+      swap(lo + root, lo + child);
+      root = child;
+    }
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  // In-place stable merge sort, after the SymMerge algorithm from
+  // Kim & Kutzner, "Stable Minimum Storage Merging by Symmetric
+  // Comparisons" (2004). Ranges in this section are half-open [a, b).
+
+
+  private void stable(int n) {
+    int block = STABLE_BLOCK;
+    int a = 0;
+    int b = block;
+    while (b <= n) {
+      insertionSort(a, b - 1);
+      a = b;
+      b += block;
+    }
+    insertionSort(a, n - 1);
+
+    while (block < n) {
+      a = 0;
+      b = 2 * block;
+      while (b <= n) {
+        symMerge(a, a + block, b);
+        a = b;
+        b += 2 * block;
+      }
+      int m = a + block;
+      if (m < n) {
+        symMerge(a, m, n);
+      }
+      block *= 2;
+    }
+  }
+
+
+  /** Merge the sorted ranges [a, m) and [m, b). */
+  private void symMerge(int a, int m, int b) {
+    if (m - a == 1) {
+      // binary search for where a goes in [m, b), then rotate it there
+      int i = m;
+      int j = b;
+      while (i < j) {
+        int h = (i + j) >>> 1;
+        if (compare(h, a) < 0) {
+          i = h + 1;
+        } else {
+          j = h;
+        }
+      }
+      for (int k = a; k < i - 1; k++) {
+        swap(k, k + 1);
+      }
+      return;
+    }
+    if (b - m == 1) {
+      // binary search for where m goes in [a, m), then rotate it there
+      int i = a;
+      int j = m;
+      while (i < j) {
+        int h = (i + j) >>> 1;
+        if (compare(m, h) >= 0) {
+          i = h + 1;
+        } else {
+          j = h;
+        }
+      }
+      for (int k = m; k > i; k--) {
+        swap(k, k - 1);
+      }
+      return;
+    }
+
+    int mid = (a + b) >>> 1;
+    int n = mid + m;
+    int start, r;
+    if (m > mid) {
+      start = n - b;
+      r = mid;
+    } else {
+      start = a;
+      r = m;
+    }
+    int p = n - 1;
+    while (start < r) {
+      int c = (start + r) >>> 1;
+      if (compare(p - c, c) >= 0) {
+        start = c + 1;
+      } else {
+        r = c;
+      }
+    }
+    int end = n - start;
+    if (start < m && m < end) {
+      rotate(start, m, end);
+    }
+    if (a < start && start < mid) {
+      symMerge(a, start, mid);
+    }
+    if (mid < end && end < b) {
+      symMerge(mid, end, b);
+    }
+  }
+
+
+  /** Exchange the ranges [a, m) and [m, b), using swaps only. */
+  private void rotate(int a, int m, int b) {
+    int i = m - a;
+    int j = b - m;
+    while (i != j) {
+      if (i > j) {
+        swapRange(m - i, m, j);
+        i -= j;
+      } else {
+        swapRange(m - i, m + j - i, i);
+        j -= i;
+      }
+    }
+    swapRange(m - i, m, i);
+  }
+
+
+  private void swapRange(int a, int b, int n) {
+    for (int i = 0; i < n; i++) {
+      swap(a + i, b + i);
+    }
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  private class ParallelSort extends RecursiveAction {
+    final int lo, hi;
+    final int depth;
+
+    ParallelSort(int lo, int hi, int depth) {
+      this.lo = lo;
+      this.hi = hi;
+      this.depth = depth;
+    }
+
+    @Override
+    protected void compute() {
+      if (hi - lo < PARALLEL_GRAIN || depth == 0) {
+        introsort(lo, hi, depth);
+      } else {
+        int p = partition(lo, hi);
+        invokeAll(new ParallelSort(lo, p - 1, depth - 1),
+                  new ParallelSort(p + 1, hi, depth - 1));
+      }
+    }
   }
 
 
   abstract public int size();
   abstract public int compare(int a, int b);
   abstract public void swap(int a, int b);
-}
\ No newline at end of file
+}
@@ -0,0 +1,249 @@
+package processing.data;
+
+import java.util.Arrays;
+
+
+/**
+ * A spatial index that sorts points into square (or cube) cells of the
+ * same size, for points spread fairly evenly, like a flock. Finding the
+ * points within a radius only looks in the cells that the radius
+ * overlaps, so it works best with cells about as big as the radius
+ * that's used most often. Moving a point with update() is quick, and
+ * leaves the grid just as good as a rebuild would.
+ * <p/>
+ * The cells are hashed into a table with room for about one cell per
+ * point, so the points can be spread over any area without using more
+ * memory.
+ *
+ * @see KDTree
+ */
+public class SpatialGrid extends SpatialIndex {
+  protected float cellSize;
+  private float inverse;
+
+  // the head of the linked list of points for each hashed cell
+  private int[] head = new int[1];
+  private int mask;
+  private int[] next = new int[0];
+  private int[] prev = next;
+
+  // the cell of each point
+  private int[] cellX = next;
+  private int[] cellY = next;
+  private int[] cellZ = next;
+
+  // the bounds of all the points (possibly larger after update())
+  private float minX, minY, minZ;
+  private float maxX, maxY, maxZ;
+
+
+  /**
+   * @param cellSize width (and height and depth) of each cell
+   */
+  public SpatialGrid(float cellSize) {
+    if (!(cellSize > 0)) {
+      throw new IllegalArgumentException("The cell size must be more than 0");
+    }
+    this.cellSize = cellSize;
+    inverse = 1 / cellSize;
+    head[0] = -1;
+  }
+
+
+  public float getCellSize() {
+    return cellSize;
+  }
+
+
+  private int cell(float v) {
+    return (int) Math.floor(v * inverse);
+  }
+
+
+  private int bucket(int cx, int cy, int cz) {
+    return ((cx * 73856093) ^ (cy * 19349663) ^ (cz * 83492791)) & mask;
+  }
+
+
+  @Override
+  public void rebuild() {
+    int buckets = 16;
+    while (buckets < count && buckets < (1 << 30)) {
+      buckets <<= 1;
+    }
+    mask = buckets - 1;
+    if (head.length != buckets) {
+      head = new int[buckets];
+    }
+    Arrays.fill(head, -1);
+    if (next.length != count) {
+      next = new int[count];
+      prev = new int[count];
+      cellX = new int[count];
+      cellY = new int[count];
+      cellZ = new int[count];
+    }
+
+    run(count, new Span() {
+      void apply(int start, int stop) {
+        for (int i = start; i < stop; i++) {
+          cellX[i] = cell(x[i]);
+          cellY[i] = cell(y[i]);
+          cellZ[i] = cell(z[i]);
+        }
+      }
+    });
+
+    minX = minY = minZ = Float.POSITIVE_INFINITY;
+    maxX = maxY = maxZ = Float.NEGATIVE_INFINITY;
+    for (int i = 0; i < count; i++) {
+      link(i);
+      expand(i);
+    }
+  }
+
+
+  private void link(int i) {
+    int b = bucket(cellX[i], cellY[i], cellZ[i]);
+    int first = head[b];
+    next[i] = first;
+    prev[i] = -1;
+    if (first != -1) {
+      prev[first] = i;
+    }
+    head[b] = i;
+  }
+
+
+  private void unlink(int i) {
+    if (prev[i] == -1) {
+      head[bucket(cellX[i], cellY[i], cellZ[i])] = next[i];
+    } else {
+      next[prev[i]] = next[i];
+    }
+    if (next[i] != -1) {
+      prev[next[i]] = prev[i];
+    }
+  }
+
+
+  private void expand(int i) {
+    minX = Math.min(minX, x[i]);
+    minY = Math.min(minY, y[i]);
+    minZ = Math.min(minZ, z[i]);
+    maxX = Math.max(maxX, x[i]);
+    maxY = Math.max(maxY, y[i]);
+    maxZ = Math.max(maxZ, z[i]);
+  }
+
+
+  @Override
+  void moved(int index, float oldX, float oldY, float oldZ) {
+    int cx = cell(x[index]);
+    int cy = cell(y[index]);
+    int cz = cell(z[index]);
+    if (cx != cellX[index] || cy != cellY[index] || cz != cellZ[index]) {
+      unlink(index);
+      cellX[index] = cx;
+      cellY[index] = cy;
+      cellZ[index] = cz;
+      link(index);
+    }
+    expand(index);
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  /**
+   * Visits each point in the cells overlapped by a box of half-width r
+   * around the location. Returns false without visiting anything if that
+   * would be more cells than there are points, in which case it's quicker
+   * to check every point.
+   */
+  private abstract class Visitor {
+    abstract void visit(int i);
+
+    boolean cells(float qx, float qy, float qz, float r) {
+      int x0 = cell(qx - r), x1 = cell(qx + r);
+      int y0 = cell(qy - r), y1 = cell(qy + r);
+      int z0 = 0, z1 = 0;
+      if (dimensions == 3) {
+        z0 = cell(qz - r);
+        z1 = cell(qz + r);
+      }
+      long cells = (x1 - x0 + 1L) * (y1 - y0 + 1L) * (z1 - z0 + 1L);
+      if (cells > count) {
+        return false;
+      }
+      for (int cz = z0; cz <= z1; cz++) {
+        for (int cy = y0; cy <= y1; cy++) {
+          for (int cx = x0; cx <= x1; cx++) {
+            int i = head[bucket(cx, cy, cz)];
+            while (i != -1) {
+              // other cells can land in the same bucket
+              if (cellX[i] == cx && cellY[i] == cy && cellZ[i] == cz) {
+                visit(i);
+              }
+              i = next[i];
+            }
+          }
+        }
+      }
+      return true;
+    }
+  }
+
+
+  @Override
+  void findWithin(final float qx, final float qy, final float qz,
+                  float radius, final IntList out) {
+    final float limit = radius * radius;
+    Visitor visitor = new Visitor() {
+      void visit(int i) {
+        if (distSq(i, qx, qy, qz) <= limit) {
+          out.append(i);
+        }
+      }
+    };
+    if (!visitor.cells(qx, qy, qz, radius)) {
+      for (int i = 0; i < count; i++) {
+        visitor.visit(i);
+      }
+    }
+  }
+
+
+  @Override
+  void findNearest(final float qx, final float qy, final float qz,
+                   final Nearest best) {
+    Visitor visitor = new Visitor() {
+      void visit(int i) {
+        best.offer(i, distSq(i, qx, qy, qz));
+      }
+    };
+    // search a growing box until the k closest in it are all closer than
+    // anything outside of it could be
+    float r = cellSize;
+    while (true) {
+      best.size = 0;
+      if (!visitor.cells(qx, qy, qz, r)) {
+        break;
+      }
+      if (best.isFull() && best.worst() <= r*r) {
+        return;
+      }
+      if (qx - r <= minX && qx + r >= maxX &&
+          qy - r <= minY && qy + r >= maxY &&
+          qz - r <= minZ && qz + r >= maxZ) {
+        return;  // every point was in the box
+      }
+      r *= 2;
+    }
+    best.size = 0;
+    for (int i = 0; i < count; i++) {
+      visitor.visit(i);
+    }
+  }
+}
@@ -0,0 +1,425 @@
+package processing.data;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import processing.core.PVector;
+
+
+/**
+ * Finds the points near a location without checking the distance to every
+ * one of them, for flocking, connecting nearby points with lines, or
+ * finding what's under the mouse. Fill it with set(), then ask for the
+ * points within a radius with within(), or the closest ones with
+ * nearest(). Results are indices into the points that were passed to set().
+ * <p/>
+ * Points that move can be moved one at a time with update(), which is
+ * cheap but (for KDTree) makes later queries a little slower the further
+ * the points travel. Calling rebuild() once in a while, or set() with the
+ * new positions, puts things back in order. Large sets are built on
+ * several threads.
+ * <p/>
+ * Queries don't change anything, so they can be run from several threads
+ * at once, as long as nothing is updated at the same time.
+ *
+ * @see SpatialGrid
+ * @see KDTree
+ */
+abstract public class SpatialIndex {
+  /** Number of points */
+  protected int count;
+
+  /** 2 or 3, depending on whether the points had a z coordinate */
+  protected int dimensions;
+
+  protected float[] x;
+  protected float[] y;
+  protected float[] z;
+
+
+  SpatialIndex() {
+    x = new float[0];
+    y = x;
+    z = x;
+    dimensions = 2;
+  }
+
+
+  public int size() {
+    return count;
+  }
+
+
+  /**
+   * @param target Set to null to create a new vector
+   */
+  public PVector get(int index, PVector target) {
+    if (index < 0 || index >= count) {
+      throw new ArrayIndexOutOfBoundsException(index);
+    }
+    if (target == null) {
+      target = new PVector();
+    }
+    return target.set(x[index], y[index], z[index]);
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  /**
+   * Index these points, replacing any there before. Points are 2D unless
+   * at least one of them has a z coordinate other than 0.
+   */
+  public void set(PVector[] points) {
+    int length = points.length;
+    float[] px = new float[length];
+    float[] py = new float[length];
+    float[] pz = new float[length];
+    boolean flat = true;
+    for (int i = 0; i < length; i++) {
+      px[i] = points[i].x;
+      py[i] = points[i].y;
+      pz[i] = points[i].z;
+      flat &= (pz[i] == 0);
+    }
+    setPoints(px, py, pz, flat ? 2 : 3);
+  }
+
+
+  /**
+   * Index 2D points from two arrays of coordinates, which are copied.
+   */
+  public void set(float[] x, float[] y) {
+    checkLength(x, y.length);
+    setPoints(x.clone(), y.clone(), new float[x.length], 2);
+  }
+
+
+  /**
+   * Index 3D points from three arrays of coordinates, which are copied.
+   */
+  public void set(float[] x, float[] y, float[] z) {
+    checkLength(x, y.length);
+    checkLength(z, y.length);
+    setPoints(x.clone(), y.clone(), z.clone(), 3);
+  }
+
+
+  /**
+   * Index 2D points from two columns of a table. The index of each point
+   * is the same as its row.
+   */
+  public void set(Table table, String xColumn, String yColumn) {
+    float[] x = getColumn(table, xColumn);
+    setPoints(x, getColumn(table, yColumn), new float[x.length], 2);
+  }
+
+
+  /**
+   * Index 3D points from three columns of a table.
+   */
+  public void set(Table table, String xColumn, String yColumn, String zColumn) {
+    setPoints(getColumn(table, xColumn), getColumn(table, yColumn),
+              getColumn(table, zColumn), 3);
+  }
+
+
+  static private float[] getColumn(Table table, String name) {
+    float[] column = table.getFloatColumn(name);
+    if (column == null) {
+      throw new IllegalArgumentException("No column named " + name);
+    }
+    return column;
+  }
+
+
+  static private void checkLength(float[] array, int length) {
+    if (array.length != length) {
+      throw new IllegalArgumentException("The coordinate arrays must all " +
+                                         "be the same length");
+    }
+  }
+
+
+  private void setPoints(float[] x, float[] y, float[] z, int dimensions) {
+    this.x = x;
+    this.y = y;
+    this.z = z;
+    this.dimensions = dimensions;
+    count = x.length;
+    rebuild();
+  }
+
+
+  /**
+   * Move a point. The index of the point stays the same. Giving a 2D
+   * index a z coordinate other than 0 makes it 3D, which needs a rebuild.
+   */
+  public void update(int index, float px, float py, float pz) {
+    if (index < 0 || index >= count) {
+      throw new ArrayIndexOutOfBoundsException(index);
+    }
+    float oldX = x[index], oldY = y[index], oldZ = z[index];
+    x[index] = px;
+    y[index] = py;
+    z[index] = pz;
+    if (pz != 0 && dimensions == 2) {
+      dimensions = 3;
+      rebuild();
+    } else {
+      moved(index, oldX, oldY, oldZ);
+    }
+  }
+
+
+  public void update(int index, float px, float py) {
+    update(index, px, py, 0);
+  }
+
+
+  public void update(int index, PVector v) {
+    update(index, v.x, v.y, v.z);
+  }
+
+
+  /**
+   * Rebuild the index from the current positions of the points, for
+   * instance after many of them have been moved with update().
+   */
+  abstract public void rebuild();
+
+
+  /** Called after update() has stored the new position of a point. */
+  abstract void moved(int index, float oldX, float oldY, float oldZ);
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  public IntList within(float qx, float qy, float radius, IntList out) {
+    return within(qx, qy, 0, radius, out);
+  }
+
+
+  /**
+   * The points no further than radius from (qx, qy, qz), in no particular
+   * order. The point itself is included if the location is one of the points.
+   *
+   * @param out list for the indices of the points (cleared first), or null
+   *   to create a new one
+   * @return out, or the new list
+   */
+  public IntList within(float qx, float qy, float qz, float radius,
+                        IntList out) {
+    if (out == null) {
+      out = new IntList();
+    } else {
+      out.clear();
+    }
+    if (count != 0 && radius >= 0) {
+      findWithin(qx, qy, qz, radius, out);
+    }
+    return out;
+  }
+
+
+  abstract void findWithin(float qx, float qy, float qz,
+                           float radius, IntList out);
+
+
+  public int nearest(float qx, float qy) {
+    return nearest(qx, qy, 0);
+  }
+
+
+  /**
+   * Index of the point closest to (qx, qy, qz), or -1 if there are none.
+   */
+  public int nearest(float qx, float qy, float qz) {
+    if (count == 0) {
+      return -1;
+    }
+    Nearest best = Nearest.get(1);
+    findNearest(qx, qy, qz, best);
+    return best.index[0];
+  }
+
+
+  public IntList nearest(float qx, float qy, int k, IntList out) {
+    return nearest(qx, qy, 0, k, out);
+  }
+
+
+  /**
+   * The k points closest to (qx, qy, qz), closest first, or all of them if
+   * there are fewer than k.
+   *
+   * @param out list for the indices of the points (cleared first), or null
+   *   to create a new one
+   * @return out, or the new list
+   */
+  public IntList nearest(float qx, float qy, float qz, int k, IntList out) {
+    if (out == null) {
+      out = new IntList(k);
+    } else {
+      out.clear();
+    }
+    if (count != 0 && k > 0) {
+      Nearest best = Nearest.get(Math.min(k, count));
+      findNearest(qx, qy, qz, best);
+      best.drainTo(out);
+    }
+    return out;
+  }
+
+
+  abstract void findNearest(float qx, float qy, float qz, Nearest best);
+
+
+  float distSq(int index, float qx, float qy, float qz) {
+    float dx = x[index] - qx;
+    float dy = y[index] - qy;
+    float dz = z[index] - qz;
+    return dx*dx + dy*dy + dz*dz;
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  /**
+   * The k closest points found so far, kept as a heap with the furthest
+   * one on top. Reused by each thread to avoid allocating for each query.
+   */
+  static class Nearest {
+    static private final ThreadLocal<Nearest> scratch =
+      new ThreadLocal<Nearest>() {
+        @Override
+        protected Nearest initialValue() {
+          return new Nearest();
+        }
+      };
+
+    int[] index = new int[1];
+    float[] distSq = new float[1];
+    int size;
+    int k;
+
+    static Nearest get(int k) {
+      Nearest best = scratch.get();
+      if (best.index.length < k) {
+        best.index = new int[k];
+        best.distSq = new float[k];
+      }
+      best.k = k;
+      best.size = 0;
+      return best;
+    }
+
+    /** The distance a point has to beat to be one of the k closest. */
+    float worst() {
+      return (size < k) ? Float.POSITIVE_INFINITY : distSq[0];
+    }
+
+    boolean isFull() {
+      return size == k;
+    }
+
+    void offer(int i, float d) {
+      if (size < k) {
+        // sift up from the bottom
+        int child = size++;
+        while (child > 0) {
+          int parent = (child - 1) >> 1;
+          if (distSq[parent] >= d) break;
+          index[child] = index[parent];
+          distSq[child] = distSq[parent];
+          child = parent;
+        }
+        index[child] = i;
+        distSq[child] = d;
+
+      } else if (d < distSq[0]) {
+        siftDown(i, d, size);
+      }
+    }
+
+    /** Put (i, d) at the top and move it down within the first n entries. */
+    private void siftDown(int i, float d, int n) {
+      int parent = 0;
+      while (true) {
+        int child = 2*parent + 1;
+        if (child >= n) break;
+        if (child + 1 < n && distSq[child + 1] > distSq[child]) {
+          child++;
+        }
+        if (distSq[child] <= d) break;
+        index[parent] = index[child];
+        distSq[parent] = distSq[child];
+        parent = child;
+      }
+      index[parent] = i;
+      distSq[parent] = d;
+    }
+
+    /** Add the points to the list, closest first. */
+    void drainTo(IntList out) {
+      // heapsort: the furthest goes to the end each time
+      for (int n = size - 1; n > 0; n--) {
+        int topIndex = index[0];
+        float topDist = distSq[0];
+        siftDown(index[n], distSq[n], n);
+        index[n] = topIndex;
+        distSq[n] = topDist;
+      }
+      for (int i = 0; i < size; i++) {
+        out.append(index[i]);
+      }
+    }
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  /** Work on the points from start up to stop. */
+  static abstract class Span {
+    abstract void apply(int start, int stop);
+  }
+
+
+  /**
+   * Run the span over count points, on the common ForkJoinPool when there
+   * are enough of them to make it worthwhile.
+   */
+  static void run(int count, Span span) {
+    if (count < ParallelSum.PARALLEL_THRESHOLD) {
+      span.apply(0, count);
+    } else {
+      ForkJoinPool.commonPool().invoke(new Band(span, 0, count));
+    }
+  }
+
+
+  static private class Band extends RecursiveAction {
+    final Span span;
+    final int start, stop;
+
+    Band(Span span, int start, int stop) {
+      this.span = span;
+      this.start = start;
+      this.stop = stop;
+    }
+
+    @Override
+    protected void compute() {
+      if (stop - start <= ParallelSum.CHUNK) {
+        span.apply(start, stop);
+      } else {
+        int mid = (start + stop) >>> 1;
+        invokeAll(new Band(span, start, mid), new Band(span, mid, stop));
+      }
+    }
+  }
+}
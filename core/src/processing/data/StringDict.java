@@ -1,7 +1,6 @@
 package processing.data;
 
 import java.io.*;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 
@@ -24,7 +23,7 @@ public class StringDict {
   protected String[] values;
 
   /** Internal implementation for faster lookups */
-  private HashMap<String, Integer> indices = new HashMap<>();
+  private KeyIndex indices = new KeyIndex();
 
 
   public StringDict() {
@@ -45,6 +44,7 @@ public class StringDict {
     count = 0;
     keys = new String[length];
     values = new String[length];
+    indices = new KeyIndex(length);
   }
 
 
@@ -64,7 +64,7 @@ public class StringDict {
       if (pieces.length == 2) {
         keys[count] = pieces[0];
         values[count] = pieces[1];
-        indices.put(keys[count], count);
+        indices.put(keys, count);
         count++;
       }
     }
@@ -82,7 +82,7 @@ public class StringDict {
     this.values = values;
     count = keys.length;
     for (int i = 0; i < count; i++) {
-      indices.put(keys[i], i);
+      indices.put(keys, i);
     }
   }
 
@@ -104,7 +104,7 @@ public class StringDict {
     for (int i = 0; i < count; i++) {
       keys[i] = pairs[i][0];
       values[i] = pairs[i][1];
-      indices.put(keys[i], i);
+      indices.put(keys, i);
     }
   }
 
@@ -169,15 +169,12 @@ public class StringDict {
    */
   public void clear() {
     count = 0;
-    indices = new HashMap<>();
+    indices.clear();
   }
 
 
   private void resetIndices() {
-    indices = new HashMap<>(count);
-    for (int i = 0; i < count; i++) {
-      indices.put(keys[i], i);
-    }
+    indices.reindex(count);
   }
 
 
@@ -400,13 +397,13 @@ public class StringDict {
       throw new ArrayIndexOutOfBoundsException(index);
     }
     keys[index] = key;
+    indices.replace(keys, index);
     values[index] = value;
   }
 
 
   public int index(String what) {
-    Integer found = indices.get(what);
-    return (found == null) ? -1 : found.intValue();
+    return indices.find(keys, what);
   }
 
 
@@ -424,9 +421,9 @@ public class StringDict {
       keys = PApplet.expand(keys);
       values = PApplet.expand(values);
     }
-    indices.put(key, Integer.valueOf(count));
     keys[count] = key;
     values[count] = value;
+    indices.put(keys, count);
     count++;
   }
 
@@ -450,11 +447,10 @@ public class StringDict {
       throw new ArrayIndexOutOfBoundsException(index);
     }
     String value = values[index];
-    indices.remove(keys[index]);
+    indices.remove(index, count);
     for (int i = index; i < count-1; i++) {
       keys[i] = keys[i+1];
       values[i] = values[i+1];
-      indices.put(keys[i], i);
     }
     count--;
     keys[count] = null;
@@ -465,15 +461,18 @@ public class StringDict {
 
 
   public void swap(int a, int b) {
+    indices.swap(a, b);
+    swapEntries(a, b);
+  }
+
+
+  private void swapEntries(int a, int b) {
     String tkey = keys[a];
     String tvalue = values[a];
     keys[a] = keys[b];
     values[a] = values[b];
     keys[b] = tkey;
     values[b] = tvalue;
-
-//    indices.put(keys[a], Integer.valueOf(a));
-//    indices.put(keys[b], Integer.valueOf(b));
   }
 
 
@@ -543,10 +542,11 @@ public class StringDict {
 
       @Override
       public void swap(int a, int b) {
-        StringDict.this.swap(a, b);
+        swapEntries(a, b);
+        indices.swapHashes(a, b);
       }
     };
-    s.run();
+    s.runParallel();
 
     // Set the indices after sort/swaps (performance fix 160411)
     resetIndices();
@@ -558,9 +558,7 @@ public class StringDict {
     StringDict outgoing = new StringDict(count);
     System.arraycopy(keys, 0, outgoing.keys, 0, count);
     System.arraycopy(values, 0, outgoing.values, 0, count);
-    for (int i = 0; i < count; i++) {
-      outgoing.indices.put(keys[i], i);
-    }
+    outgoing.indices = indices.copy();
     outgoing.count = count;
     return outgoing;
   }
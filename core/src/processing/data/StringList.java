@@ -527,7 +527,7 @@ public class StringList implements Iterable<String> {
         data[a] = data[b];
         data[b] = temp;
       }
-    }.run();
+    }.runParallel();
   }
 
 
@@ -4339,10 +4339,9 @@ public class Table {
 
         switch (getColumnType(column)) {
         case INT:
-          return getInt(a, column) - getInt(b, column);
+          return Integer.compare(getInt(a, column), getInt(b, column));
         case LONG:
-          long diffl = getLong(a, column) - getLong(b, column);
-          return diffl == 0 ? 0 : (diffl < 0 ? -1 : 1);
+          return Long.compare(getLong(a, column), getLong(b, column));
         case FLOAT:
           float difff = getFloat(a, column) - getFloat(b, column);
           return difff == 0 ? 0 : (difff < 0 ? -1 : 1);
@@ -4360,7 +4359,7 @@ public class Table {
           }
           return string1.compareToIgnoreCase(string2);
         case CATEGORY:
-          return getInt(a, column) - getInt(b, column);
+          return Integer.compare(getInt(a, column), getInt(b, column));
         default:
           throw new IllegalArgumentException("Invalid column type: " + getColumnType(column));
         }
@@ -4374,7 +4373,7 @@ public class Table {
       }
 
     };
-    s.run();
+    s.runStable();
 
     //Object[] newColumns = new Object[getColumnCount()];
     for (int col = 0; col < getColumnCount(); col++) {
@@ -4533,6 +4532,42 @@ public class Table {
   }
 
 
+  public IntIntDict getIntIntDict(String keyColumnName, String valueColumnName) {
+    return new IntIntDict(getIntColumn(keyColumnName),
+                          getIntColumn(valueColumnName));
+  }
+
+
+  public IntIntDict getIntIntDict(int keyColumn, int valueColumn) {
+    return new IntIntDict(getIntColumn(keyColumn),
+                          getIntColumn(valueColumn));
+  }
+
+
+  public IntFloatDict getIntFloatDict(String keyColumnName, String valueColumnName) {
+    return new IntFloatDict(getIntColumn(keyColumnName),
+                            getFloatColumn(valueColumnName));
+  }
+
+
+  public IntFloatDict getIntFloatDict(int keyColumn, int valueColumn) {
+    return new IntFloatDict(getIntColumn(keyColumn),
+                            getFloatColumn(valueColumn));
+  }
+
+
+  public LongIntDict getLongIntDict(String keyColumnName, String valueColumnName) {
+    return new LongIntDict(getLongColumn(keyColumnName),
+                           getIntColumn(valueColumnName));
+  }
+
+
+  public LongIntDict getLongIntDict(int keyColumn, int valueColumn) {
+    return new LongIntDict(getLongColumn(keyColumn),
+                           getIntColumn(valueColumn));
+  }
+
+
   public Map<String, TableRow> getRowMap(String columnName) {
     int col = getColumnIndex(columnName);
     return (col == -1) ? null : getRowMap(col);
@@ -24,15 +24,13 @@
 package processing.data;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 
 import javax.xml.parsers.*;
 
 import org.w3c.dom.*;
 import org.xml.sax.*;
 
-import javax.xml.transform.*;
-import javax.xml.transform.dom.*;
-import javax.xml.transform.stream.*;
 import javax.xml.xpath.XPathConstants;
 import javax.xml.xpath.XPathExpression;
 import javax.xml.xpath.XPathFactory;
@@ -279,20 +277,283 @@ public class XML implements Serializable {
 
 
   public boolean save(File file, String options) {
-    PrintWriter writer = PApplet.createWriter(file);
-    boolean result = write(writer);
-    writer.flush();
-    writer.close();
+    OutputStream output = PApplet.createOutput(file);
+    if (output == null) {
+      return false;
+    }
+    boolean result = save(output, options);
+    try {
+      output.close();
+    } catch (IOException e) {
+      e.printStackTrace();
+      return false;
+    }
     return result;
   }
 
 
+  /**
+   * Write this XML to a stream as UTF-8. The stream is flushed, but not
+   * closed. Options are "compact" for a single line, or "indent=N" to
+   * set the number of spaces used for each level (2 by default).
+   *
+   * @nowebref
+   */
+  public boolean save(OutputStream output, String options) {
+    int indent = 2;
+    if (options != null) {
+      String[] opts = PApplet.trim(PApplet.split(options, ','));
+      for (String opt : opts) {
+        if (opt.equals("compact")) {
+          indent = -1;
+        } else if (opt.startsWith("indent=")) {
+          indent = PApplet.parseInt(opt.substring(7), -2);
+          if (indent < -1) {
+            throw new IllegalArgumentException("Could not read a number from " + opt);
+          }
+        } else {
+          System.err.println("Ignoring " + opt);
+        }
+      }
+    }
+    try {
+      Writer writer =
+        new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8), 8192);
+      write(writer, indent);
+      writer.flush();
+      return true;
+
+    } catch (IOException e) {
+      e.printStackTrace();
+      return false;
+    }
+  }
+
+
   // Sends this object and its kids to a Writer with an indent of 2 spaces,
   // including the declaration at the top so that the output will be valid XML.
   public boolean write(PrintWriter output) {
-    output.print(format(2));
+    try {
+      write(output, 2);
+    } catch (IOException e) {
+      // PrintWriter doesn't throw, it sets its error flag instead
+    }
     output.flush();
-    return true;
+    return !output.checkError();
+  }
+
+
+  /**
+   * Stream this node and its children directly from the DOM, without
+   * building the whole document as a String first. An indent of -1 writes
+   * everything on a single line without the XML declaration, otherwise the
+   * declaration is written first, and each level is indented by that many
+   * spaces. Text inside an element that holds only text is written as it
+   * is. Between other elements, whitespace-only text is dropped and other
+   * text is trimmed, since the line breaks (or lack of them) and indent
+   * take its place.
+   *
+   * @nowebref
+   */
+  public void write(Writer output, int indent) throws IOException {
+    String sep = System.getProperty("line.separator");
+    if (indent == -1) {
+      writeNode(output, node, -1, 0, sep);
+
+    } else {
+      output.write(XML_DECLARATION);
+      output.write(sep);
+      writeNode(output, node, indent, 0, sep);
+      output.write(sep);
+    }
+  }
+
+
+  static private final String XML_DECLARATION =
+    "<?xml version=\"1.0\" encoding=\"UTF-8\"?>";
+
+
+  static private void writeNode(Writer output, Node node,
+                                int indent, int depth,
+                                String sep) throws IOException {
+    switch (node.getNodeType()) {
+    case Node.DOCUMENT_NODE:
+    case Node.DOCUMENT_FRAGMENT_NODE:
+      boolean first = true;
+      for (Node kid = node.getFirstChild(); kid != null; kid = kid.getNextSibling()) {
+        if (kid.getNodeType() != Node.DOCUMENT_TYPE_NODE) {
+          if (!first && indent != -1) {
+            output.write(sep);
+          }
+          writeNode(output, kid, indent, depth, sep);
+          first = false;
+        }
+      }
+      break;
+
+    case Node.ELEMENT_NODE:
+      writeElement(output, node, indent, depth, sep);
+      break;
+
+    case Node.TEXT_NODE:
+      writeEscaped(output, node.getNodeValue(), false);
+      break;
+
+    case Node.CDATA_SECTION_NODE:
+      output.write("<![CDATA[");
+      // "]]>" can't appear inside a CDATA section, so split it across two
+      output.write(node.getNodeValue().replace("]]>", "]]]]><![CDATA[>"));
+      output.write("]]>");
+      break;
+
+    case Node.COMMENT_NODE:
+      output.write("<!--");
+      output.write(node.getNodeValue());
+      output.write("-->");
+      break;
+
+    case Node.PROCESSING_INSTRUCTION_NODE:
+      output.write("<?");
+      output.write(node.getNodeName());
+      String data = node.getNodeValue();
+      if (data != null && data.length() != 0) {
+        output.write(' ');
+        output.write(data);
+      }
+      output.write("?>");
+      break;
+
+    case Node.ENTITY_REFERENCE_NODE:
+      output.write('&');
+      output.write(node.getNodeName());
+      output.write(';');
+      break;
+
+    default:
+      // doctype, notations, and entities are not part of the output
+      break;
+    }
+  }
+
+
+  static private void writeElement(Writer output, Node node,
+                                   int indent, int depth,
+                                   String sep) throws IOException {
+    String name = node.getNodeName();
+    output.write('<');
+    output.write(name);
+    NamedNodeMap attrs = node.getAttributes();
+    int attrCount = attrs.getLength();
+    for (int i = 0; i < attrCount; i++) {
+      Node attr = attrs.item(i);
+      output.write(' ');
+      output.write(attr.getNodeName());
+      output.write("=\"");
+      writeEscaped(output, attr.getNodeValue(), true);
+      output.write('"');
+    }
+
+    // Text is written as it is, on the same line as the tags, unless it's
+    // mixed with other kids, in which case the whitespace around it is
+    // replaced by the indent (or by nothing, on a single line).
+    boolean textOnly = true;
+    boolean empty = true;
+    for (Node kid = node.getFirstChild(); kid != null; kid = kid.getNextSibling()) {
+      if (kid.getNodeType() != Node.TEXT_NODE) {
+        textOnly = false;
+      }
+      empty &= isEmptyText(kid);
+    }
+
+    if (empty) {
+      output.write("/>");
+
+    } else if (textOnly) {
+      output.write('>');
+      for (Node kid = node.getFirstChild(); kid != null; kid = kid.getNextSibling()) {
+        writeNode(output, kid, indent, depth + 1, sep);
+      }
+      output.write("</");
+      output.write(name);
+      output.write('>');
+
+    } else {
+      output.write('>');
+      for (Node kid = node.getFirstChild(); kid != null; kid = kid.getNextSibling()) {
+        if (kid.getNodeType() == Node.TEXT_NODE) {
+          String text = kid.getNodeValue().trim();
+          if (text.length() != 0) {
+            writeLine(output, indent, depth + 1, sep);
+            writeEscaped(output, text, false);
+          }
+        } else {
+          writeLine(output, indent, depth + 1, sep);
+          writeNode(output, kid, indent, depth + 1, sep);
+        }
+      }
+      writeLine(output, indent, depth, sep);
+      output.write("</");
+      output.write(name);
+      output.write('>');
+    }
+  }
+
+
+  static private boolean isEmptyText(Node node) {
+    return node.getNodeType() == Node.TEXT_NODE &&
+      node.getNodeValue().length() == 0;
+  }
+
+
+  /** Start a new line at the indent for this depth, unless it's -1. */
+  static private void writeLine(Writer output, int indent, int depth,
+                                String sep) throws IOException {
+    if (indent != -1) {
+      output.write(sep);
+      writeIndent(output, indent * depth);
+    }
+  }
+
+
+  static private void writeIndent(Writer output, int count) throws IOException {
+    for (int i = 0; i < count; i++) {
+      output.write(' ');
+    }
+  }
+
+
+  /**
+   * Write text with markup characters replaced by entities. Runs of plain
+   * characters are written in one go, rather than char by char.
+   */
+  static private void writeEscaped(Writer output, String text,
+                                   boolean attribute) throws IOException {
+    int start = 0;
+    int length = text.length();
+    for (int i = 0; i < length; i++) {
+      String entity;
+      char c = text.charAt(i);
+      switch (c) {
+      case '&': entity = "&amp;"; break;
+      case '<': entity = "&lt;"; break;
+      case '>': entity = "&gt;"; break;
+      case '\r': entity = "&#13;"; break;
+      case '"': entity = attribute ? "&quot;" : null; break;
+      case '\n': entity = attribute ? "&#10;" : null; break;
+      case '\t': entity = attribute ? "&#9;" : null; break;
+      default: entity = null;
+      }
+      if (entity != null) {
+        if (i > start) {
+          output.write(text, start, i - start);
+        }
+        output.write(entity);
+        start = i + 1;
+      }
+    }
+    if (start < length) {
+      output.write(text, start, length - start);
+    }
   }
 
 
@@ -1005,129 +1266,12 @@ public class XML implements Serializable {
    */
   public String format(int indent) {
     try {
-      // entities = doctype.getEntities()
-      boolean useIndentAmount = false;
-      TransformerFactory factory = TransformerFactory.newInstance();
-      if (indent != -1) {
-        try {
-          factory.setAttribute("indent-number", indent);
-        } catch (IllegalArgumentException e) {
-          useIndentAmount = true;
-        }
-      }
-      Transformer transformer = factory.newTransformer();
+      StringWriter writer = new StringWriter();
+      write(writer, indent);
+      return writer.toString();
 
-      // Add the XML declaration at the top if this node is the root and we're
-      // not writing to a single line (indent = -1 means single line).
-      if (indent == -1 || parent == null) {
-        transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
-      } else {
-        transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "no");
-      }
-
-//      transformer.setOutputProperty(OutputKeys.DOCTYPE_SYSTEM, "sample.dtd");
-
-      transformer.setOutputProperty(OutputKeys.METHOD, "xml");
-
-//      transformer.setOutputProperty(OutputKeys.CDATA_SECTION_ELEMENTS, "yes");  // huh?
-
-//      transformer.setOutputProperty(OutputKeys.DOCTYPE_PUBLIC,
-//          "-//W3C//DTD XHTML 1.0 Transitional//EN");
-//      transformer.setOutputProperty(OutputKeys.DOCTYPE_SYSTEM,
-//          "http://www.w3.org/TR/xhtml1/DTD/xhtml1-transitional.dtd");
-
-      // For Android, because (at least 2.3.3) doesn't like indent-number
-      if (useIndentAmount) {
-        transformer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", String.valueOf(indent));
-      }
-
-//      transformer.setOutputProperty(OutputKeys.ENCODING,"ISO-8859-1");
-//      transformer.setOutputProperty(OutputKeys.ENCODING,"UTF8");
-      transformer.setOutputProperty(OutputKeys.ENCODING,"UTF-8");
-//      transformer.setOutputProperty(OutputKeys.CDATA_SECTION_ELEMENTS
-
-      // Always indent, otherwise the XML declaration will just be jammed
-      // onto the first line with the XML code as well.
-      transformer.setOutputProperty(OutputKeys.INDENT, "yes");
-
-//      Properties p = transformer.getOutputProperties();
-//      for (Object key : p.keySet()) {
-//        System.out.println(key + " -> " + p.get(key));
-//      }
-
-      // If you smell something, that's because this code stinks. No matter
-      // the settings of the Transformer object, if the XML document already
-      // has whitespace elements, it won't bother re-indenting/re-formatting.
-      // So instead, transform the data once into a single line string.
-      // If indent is -1, then we're done. Otherwise re-run and the settings
-      // of the factory will kick in. If you know a better way to do this,
-      // please contribute. I've wasted too much of my Sunday on it. But at
-      // least the Giants are getting blown out by the Falcons.
-
-      final String decl = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>";
-      final String sep = System.getProperty("line.separator");
-
-      StringWriter tempWriter = new StringWriter();
-      StreamResult tempResult = new StreamResult(tempWriter);
-      transformer.transform(new DOMSource(node), tempResult);
-      String[] tempLines = PApplet.split(tempWriter.toString(), sep);
-//      PApplet.println(tempLines);
-      if (tempLines[0].startsWith("<?xml")) {
-        // Remove XML declaration from the top before slamming into one line
-        int declEnd = tempLines[0].indexOf("?>") + 2;
-        //if (tempLines[0].length() == decl.length()) {
-        if (tempLines[0].length() == declEnd) {
-          // If it's all the XML declaration, remove it
-//          PApplet.println("removing first line");
-          tempLines = PApplet.subset(tempLines, 1);
-        } else {
-//          PApplet.println("removing part of first line");
-          // If the first node has been moved to this line, be more careful
-          //tempLines[0] = tempLines[0].substring(decl.length());
-          tempLines[0] = tempLines[0].substring(declEnd);
-        }
-      }
-      String singleLine = PApplet.join(PApplet.trim(tempLines), "");
-      if (indent == -1) {
-        return singleLine;
-      }
-
-      // Might just be whitespace, which won't be valid XML for parsing below.
-      // https://github.com/processing/processing/issues/1796
-      // Since indent is not -1, that means they want valid XML,
-      // so we'll give them the single line plus the decl... Lame? sure.
-      if (singleLine.trim().length() == 0) {
-        // You want whitespace? I've got your whitespace right here.
-        return decl + sep + singleLine;
-      }
-
-      // Since the indent is not -1, bring back the XML declaration
-      //transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "no");
-
-      StringWriter stringWriter = new StringWriter();
-      StreamResult xmlOutput = new StreamResult(stringWriter);
-//      DOMSource source = new DOMSource(node);
-      Source source = new StreamSource(new StringReader(singleLine));
-      transformer.transform(source, xmlOutput);
-      String outgoing = stringWriter.toString();
-
-      // Add the XML declaration to the top if it's not there already
-      if (outgoing.startsWith(decl)) {
-        int declen = decl.length();
-        int seplen = sep.length();
-        if (outgoing.length() > declen + seplen &&
-            !outgoing.substring(declen, declen + seplen).equals(sep)) {
-          // make sure there's a line break between the XML decl and the code
-          return outgoing.substring(0, decl.length()) +
-            sep + outgoing.substring(decl.length());
-        }
-        return outgoing;
-      } else {
-        return decl + sep + outgoing;
-      }
-
-    } catch (Exception e) {
-      e.printStackTrace();
+    } catch (IOException e) {
+      e.printStackTrace();  // not thrown by StringWriter
     }
     return null;
   }
@@ -4641,6 +4641,68 @@ public class PGraphicsOpenGL extends PGraphics {
   }
 
 
+  @Override
+  public float[] screenXY(float[] xy, float[] out) {
+    if (out == null) {
+      out = new float[xy.length];
+    }
+    int count = checkScreenArrays(xy, out, 2);
+    PMatrix3D m = screenMatrix();
+    for (int i = 0; i < count*2; i += 2) {
+      float x = xy[i], y = xy[i+1];
+      float ox = m.m00*x + m.m01*y + m.m03;
+      float oy = m.m10*x + m.m11*y + m.m13;
+      float ow = m.m30*x + m.m31*y + m.m33;
+      if (nonZero(ow)) {
+        ox /= ow;
+        oy /= ow;
+      }
+      out[i] = width * (1 + ox) / 2.0f;
+      out[i+1] = height - height * (1 + oy) / 2.0f;
+    }
+    return out;
+  }
+
+
+  @Override
+  public float[] screenXYZ(float[] xyz, float[] out) {
+    if (out == null) {
+      out = new float[xyz.length];
+    }
+    int count = checkScreenArrays(xyz, out, 3);
+    PMatrix3D m = screenMatrix();
+    for (int i = 0; i < count*3; i += 3) {
+      float x = xyz[i], y = xyz[i+1], z = xyz[i+2];
+      float ox = m.m00*x + m.m01*y + m.m02*z + m.m03;
+      float oy = m.m10*x + m.m11*y + m.m12*z + m.m13;
+      float oz = m.m20*x + m.m21*y + m.m22*z + m.m23;
+      float ow = m.m30*x + m.m31*y + m.m32*z + m.m33;
+      if (nonZero(ow)) {
+        ox /= ow;
+        oy /= ow;
+        oz /= ow;
+      }
+      out[i] = width * (1 + ox) / 2.0f;
+      out[i+1] = height - height * (1 + oy) / 2.0f;
+      out[i+2] = (oz + 1) / 2.0f;
+    }
+    return out;
+  }
+
+
+  /**
+   * The projection and modelview in a single matrix, so a batch of points
+   * takes one multiply each. After the divide (skipped for a w of about 0,
+   * same as screenX() and the others), the results are mapped from -1..1
+   * to the screen the same way as well.
+   */
+  protected PMatrix3D screenMatrix() {
+    PMatrix3D m = new PMatrix3D(projection);
+    m.apply(modelview);
+    return m;
+  }
+
+
   protected float screenXImpl(float x, float y, float z) {
     float ax =
       modelview.m00*x + modelview.m01*y + modelview.m02*z + modelview.m03;
@@ -5550,7 +5612,16 @@ public class PGraphicsOpenGL extends PGraphics {
     int sourceOffset = sourceY * sourceImage.pixelWidth + sourceX;
     int targetOffset = targetY * pixelWidth + targetX;
     for (int y = sourceY; y < sourceY + sourceHeight; y++) {
-      System.arraycopy(sourceImage.pixels, sourceOffset, pixels, targetOffset, sourceWidth);
+      if (sourceImage.format == GRAY8) {
+        // pixels[] of a GRAY8 image may not exist, so expand the bytes
+        byte[] gray = sourceImage.bytePixels;
+        for (int x = 0; x < sourceWidth; x++) {
+          pixels[targetOffset + x] =
+            0xff000000 | (gray[sourceOffset + x] & 0xff) * 0x010101;
+        }
+      } else {
+        System.arraycopy(sourceImage.pixels, sourceOffset, pixels, targetOffset, sourceWidth);
+      }
       sourceOffset += sourceImage.pixelWidth;
       targetOffset += pixelWidth;
     }
@@ -6431,7 +6502,8 @@ public class PGraphicsOpenGL extends PGraphics {
       if (tex != null) {
         boolean dispose = img.pixels == null;
         img.loadPixels();
-        tex.set(img.pixels, img.format);
+        // GRAY8 images are loaded into pixels[] as opaque RGB
+        tex.set(img.pixels, img.format == GRAY8 ? RGB : img.format);
         img.setModified();
         if (dispose) {
           // We only used the pixels to load the image into the texture and the user did not request
@@ -6535,7 +6607,16 @@ public class PGraphicsOpenGL extends PGraphics {
         int y = img.getModifiedY1();
         int w = img.getModifiedX2() - x;
         int h = img.getModifiedY2() - y;
-        tex.set(img.pixels, x, y, w, h, img.format);
+        if (img.format == GRAY8) {
+          boolean dispose = img.pixels == null;
+          img.loadPixels();
+          tex.set(img.pixels, x, y, w, h, RGB);
+          if (dispose) {
+            img.pixels = null;
+          }
+        } else {
+          tex.set(img.pixels, x, y, w, h, img.format);
+        }
       }
     }
     img.setModified(false);
@@ -6580,6 +6661,12 @@ public class PGraphicsOpenGL extends PGraphics {
   }
 
 
+  @Override
+  public void resize(int wide, int high, int filter) {
+    PGraphics.showMethodWarning("resize");
+  }
+
+
   //////////////////////////////////////////////////////////////
 
   // INITIALIZATION ROUTINES
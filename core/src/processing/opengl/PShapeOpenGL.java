@@ -2753,6 +2753,16 @@ public class PShapeOpenGL extends PShape {
   }
 
 
+  /**
+   * contains() uses the tessellation input rather than the vertices that
+   * the bounds are worked out from, so there are no bounds to skip with.
+   */
+  @Override
+  protected float[] getContainsBounds() {
+    return null;
+  }
+
+
   ///////////////////////////////////////////////////////////
 
   //
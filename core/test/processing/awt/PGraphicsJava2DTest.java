@@ -0,0 +1,142 @@
+package processing.awt;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import processing.core.PConstants;
+import processing.core.PImage;
+
+
+public class PGraphicsJava2DTest {
+
+  static PGraphicsJava2D create() {
+    PGraphicsJava2D pg = new PGraphicsJava2D();
+    pg.setSize(20, 10);
+    return pg;
+  }
+
+
+  @Test
+  public void testSharedPixels() {
+    PGraphicsJava2D pg = create();
+    pg.beginDraw();
+    pg.background(0xff112233);
+    pg.loadPixels();
+    int[] pixels = pg.pixels;
+    Assert.assertEquals(0xff112233, pixels[0]);
+
+    // drawing shows up without another loadPixels()
+    pg.noStroke();
+    pg.fill(0xffff0000);
+    pg.rect(0, 0, 5, 5);
+    Assert.assertEquals(0xffff0000, pixels[0]);
+
+    // and writing to pixels[] shows up without updatePixels()
+    pixels[21] = 0xff00ff00;
+    Assert.assertEquals(0xff00ff00, pg.get(1, 1));
+    pg.endDraw();
+    pg.loadPixels();
+    Assert.assertSame(pixels, pg.pixels);
+  }
+
+
+  @Test
+  public void testDisabled() {
+    PGraphicsJava2D pg = create();
+    pg.beginDraw();
+    pg.background(0xff112233);
+    pg.endDraw();
+    pg.hint(PConstants.DISABLE_SHARED_PIXELS);
+
+    pg.beginDraw();  // switches over, keeping what was drawn
+    pg.loadPixels();
+    int[] pixels = pg.pixels;
+    Assert.assertEquals(0xff112233, pixels[5]);
+    pixels[5] = 0xff00ff00;
+    Assert.assertEquals(0xff112233, pg.get(5, 0));
+    pg.updatePixels();
+    Assert.assertEquals(0xff00ff00, pg.get(5, 0));
+
+    pg.noStroke();
+    pg.fill(0xffff0000);
+    pg.rect(0, 0, 5, 5);
+    Assert.assertEquals(0xff112233, pixels[0]);  // a copy, not the image
+    pg.endDraw();
+    Assert.assertEquals(0xffff0000, pg.pixels[0]);
+  }
+
+
+  @Test
+  public void testImageCache() {
+    PImage image = new PImage(8, 8, PConstants.ARGB);
+    for (int i = 0; i < image.pixels.length; i++) {
+      image.pixels[i] = 0xff808080;
+    }
+    PGraphicsJava2D pg = create();
+    pg.beginDraw();
+    for (int i = 0; i < 3; i++) {
+      pg.tint(255, 0, 0);
+      pg.image(image, 0, 0);
+      pg.tint(0, 0, 255);
+      pg.image(image, 10, 0);
+    }
+    // both tint colors stay cached
+    Assert.assertEquals(2, pg.imageCacheMisses());
+    Assert.assertEquals(4, pg.imageCacheHits());
+
+    // changing one pixel only redoes that pixel, for each tint
+    pg.resetImageCacheCounts();
+    image.set(3, 4, 0xffffffff);
+    pg.tint(255, 0, 0);
+    pg.image(image, 0, 0);
+    pg.tint(0, 0, 255);
+    pg.image(image, 10, 0);
+    Assert.assertEquals(2, pg.imageCacheUpdates());
+    Assert.assertEquals(2, pg.imageCachePixels());
+    pg.endDraw();
+
+    Assert.assertEquals(0xfff00000, pg.get(3, 4) & 0xfff0f0f0);
+    Assert.assertEquals(0xff0000f0, pg.get(13, 4) & 0xfff0f0f0);
+    Assert.assertEquals(0xff700000, pg.get(2, 4) & 0xfff0f0f0);
+    Assert.assertEquals(0xff000070, pg.get(12, 4) & 0xfff0f0f0);
+  }
+
+
+  @Test
+  public void testScreenXY() {
+    PGraphicsJava2D pg = create();
+    pg.beginDraw();
+    pg.translate(3, 4);
+    pg.rotate(0.5f);
+    pg.scale(2);
+    float[] xy = { 0, 0, 1, 2, -3.5f, 7 };
+    float[] out = pg.screenXY(xy, null);
+    for (int i = 0; i < xy.length; i += 2) {
+      Assert.assertEquals(pg.screenX(xy[i], xy[i+1]), out[i], 1e-5);
+      Assert.assertEquals(pg.screenY(xy[i], xy[i+1]), out[i+1], 1e-5);
+    }
+    pg.endDraw();
+  }
+
+
+  @Test
+  public void testGray8() {
+    PImage gray = new PImage(20, 10, PConstants.GRAY8);
+    for (int i = 0; i < gray.bytePixels.length; i++) {
+      gray.bytePixels[i] = (byte) (i * 3);
+    }
+    PGraphicsJava2D pg = create();
+    pg.beginDraw();
+    pg.background(gray);
+    Assert.assertEquals(0xff999999, pg.get(11, 2));  // 51 * 3
+
+    pg.background(0xff112233);
+    pg.set(5, 5, gray);
+    Assert.assertEquals(0xff112233, pg.get(4, 5));
+    Assert.assertEquals(0xff000000, pg.get(5, 5));
+    Assert.assertEquals(0xff030303, pg.get(6, 5));
+    Assert.assertEquals(0xff3c3c3c, pg.get(5, 6));  // 20 * 3
+    pg.endDraw();
+    Assert.assertNull(gray.pixels);
+  }
+}
@@ -0,0 +1,164 @@
+package processing.core;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import processing.data.IntList;
+import processing.data.StringList;
+
+
+public class PAppletStringsTest {
+
+  static final String[] FLOATS = {
+    "0", "-0", "+0", "0.0", "-0.0", "1", "-1", "12.5", ".5", "5.", "-.25",
+    "  3.25\t", "\n-7 ", "1e10", "1E-10", "2.5e+3", "6.02e23", "1.6e-19",
+    "3.4028235e38", "3.4028236e38", "1e39", "1.4e-45", "1e-46", "1.17549435e-38",
+    "0.1", "0.2", "0.3", "1.00000005960464477539", "16777217", "16777219",
+    "33554434", "9007199254740993", "123456789012345678901234567890",
+    "0.000000000000000000000000000001", "1f", "2.5F", "3d", "4D",
+    "NaN", "-Infinity", "Infinity", "0x1p3", "0x1.8p1",
+    "", " ", ".", "-", "+", "e5", "1e", "1e+", "1.2.3", "1,5", "abc", "1 2",
+    "--1", "1e5.5", "1ee5", "1e99999999999", "1e-99999999999", "1f5"
+  };
+
+
+  static float expected(String s, float otherwise) {
+    try {
+      return Float.parseFloat(s);
+    } catch (NumberFormatException e) {
+      return otherwise;
+    }
+  }
+
+
+  static void checkFloat(String s) {
+    float otherwise = -12345;
+    float actual = PApplet.parseFloat("ab" + s + "cd", 2, s.length() + 2, otherwise);
+    Assert.assertEquals(s, Float.floatToIntBits(expected(s, otherwise)),
+                        Float.floatToIntBits(actual));
+    Assert.assertEquals(s, Float.floatToIntBits(expected(s, otherwise)),
+                        Float.floatToIntBits(PApplet.parseFloat(s, otherwise)));
+  }
+
+
+  @Test
+  public void testParseFloat() {
+    for (String s : FLOATS) {
+      checkFloat(s);
+    }
+    Random random = new Random(3);
+    for (int i = 0; i < 200000; i++) {
+      float f = Float.intBitsToFloat(random.nextInt());
+      checkFloat(String.valueOf(f));
+      // decimals of all lengths and sizes, including ones halfway between
+      checkFloat(random.nextLong() % 100000000L + "." +
+                 Math.abs(random.nextLong() % 1000000000L) +
+                 "e" + (random.nextInt(90) - 45));
+      if (!Float.isNaN(f) && !Float.isInfinite(f)) {
+        checkFloat(new java.math.BigDecimal(f).toPlainString());
+      }
+      checkFloat(String.valueOf(random.nextInt(1 << 26)) + ".5");
+    }
+    Assert.assertTrue(Float.isNaN(PApplet.parseFloat("x", 0, 1)));
+    Assert.assertArrayEquals(new float[] { 1.5f, -2, 7 },
+                             PApplet.parseFloat(new String[] { "1.5", "-2", "a" }, 7), 0);
+  }
+
+
+  static void checkInt(String s) {
+    int otherwise = -12345;
+    int expected;
+    try {
+      int dot = s.indexOf('.');
+      expected = Integer.parseInt(dot == -1 ? s : s.substring(0, dot));
+    } catch (NumberFormatException e) {
+      expected = otherwise;
+    }
+    Assert.assertEquals(s, expected, PApplet.parseInt(s, otherwise));
+    Assert.assertEquals(s, expected,
+                        PApplet.parseInt("(" + s + ")", 1, s.length() + 1, otherwise));
+  }
+
+
+  @Test
+  public void testParseInt() {
+    String[] values = {
+      "0", "-0", "+5", "42", "-42", "12.9", "-3.5", "2147483647", "2147483648",
+      "-2147483648", "-2147483649", "99999999999", "", "-", "+", ".5", " 1",
+      "1 ", "1a", "a", "--1", "٣٤"
+    };
+    for (String s : values) {
+      checkInt(s);
+    }
+    Random random = new Random(4);
+    for (int i = 0; i < 10000; i++) {
+      checkInt(String.valueOf(random.nextInt()));
+      checkInt(String.valueOf(random.nextLong() >> random.nextInt(64)));
+    }
+    Assert.assertArrayEquals(new int[] { 3, -1, -1, -1 },
+                             PApplet.parseInt(new String[] { "3", "4.5", "x", null }, -1));
+  }
+
+
+  @Test
+  public void testSplit() {
+    String[] lines = {
+      "a,b,c", ",a,,b,", "", ",", "abc", "1,2.5,-3"
+    };
+    StringList list = new StringList();
+    IntList ranges = new IntList();
+    for (String line : lines) {
+      String[] expected = line.split(",", -1);
+      Assert.assertArrayEquals(expected, PApplet.split(line, ','));
+      Assert.assertArrayEquals(expected, PApplet.split(line, ',', list).array());
+      PApplet.splitRanges(line, ',', ranges);
+      Assert.assertEquals(expected.length * 2, ranges.size());
+      for (int i = 0; i < expected.length; i++) {
+        Assert.assertEquals(expected[i],
+                            line.substring(ranges.get(i*2), ranges.get(i*2 + 1)));
+      }
+    }
+    Assert.assertNull(PApplet.split((String) null, ','));
+
+    StringBuilder sb = new StringBuilder("3, 4.5 ,-6");
+    PApplet.splitRanges(sb, ',', ranges);
+    float total = 0;
+    for (int i = 0; i < ranges.size(); i += 2) {
+      total += PApplet.parseFloat(sb, ranges.get(i), ranges.get(i+1), 0);
+    }
+    Assert.assertEquals(1.5f, total, 0);
+  }
+
+
+  @Test
+  public void testSplitTokens() {
+    String[] lines = {
+      "a b  c", "  a\tb ", "", "   ", "abc", "1, 2,3"
+    };
+    String delim = " \t,";
+    StringList list = new StringList();
+    IntList ranges = new IntList();
+    for (String line : lines) {
+      java.util.StringTokenizer toker = new java.util.StringTokenizer(line, delim);
+      String[] expected = new String[toker.countTokens()];
+      for (int i = 0; i < expected.length; i++) {
+        expected[i] = toker.nextToken();
+      }
+      Assert.assertArrayEquals(expected, PApplet.splitTokens(line, delim));
+      Assert.assertArrayEquals(expected, PApplet.splitTokens(line, delim, list).array());
+      PApplet.splitTokenRanges(line, delim, ranges);
+      Assert.assertEquals(expected.length * 2, ranges.size());
+    }
+  }
+
+
+  @Test
+  public void testTrim() {
+    String[] array = { " a ", null, " b\t" };
+    Assert.assertArrayEquals(new String[] { "a", null, "b" }, PApplet.trim(array));
+    Assert.assertSame(array, PApplet.trim(array, array));
+    Assert.assertArrayEquals(new String[] { "a", null, "b" }, array);
+  }
+}
@@ -0,0 +1,93 @@
+package processing.core;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+
+public class PImageBlendTest {
+
+  static final int[] MODES = {
+    PConstants.REPLACE, PConstants.BLEND, PConstants.ADD, PConstants.SUBTRACT,
+    PConstants.LIGHTEST, PConstants.DARKEST, PConstants.DIFFERENCE,
+    PConstants.EXCLUSION, PConstants.MULTIPLY, PConstants.SCREEN,
+    PConstants.OVERLAY, PConstants.HARD_LIGHT, PConstants.SOFT_LIGHT,
+    PConstants.DODGE, PConstants.BURN
+  };
+
+
+  @After
+  public void restorePool() {
+    PImage.filterPool = ForkJoinPool.commonPool();
+  }
+
+
+  static PImage noise(int w, int h, long seed) {
+    PImage image = new PImage(w, h, PConstants.ARGB);
+    Random random = new Random(seed);
+    for (int i = 0; i < image.pixels.length; i++) {
+      image.pixels[i] = random.nextInt();
+    }
+    return image;
+  }
+
+
+  @Test
+  public void testUnscaledMatchesBlendColor() {
+    PImage src = noise(64, 48, 1);
+    for (int mode : MODES) {
+      PImage dst = noise(80, 60, 2);
+      PImage before = dst.copy();
+      dst.blend(src, 4, 3, 40, 30, 10, 20, 40, 30, mode);
+      for (int y = 0; y < 60; y++) {
+        for (int x = 0; x < 80; x++) {
+          int expected = before.pixels[y*80 + x];
+          if (x >= 10 && x < 50 && y >= 20 && y < 50) {
+            int s = src.pixels[(y - 20 + 3)*64 + (x - 10 + 4)];
+            expected = PImage.blendColor(expected, s, mode);
+          }
+          Assert.assertEquals(expected, dst.pixels[y*80 + x]);
+        }
+      }
+    }
+  }
+
+
+  @Test
+  public void testNegativeDestination() {
+    // parts of the destination that are off the image are clipped, and
+    // the source offset still has to be taken into account
+    PImage src = noise(20, 20, 3);
+    PImage dst = new PImage(10, 10, PConstants.ARGB);
+    dst.copy(src, 5, 6, 10, 10, -2, -3, 10, 10);
+    Assert.assertEquals(src.pixels[(6 + 3)*20 + (5 + 2)], dst.pixels[0]);
+    Assert.assertEquals(src.pixels[(6 + 3 + 6)*20 + (5 + 2 + 7)], dst.pixels[6*10 + 7]);
+  }
+
+
+  @Test
+  public void testParallel() {
+    PImage src = noise(300, 260, 4);
+    ForkJoinPool single = new ForkJoinPool(1);
+    ForkJoinPool several = new ForkJoinPool(4);
+    try {
+      for (int mode : MODES) {
+        PImage serial = noise(400, 300, mode);
+        PImage parallel = serial.copy();
+        PImage.filterPool = single;
+        serial.blend(src, 0, 0, 300, 260, -5, 7, 390, 290, mode);
+        serial.blend(src, 0, 0, 300, 260, 50, 20, 300, 260, mode);
+        PImage.filterPool = several;
+        parallel.blend(src, 0, 0, 300, 260, -5, 7, 390, 290, mode);
+        parallel.blend(src, 0, 0, 300, 260, 50, 20, 300, 260, mode);
+        Assert.assertArrayEquals(serial.pixels, parallel.pixels);
+      }
+    } finally {
+      single.shutdown();
+      several.shutdown();
+    }
+  }
+}
@@ -0,0 +1,98 @@
+package processing.core;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+
+
+public class PImageCacheTest {
+
+  PApplet applet;
+  File file;
+
+
+  @Before
+  public void setUp() throws Exception {
+    applet = new PApplet();
+    applet.sketchPath();  // loading files needs a sketch path
+    file = File.createTempFile("cached", ".png");
+    file.deleteOnExit();
+    writeImage(0xff336699);
+  }
+
+
+  void writeImage(int color) {
+    PImage image = new PImage(8, 6, PConstants.RGB);
+    for (int i = 0; i < image.pixels.length; i++) {
+      image.pixels[i] = color;
+    }
+    image.save(file.getAbsolutePath());
+  }
+
+
+  @Test
+  public void testHitsAndCopies() {
+    PImageCache cache = applet.imageCache(1 << 20);
+    PImage first = applet.loadImage(file.getAbsolutePath());
+    PImage second = applet.loadImage(file.getAbsolutePath());
+    Assert.assertEquals(1, cache.misses());
+    Assert.assertEquals(1, cache.hits());
+    Assert.assertEquals(8 * 6 * 4, cache.bytes());
+
+    Assert.assertNotSame(first, second);
+    Assert.assertArrayEquals(first.pixels, second.pixels);
+    first.pixels[0] = 0;  // changing a copy doesn't change the cache
+    PImage third = applet.loadImage(file.getAbsolutePath());
+    Assert.assertEquals(0xff336699, third.pixels[0]);
+
+    // requestImage() is answered right away
+    PImage requested = applet.requestImage(file.getAbsolutePath());
+    Assert.assertEquals(8, requested.width);
+    Assert.assertEquals(3, cache.hits());
+  }
+
+
+  @Test
+  public void testShared() {
+    applet.imageCache(1 << 20, true);
+    PImage first = applet.loadImage(file.getAbsolutePath());
+    Assert.assertSame(first, applet.loadImage(file.getAbsolutePath()));
+  }
+
+
+  @Test
+  public void testModified() {
+    PImageCache cache = applet.imageCache(1 << 20);
+    applet.loadImage(file.getAbsolutePath());
+    writeImage(0xff000000);
+    file.setLastModified(file.lastModified() + 5000);
+    PImage image = applet.loadImage(file.getAbsolutePath());
+    Assert.assertEquals(0xff000000, image.pixels[0]);
+    Assert.assertEquals(2, cache.misses());
+    Assert.assertEquals(1, cache.size());
+  }
+
+
+  @Test
+  public void testBudget() {
+    PImageCache cache = new PImageCache(1000, false);
+    cache.put("a", 0, new PImage(10, 10));  // 400 bytes
+    cache.put("b", 0, new PImage(10, 10));
+    Assert.assertNotNull(cache.get("a", 0));  // now b is the oldest
+    cache.put("c", 0, new PImage(10, 10));
+    Assert.assertNull(cache.get("b", 0));
+    Assert.assertNotNull(cache.get("a", 0));
+    Assert.assertNotNull(cache.get("c", 0));
+    Assert.assertEquals(800, cache.bytes());
+
+    // too big to keep at all
+    cache.put("d", 0, new PImage(20, 20));
+    Assert.assertNull(cache.get("d", 0));
+    Assert.assertEquals(2, cache.size());
+
+    applet.imageCache(0);
+    Assert.assertNull(applet.imageCache);
+  }
+}
@@ -0,0 +1,120 @@
+package processing.core;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+
+public class PImageFilterTest {
+
+  // odd sizes, so that the bands don't split evenly
+  static final int WIDTH = 331;
+  static final int HEIGHT = 257;
+
+
+  @After
+  public void restorePool() {
+    PImage.filterPool = ForkJoinPool.commonPool();
+  }
+
+
+  static PImage noise(int format, long seed) {
+    PImage image = new PImage(WIDTH, HEIGHT, format);
+    Random random = new Random(seed);
+    for (int i = 0; i < image.pixels.length; i++) {
+      image.pixels[i] = (format == PConstants.ALPHA) ?
+        random.nextInt(256) : random.nextInt();
+    }
+    return image;
+  }
+
+
+  /** Run a filter once on a single thread and once on four, and compare. */
+  static void assertSameInParallel(int format, int kind, float param) {
+    PImage serial = noise(format, kind);
+    PImage parallel = noise(format, kind);
+
+    ForkJoinPool single = new ForkJoinPool(1);
+    ForkJoinPool several = new ForkJoinPool(4);
+    try {
+      PImage.filterPool = single;
+      if (Float.isNaN(param)) serial.filter(kind); else serial.filter(kind, param);
+      PImage.filterPool = several;
+      if (Float.isNaN(param)) parallel.filter(kind); else parallel.filter(kind, param);
+    } finally {
+      single.shutdown();
+      several.shutdown();
+    }
+    Assert.assertArrayEquals(serial.pixels, parallel.pixels);
+    Assert.assertEquals(serial.format, parallel.format);
+  }
+
+
+  @Test
+  public void testBlur() {
+    for (int format : new int[] { PConstants.RGB, PConstants.ARGB, PConstants.ALPHA }) {
+      assertSameInParallel(format, PConstants.BLUR, 1);
+      assertSameInParallel(format, PConstants.BLUR, 6);
+      assertSameInParallel(format, PConstants.FAST_BLUR, 1);
+      assertSameInParallel(format, PConstants.FAST_BLUR, 20);
+    }
+  }
+
+
+  @Test
+  public void testFastBlur() {
+    // a flat image has to stay exactly the same, at any radius
+    PImage flat = new PImage(40, 30, PConstants.ARGB);
+    Arrays.fill(flat.pixels, 0x80336699);
+    flat.filter(PConstants.FAST_BLUR, 500);
+    for (int pixel : flat.pixels) {
+      Assert.assertEquals(0x80336699, pixel);
+    }
+
+    // a single white pixel spreads out evenly, and keeps most of its energy
+    PImage dot = new PImage(61, 61, PConstants.RGB);
+    Arrays.fill(dot.pixels, 0xff000000);
+    dot.pixels[30*61 + 30] = 0xffffffff;
+    dot.filter(PConstants.FAST_BLUR, 1);
+    int center = dot.pixels[30*61 + 30] & 0xff;
+    Assert.assertTrue(center > 0 && center < 255);
+    Assert.assertEquals(dot.pixels[30*61 + 28], dot.pixels[28*61 + 30]);
+    Assert.assertEquals(dot.pixels[30*61 + 28], dot.pixels[30*61 + 32]);
+    Assert.assertEquals(0xff000000, dot.pixels[0]);
+  }
+
+
+  @Test
+  public void testBoxRadii() {
+    // three boxes of radius r have a variance of 3 * ((2r+1)^2 - 1) / 12
+    for (float sigma : new float[] { 1, 2.5f, 10, 300 }) {
+      double variance = 0;
+      for (int r : PImage.boxRadii(sigma, 3)) {
+        int width = 2*r + 1;
+        variance += (width*width - 1) / 12.0;
+      }
+      Assert.assertEquals(sigma, Math.sqrt(variance), sigma * 0.1 + 0.5);
+    }
+  }
+
+
+  @Test
+  public void testPointFilters() {
+    assertSameInParallel(PConstants.ARGB, PConstants.GRAY, Float.NaN);
+    assertSameInParallel(PConstants.ALPHA, PConstants.GRAY, Float.NaN);
+    assertSameInParallel(PConstants.ARGB, PConstants.INVERT, Float.NaN);
+    assertSameInParallel(PConstants.ARGB, PConstants.THRESHOLD, 0.3f);
+    assertSameInParallel(PConstants.RGB, PConstants.POSTERIZE, 4);
+  }
+
+
+  @Test
+  public void testErodeDilate() {
+    assertSameInParallel(PConstants.RGB, PConstants.ERODE, Float.NaN);
+    assertSameInParallel(PConstants.RGB, PConstants.DILATE, Float.NaN);
+  }
+}
@@ -0,0 +1,197 @@
+package processing.core;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+import processing.awt.PGraphicsJava2D;
+
+
+public class PImageGrayTest {
+
+  static final int W = 61;
+  static final int H = 47;
+
+
+  /** The same random gray values, as an RGB image and a GRAY8 image. */
+  static PImage[] grayPair(long seed) {
+    Random random = new Random(seed);
+    PImage rgb = new PImage(W, H, PConstants.RGB);
+    PImage gray = new PImage(W, H, PConstants.GRAY8);
+    for (int i = 0; i < W * H; i++) {
+      int v = random.nextInt(256);
+      rgb.pixels[i] = 0xff000000 | v << 16 | v << 8 | v;
+      gray.bytePixels[i] = (byte) v;
+    }
+    return new PImage[] { rgb, gray };
+  }
+
+
+  static void assertSameImage(PImage expected, PImage actual) {
+    Assert.assertEquals(expected.pixelWidth, actual.pixelWidth);
+    Assert.assertEquals(expected.pixelHeight, actual.pixelHeight);
+    for (int y = 0; y < expected.pixelHeight; y++) {
+      for (int x = 0; x < expected.pixelWidth; x++) {
+        Assert.assertEquals("at " + x + ", " + y,
+                            expected.get(x, y), actual.get(x, y));
+      }
+    }
+  }
+
+
+  @Test
+  public void testStorage() {
+    PImage image = new PImage(W, H, PConstants.GRAY8);
+    Assert.assertNull(image.pixels);
+    Assert.assertEquals(W * H, image.bytePixels.length);
+
+    image.set(3, 4, 0xff336699);
+    int lum = (77*0x33 + 151*0x66 + 28*0x99) >> 8;
+    Assert.assertEquals(lum, image.bytePixels[4*W + 3] & 0xff);
+    Assert.assertEquals(0xff000000 | lum * 0x010101, image.get(3, 4));
+    Assert.assertNull(image.pixels);
+  }
+
+
+  @Test
+  public void testLoadAndUpdatePixels() {
+    PImage image = grayPair(1)[1];
+    byte[] before = image.bytePixels.clone();
+    image.loadPixels();
+    for (int i = 0; i < before.length; i++) {
+      Assert.assertEquals(0xff000000 | (before[i] & 0xff) * 0x010101,
+                          image.pixels[i]);
+    }
+
+    image.pixels[5] = 0xffffffff;
+    Assert.assertEquals(before[5], image.bytePixels[5]);  // not until update
+    image.updatePixels();
+    Assert.assertEquals((byte) 255, image.bytePixels[5]);
+
+    // set() has to change both copies, or updatePixels() would undo it
+    image.set(6, 0, 0xff000000);
+    image.updatePixels();
+    Assert.assertEquals(0, image.bytePixels[6]);
+  }
+
+
+  @Test
+  public void testFiltersMatchRGB() {
+    int[] kinds = {
+      PConstants.GRAY, PConstants.INVERT, PConstants.OPAQUE,
+      PConstants.THRESHOLD, PConstants.ERODE, PConstants.DILATE,
+      PConstants.BLUR, PConstants.FAST_BLUR
+    };
+    for (int kind : kinds) {
+      PImage[] pair = grayPair(kind);
+      pair[0].filter(kind);
+      pair[1].filter(kind);
+      Assert.assertEquals(PConstants.GRAY8, pair[1].format);
+      Assert.assertNull(pair[1].pixels);
+      assertSameImage(pair[0], pair[1]);
+    }
+
+    PImage[] pair = grayPair(2);
+    pair[0].filter(PConstants.POSTERIZE, 5);
+    pair[1].filter(PConstants.POSTERIZE, 5);
+    assertSameImage(pair[0], pair[1]);
+
+    pair = grayPair(3);
+    pair[0].filter(PConstants.THRESHOLD, 0.3f);
+    pair[1].filter(PConstants.THRESHOLD, 0.3f);
+    assertSameImage(pair[0], pair[1]);
+
+    pair = grayPair(4);
+    pair[0].filter(PConstants.BLUR, 3);
+    pair[1].filter(PConstants.BLUR, 3);
+    assertSameImage(pair[0], pair[1]);
+  }
+
+
+  @Test
+  public void testMask() {
+    PImage[] masks = grayPair(5);
+    PImage a = new PImage(W, H, PConstants.RGB);
+    PImage b = new PImage(W, H, PConstants.RGB);
+    for (int i = 0; i < W * H; i++) {
+      a.pixels[i] = b.pixels[i] = 0xff000000 | (i * 0x9e3779b9 >>> 8);
+    }
+    a.mask(masks[0]);
+    b.mask(masks[1]);
+    Assert.assertArrayEquals(a.pixels, b.pixels);
+    Assert.assertNull(masks[1].pixels);
+
+    // masking a GRAY8 image turns it into ARGB
+    PImage gray = grayPair(6)[1];
+    gray.mask(masks[1]);
+    Assert.assertEquals(PConstants.ARGB, gray.format);
+    Assert.assertNull(gray.bytePixels);
+    Assert.assertEquals(masks[1].bytePixels[7] & 0xff, gray.pixels[7] >>> 24);
+  }
+
+
+  @Test
+  public void testCopying() {
+    PImage[] pair = grayPair(7);
+    PImage region = pair[1].get(10, 5, 20, 30);
+    Assert.assertEquals(PConstants.GRAY8, region.format);
+    assertSameImage(pair[0].get(10, 5, 20, 30), region);
+
+    PImage target = new PImage(W, H, PConstants.GRAY8);
+    target.set(0, 0, pair[0]);
+    assertSameImage(pair[0], target);
+
+    PImage rgb = new PImage(W, H, PConstants.RGB);
+    rgb.set(0, 0, pair[1]);
+    assertSameImage(pair[0], rgb);
+
+    pair[0].blend(pair[0], 0, 0, 30, 30, 5, 5, 40, 20, PConstants.MULTIPLY);
+    pair[1].blend(pair[1], 0, 0, 30, 30, 5, 5, 40, 20, PConstants.MULTIPLY);
+    assertSameImage(pair[0], pair[1]);
+    Assert.assertNull(pair[1].pixels);
+  }
+
+
+  @Test
+  public void testResize() {
+    PImage[] pair = grayPair(8);
+    pair[0].resize(30, 20, PConstants.RESIZE_BILINEAR);
+    pair[1].resize(30, 20, PConstants.RESIZE_BILINEAR);
+    Assert.assertEquals(30 * 20, pair[1].bytePixels.length);
+    assertSameImage(pair[0], pair[1]);
+  }
+
+
+  @Test
+  public void testNative() {
+    PImage gray = grayPair(9)[1];
+    BufferedImage image = (BufferedImage) gray.getNative();
+    for (int y = 0; y < H; y++) {
+      for (int x = 0; x < W; x++) {
+        Assert.assertEquals(gray.get(x, y), image.getRGB(x, y));
+      }
+    }
+  }
+
+
+  @Test
+  public void testDrawJava2D() {
+    PImage[] pair = grayPair(10);
+    PGraphics[] drawn = new PGraphics[2];
+    for (int i = 0; i < 2; i++) {
+      PGraphics pg = new PGraphicsJava2D();
+      pg.setSize(W, H * 2);
+      pg.beginDraw();
+      pg.image(pair[i], 0, 0);
+      pg.tint(255, 128, 0);
+      pg.image(pair[i], 0, H);
+      pg.endDraw();
+      pg.loadPixels();
+      drawn[i] = pg;
+    }
+    Assert.assertArrayEquals(drawn[0].pixels, drawn[1].pixels);
+    Assert.assertNull(pair[1].pixels);
+  }
+}
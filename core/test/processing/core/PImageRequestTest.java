@@ -0,0 +1,177 @@
+package processing.core;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+
+public class PImageRequestTest {
+
+  PApplet applet;
+  File file;
+
+
+  @Before
+  public void setUp() throws Exception {
+    applet = new PApplet();
+    applet.sketchPath();  // loading files needs a sketch path
+    file = File.createTempFile("requested", ".png");
+    file.deleteOnExit();
+    PImage image = new PImage(5, 3, PConstants.RGB);
+    for (int i = 0; i < image.pixels.length; i++) {
+      image.pixels[i] = 0xff102030;
+    }
+    image.save(file.getAbsolutePath());
+  }
+
+
+  @Test
+  public void testLoad() throws Exception {
+    final List<PImage> loaded = new ArrayList<>();
+    PImageRequest request = applet.requestImageAsync(file.getAbsolutePath());
+    request.onLoad(new Consumer<PImage>() {
+      public void accept(PImage image) {
+        loaded.add(image);
+      }
+    });
+    PImage image = request.get();
+    Assert.assertSame(request.image(), image);
+    Assert.assertEquals(5, image.width);
+    Assert.assertEquals(3, image.height);
+    Assert.assertEquals(0xff102030, image.pixels[0]);
+
+    // the callback waits for the animation thread
+    Assert.assertTrue(loaded.isEmpty());
+    applet.dequeueImageRequests();
+    Assert.assertEquals(1, loaded.size());
+    Assert.assertSame(image, loaded.get(0));
+    applet.dequeueImageRequests();
+    Assert.assertEquals(1, loaded.size());
+  }
+
+
+  @Test
+  public void testMissing() throws Exception {
+    PImage image =
+      applet.requestImageAsync(file.getAbsolutePath() + ".missing.png").get();
+    Assert.assertEquals(-1, image.width);
+    Assert.assertEquals(-1, image.height);
+  }
+
+
+  /**
+   * Keep the only loading thread busy until the latch is released, so
+   * that the requests after it have to wait in the queue.
+   */
+  CountDownLatch block() {
+    applet.requestImageThreads(1);
+    final CountDownLatch latch = new CountDownLatch(1);
+    PImageRequest blocker =
+      new PImageRequest(applet, file.getAbsolutePath(), null, new PImage()) {
+        @Override
+        public void run() {
+          try {
+            latch.await();
+          } catch (InterruptedException e) { }
+          super.run();
+        }
+      };
+    blocker.submit(applet.requestImagePool());
+    return latch;
+  }
+
+
+  PImageRequest request(final List<String> order, final String name) {
+    PImageRequest request = applet.requestImageAsync(file.getAbsolutePath());
+    request.onLoad(new Consumer<PImage>() {
+      public void accept(PImage image) {
+        order.add(name);
+      }
+    });
+    return request;
+  }
+
+
+  @Test
+  public void testPriority() throws Exception {
+    CountDownLatch latch = block();
+    List<String> order = new ArrayList<>();
+    PImageRequest a = request(order, "a");
+    PImageRequest b = request(order, "b");
+    PImageRequest c = request(order, "c");
+    PImageRequest d = request(order, "d");
+    c.priority(5);   // moves ahead of the others while waiting
+    d.priority(-1);  // and behind
+    Assert.assertEquals(4, applet.requestImagePool.getQueue().size());
+    latch.countDown();
+    for (PImageRequest request : new PImageRequest[] { a, b, c, d }) {
+      request.get(10, TimeUnit.SECONDS);
+    }
+    applet.dequeueImageRequests();
+    Assert.assertEquals(Arrays.asList("c", "a", "b", "d"), order);
+  }
+
+
+  @Test
+  public void testCancel() throws Exception {
+    CountDownLatch latch = block();
+    List<String> order = new ArrayList<>();
+    PImageRequest a = request(order, "a");
+    PImageRequest b = request(order, "b");
+    Assert.assertTrue(a.cancel(false));
+    Assert.assertTrue(a.isCancelled());
+    Assert.assertFalse(applet.requestImagePool.getQueue().contains(a));
+    Assert.assertTrue(applet.requestImagePool.getQueue().contains(b));
+    latch.countDown();
+
+    Assert.assertEquals(5, b.get(10, TimeUnit.SECONDS).width);
+    try {
+      a.get();
+      Assert.fail("get() returned for a cancelled request");
+    } catch (CancellationException e) { }
+    Assert.assertEquals(0, a.image().width);
+    applet.dequeueImageRequests();
+    Assert.assertEquals(Arrays.asList("b"), order);  // none for the cancelled
+  }
+
+
+  @Test
+  public void testNoLoop() throws Exception {
+    // without draw() running, the image being done asks for a redraw(),
+    // and the callback waits for the animation thread all the same
+    applet.noLoop();
+    applet.redraw = false;
+    CountDownLatch latch = block();
+    final PImageRequest request = applet.requestImageAsync(file.getAbsolutePath());
+    final List<Thread> threads = new ArrayList<>();
+    request.onLoad(new Consumer<PImage>() {
+      public void accept(PImage image) {
+        // the request is finished, so get() doesn't wait
+        Assert.assertTrue(request.isDone());
+        try {
+          Assert.assertSame(image, request.get(10, TimeUnit.SECONDS));
+        } catch (Exception e) {
+          throw new RuntimeException(e);
+        }
+        threads.add(Thread.currentThread());
+      }
+    });
+    latch.countDown();
+    request.get(10, TimeUnit.SECONDS);
+    Assert.assertTrue(applet.redraw);
+    Assert.assertTrue(threads.isEmpty());
+
+    // what the animation thread does after draw()
+    applet.dequeueImageRequests();
+    Assert.assertEquals(Arrays.asList(Thread.currentThread()), threads);
+  }
+}
@@ -0,0 +1,125 @@
+package processing.core;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+
+public class PImageResizeTest {
+
+  static final int[] FILTERS = {
+    PConstants.RESIZE_NEAREST, PConstants.RESIZE_BILINEAR, PConstants.RESIZE_AREA, PConstants.RESIZE_LANCZOS
+  };
+
+
+  @After
+  public void restorePool() {
+    PImage.filterPool = ForkJoinPool.commonPool();
+  }
+
+
+  @Test
+  public void testSizes() {
+    for (int filter : FILTERS) {
+      PImage image = new PImage(300, 200, PConstants.ARGB);
+      image.resize(75, 0, filter);
+      Assert.assertEquals(75, image.width);
+      Assert.assertEquals(50, image.height);
+      Assert.assertEquals(75 * 50, image.pixels.length);
+
+      image.resize(1000, 7, filter);
+      Assert.assertEquals(1000, image.pixelWidth);
+      Assert.assertEquals(7, image.pixelHeight);
+    }
+  }
+
+
+  @Test
+  public void testFlatColor() {
+    for (int filter : FILTERS) {
+      for (int format : new int[] { PConstants.RGB, PConstants.ARGB }) {
+        int color = (format == PConstants.RGB) ? 0xff336699 : 0x80336699;
+        PImage image = new PImage(97, 61, format);
+        Arrays.fill(image.pixels, color);
+        image.resize(40, 33, filter);
+        for (int pixel : image.pixels) {
+          // premultiplying ARGB can be off by one in the color channels
+          Assert.assertEquals(color >>> 24, pixel >>> 24);
+          Assert.assertEquals((color >> 16) & 0xff, (pixel >> 16) & 0xff, 1);
+          Assert.assertEquals(color & 0xff, pixel & 0xff, 1);
+        }
+      }
+    }
+  }
+
+
+  @Test
+  public void testNearestAndArea() {
+    // a 2x2 checkerboard
+    PImage checker = new PImage(4, 4, PConstants.RGB);
+    for (int y = 0; y < 4; y++) {
+      for (int x = 0; x < 4; x++) {
+        checker.pixels[y*4 + x] = ((x + y) % 2 == 0) ? 0xffffffff : 0xff000000;
+      }
+    }
+    PImage nearest = checker.copy();
+    nearest.resize(8, 8, PConstants.RESIZE_NEAREST);
+    for (int y = 0; y < 8; y++) {
+      for (int x = 0; x < 8; x++) {
+        Assert.assertEquals(checker.pixels[(y/2)*4 + x/2], nearest.pixels[y*8 + x]);
+      }
+    }
+
+    PImage area = checker.copy();
+    area.resize(2, 2, PConstants.RESIZE_AREA);
+    for (int pixel : area.pixels) {
+      Assert.assertEquals(0xff808080, pixel);
+    }
+  }
+
+
+  @Test
+  public void testTransparentEdges() {
+    // opaque red next to fully transparent black shouldn't turn dark
+    PImage image = new PImage(8, 1, PConstants.ARGB);
+    for (int x = 0; x < 8; x++) {
+      image.pixels[x] = (x < 4) ? 0xffff0000 : 0x00000000;
+    }
+    image.resize(3, 1, PConstants.RESIZE_BILINEAR);
+    int middle = image.pixels[1];
+    Assert.assertTrue((middle >>> 24) > 0 && (middle >>> 24) < 255);
+    Assert.assertEquals(0xff, (middle >> 16) & 0xff);
+  }
+
+
+  @Test
+  public void testParallel() {
+    Random random = new Random(7);
+    int[] noise = new int[640 * 480];
+    for (int i = 0; i < noise.length; i++) {
+      noise[i] = random.nextInt();
+    }
+    ForkJoinPool single = new ForkJoinPool(1);
+    ForkJoinPool several = new ForkJoinPool(4);
+    try {
+      for (int filter : FILTERS) {
+        PImage serial = new PImage(640, 480, PConstants.ARGB);
+        System.arraycopy(noise, 0, serial.pixels, 0, noise.length);
+        PImage parallel = serial.copy();
+
+        PImage.filterPool = single;
+        serial.resize(213, 157, filter);
+        PImage.filterPool = several;
+        parallel.resize(213, 157, filter);
+        Assert.assertArrayEquals(serial.pixels, parallel.pixels);
+      }
+    } finally {
+      single.shutdown();
+      several.shutdown();
+    }
+  }
+}
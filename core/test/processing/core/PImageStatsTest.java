@@ -0,0 +1,156 @@
+package processing.core;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+
+public class PImageStatsTest {
+
+  ForkJoinPool previous;
+
+
+  @Before
+  public void setUp() {
+    // large enough images below get split into bands on several threads
+    previous = PImage.filterPool;
+    PImage.filterPool = new ForkJoinPool(3);
+  }
+
+
+  @After
+  public void tearDown() {
+    PImage.filterPool.shutdown();
+    PImage.filterPool = previous;
+  }
+
+
+  static PImage image(int w, int h) {
+    Random random = new Random(w + h);
+    PImage image = new PImage(w, h, PConstants.ARGB);
+    for (int i = 0; i < image.pixels.length; i++) {
+      image.pixels[i] = random.nextInt();
+    }
+    return image;
+  }
+
+
+  static final int[] CHANNELS = {
+    PImageStats.RED, PImageStats.GREEN, PImageStats.BLUE,
+    PImageStats.ALPHA, PImageStats.LUMINANCE
+  };
+
+
+  static int channel(int argb, int channel) {
+    switch (channel) {
+      case PImageStats.RED: return (argb >> 16) & 0xff;
+      case PImageStats.GREEN: return (argb >> 8) & 0xff;
+      case PImageStats.BLUE: return argb & 0xff;
+      case PImageStats.ALPHA: return argb >>> 24;
+    }
+    return (77*(argb>>16&0xff) + 151*(argb>>8&0xff) + 28*(argb&0xff)) >> 8;
+  }
+
+
+  @Test
+  public void testStats() {
+    PImage image = image(300, 280);
+    PImageStats stats = image.stats();
+    Assert.assertEquals(300 * 280, stats.count);
+    for (int c : CHANNELS) {
+      int min = 255, max = 0;
+      double sum = 0, squares = 0;
+      for (int argb : image.pixels) {
+        int v = channel(argb, c);
+        min = Math.min(min, v);
+        max = Math.max(max, v);
+        sum += v;
+        squares += v * v;
+      }
+      double mean = sum / image.pixels.length;
+      Assert.assertEquals(min, stats.min(c));
+      Assert.assertEquals(max, stats.max(c));
+      Assert.assertEquals((long) sum, stats.sum(c));
+      Assert.assertEquals(mean, stats.mean(c), 1e-3);
+      Assert.assertEquals(Math.sqrt(squares / image.pixels.length - mean*mean),
+                          stats.stddev(c), 1e-3);
+    }
+
+    // the same holder can be used again
+    PImage gray = new PImage(4, 4, PConstants.GRAY8);
+    gray.bytePixels[5] = (byte) 200;
+    Assert.assertSame(stats, gray.stats(stats));
+    Assert.assertEquals(16, stats.count);
+    Assert.assertEquals(200, stats.max(PImageStats.LUMINANCE));
+    Assert.assertEquals(255, stats.min(PImageStats.ALPHA));
+    Assert.assertEquals(200 / 16f, stats.mean(PImageStats.RED), 1e-6);
+  }
+
+
+  @Test
+  public void testHistogram() {
+    PImage image = image(260, 270);
+    for (int c : CHANNELS) {
+      int[] expected = new int[16];
+      for (int argb : image.pixels) {
+        expected[channel(argb, c) / 16]++;
+      }
+      Assert.assertArrayEquals(expected, image.histogram(c, 16));
+    }
+    int[] counts = new int[3];
+    image.histogram(PImageStats.RED, counts);
+    image.histogram(PImageStats.RED, counts);  // cleared each time
+    Assert.assertEquals(260 * 270, counts[0] + counts[1] + counts[2]);
+  }
+
+
+  @Test
+  public void testChannelConstants() {
+    // ALPHA in a sketch is PConstants.ALPHA, which has to count alpha
+    PImage image = new PImage(4, 1, PConstants.ARGB);
+    image.pixels[0] = 0x00ffffff;
+    image.pixels[1] = 0x80000000;
+    image.pixels[2] = 0xff000000;
+    image.pixels[3] = 0xff000000;
+    Assert.assertArrayEquals(new int[] { 1, 0, 1, 2 },
+                             image.histogram(PConstants.ALPHA, 4));
+    Assert.assertEquals(128 + 255 + 255, image.stats().sum(PConstants.ALPHA));
+
+    // format constants aren't channels
+    for (int format : new int[] { PConstants.RGB, PConstants.ARGB,
+                                  PConstants.HSB, PConstants.GRAY8 }) {
+      try {
+        image.histogram(format, 4);
+        Assert.fail("histogram() accepted " + format);
+      } catch (IllegalArgumentException e) { }
+      try {
+        image.integral(format);
+        Assert.fail("integral() accepted " + format);
+      } catch (IllegalArgumentException e) { }
+    }
+  }
+
+
+  @Test
+  public void testIntegral() {
+    PImage image = image(290, 300);
+    int[] table = image.integral(PImageStats.GREEN);
+    Assert.assertEquals(291 * 301, table.length);
+    int[][] rects = { { 0, 0, 290, 300 }, { 5, 7, 1, 1 }, { 100, 3, 90, 250 } };
+    for (int[] r : rects) {
+      int expected = 0;
+      for (int y = r[1]; y < r[1] + r[3]; y++) {
+        for (int x = r[0]; x < r[0] + r[2]; x++) {
+          expected += channel(image.pixels[y*290 + x], PImageStats.GREEN);
+        }
+      }
+      Assert.assertEquals(expected,
+                          PImageStats.areaSum(table, 290, r[0], r[1], r[2], r[3]));
+    }
+    Assert.assertSame(table, image.integral(PImageStats.BLUE, table));
+  }
+}
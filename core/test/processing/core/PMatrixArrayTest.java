@@ -0,0 +1,103 @@
+package processing.core;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+
+public class PMatrixArrayTest {
+
+  ForkJoinPool previous;
+
+
+  @Before
+  public void setUp() {
+    // so that the larger batches are split across several threads
+    previous = PImage.filterPool;
+    PImage.filterPool = new ForkJoinPool(3);
+  }
+
+
+  @After
+  public void tearDown() {
+    PImage.filterPool.shutdown();
+    PImage.filterPool = previous;
+  }
+
+
+  static float[] points(int length) {
+    Random random = new Random(length);
+    float[] points = new float[length];
+    for (int i = 0; i < length; i++) {
+      points[i] = random.nextFloat() * 200 - 100;
+    }
+    return points;
+  }
+
+
+  @Test
+  public void testMult3D() {
+    PMatrix3D matrix = new PMatrix3D();
+    matrix.translate(3, -2, 7);
+    matrix.rotateX(0.4f);
+    matrix.scale(1.5f, 2, 0.5f);
+
+    for (int count : new int[] { 11, 70000 }) {
+      // four floats per point, starting one in
+      float[] src = points(1 + count*4);
+      float[] dst = new float[2 + count*4];
+      dst[5] = -1;
+      matrix.multArray(src, 1, dst, 2, count, 4);
+
+      float[] target = new float[3];
+      for (int i = 0; i < count; i++) {
+        float[] source = { src[1 + i*4], src[2 + i*4], src[3 + i*4] };
+        matrix.mult(source, target);
+        for (int j = 0; j < 3; j++) {
+          Assert.assertEquals(target[j], dst[2 + i*4 + j], 0);
+        }
+      }
+      Assert.assertEquals(-1, dst[5], 0);  // the fourth value is left alone
+    }
+  }
+
+
+  @Test
+  public void testDivide() {
+    PMatrix3D matrix = new PMatrix3D();
+    matrix.set(1, 0, 0, 0,
+               0, 1, 0, 0,
+               0, 0, 1, 0,
+               0, 0, 0.5f, 1);
+    float[] points = { 2, 4, 6,  1, 1, 0 };
+    matrix.multArray(points, 0, points, 0, 2, 3, true);  // in place
+    Assert.assertArrayEquals(new float[] { 0.5f, 1, 1.5f,  1, 1, 0 },
+                             points, 0);
+  }
+
+
+  @Test
+  public void testMult2D() {
+    PMatrix2D matrix = new PMatrix2D();
+    matrix.rotate(1.2f);
+    matrix.translate(5, 6);
+    int count = 70001;
+    float[] src = points(count*2);
+    float[] dst = new float[count*2];
+    matrix.multArray(src, 0, dst, 0, count, 2);
+    for (int i = 0; i < count*2; i += 2) {
+      Assert.assertEquals(matrix.multX(src[i], src[i+1]), dst[i], 0);
+      Assert.assertEquals(matrix.multY(src[i], src[i+1]), dst[i+1], 0);
+    }
+  }
+
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testTooShort() {
+    new PMatrix3D().multArray(new float[10], 0, new float[12], 0, 4, 3);
+  }
+}
@@ -0,0 +1,147 @@
+package processing.core;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.Adler32;
+
+import javax.imageio.ImageIO;
+
+
+public class PNGEncoderTest {
+
+  ForkJoinPool previous;
+
+
+  @Before
+  public void setUp() {
+    // force several threads even on a single core machine
+    previous = PImage.filterPool;
+    PImage.filterPool = new ForkJoinPool(3);
+  }
+
+
+  @After
+  public void tearDown() {
+    PImage.filterPool.shutdown();
+    PImage.filterPool = previous;
+    PImage.pngEncoder = null;
+  }
+
+
+  /** Noisy gradient, so that the filters have something to work with */
+  static PImage image(int w, int h, int format) {
+    Random random = new Random(w * 31 + h);
+    PImage image = new PImage(w, h, format);
+    for (int y = 0; y < h; y++) {
+      for (int x = 0; x < w; x++) {
+        int noise = random.nextInt(8);
+        image.pixels[y*w + x] =
+          (random.nextInt(256) << 24) | ((x + noise) & 0xff) << 16 |
+          ((y * 3) & 0xff) << 8 | ((x ^ y) & 0xff);
+      }
+    }
+    return image;
+  }
+
+
+  static BufferedImage roundTrip(PNGEncoder encoder, PImage image) throws Exception {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    encoder.write(image, output);
+    return ImageIO.read(new ByteArrayInputStream(output.toByteArray()));
+  }
+
+
+  static void assertPixels(PImage expected, BufferedImage actual, int mask) {
+    Assert.assertEquals(expected.width, actual.getWidth());
+    Assert.assertEquals(expected.height, actual.getHeight());
+    for (int y = 0; y < expected.height; y++) {
+      for (int x = 0; x < expected.width; x++) {
+        Assert.assertEquals(expected.pixels[y*expected.width + x] & mask,
+                            actual.getRGB(x, y) & mask);
+      }
+    }
+  }
+
+
+  @Test
+  public void testFilters() throws Exception {
+    PImage image = image(37, 23, PConstants.ARGB);
+    for (int filter = PNGEncoder.NONE; filter <= PNGEncoder.ADAPTIVE; filter++) {
+      PNGEncoder encoder = new PNGEncoder(6, filter);
+      assertPixels(image, roundTrip(encoder, image), 0xffffffff);
+    }
+    PImage rgb = image(20, 10, PConstants.RGB);
+    assertPixels(rgb, roundTrip(new PNGEncoder(0, PNGEncoder.PAETH), rgb), 0xffffff);
+  }
+
+
+  @Test
+  public void testBands() throws Exception {
+    // tall enough for several bands, each primed by the one before
+    int h = 3 * PNGEncoder.BAND_BYTES / (300 * 4 + 1) + 7;
+    PImage image = image(300, h, PConstants.ARGB);
+    for (int level : new int[] { 0, 1, 9 }) {
+      PNGEncoder encoder = new PNGEncoder(level, PNGEncoder.ADAPTIVE);
+      assertPixels(image, roundTrip(encoder, image), 0xffffffff);
+
+      ByteArrayOutputStream serial = new ByteArrayOutputStream();
+      encoder.parallel(false).write(image, serial);
+      ByteArrayOutputStream parallel = new ByteArrayOutputStream();
+      encoder.parallel(true).write(image, parallel);
+      // the seams between bands cost only a little
+      Assert.assertTrue(parallel.size() < serial.size() * 1.01 + 64);
+    }
+  }
+
+
+  @Test
+  public void testGray() throws Exception {
+    PImage image = new PImage(16, 9, PConstants.GRAY8);
+    for (int i = 0; i < image.bytePixels.length; i++) {
+      image.bytePixels[i] = (byte) (i * 7);
+    }
+    BufferedImage decoded = roundTrip(new PNGEncoder(), image);
+    Assert.assertEquals(BufferedImage.TYPE_BYTE_GRAY, decoded.getType());
+    for (int i = 0; i < image.bytePixels.length; i++) {
+      Assert.assertEquals(image.bytePixels[i] & 0xff,
+                          decoded.getRaster().getSample(i % 16, i / 16, 0));
+    }
+  }
+
+
+  @Test
+  public void testCombineAdler() {
+    byte[] data = new byte[100000];
+    new Random(4).nextBytes(data);
+    Adler32 whole = new Adler32();
+    whole.update(data);
+    Adler32 first = new Adler32();
+    first.update(data, 0, 70001);
+    Adler32 second = new Adler32();
+    second.update(data, 70001, data.length - 70001);
+    Assert.assertEquals(whole.getValue(),
+                        PNGEncoder.combineAdler(first.getValue(), second.getValue(),
+                                                data.length - 70001));
+  }
+
+
+  @Test
+  public void testSave() throws Exception {
+    File file = File.createTempFile("encoded", ".png");
+    file.deleteOnExit();
+    PImage image = image(12, 8, PConstants.ARGB);
+    PImage.pngEncoder = new PNGEncoder(1, PNGEncoder.SUB);
+    Assert.assertTrue(image.save(file.getAbsolutePath()));
+    assertPixels(image, ImageIO.read(file), 0xffffffff);
+    file.delete();
+  }
+}
@@ -0,0 +1,81 @@
+package processing.core;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.ForkJoinPool;
+
+
+public class PNoiseTest {
+
+  ForkJoinPool previous;
+
+
+  @Before
+  public void setUp() {
+    // so that the larger grids are filled on several threads
+    previous = PImage.filterPool;
+    PImage.filterPool = new ForkJoinPool(3);
+  }
+
+
+  @After
+  public void tearDown() {
+    PImage.filterPool.shutdown();
+    PImage.filterPool = previous;
+  }
+
+
+  static void assertGrid(PNoise noise, int w, int h,
+                         float x0, float y0, float step, float z) {
+    float[] out = new float[w * h];
+    noise.noiseGrid(out, w, h, x0, y0, step, z);
+    for (int j = 0; j < h; j++) {
+      for (int i = 0; i < w; i++) {
+        float expected = noise.noise(x0 + i*step, y0 + j*step, z);
+        // exactly the same, not just close
+        Assert.assertEquals(Float.floatToIntBits(expected),
+                            Float.floatToIntBits(out[j*w + i]));
+      }
+    }
+  }
+
+
+  @Test
+  public void testGrid() {
+    PNoise noise = new PNoise(7);
+    assertGrid(noise, 17, 9, 0.1f, 3.7f, 0.013f, 0.5f);
+    assertGrid(noise, 200, 150, -2.5f, -1.25f, 0.02f, -4.1f);  // threaded
+    assertGrid(noise.detail(7, 0.65f), 31, 29, 100.3f, 40.9f, 0.37f, 2);
+    assertGrid(noise.detail(1, 0.5f), 5, 5, 0, 0, 1, 0);
+  }
+
+
+  @Test
+  public void testApplet() {
+    PApplet applet = new PApplet();
+    applet.noiseSeed(42);
+    PNoise noise = applet.getNoise();
+    Assert.assertEquals(new PNoise(42).noise(1.5f, 2.25f, 0.75f),
+                        applet.noise(1.5f, 2.25f, 0.75f), 0);
+
+    applet.noiseDetail(6, 0.4f);
+    Assert.assertNotSame(noise, applet.getNoise());
+    Assert.assertEquals(6, applet.getNoise().octaves());
+    Assert.assertEquals(noise.detail(6, 0.4f).noise(0.3f, 8.1f),
+                        applet.noise(0.3f, 8.1f), 0);
+
+    float[] out = new float[12];
+    applet.noiseGrid(out, 4, 3, 0.5f, 0.25f, 0.1f, 1);
+    Assert.assertEquals(applet.noise(0.5f + 3*0.1f, 0.25f + 2*0.1f, 1),
+                        out[11], 0);
+  }
+
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testTooSmall() {
+    new PNoise(1).noiseGrid(new float[10], 4, 3, 0, 0, 0.1f, 0);
+  }
+}
@@ -0,0 +1,86 @@
+package processing.core;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+
+public class PRandomTest {
+
+  @Test
+  public void testSeed() {
+    PRandom a = new PRandom(5);
+    PRandom b = new PRandom(5);
+    for (int i = 0; i < 100; i++) {
+      Assert.assertEquals(a.nextLong(), b.nextLong());
+    }
+    a.setSeed(5);
+    PRandom c = new PRandom(5);
+    Assert.assertEquals(c.nextLong(), a.nextLong());
+
+    // streams differ from each other, but not from themselves
+    Assert.assertTrue(new PRandom(5, 1).nextLong() != new PRandom(5, 2).nextLong());
+    Assert.assertEquals(new PRandom(5, 2).nextLong(), new PRandom(5, 2).nextLong());
+  }
+
+
+  @Test
+  public void testRanges() {
+    PRandom random = new PRandom(11);
+    float[] values = new float[100000];
+    random.fill(values, -2, 3);
+    double sum = 0;
+    for (float v : values) {
+      Assert.assertTrue(v >= -2 && v < 3);
+      sum += v;
+    }
+    Assert.assertEquals(0.5, sum / values.length, 0.02);
+
+    for (int i = 0; i < 1000; i++) {
+      int n = random.nextInt(7);
+      Assert.assertTrue(n >= 0 && n < 7);
+      float f = random.nextFloat();
+      Assert.assertTrue(f >= 0 && f < 1);
+    }
+  }
+
+
+  @Test
+  public void testGaussian() {
+    PRandom random = new PRandom(3);
+    float[] values = new float[100001];  // odd, so one is left over
+    random.fillGaussian(values);
+    double sum = 0, squares = 0;
+    for (float v : values) {
+      sum += v;
+      squares += v * v;
+    }
+    double mean = sum / values.length;
+    Assert.assertEquals(0, mean, 0.02);
+    Assert.assertEquals(1, Math.sqrt(squares / values.length - mean*mean), 0.02);
+  }
+
+
+  @Test
+  public void testApplet() {
+    PApplet applet = new PApplet();
+    applet.randomGenerator(new PRandom());
+    applet.randomSeed(99);
+    float first = applet.random(10);
+    applet.randomSeed(99);
+    Assert.assertEquals(first, applet.random(10), 0);
+
+    float[] values = new float[50];
+    applet.random(values, 5, 6);
+    for (float v : values) {
+      Assert.assertTrue(v >= 5 && v < 6);
+    }
+    applet.randomGaussian(values);
+
+    // streams only depend on the seed and their index
+    float expected = applet.randomStream(4).nextFloat();
+    applet.random(values, 0, 1);
+    Assert.assertEquals(expected, applet.randomStream(4).nextFloat(), 0);
+    applet.randomSeed(100);
+    Assert.assertTrue(expected != applet.randomStream(4).nextFloat());
+  }
+}
@@ -0,0 +1,98 @@
+package processing.core;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+
+public class PShapeContainsTest {
+
+  /** A spiky outline with lots of vertices, around (cx, cy). */
+  static PShape outline(int count, float cx, float cy, float radius) {
+    Random random = new Random(count);
+    PShape shape = new PShape(PShape.PATH);
+    shape.beginShape();
+    for (int i = 0; i < count; i++) {
+      float angle = PConstants.TWO_PI * i / count;
+      float r = radius * (0.3f + 0.7f * random.nextFloat());
+      shape.vertex(cx + r * PApplet.cos(angle), cy + r * PApplet.sin(angle));
+    }
+    shape.endShape(PConstants.CLOSE);
+    return shape;
+  }
+
+
+  /** The crossing test over every edge, the way contains() used to work. */
+  static boolean slowContains(PShape shape, float x, float y) {
+    boolean c = false;
+    int count = shape.getVertexCount();
+    for (int i = 0, j = count-1; i < count; j = i++) {
+      float xi = shape.getVertexX(i), yi = shape.getVertexY(i);
+      float xj = shape.getVertexX(j), yj = shape.getVertexY(j);
+      if (((yi > y) != (yj > y)) && (x < (xj-xi) * (y-yi) / (yj-yi) + xi)) {
+        c = !c;
+      }
+    }
+    return c;
+  }
+
+
+  @Test
+  public void testContains() {
+    Random random = new Random(1);
+    for (int count : new int[] { 5, 40, 3000 }) {
+      PShape shape = outline(count, 100, 100, 80);
+      for (int k = 0; k < 5000; k++) {
+        float x = random.nextFloat() * 200;
+        float y = random.nextFloat() * 200;
+        Assert.assertEquals(slowContains(shape, x, y), shape.contains(x, y));
+      }
+    }
+  }
+
+
+  @Test
+  public void testChanges() {
+    PShape shape = outline(100, 100, 100, 80);
+    Assert.assertTrue(shape.contains(100, 100));
+    Assert.assertFalse(shape.contains(500, 100));
+
+    // move the whole outline over by 400
+    for (int i = 0; i < shape.getVertexCount(); i++) {
+      shape.setVertex(i, shape.getVertexX(i) + 400, shape.getVertexY(i));
+    }
+    Assert.assertFalse(shape.contains(100, 100));
+    Assert.assertTrue(shape.contains(500, 100));
+
+    // and back again with the matrix
+    shape.translate(-400, 0);
+    Assert.assertTrue(shape.contains(100, 100));
+    Assert.assertFalse(shape.contains(500, 100));
+  }
+
+
+  @Test
+  public void testFindContaining() {
+    PShape group = new PShape(PShape.GROUP);
+    PShape[] outlines = new PShape[20];
+    for (int i = 0; i < outlines.length; i++) {
+      outlines[i] = outline(200, 50 + i * 100, 50, 40);
+      group.addChild(outlines[i]);
+    }
+    PShape top = outline(200, 250, 50, 40);
+    PShape inner = new PShape(PShape.GROUP);
+    inner.addChild(top);
+    group.addChild(inner);
+
+    Assert.assertSame(outlines[7], group.findContaining(750, 50));
+    Assert.assertSame(top, group.findContaining(250, 50));  // drawn last
+    Assert.assertNull(group.findContaining(750, 500));
+    Assert.assertNull(group.findContaining(5000, 50));
+
+    // the bounds of the group follow a child that moves
+    outlines[19].translate(0, 1000);
+    Assert.assertNull(group.findContaining(1950, 50));
+    Assert.assertSame(outlines[19], group.findContaining(1950, 1050));
+  }
+}
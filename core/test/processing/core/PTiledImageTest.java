@@ -0,0 +1,162 @@
+package processing.core;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Random;
+
+import processing.awt.PGraphicsJava2D;
+
+
+public class PTiledImageTest {
+
+  static final int W = 83;
+  static final int H = 61;
+  static final int TILE = 16;
+
+
+  /** Random opaque image, and a tiled copy with a cache too small for it */
+  static PImage reference(long seed) {
+    Random random = new Random(seed);
+    PImage image = new PImage(W, H, PConstants.ARGB);
+    for (int i = 0; i < image.pixels.length; i++) {
+      image.pixels[i] = 0xff000000 | random.nextInt(0x1000000);
+    }
+    return image;
+  }
+
+
+  static PTiledImage tiled(PImage reference) {
+    PTiledImage tiled = new PTiledImage(null, W, H, TILE, 3);
+    tiled.set(0, 0, reference);
+    return tiled;
+  }
+
+
+  static void assertSame(PImage expected, PTiledImage actual) {
+    Assert.assertArrayEquals(expected.pixels, actual.get(0, 0, W, H).pixels);
+  }
+
+
+  @Test
+  public void testGetAndSet() {
+    PImage reference = reference(1);
+    PTiledImage tiled = tiled(reference);
+    for (int y = 0; y < H; y++) {
+      for (int x = 0; x < W; x++) {
+        Assert.assertEquals(reference.get(x, y), tiled.get(x, y));
+      }
+    }
+    Assert.assertEquals(0, tiled.get(W, 0));
+
+    // regions crossing tiles and the edges of the image
+    int[][] regions = { { 5, 7, 40, 30 }, { -10, -4, 30, 20 }, { 70, 50, 30, 30 } };
+    for (int[] r : regions) {
+      Assert.assertArrayEquals(reference.get(r[0], r[1], r[2], r[3]).pixels,
+                               tiled.get(r[0], r[1], r[2], r[3]).pixels);
+    }
+
+    tiled.set(17, 33, 0xff123456);
+    reference.set(17, 33, 0xff123456);
+    assertSame(reference, tiled);
+    tiled.dispose();
+  }
+
+
+  @Test
+  public void testReopen() throws Exception {
+    File file = File.createTempFile("tiled", ".raw");
+    file.deleteOnExit();
+    PImage reference = reference(2);
+    PTiledImage tiled = new PTiledImage(file, W, H, TILE, 2);
+    tiled.set(0, 0, reference);
+    tiled.dispose();
+    Assert.assertTrue(file.exists());
+
+    tiled = new PTiledImage(file, W, H, TILE, 2);
+    assertSame(reference, tiled);
+    tiled.dispose();
+    file.delete();
+  }
+
+
+  @Test
+  public void testFilters() {
+    int[] kinds = {
+      PConstants.INVERT, PConstants.GRAY, PConstants.THRESHOLD,
+      PConstants.ERODE, PConstants.DILATE, PConstants.BLUR, PConstants.FAST_BLUR
+    };
+    for (int kind : kinds) {
+      PImage reference = reference(kind);
+      PTiledImage tiled = tiled(reference);
+      reference.filter(kind);
+      tiled.filter(kind);
+      assertSame(reference, tiled);
+      tiled.dispose();
+    }
+
+    PImage reference = reference(3);
+    PTiledImage tiled = tiled(reference);
+    reference.filter(PConstants.BLUR, 2.5f);
+    tiled.filter(PConstants.BLUR, 2.5f);
+    assertSame(reference, tiled);
+    reference.filter(PConstants.FAST_BLUR, 4);
+    tiled.filter(PConstants.FAST_BLUR, 4);
+    assertSame(reference, tiled);
+    reference.filter(PConstants.POSTERIZE, 3);
+    tiled.filter(PConstants.POSTERIZE, 3);
+    assertSame(reference, tiled);
+    tiled.dispose();
+  }
+
+
+  @Test
+  public void testBlend() {
+    PImage reference = reference(4);
+    PTiledImage tiled = tiled(reference);
+    PImage source = reference(5);
+    reference.copy(source, 3, 4, 50, 40, 10, 12, 50, 40);
+    tiled.copy(source, 3, 4, 50, 40, 10, 12, 50, 40);
+    assertSame(reference, tiled);
+
+    reference.blend(source, 0, 0, 30, 30, -5, 20, 60, 33, PConstants.MULTIPLY);
+    tiled.blend(source, 0, 0, 30, 30, -5, 20, 60, 33, PConstants.MULTIPLY);
+    assertSame(reference, tiled);
+
+    // copying within the tiled image itself
+    reference.copy(0, 0, 20, 20, 40, 30, 20, 20);
+    tiled.copy(0, 0, 20, 20, 40, 30, 20, 20);
+    assertSame(reference, tiled);
+    tiled.dispose();
+  }
+
+
+  @Test(expected = RuntimeException.class)
+  public void testNoPixels() {
+    new PTiledImage(10, 10).loadPixels();
+  }
+
+
+  @Test
+  public void testDraw() {
+    PImage reference = reference(6);
+    PTiledImage tiled = tiled(reference);
+    PImage[] images = { reference, tiled };
+    PGraphics[] drawn = new PGraphics[2];
+    for (int i = 0; i < 2; i++) {
+      PGraphics pg = new PGraphicsJava2D();
+      pg.setSize(W, H * 2);
+      pg.beginDraw();
+      pg.background(0);
+      pg.image(images[i], 0, 0);
+      // only part of the image, at the same size
+      pg.image(images[i], 10, H + 5, 40, 30, 20, 10, 60, 40);
+      pg.endDraw();
+      pg.loadPixels();
+      drawn[i] = pg;
+    }
+    Assert.assertArrayEquals(drawn[0].pixels, drawn[1].pixels);
+    tiled.dispose();
+  }
+}
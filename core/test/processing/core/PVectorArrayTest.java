@@ -0,0 +1,109 @@
+package processing.core;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+
+public class PVectorArrayTest {
+
+  ForkJoinPool previous;
+
+
+  @Before
+  public void setUp() {
+    // so that the long lists are split across several threads
+    previous = PImage.filterPool;
+    PImage.filterPool = new ForkJoinPool(3);
+  }
+
+
+  @After
+  public void tearDown() {
+    PImage.filterPool.shutdown();
+    PImage.filterPool = previous;
+  }
+
+
+  static PVectorArray list(int count, long seed) {
+    Random random = new Random(seed);
+    PVectorArray list = new PVectorArray(count);
+    for (int i = 0; i < count; i++) {
+      list.set(i, random.nextFloat() * 20 - 10,
+               random.nextFloat() * 20 - 10, random.nextFloat() * 20 - 10);
+    }
+    list.set(0, 0, 0, 0);
+    return list;
+  }
+
+
+  static void assertSame(PVector expected, PVectorArray list, int index) {
+    // exactly the same, not just close
+    Assert.assertEquals(expected.x, list.x[index], 0);
+    Assert.assertEquals(expected.y, list.y[index], 0);
+    Assert.assertEquals(expected.z, list.z[index], 0);
+  }
+
+
+  @Test
+  public void testOperations() {
+    PMatrix3D matrix = new PMatrix3D();
+    matrix.rotateY(0.3f);
+    matrix.translate(1, 2, 3);
+    matrix.scale(1.5f);
+
+    for (int count : new int[] { 37, 100000 }) {
+      PVectorArray a = list(count, 1);
+      PVectorArray b = list(count, 2);
+      PVectorArray original = list(count, 1);
+
+      a.add(b).mult(0.75f).sub(0.5f, 1, 2).limit(8).lerp(b, 0.3f);
+      a.add(b, 0.1f).normalize().applyMatrix(matrix);
+      float[] dist = a.dist(b, null);
+      float[] heading = a.heading(new float[count]);
+
+      for (int i = 0; i < count; i++) {
+        PVector v = original.get(i);
+        PVector w = b.get(i);
+        v.add(w).mult(0.75f).sub(0.5f, 1, 2).limit(8).lerp(w, 0.3f);
+        v.add(PVector.mult(w, 0.1f)).normalize();
+        v = matrix.mult(v, null);
+        assertSame(v, a, i);
+        Assert.assertEquals(v.dist(w), dist[i], 0);
+        Assert.assertEquals(v.heading(), heading[i], 0);
+      }
+    }
+  }
+
+
+  @Test
+  public void testAppend() {
+    PVectorArray list = new PVectorArray(0);
+    for (int i = 0; i < 20; i++) {
+      list.append(i, 2*i);
+    }
+    Assert.assertEquals(20, list.size());
+    list.removeFast(3);
+    Assert.assertEquals(19, list.size());
+    Assert.assertEquals(new PVector(19, 38), list.get(3));
+    float[] dist = list.dist(new PVector(0, 0), null);
+    Assert.assertEquals(19, dist.length);
+    Assert.assertEquals((float) Math.sqrt(5), dist[1], 1e-6);
+
+    list = new PVectorArray();
+    Assert.assertEquals(0, list.size());
+    list.append(1, 2, 3);
+    Assert.assertEquals(1, list.size());
+    Assert.assertEquals(new PVector(1, 2, 3), list.get(0));
+  }
+
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testShorter() {
+    new PVectorArray(10).add(new PVectorArray(9));
+  }
+}
@@ -0,0 +1,108 @@
+package processing.core;
+
+import java.util.Random;
+
+
+/**
+ * Compares random() and randomGaussian() using java.util.Random with the
+ * same calls using PRandom, one at a time and as batch fills, and with
+ * several threads sharing one Random versus each using randomStream().
+ * Not run as part of the tests:
+ * <pre>
+ * java -cp bin-test processing.core.RandomBenchmark [count] [threads]
+ * </pre>
+ */
+public class RandomBenchmark {
+  static final int ROUNDS = 5;
+
+
+  public static void main(String[] args) throws Exception {
+    int count = (args.length > 0) ? Integer.parseInt(args[0]) : 1 << 22;
+    int threads = (args.length > 1) ? Integer.parseInt(args[1]) :
+      Runtime.getRuntime().availableProcessors();
+
+    PApplet applet = new PApplet();
+    float[] out = new float[count];
+    double sink = 0;
+
+    for (int round = 0; round < ROUNDS; round++) {
+      applet.randomGenerator(new Random(1));
+      long randomTime = timeSingle(applet, out);
+      long randomGaussTime = timeGaussian(applet, out);
+
+      applet.randomGenerator(new PRandom(1));
+      long fastTime = timeSingle(applet, out);
+      long fastGaussTime = timeGaussian(applet, out);
+
+      long begin = System.nanoTime();
+      applet.random(out, -1, 1);
+      long fillTime = System.nanoTime() - begin;
+
+      begin = System.nanoTime();
+      applet.randomGaussian(out);
+      long fillGaussTime = System.nanoTime() - begin;
+      sink += out[count / 2];
+
+      long sharedTime = timeThreads(threads, count, new Random(1), null);
+      long streamTime = timeThreads(threads, count, null, applet);
+
+      System.out.format("random(): Random %.2f, PRandom %.2f, fill %.2f ns/value   " +
+                        "gaussian: Random %.2f, PRandom %.2f, fill %.2f ns/value%n",
+                        randomTime / (double) count, fastTime / (double) count,
+                        fillTime / (double) count,
+                        randomGaussTime / (double) count, fastGaussTime / (double) count,
+                        fillGaussTime / (double) count);
+      System.out.format("%d threads: shared Random %.2f, randomStream() %.2f ns/value%n",
+                        threads, sharedTime / (double) count,
+                        streamTime / (double) count);
+    }
+    // keep the results alive so the JIT can't drop the loops
+    System.out.println(sink == 42 ? "" : " ");
+  }
+
+
+  static long timeSingle(PApplet applet, float[] out) {
+    long begin = System.nanoTime();
+    for (int i = 0; i < out.length; i++) {
+      out[i] = applet.random(-1, 1);
+    }
+    return System.nanoTime() - begin;
+  }
+
+
+  static long timeGaussian(PApplet applet, float[] out) {
+    long begin = System.nanoTime();
+    for (int i = 0; i < out.length; i++) {
+      out[i] = applet.randomGaussian();
+    }
+    return System.nanoTime() - begin;
+  }
+
+
+  /** Each thread fills its share of the values, like particle setup */
+  static long timeThreads(int threads, final int count,
+                          final Random shared, final PApplet applet) throws Exception {
+    Thread[] workers = new Thread[threads];
+    final float[] out = new float[count];
+    final int share = count / threads;
+    for (int t = 0; t < threads; t++) {
+      final int index = t;
+      workers[t] = new Thread(new Runnable() {
+        public void run() {
+          int start = index * share;
+          if (shared != null) {
+            for (int i = start; i < start + share; i++) {
+              out[i] = shared.nextFloat();
+            }
+          } else {
+            applet.randomStream(index).fill(out, start, share, 0, 1);
+          }
+        }
+      });
+    }
+    long begin = System.nanoTime();
+    for (Thread worker : workers) worker.start();
+    for (Thread worker : workers) worker.join();
+    return System.nanoTime() - begin;
+  }
+}
@@ -0,0 +1,89 @@
+package processing.data;
+
+import java.util.concurrent.CountDownLatch;
+
+
+/**
+ * Counts tokens from several threads at once, comparing ConcurrentIntDict
+ * with an IntDict behind a single lock. Not run as part of the tests:
+ * <pre>
+ * java -cp bin-test processing.data.ConcurrentIntDictBenchmark [threads]
+ * </pre>
+ */
+public class ConcurrentIntDictBenchmark {
+  static final int TOKENS_PER_THREAD = 2000000;
+  static final int VOCABULARY = 50000;
+
+
+  public static void main(String[] args) throws InterruptedException {
+    int threadCount = (args.length > 0) ?
+      Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+
+    final String[] words = new String[VOCABULARY];
+    for (int i = 0; i < words.length; i++) {
+      words[i] = "word" + i;
+    }
+
+    for (int round = 0; round < 3; round++) {
+      final IntDict locked = new IntDict();
+      long lockedTime = run(threadCount, new Counter() {
+        public void count(String word) {
+          synchronized (locked) {
+            locked.increment(word);
+          }
+        }
+      }, words);
+
+      final ConcurrentIntDict concurrent = new ConcurrentIntDict();
+      long concurrentTime = run(threadCount, new Counter() {
+        public void count(String word) {
+          concurrent.increment(word);
+        }
+      }, words);
+
+      long total = (long) threadCount * TOKENS_PER_THREAD;
+      System.out.format("%d threads: synchronized IntDict %.1f Mops/s, " +
+                        "ConcurrentIntDict %.1f Mops/s%n", threadCount,
+                        total / (double) lockedTime, total / (double) concurrentTime);
+    }
+  }
+
+
+  interface Counter {
+    void count(String word);
+  }
+
+
+  /** Returns the elapsed time in microseconds. */
+  static long run(int threadCount, final Counter counter,
+                  final String[] words) throws InterruptedException {
+    final CountDownLatch start = new CountDownLatch(1);
+    Thread[] threads = new Thread[threadCount];
+    for (int t = 0; t < threadCount; t++) {
+      final int seed = t;
+      threads[t] = new Thread(new Runnable() {
+        public void run() {
+          try {
+            start.await();
+          } catch (InterruptedException e) {
+            return;
+          }
+          int index = seed * 7919;
+          for (int i = 0; i < TOKENS_PER_THREAD; i++) {
+            // cheap skewed-ish sequence, so that some words are hot
+            index = (index * 1103515245 + 12345) & 0x7fffffff;
+            int which = (index % VOCABULARY) % ((i & 7) == 0 ? VOCABULARY : 500);
+            counter.count(words[which]);
+          }
+        }
+      });
+      threads[t].start();
+    }
+    long begin = System.nanoTime();
+    start.countDown();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    return (System.nanoTime() - begin) / 1000;
+  }
+}
@@ -0,0 +1,49 @@
+package processing.data;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+
+public class ConcurrentIntDictTest {
+
+  @Test
+  public void testConcurrentIncrement() throws InterruptedException {
+    final ConcurrentIntDict dict = new ConcurrentIntDict();
+    final int threadCount = 8;
+    final int perThread = 20000;
+
+    Thread[] threads = new Thread[threadCount];
+    for (int t = 0; t < threadCount; t++) {
+      threads[t] = new Thread(new Runnable() {
+        public void run() {
+          for (int i = 0; i < perThread; i++) {
+            dict.increment("key" + (i % 1000));
+          }
+        }
+      });
+      threads[t].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    Assert.assertEquals(1000, dict.size());
+    IntDict snapshot = dict.snapshot();
+    Assert.assertEquals(1000, snapshot.size());
+    Assert.assertEquals(threadCount * perThread, snapshot.sum());
+    Assert.assertEquals(threadCount * perThread / 1000, snapshot.get("key999"));
+  }
+
+  @Test
+  public void testGetAndClear() {
+    ConcurrentIntDict dict = new ConcurrentIntDict(1);
+    dict.set("a", 5);
+    Assert.assertEquals(7, dict.add("a", 2));
+    Assert.assertEquals(-1, dict.get("b", -1));
+    Assert.assertFalse(dict.hasKey(null));
+    dict.clear();
+    Assert.assertEquals(0, dict.size());
+    Assert.assertFalse(dict.hasKey("a"));
+  }
+
+}
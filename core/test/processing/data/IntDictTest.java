@@ -0,0 +1,76 @@
+package processing.data;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+
+public class IntDictTest {
+
+  @Test
+  public void testIncrement() {
+    IntDict dict = new IntDict();
+    for (int i = 0; i < 1000; i++) {
+      dict.increment("word" + (i % 37));
+    }
+    Assert.assertEquals(37, dict.size());
+    Assert.assertEquals(28, dict.get("word0"));
+    Assert.assertEquals(27, dict.get("word36"));
+    Assert.assertFalse(dict.hasKey("word37"));
+  }
+
+  @Test
+  public void testRemoveAndSortKeepLookups() {
+    Random random = new Random(1);
+    IntDict dict = new IntDict();
+    Map<String, Integer> expected = new HashMap<>();
+
+    for (int i = 0; i < 5000; i++) {
+      String key = "k" + random.nextInt(800);
+      int op = random.nextInt(10);
+      if (op < 6) {
+        dict.add(key, i);
+        expected.merge(key, i, Integer::sum);
+      } else if (op < 8) {
+        if (dict.hasKey(key)) {
+          Assert.assertEquals((int) expected.remove(key), dict.remove(key));
+        } else {
+          Assert.assertFalse(expected.containsKey(key));
+        }
+      } else if (op == 8) {
+        dict.sortValues();
+      } else {
+        dict.sortKeysReverse();
+      }
+    }
+
+    Assert.assertEquals(expected.size(), dict.size());
+    for (int i = 0; i < dict.size(); i++) {
+      Assert.assertEquals(i, dict.index(dict.key(i)));
+      Assert.assertEquals((int) expected.get(dict.key(i)), dict.value(i));
+    }
+  }
+
+  @Test
+  public void testSwapAndSetIndex() {
+    IntDict dict = new IntDict(new Object[][] {
+      { "a", 1 }, { "b", 2 }, { "c", 3 }
+    });
+    dict.swap(0, 2);
+    Assert.assertEquals(0, dict.index("c"));
+    Assert.assertEquals(2, dict.index("a"));
+
+    dict.setIndex(1, "z", 26);
+    Assert.assertFalse(dict.hasKey("b"));
+    Assert.assertEquals(26, dict.get("z"));
+
+    IntDict copy = dict.copy();
+    copy.remove("c");
+    Assert.assertEquals(0, copy.index("z"));
+    Assert.assertEquals(0, dict.index("c"));
+  }
+
+}
@@ -0,0 +1,80 @@
+package processing.data;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+
+public class IntIntDictTest {
+
+  @Test
+  public void testMatchesHashMap() {
+    Random random = new Random(2);
+    IntIntDict dict = new IntIntDict();
+    Map<Integer, Integer> expected = new HashMap<>();
+
+    for (int i = 0; i < 5000; i++) {
+      int key = random.nextInt(600) - 300;
+      int op = random.nextInt(10);
+      if (op < 6) {
+        dict.add(key, i);
+        expected.merge(key, i, Integer::sum);
+      } else if (op < 8) {
+        if (dict.hasKey(key)) {
+          Assert.assertEquals((int) expected.remove(key), dict.remove(key));
+        }
+      } else if (op == 8) {
+        dict.sortValuesReverse();
+      } else {
+        dict.sortKeys();
+      }
+    }
+
+    Assert.assertEquals(expected.size(), dict.size());
+    for (int i = 0; i < dict.size(); i++) {
+      Assert.assertEquals(i, dict.index(dict.key(i)));
+      Assert.assertEquals((int) expected.get(dict.key(i)), dict.value(i));
+    }
+  }
+
+  @Test
+  public void testSortValuesAndPercent() {
+    IntIntDict dict = new IntIntDict(new int[][] {
+      { 0xFFFF0000, 3 }, { 0xFF00FF00, 1 }, { 0xFF0000FF, 4 }
+    });
+    dict.sortValuesReverse();
+    Assert.assertArrayEquals(new int[] { 0xFF0000FF, 0xFFFF0000, 0xFF00FF00 },
+                             dict.keyArray());
+    IntFloatDict percent = dict.getPercent();
+    Assert.assertEquals(0.5f, percent.get(0xFF0000FF), 0.0001f);
+  }
+
+  @Test
+  public void testLongKeys() {
+    LongIntDict dict = new LongIntDict();
+    long big = 1L << 40;
+    dict.increment(big);
+    dict.increment(big);
+    dict.increment(big + 1);
+    Assert.assertEquals(2, dict.get(big));
+    Assert.assertEquals(1, dict.get(big + 1));
+    Assert.assertFalse(dict.hasKey(0));
+  }
+
+  @Test
+  public void testFloatValuesWithNaN() {
+    IntFloatDict dict = new IntFloatDict();
+    dict.set(1, 2.5f);
+    dict.set(2, Float.NaN);
+    dict.set(3, -1);
+    dict.sortValues();
+    Assert.assertEquals(3, dict.key(0));
+    Assert.assertEquals(2, dict.key(2));
+    Assert.assertEquals(1, dict.maxKey());
+    Assert.assertEquals(2, dict.index(2));
+  }
+
+}
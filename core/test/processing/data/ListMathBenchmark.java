@@ -0,0 +1,69 @@
+package processing.data;
+
+
+/**
+ * Compares the whole-list operations in FloatList with the same work done
+ * through get() and set() in a loop, the way a sketch would do it without
+ * them. Not run as part of the tests:
+ * <pre>
+ * java -cp bin-test processing.data.ListMathBenchmark [size]
+ * </pre>
+ */
+public class ListMathBenchmark {
+  static final int ROUNDS = 5;
+
+
+  public static void main(String[] args) {
+    int size = (args.length > 0) ? Integer.parseInt(args[0]) : 1 << 20;
+    int repeat = Math.max(1, (1 << 26) / size);
+
+    FloatList a = new FloatList(size);
+    FloatList b = new FloatList(size);
+    for (int i = 0; i < size; i++) {
+      a.append(i % 1000);
+      b.append((i * 7) % 1000);
+    }
+
+    double sink = 0;
+    for (int round = 0; round < ROUNDS; round++) {
+      long begin = System.nanoTime();
+      for (int r = 0; r < repeat; r++) {
+        for (int i = 0; i < a.size(); i++) {
+          a.set(i, a.get(i) * 0.999f + b.get(i));
+        }
+      }
+      long loopTime = System.nanoTime() - begin;
+
+      begin = System.nanoTime();
+      for (int r = 0; r < repeat; r++) {
+        a.multEach(0.999f);
+        a.add(b);
+      }
+      long listTime = System.nanoTime() - begin;
+
+      begin = System.nanoTime();
+      for (int r = 0; r < repeat; r++) {
+        double sum = 0;
+        for (int i = 0; i < a.size(); i++) {
+          sum += a.get(i) * b.get(i);
+        }
+        sink += sum;
+      }
+      long loopDotTime = System.nanoTime() - begin;
+
+      begin = System.nanoTime();
+      for (int r = 0; r < repeat; r++) {
+        sink += a.dot(b);
+      }
+      long listDotTime = System.nanoTime() - begin;
+
+      long total = (long) size * repeat;
+      System.out.format("mult+add: loop %.2f ns/elt, list %.2f ns/elt   " +
+                        "dot: loop %.2f ns/elt, list %.2f ns/elt%n",
+                        loopTime / (double) total, listTime / (double) total,
+                        loopDotTime / (double) total, listDotTime / (double) total);
+    }
+    // keep the results alive so the JIT can't drop the loops
+    System.out.println(sink == 42 ? "" : " ");
+  }
+}
@@ -0,0 +1,104 @@
+package processing.data;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+
+public class ListMathTest {
+
+  @Test
+  public void testFloatList() {
+    FloatList list = new FloatList(new float[] { 1, 2, 3, 4 });
+    list.multEach(2);
+    list.add(new FloatList(new float[] { 1, 1, 1, 1 }));
+    Assert.assertArrayEquals(new float[] { 3, 5, 7, 9 }, list.array(), 0);
+
+    list.lerp(new FloatList(new float[] { 5, 5, 5, 5 }), 0.5f);
+    Assert.assertArrayEquals(new float[] { 4, 5, 6, 7 }, list.array(), 0);
+
+    list.clamp(4.5f, 6.5f);
+    Assert.assertArrayEquals(new float[] { 4.5f, 5, 6, 6.5f }, list.array(), 0);
+
+    Assert.assertEquals(22, list.dot(new FloatList(new float[] { 1, 1, 1, 1 })), 0);
+
+    list.cumulativeSum();
+    Assert.assertArrayEquals(new float[] { 4.5f, 9.5f, 15.5f, 22 }, list.array(), 0);
+  }
+
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testSizeMismatch() {
+    new DoubleList(new double[] { 1, 2 }).add(new DoubleList(new double[] { 1 }));
+  }
+
+
+  @Test
+  public void testHistogram() {
+    FloatList floats = new FloatList(new float[] { 0, 0.5f, 1, 9.9f, 10, Float.NaN, 11 });
+    Assert.assertArrayEquals(new int[] { 3, 0, 0, 0, 2 },
+                             floats.histogram(5, 0, 10).array());
+    Assert.assertArrayEquals(new int[] { 3, 3 }, floats.histogram(2).array());
+
+    IntList ints = new IntList(new int[] { 0, 1, 2, 3, 4, 5, 6, 7, 8, 9 });
+    Assert.assertArrayEquals(new int[] { 5, 5 }, ints.histogram(2).array());
+    Assert.assertArrayEquals(new int[] { 1, 1, 1 }, ints.histogram(3, 1, 3).array());
+  }
+
+
+  @Test
+  public void testLargeSums() {
+    int n = ParallelSum.PARALLEL_THRESHOLD * 3 + 17;
+    IntList ints = IntList.fromRange(n);
+    long expected = (long) n * (n - 1) / 2;
+    Assert.assertEquals(expected, ints.sumLong());
+
+    long dot = 0;
+    for (int i = 0; i < n; i++) {
+      dot += (long) i * i;
+    }
+    Assert.assertEquals(dot, ints.dot(ints));
+
+    DoubleList doubles = new DoubleList(n);
+    for (int i = 0; i < n; i++) {
+      doubles.append(i);
+    }
+    Assert.assertEquals(expected, doubles.sum(), 0);
+  }
+
+
+  @Test
+  public void testCumulativeOverflow() {
+    IntList list = new IntList(new int[] { 5, Integer.MAX_VALUE - 10, 6, 1 });
+    try {
+      list.cumulativeSum();
+      Assert.fail("cumulativeSum() didn't notice the overflow");
+    } catch (RuntimeException e) { }
+    // nothing was changed
+    Assert.assertArrayEquals(new int[] { 5, Integer.MAX_VALUE - 10, 6, 1 },
+                             list.array());
+
+    // sums right up to the limit are fine
+    list = new IntList(new int[] { Integer.MAX_VALUE, -5, 5 });
+    list.cumulativeSum();
+    Assert.assertArrayEquals(new int[] { Integer.MAX_VALUE, Integer.MAX_VALUE - 5,
+                                         Integer.MAX_VALUE }, list.array());
+  }
+
+
+  @Test
+  public void testEach() {
+    IntList ints = new IntList(new int[] { 1, 2, 3 });
+    ints.addEach(5);
+    ints.add(0, 10);  // just the one value
+    Assert.assertArrayEquals(new int[] { 16, 7, 8 }, ints.array());
+    ints.subEach(1);
+    ints.multEach(2);
+    ints.divEach(3);
+    Assert.assertArrayEquals(new int[] { 10, 4, 4 }, ints.array());
+
+    DoubleList doubles = new DoubleList(new double[] { 1, 2 });
+    doubles.addEach(0.5);
+    doubles.divEach(0.5);
+    Assert.assertArrayEquals(new double[] { 3, 5 }, doubles.array(), 0);
+  }
+}
@@ -0,0 +1,133 @@
+package processing.data;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+
+public class SortTest {
+
+  /** Sorts pairs by key only, so that stability can be checked. */
+  static class PairSort extends Sort {
+    final int[] keys;
+    final int[] order;
+
+    PairSort(int[] keys) {
+      this.keys = keys;
+      order = IntList.fromRange(keys.length).array();
+    }
+
+    @Override
+    public int size() {
+      return keys.length;
+    }
+
+    @Override
+    public int compare(int a, int b) {
+      return Integer.compare(keys[a], keys[b]);
+    }
+
+    @Override
+    public void swap(int a, int b) {
+      int temp = keys[a];
+      keys[a] = keys[b];
+      keys[b] = temp;
+      temp = order[a];
+      order[a] = order[b];
+      order[b] = temp;
+    }
+  }
+
+
+  static int[] random(int length, int range, long seed) {
+    Random random = new Random(seed);
+    int[] outgoing = new int[length];
+    for (int i = 0; i < length; i++) {
+      outgoing[i] = random.nextInt(range);
+    }
+    return outgoing;
+  }
+
+
+  static void assertSorted(int[] original, PairSort sort) {
+    int[] expected = original.clone();
+    Arrays.sort(expected);
+    Assert.assertArrayEquals(expected, sort.keys);
+  }
+
+
+  @Test
+  public void testIntrosort() {
+    for (int length : new int[] { 0, 1, 2, 3, 17, 100, 5000 }) {
+      int[] data = random(length, 1000, length);
+      PairSort sort = new PairSort(data.clone());
+      sort.run();
+      assertSorted(data, sort);
+    }
+  }
+
+  @Test
+  public void testDuplicatesAndPatterns() {
+    int n = 200000;
+    int[] same = new int[n];
+    int[] ascending = IntList.fromRange(n).array();
+    int[] descending = new int[n];
+    int[] organ = new int[n];
+    for (int i = 0; i < n; i++) {
+      descending[i] = n - i;
+      organ[i] = Math.min(i, n - i);
+    }
+    for (int[] data : new int[][] { same, ascending, descending, organ, random(n, 3, 1) }) {
+      PairSort sort = new PairSort(data.clone());
+      sort.run();
+      assertSorted(data, sort);
+    }
+  }
+
+  @Test
+  public void testStable() {
+    for (int length : new int[] { 1, 2, 21, 41, 1000, 12345 }) {
+      int[] data = random(length, 10, length);
+      PairSort sort = new PairSort(data.clone());
+      sort.runStable();
+      assertSorted(data, sort);
+      for (int i = 1; i < length; i++) {
+        if (sort.keys[i] == sort.keys[i-1]) {
+          Assert.assertTrue(sort.order[i] > sort.order[i-1]);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testParallel() {
+    ForkJoinPool pool = new ForkJoinPool(4);
+    int[] data = random(300000, 50000, 7);
+    PairSort sort = new PairSort(data.clone());
+    sort.runParallel(pool);
+    pool.shutdown();
+    assertSorted(data, sort);
+  }
+
+  @Test
+  public void testTableSortIsStable() {
+    Table table = new Table();
+    table.addColumn("group", Table.INT);
+    table.addColumn("id", Table.INT);
+    for (int i = 0; i < 100; i++) {
+      TableRow row = table.addRow();
+      row.setInt("group", i % 3);
+      row.setInt("id", i);
+    }
+    table.sort("group");
+    for (int i = 1; i < 100; i++) {
+      if (table.getInt(i, "group") == table.getInt(i-1, "group")) {
+        Assert.assertTrue(table.getInt(i, "id") > table.getInt(i-1, "id"));
+      }
+    }
+  }
+
+}
@@ -0,0 +1,80 @@
+package processing.data;
+
+import java.util.Random;
+
+
+/**
+ * Times the neighbor lookups for a frame of a boids simulation, comparing
+ * SpatialGrid and KDTree with checking the distance to every other boid.
+ * Not run as part of the tests:
+ * <pre>
+ * java -cp bin-test processing.data.SpatialIndexBenchmark [boids]
+ * </pre>
+ */
+public class SpatialIndexBenchmark {
+  static final float SIZE = 4000;
+  static final float RADIUS = 25;
+  // checking every pair for all of them would take minutes
+  static final int BRUTE_FORCE_SAMPLE = 1000;
+
+
+  public static void main(String[] args) {
+    int count = (args.length > 0) ? Integer.parseInt(args[0]) : 100000;
+
+    Random random = new Random(0);
+    float[] x = new float[count];
+    float[] y = new float[count];
+    float[] vx = new float[count];
+    float[] vy = new float[count];
+    for (int i = 0; i < count; i++) {
+      x[i] = random.nextFloat() * SIZE;
+      y[i] = random.nextFloat() * SIZE;
+      vx[i] = random.nextFloat() * 2 - 1;
+      vy[i] = random.nextFloat() * 2 - 1;
+    }
+
+    SpatialIndex[] indices = { new SpatialGrid(RADIUS), new KDTree() };
+    for (int round = 0; round < 5; round++) {
+      for (int i = 0; i < count; i++) {
+        x[i] = (x[i] + vx[i] + SIZE) % SIZE;
+        y[i] = (y[i] + vy[i] + SIZE) % SIZE;
+      }
+
+      long start = System.nanoTime();
+      long found = 0;
+      for (int i = 0; i < BRUTE_FORCE_SAMPLE; i++) {
+        for (int j = 0; j < count; j++) {
+          float dx = x[j] - x[i];
+          float dy = y[j] - y[i];
+          if (dx*dx + dy*dy <= RADIUS*RADIUS) found++;
+        }
+      }
+      double bruteMillis =
+        (System.nanoTime() - start) / 1e6 * count / BRUTE_FORCE_SAMPLE;
+      System.out.format("%d boids: every pair %.0f ms (estimated)", count, bruteMillis);
+
+      for (SpatialIndex index : indices) {
+        start = System.nanoTime();
+        index.set(x, y);
+        long built = System.nanoTime();
+        IntList neighbors = new IntList();
+        found = 0;
+        for (int i = 0; i < count; i++) {
+          found += index.within(x[i], y[i], RADIUS, neighbors).size();
+        }
+        long queried = System.nanoTime();
+
+        // then move every boid a little and update instead of rebuilding
+        for (int i = 0; i < count; i++) {
+          index.update(i, x[i] + vx[i], y[i] + vy[i]);
+        }
+        long updated = System.nanoTime();
+        System.out.format(", %s build %.1f ms query %.1f ms update %.1f ms",
+                          index.getClass().getSimpleName(),
+                          (built - start) / 1e6, (queried - built) / 1e6,
+                          (updated - queried) / 1e6);
+      }
+      System.out.format(" (%.1f neighbors each)%n", found / (double) count);
+    }
+  }
+}
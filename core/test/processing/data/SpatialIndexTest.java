@@ -0,0 +1,134 @@
+package processing.data;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import processing.core.PVector;
+
+
+public class SpatialIndexTest {
+
+  static float[] coords(Random random, int count, float range) {
+    float[] c = new float[count];
+    for (int i = 0; i < count; i++) {
+      c[i] = random.nextFloat() * range;
+    }
+    return c;
+  }
+
+
+  static float distSq(SpatialIndex index, int i, float qx, float qy, float qz) {
+    PVector v = index.get(i, null);
+    return (v.x-qx)*(v.x-qx) + (v.y-qy)*(v.y-qy) + (v.z-qz)*(v.z-qz);
+  }
+
+
+  /** Compare both kinds of queries against checking every point. */
+  static void check(SpatialIndex index, Random random, float range) {
+    IntList found = new IntList();
+    for (int q = 0; q < 50; q++) {
+      float qx = random.nextFloat() * range;
+      float qy = random.nextFloat() * range;
+      float qz = (index.dimensions == 3) ? random.nextFloat() * range : 0;
+      float radius = random.nextFloat() * range / 8;
+
+      index.within(qx, qy, qz, radius, found);
+      int[] actual = found.array();
+      Arrays.sort(actual);
+      IntList expected = new IntList();
+      for (int i = 0; i < index.size(); i++) {
+        if (distSq(index, i, qx, qy, qz) <= radius*radius) {
+          expected.append(i);
+        }
+      }
+      Assert.assertArrayEquals(expected.array(), actual);
+
+      int k = 1 + random.nextInt(12);
+      index.nearest(qx, qy, qz, k, found);
+      Assert.assertEquals(Math.min(k, index.size()), found.size());
+      if (index.size() == 0) {
+        Assert.assertEquals(-1, index.nearest(qx, qy, qz));
+        continue;
+      }
+      float furthest = 0;
+      for (int j = 0; j < found.size(); j++) {
+        float d = distSq(index, found.get(j), qx, qy, qz);
+        Assert.assertTrue(d >= furthest);  // closest first
+        furthest = d;
+      }
+      int closer = 0;
+      for (int i = 0; i < index.size(); i++) {
+        if (distSq(index, i, qx, qy, qz) < furthest) closer++;
+      }
+      Assert.assertTrue(closer < found.size());
+      Assert.assertEquals(distSq(index, found.get(0), qx, qy, qz),
+                          distSq(index, index.nearest(qx, qy, qz), qx, qy, qz), 0);
+    }
+  }
+
+
+  static void checkAll(SpatialIndex index) {
+    Random random = new Random(1);
+    float range = 1000;
+    for (int count : new int[] { 0, 5, 3000, 70000 }) {
+      index.set(coords(random, count, range), coords(random, count, range));
+      check(index, random, range);
+    }
+    index.set(coords(random, 4000, range), coords(random, 4000, range),
+              coords(random, 4000, range));
+    check(index, random, range);
+
+    // move a quarter of the points, some of them a long way
+    for (int i = 0; i < index.size(); i += 4) {
+      index.update(i, random.nextFloat() * range, random.nextFloat() * range,
+                   random.nextFloat() * range);
+    }
+    check(index, random, range);
+    index.rebuild();
+    check(index, random, range);
+  }
+
+
+  @Test
+  public void testGrid() {
+    checkAll(new SpatialGrid(30));
+  }
+
+
+  @Test
+  public void testKDTree() {
+    checkAll(new KDTree());
+  }
+
+
+  @Test
+  public void testSources() {
+    Table table = new Table();
+    table.addColumn("x", Table.FLOAT);
+    table.addColumn("y", Table.FLOAT);
+    for (int i = 0; i < 10; i++) {
+      TableRow row = table.addRow();
+      row.setFloat("x", i);
+      row.setFloat("y", 0);
+    }
+    SpatialIndex index = new KDTree();
+    index.set(table, "x", "y");
+    Assert.assertEquals(4, index.nearest(4.2f, 1));
+    Assert.assertEquals(3, index.within(5, 0, 1, null).size());
+
+    // all the same point, so every split is a tie
+    PVector[] points = new PVector[100];
+    Arrays.fill(points, new PVector(2, 3));
+    index.set(points);
+    Assert.assertEquals(100, index.within(2, 3, 0, null).size());
+    Assert.assertEquals(7, index.nearest(0, 0, 7, null).size());
+
+    index = new SpatialGrid(1);
+    index.set(points);
+    Assert.assertEquals(100, index.within(2, 3, 0, null).size());
+    Assert.assertEquals(0, index.within(50, 50, 10, null).size());
+  }
+}
@@ -0,0 +1,85 @@
+package processing.data;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+
+public class XMLFormatTest {
+
+  private static final String SOURCE =
+    "<root a=\"1&amp;&quot;&lt;\">\n" +
+    "  <kid>text &amp; more</kid>\n" +
+    "  <empty/>\n" +
+    "  <deep><d2 z=\"1\"/></deep>\n" +
+    "</root>";
+
+  private static final String SEP = System.getProperty("line.separator");
+
+  @Test
+  public void testCompact() throws Exception {
+    String line = "<root a=\"1&amp;&quot;&lt;\"><kid>text &amp; more</kid>" +
+      "<empty/><deep><d2 z=\"1\"/></deep></root>";
+    Assert.assertEquals(line, XML.parse(line).format(-1));
+    // the whitespace between elements is dropped, so it's all on one line
+    Assert.assertEquals(line, XML.parse(SOURCE).format(-1));
+    Assert.assertEquals(line, XML.parse(SOURCE).toString());
+    Assert.assertEquals("<a><b>hi</b><c/></a>",
+                        XML.parse("<a>\n  <b>hi</b>\n  <c/>\n</a>").format(-1));
+  }
+
+  @Test
+  public void testWhitespace() throws Exception {
+    String source = "<a><b>  hi  </b><c>  </c><d>\n x\ty \n</d></a>";
+    XML xml = XML.parse(source);
+    Assert.assertEquals(source, xml.format(-1));
+    Assert.assertEquals(source, xml.toString());
+    Assert.assertEquals("  hi  ", XML.parse(xml.format(-1)).getChild("b").getContent());
+
+    String expected =
+      "<?xml version=\"1.0\" encoding=\"UTF-8\"?>" + SEP +
+      "<a>" + SEP +
+      "  <b>  hi  </b>" + SEP +
+      "  <c>  </c>" + SEP +
+      "  <d>\n x\ty \n</d>" + SEP +
+      "</a>" + SEP;
+    Assert.assertEquals(expected, xml.format(2));
+    XML again = XML.parse(xml.format(2));
+    Assert.assertEquals("  hi  ", again.getChild("b").getContent());
+    Assert.assertEquals("  ", again.getChild("c").getContent());
+    Assert.assertEquals("\n x\ty \n", again.getChild("d").getContent());
+
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    Assert.assertTrue(xml.save(output, "compact"));
+    Assert.assertEquals(source, new String(output.toByteArray(), StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testIndent() throws Exception {
+    XML xml = XML.parse(SOURCE);
+    String expected =
+      "<?xml version=\"1.0\" encoding=\"UTF-8\"?>" + SEP +
+      "<root a=\"1&amp;&quot;&lt;\">" + SEP +
+      "  <kid>text &amp; more</kid>" + SEP +
+      "  <empty/>" + SEP +
+      "  <deep>" + SEP +
+      "    <d2 z=\"1\"/>" + SEP +
+      "  </deep>" + SEP +
+      "</root>" + SEP;
+    Assert.assertEquals(expected, xml.format(2));
+  }
+
+  @Test
+  public void testSaveRoundTrip() throws Exception {
+    XML xml = new XML("data");
+    xml.addChild("item").setContent("café <&>");
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    Assert.assertTrue(xml.save(output, "compact"));
+    String written = new String(output.toByteArray(), StandardCharsets.UTF_8);
+    Assert.assertEquals("<data><item>café &lt;&amp;&gt;</item></data>", written);
+    Assert.assertEquals("café <&>", XML.parse(written).getChild("item").getContent());
+  }
+
+}